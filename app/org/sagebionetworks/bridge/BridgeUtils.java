@@ -7,6 +7,7 @@ import static org.springframework.util.StringUtils.commaDelimitedListToSet;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -24,12 +25,14 @@ import org.sagebionetworks.bridge.json.BridgeTypeName;
 
 import org.springframework.core.annotation.AnnotationUtils;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.stormpath.sdk.group.Group;
@@ -42,6 +45,9 @@ public class BridgeUtils {
     public static final Joiner SEMICOLON_SPACE_JOINER = Joiner.on("; ");
     public static final Joiner SPACE_JOINER = Joiner.on(" ");
 
+    // Rows deleted per batchDelete() call by batchDeleteInPages()
+    static final int BATCH_DELETE_PAGE_SIZE = 100;
+
     /**
      * A simple means of providing template variables in template strings, in the format <code>${variableName}</code>.
      * This value will be replaced with the value of the variable name. The variable name/value pairs are passed to the
@@ -105,6 +111,26 @@ public class BridgeUtils {
         }
     }
     
+    /**
+     * Batch deletes the given keys a page at a time, so keys read lazily from a large partition never have to be
+     * held in memory all at once. Throws if any page fails.
+     * @param mapper
+     *      mapper for the table to delete from
+     * @param keyIter
+     *      keys of the rows to delete
+     * @return the number of rows deleted
+     */
+    public static <T> int batchDeleteInPages(DynamoDBMapper mapper, Iterator<T> keyIter) {
+        int count = 0;
+        Iterator<List<T>> pageIter = Iterators.partition(keyIter, BATCH_DELETE_PAGE_SIZE);
+        while (pageIter.hasNext()) {
+            List<T> page = pageIter.next();
+            ifFailuresThrowException(mapper.batchDelete(page));
+            count += page.size();
+        }
+        return count;
+    }
+    
     public static boolean isEmpty(Collection<?> coll) {
         return (coll == null || coll.isEmpty());
     }
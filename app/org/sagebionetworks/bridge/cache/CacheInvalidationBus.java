@@ -0,0 +1,31 @@
+package org.sagebionetworks.bridge.cache;
+
+/**
+ * Broadcasts cache invalidations between server nodes, so that in-process caches held in front of Redis or DynamoDB
+ * can be evicted when another node changes the underlying entry. Invalidations are published to a named cache,
+ * and only listeners on <i>other</i> nodes are notified; a node is responsible for keeping its own local caches
+ * consistent with its own writes.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Notify other nodes that the entry for this key in the named cache is no longer valid.
+     */
+    void publish(String cacheName, String key);
+
+    /**
+     * Register a listener for invalidations of the named cache published by other nodes.
+     */
+    void subscribe(String cacheName, Listener listener);
+
+    interface Listener {
+        /** The entry for this key has changed on another node. */
+        void invalidate(String key);
+
+        /**
+         * Invalidations may have been missed (e.g. the connection to the bus was lost and then restored), so every
+         * local entry should be treated as stale.
+         */
+        void invalidateAll();
+    }
+}
@@ -2,7 +2,7 @@ package org.sagebionetworks.bridge.cache;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -15,13 +15,15 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.redis.JedisOps;
-import org.sagebionetworks.bridge.redis.JedisTransaction;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps.ValueWithTtl;
 import org.sagebionetworks.bridge.redis.RedisKey;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * A wrapper around whatever cache provider we ultimately decide to go with (probably Redis). 
@@ -30,8 +32,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Component
 public class CacheProvider {
     
+    static final String SESSION_CACHE_NAME = "session";
+    static final String STUDY_CACHE_NAME = "study";
+    private static final int SESSION_NEAR_CACHE_MAX_SIZE = 10000;
+    private static final int STUDY_NEAR_CACHE_MAX_SIZE = 1000;
+    // Bounds how long a node can serve a stale session if an invalidation is missed. Invalidations are published at
+    // most once, so the near cache can't rely on them alone to evict a signed-out or changed session.
+    static final int SESSION_NEAR_CACHE_EXPIRE_IN_SECONDS = 60;
+    // Bounds how long a node can serve a stale study if an invalidation is missed
+    private static final int STUDY_NEAR_CACHE_EXPIRE_IN_SECONDS = 5 * 60;
+    
+    private final NearCache<UserSession> sessionNearCache = new NearCache<>(SESSION_CACHE_NAME,
+            SESSION_NEAR_CACHE_MAX_SIZE);
+    private final NearCache<Study> studyNearCache = new NearCache<>(STUDY_CACHE_NAME, STUDY_NEAR_CACHE_MAX_SIZE);
     private ObjectMapper bridgeObjectMapper;
     private JedisOps jedisOps;
+    private PipelinedJedisOps pipelinedJedisOps;
+    private CacheInvalidationBus cacheInvalidationBus;
     private int sessionExpireInSeconds;
 
     @Autowired
@@ -44,6 +61,26 @@ public class CacheProvider {
         this.jedisOps = jedisOps;
     }
     
+    /**
+     * Sessions, studies and cached strings are read and written through these operations, which make a single round 
+     * trip to Redis for each call and record pool and latency metrics.
+     */
+    @Autowired
+    final void setPipelinedJedisOps(PipelinedJedisOps pipelinedJedisOps) {
+        this.pipelinedJedisOps = pipelinedJedisOps;
+    }
+    
+    /**
+     * Sessions and studies are held in-process in front of Redis; other nodes evict them from their near caches 
+     * through this bus when they are changed or removed here.
+     */
+    @Autowired
+    final void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.subscribe(SESSION_CACHE_NAME, sessionNearCache);
+        cacheInvalidationBus.subscribe(STUDY_CACHE_NAME, studyNearCache);
+    }
+    
     @Resource(name = "sessionExpireInSeconds")
     final void setSessionExpireInSeconds(int sessionExpireInSeconds) {
         this.sessionExpireInSeconds = sessionExpireInSeconds;
@@ -118,43 +155,48 @@ public class CacheProvider {
         final String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
         
         final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-        try (JedisTransaction transaction = jedisOps.getTransaction()) {
-            
-            // If the key exists, get the remaining time to expiration. If it doesn't exist
-            // then save with the full expiration period.
-            final Long ttl = jedisOps.ttl(userKey);
-            final int expiration = (ttl != null && ttl > 0L) ? 
-                    ttl.intValue() : sessionExpireInSeconds;
-                   
+        try {
             String ser = StudyParticipant.CACHE_WRITER.writeValueAsString(session);
             
-            List<Object> results = transaction
-                .setex(userKey, expiration, sessionToken)
-                .setex(sessionKey, expiration, ser)
-                .exec();
-            if (results == null) {
-                throw new BridgeServiceException("Session storage error.");
-            }
-            for (Object result : results) {
-                if (!"OK".equals(result)) {
-                    throw new BridgeServiceException("Session storage error.");
-                }
-            }
+            // If the user key exists, both keys keep its remaining time to expiration. If it doesn't exist
+            // then save with the full expiration period. This is one round trip to Redis.
+            final int expiration = pipelinedJedisOps.setexWithRemainingTtl(userKey, sessionExpireInSeconds,
+                    ImmutableMap.of(userKey, sessionToken, sessionKey, ser));
+            sessionNearCache.put(sessionToken, copyOf(session), nearCacheSessionExpiration(expiration));
+            cacheInvalidationBus.publish(SESSION_CACHE_NAME, sessionToken);
         } catch (Throwable e) {
+            sessionNearCache.invalidate(sessionToken);
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
     }
 
+    /**
+     * Returns the session for this token. Sessions are served from an in-process near cache when possible, which 
+     * avoids both the Redis round trip and deserialization. Callers receive their own copy of the session, so 
+     * modifying it does not change the cached session until it is saved through {@link #setUserSession}.
+     */
     public UserSession getUserSession(final String sessionToken) {
         checkNotNull(sessionToken);
+        UserSession cachedSession = sessionNearCache.get(sessionToken);
+        if (cachedSession != null) {
+            return copyOf(cachedSession);
+        }
+        // If the session is changed or removed while it's being read, the session read here may be out of date, and
+        // isn't cached.
+        final long fillGeneration = sessionNearCache.getGeneration();
         try {
             final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-            final String ser = jedisOps.get(sessionKey);
-            if (ser == null) {
+            final ValueWithTtl ser = pipelinedJedisOps.getWithTtl(sessionKey);
+            if (ser.getValue() == null) {
                 return null;
             }
-            return bridgeObjectMapper.readValue(ser, UserSession.class);
+            UserSession session = bridgeObjectMapper.readValue(ser.getValue(), UserSession.class);
+            if (ser.getTtl() > 0L) {
+                sessionNearCache.putIfNotInvalidatedSince(sessionToken, copyOf(session),
+                        nearCacheSessionExpiration(ser.getTtl()), fillGeneration);
+            }
+            return session;
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -166,7 +208,7 @@ public class CacheProvider {
         String sessionToken = null;
         try {
             final String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-            sessionToken = jedisOps.get(userKey);
+            sessionToken = pipelinedJedisOps.get(userKey);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -183,23 +225,25 @@ public class CacheProvider {
         try {
             final String sessionKey = RedisKey.SESSION.getRedisKey(session.getSessionToken());
             final String userKey = RedisKey.USER_SESSION.getRedisKey(session.getId());
-            try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                transaction.del(sessionKey).del(userKey).exec();
-            }
+            pipelinedJedisOps.del(sessionKey, userKey);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
+        } finally {
+            invalidateSession(session.getSessionToken());
         }
     }
 
     public void removeSessionByUserId(final String userId) {
         try {
             final String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-            final String sessionToken = jedisOps.get(userKey);
+            final String sessionToken = pipelinedJedisOps.get(userKey);
             if (sessionToken != null) {
                 final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-                try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                    transaction.del(sessionKey).del(userKey).exec();
+                try {
+                    pipelinedJedisOps.del(sessionKey, userKey);
+                } finally {
+                    invalidateSession(sessionToken);
                 }
             }
         } catch(Throwable e) {
@@ -212,23 +256,36 @@ public class CacheProvider {
         try {
             String ser = bridgeObjectMapper.writeValueAsString(study);
             String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
-            String result = jedisOps.setex(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser);
-            if (!"OK".equals(result)) {
+            if (!pipelinedJedisOps.setex(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser)) {
                 throw new BridgeServiceException("Study storage error");
             }
+            // The serialized copy is cached, so the caller can't change the cached study through its own reference
+            cacheStudyLocally(bridgeObjectMapper.readValue(ser, Study.class));
+            cacheInvalidationBus.publish(STUDY_CACHE_NAME, study.getIdentifier());
         } catch (Throwable e) {
+            studyNearCache.invalidate(study.getIdentifier());
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
     }
 
+    /**
+     * Returns the study, from the in-process near cache when possible, otherwise from Redis. Studies returned 
+     * from the near cache are shared between callers and must be treated as read-only. The Redis entry is not 
+     * refreshed on read; it expires a fixed time after it was last written and is then reloaded from DynamoDB.
+     */
     public Study getStudy(String identifier) {
+        Study cachedStudy = studyNearCache.get(identifier);
+        if (cachedStudy != null) {
+            return cachedStudy;
+        }
         try {
             String redisKey = RedisKey.STUDY.getRedisKey(identifier);
-            String ser = jedisOps.get(redisKey);
+            String ser = pipelinedJedisOps.get(redisKey);
             if (ser != null) {
-                jedisOps.expire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
-                return bridgeObjectMapper.readValue(ser, Study.class);
+                Study study = bridgeObjectMapper.readValue(ser, Study.class);
+                cacheStudyLocally(study);
+                return study;
             }
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -240,16 +297,24 @@ public class CacheProvider {
     public void removeStudy(String identifier) {
         try {
             String redisKey = RedisKey.STUDY.getRedisKey(identifier);
-            jedisOps.del(redisKey);
+            pipelinedJedisOps.del(redisKey);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
+        } finally {
+            studyNearCache.invalidate(identifier);
+            cacheInvalidationBus.publish(STUDY_CACHE_NAME, identifier);
         }
     }
 
+    private void cacheStudyLocally(Study study) {
+        long version = (study.getVersion() != null) ? study.getVersion() : NearCache.NO_VERSION;
+        studyNearCache.putIfNewer(study.getIdentifier(), study, version, STUDY_NEAR_CACHE_EXPIRE_IN_SECONDS);
+    }
+
     public String getString(String cacheKey) {
         try {
-            return jedisOps.get(cacheKey);
+            return pipelinedJedisOps.get(cacheKey);
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -258,8 +323,7 @@ public class CacheProvider {
 
     public void setString(String cacheKey, String value, int expireInSeconds) {
         try {
-            String result = jedisOps.setex(cacheKey, expireInSeconds, value);
-            if (!"OK".equals(result)) {
+            if (!pipelinedJedisOps.setex(cacheKey, expireInSeconds, value)) {
                 throw new BridgeServiceException("View storage error");
             }
         } catch (Throwable e) {
@@ -268,15 +332,105 @@ public class CacheProvider {
         }
     }
     
-    public void removeString(String cacheKey) {
+    /** Removes one or more strings in a single call to Redis. */
+    public void removeString(String... cacheKeys) {
         try {
-            jedisOps.del(cacheKey);
+            pipelinedJedisOps.del(cacheKeys);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
     }
     
+    /** Returns the fields of a cached hash, or an empty map if it is not cached. */
+    public Map<String, String> getHash(String cacheKey) {
+        try {
+            return pipelinedJedisOps.hgetAll(cacheKey);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /**
+     * Updates one field of a cached hash, if the hash is cached. Returns false (and caches nothing) if it is not, so 
+     * the next read loads the complete hash.
+     */
+    public boolean setHashFieldIfPresent(String cacheKey, String field, String value) {
+        try {
+            return pipelinedJedisOps.hsetIfExists(cacheKey, field, value);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Caches a string, but only if the version at versionKey is still expectedVersion (null if there was no version).
+     * Returns false (and caches nothing) if the version has changed, which means the value may be out of date. The
+     * version is read before the value is loaded, and changed with {@link #incrementVersion} whenever it changes.
+     */
+    public boolean setStringIfVersionUnchanged(String cacheKey, String value, int expireInSeconds, String versionKey,
+            String expectedVersion) {
+        try {
+            return pipelinedJedisOps.setexIfEquals(cacheKey, expireInSeconds, value, versionKey, expectedVersion);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /**
+     * Caches a hash, replacing any hash already cached under the key, but only if the version at versionKey is still 
+     * expectedVersion (null if there was no version). Returns false (and caches nothing) if the version has changed, 
+     * which means the fields may be out of date. The version is read before the fields are loaded, and changed with 
+     * {@link #incrementVersion} whenever they change.
+     */
+    public boolean setHashIfVersionUnchanged(String cacheKey, Map<String, String> fields, int expireInSeconds,
+            String versionKey, String expectedVersion) {
+        try {
+            return pipelinedJedisOps.hmsetexIfEquals(cacheKey, expireInSeconds, fields, versionKey, expectedVersion);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /** Changes the version at versionKey, so that hashes loaded under the old version are not cached. */
+    public void incrementVersion(String versionKey, int expireInSeconds) {
+        try {
+            pipelinedJedisOps.incrWithExpire(versionKey, expireInSeconds);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    // Don't hold the session locally for longer than Redis will, or for longer than a missed invalidation should last
+    private static int nearCacheSessionExpiration(long redisTtlInSeconds) {
+        return (int) Math.min(redisTtlInSeconds, SESSION_NEAR_CACHE_EXPIRE_IN_SECONDS);
+    }
+    
+    private void invalidateSession(String sessionToken) {
+        sessionNearCache.invalidate(sessionToken);
+        cacheInvalidationBus.publish(SESSION_CACHE_NAME, sessionToken);
+    }
+    
+    /**
+     * Sessions are mutable, so the near cache never shares an instance with a caller. The participant and consent 
+     * statuses are immutable and can be shared between copies.
+     */
+    private UserSession copyOf(UserSession session) {
+        UserSession copy = new UserSession(session.getParticipant());
+        copy.setAuthenticated(session.isAuthenticated());
+        copy.setEnvironment(session.getEnvironment());
+        copy.setSessionToken(session.getSessionToken());
+        copy.setInternalSessionToken(session.getInternalSessionToken());
+        copy.setStudyIdentifier(session.getStudyIdentifier());
+        copy.setConsentStatuses(session.getConsentStatuses());
+        return copy;
+    }
+    
     private void promptToStartRedisIfLocal(Throwable e) {
         if (BridgeConfigFactory.getConfig().isLocal()) {
             throw new BridgeServiceException(
@@ -0,0 +1,18 @@
+package org.sagebionetworks.bridge.cache;
+
+/**
+ * Invalidation bus for a single server node (unit tests, or running without Redis). There are no other nodes, so
+ * there is nothing to publish to and no remote invalidation will ever be received.
+ */
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+    @Override
+    public void publish(String cacheName, String key) {
+        // no other nodes to notify
+    }
+
+    @Override
+    public void subscribe(String cacheName, Listener listener) {
+        // no other nodes will publish
+    }
+}
@@ -0,0 +1,162 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.bridge.json.DateUtils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+/**
+ * A size-bounded, in-process cache of deserialized objects held in front of Redis. Every entry carries its own
+ * expiration so that it never outlives the Redis key it mirrors. Entries on other nodes are evicted through the
+ * {@link CacheInvalidationBus}, which this cache subscribes to under its name.
+ * <p>
+ * A value read from Redis can be stale by the time it is cached here, if the key was invalidated while the read was
+ * in flight. Callers that fill the cache from such a read take a generation with {@link #getGeneration} before the
+ * read, and cache the value with {@link #putIfNotInvalidatedSince}, which discards it if the key was invalidated in
+ * the meantime.
+ * </p>
+ */
+final class NearCache<T> implements CacheInvalidationBus.Listener {
+
+    /** Version used for values that are not versioned. */
+    static final long NO_VERSION = Long.MIN_VALUE;
+    
+    private static final class Entry<T> {
+        private final T value;
+        private final long version;
+        private final long expiresOn;
+        Entry(T value, long version, long expiresOn) {
+            this.value = value;
+            this.version = version;
+            this.expiresOn = expiresOn;
+        }
+    }
+
+    private final String name;
+    private final ConcurrentMap<String, Entry<T>> entries;
+    // Incremented on every invalidation
+    private final AtomicLong generation = new AtomicLong();
+    // The generation at which each key was last invalidated
+    private final ConcurrentMap<String, Long> invalidatedAt;
+    // Fills that started before this generation are discarded, because the invalidations after it are no longer 
+    // all tracked (invalidateAll was called, or a key's invalidation was evicted from invalidatedAt)
+    private final AtomicLong untrackedBefore = new AtomicLong();
+
+    NearCache(String name, int maximumSize) {
+        checkNotNull(name);
+        checkArgument(maximumSize > 0);
+        this.name = name;
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).<String, Entry<T>>build().asMap();
+        RemovalListener<String, Long> onEvicted = notification -> {
+            if (notification.wasEvicted()) {
+                untrackedBefore.accumulateAndGet(notification.getValue(), Math::max);
+            }
+        };
+        this.invalidatedAt = CacheBuilder.newBuilder().maximumSize(maximumSize).removalListener(onEvicted)
+                .<String, Long>build().asMap();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cached value, or null if there is no entry or the entry has expired.
+     */
+    T get(String key) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresOn <= DateUtils.getCurrentMillisFromEpoch()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Cache a value for no longer than the given number of seconds (normally the remaining time to live of the
+     * Redis key holding the same value).
+     */
+    void put(String key, T value, int expireInSeconds) {
+        checkNotNull(key);
+        checkNotNull(value);
+        if (expireInSeconds > 0) {
+            long expiresOn = DateUtils.getCurrentMillisFromEpoch() + (expireInSeconds * 1000L);
+            entries.put(key, new Entry<>(value, NO_VERSION, expiresOn));
+        } else {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Returns the current generation, to be passed to {@link #putIfNotInvalidatedSince} when the value read after 
+     * this call is cached.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a value for no longer than the given number of seconds, unless the key has been invalidated since the 
+     * given generation was taken. Returns false if the value was discarded.
+     */
+    boolean putIfNotInvalidatedSince(String key, T value, int expireInSeconds, long fillGeneration) {
+        checkNotNull(key);
+        checkNotNull(value);
+        checkArgument(expireInSeconds > 0);
+        if (isInvalidatedSince(key, fillGeneration)) {
+            return false;
+        }
+        long expiresOn = DateUtils.getCurrentMillisFromEpoch() + (expireInSeconds * 1000L);
+        Entry<T> entry = new Entry<>(value, NO_VERSION, expiresOn);
+        entries.put(key, entry);
+        // An invalidation between the check above and the put would otherwise be lost. Invalidations record their 
+        // generation before removing the entry, so either this check sees it, or its removal follows the put.
+        if (isInvalidatedSince(key, fillGeneration)) {
+            entries.remove(key, entry);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isInvalidatedSince(String key, long fillGeneration) {
+        if (untrackedBefore.get() > fillGeneration) {
+            return true;
+        }
+        Long keyGeneration = invalidatedAt.get(key);
+        return keyGeneration != null && keyGeneration > fillGeneration;
+    }
+
+    /**
+     * Cache a version of a value, unless a later version is already cached. This prevents a slow read of an older 
+     * version (e.g. from Redis) from replacing a newer version that was written in the meantime.
+     */
+    void putIfNewer(String key, T value, long version, int expireInSeconds) {
+        checkNotNull(key);
+        checkNotNull(value);
+        checkArgument(expireInSeconds > 0);
+        long expiresOn = DateUtils.getCurrentMillisFromEpoch() + (expireInSeconds * 1000L);
+        Entry<T> entry = new Entry<>(value, version, expiresOn);
+        entries.merge(key, entry, (existing, updated) -> (existing.version > updated.version) ? existing : updated);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        invalidatedAt.put(key, generation.incrementAndGet());
+        entries.remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        untrackedBefore.accumulateAndGet(generation.incrementAndGet(), Math::max);
+        entries.clear();
+    }
+}
@@ -0,0 +1,148 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
+import org.sagebionetworks.bridge.models.schedules.SurveyReference;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * <p>Holds everything needed to schedule activities that is shared by all the participants of a study: the schedule
+ * plans, and the resolution of schema, survey and compound activity references in those plans. Without it, every
+ * request for scheduled activities reads all of these from DynamoDB again.</p>
+ *
+ * <p>Entries are grouped by study. Any change to a study's plans, schemas, published surveys or compound activity
+ * definitions discards the whole group, here and (through the {@link CacheInvalidationBus}) on other nodes. A
+ * resolution started before the change completes into the discarded group, so it can't be seen by later requests.
+ * Groups also expire a fixed time after they are created, which bounds how stale a node can be if an invalidation
+ * is missed.</p>
+ *
+ * <p>Values are shared between requests and must be treated as read-only.</p>
+ */
+@Component
+public class ScheduleResolutionCache implements CacheInvalidationBus.Listener {
+
+    static final String CACHE_NAME = "schedule-resolution";
+    private static final int MAX_STUDIES = 1000;
+    private static final int MAX_ENTRIES_PER_STUDY = 1000;
+    // Bounds how long a node can schedule from stale plans or references if an invalidation is missed
+    private static final int EXPIRE_IN_SECONDS = 5 * 60;
+
+    private static final class StudyEntries {
+        // Plans don't depend on the client, so each study has one list
+        private volatile List<SchedulePlan> plans;
+        private final Cache<String, SchemaReference> schemas = newCache();
+        private final Cache<String, SurveyReference> surveys = newCache();
+        private final Cache<String, CompoundActivity> compoundActivities = newCache();
+    }
+
+    private final Cache<String, StudyEntries> studies = CacheBuilder.newBuilder().maximumSize(MAX_STUDIES)
+            .expireAfterWrite(EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    public final void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.subscribe(CACHE_NAME, this);
+    }
+
+    /**
+     * All schedule plans of the study. These are the same for every client; callers select the schedule for a
+     * client from each plan's strategy.
+     */
+    public List<SchedulePlan> getSchedulePlans(StudyIdentifier studyId, Supplier<List<SchedulePlan>> loader) {
+        StudyEntries entries = entriesFor(studyId);
+        List<SchedulePlan> plans = entries.plans;
+        if (plans == null) {
+            plans = ImmutableList.copyOf(loader.get());
+            entries.plans = plans;
+        }
+        return plans;
+    }
+
+    /**
+     * A schema reference resolved to the latest revision available to the given client.
+     */
+    public SchemaReference getSchemaReference(StudyIdentifier studyId, ClientInfo clientInfo, String schemaId,
+            Supplier<SchemaReference> loader) {
+        return get(entriesFor(studyId).schemas, clientKey(clientInfo) + ":" + schemaId, loader);
+    }
+
+    /**
+     * A survey reference resolved to the most recently published version of the survey.
+     */
+    public SurveyReference getSurveyReference(StudyIdentifier studyId, String surveyGuid,
+            Supplier<SurveyReference> loader) {
+        return get(entriesFor(studyId).surveys, surveyGuid, loader);
+    }
+
+    /**
+     * A compound activity resolved from its definition, with its schema and survey references resolved for the
+     * given client.
+     */
+    public CompoundActivity getCompoundActivity(StudyIdentifier studyId, ClientInfo clientInfo, String taskId,
+            Supplier<CompoundActivity> loader) {
+        return get(entriesFor(studyId).compoundActivities, clientKey(clientInfo) + ":" + taskId, loader);
+    }
+
+    /**
+     * Discard everything cached for this study, on this node and on all other nodes. Call this after any change
+     * to the study's schedule plans, upload schemas, published surveys or compound activity definitions.
+     */
+    public void invalidateStudy(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        invalidate(studyId.getIdentifier());
+        cacheInvalidationBus.publish(CACHE_NAME, studyId.getIdentifier());
+    }
+
+    @Override
+    public void invalidate(String studyId) {
+        studies.invalidate(studyId);
+    }
+
+    @Override
+    public void invalidateAll() {
+        studies.invalidateAll();
+    }
+
+    private StudyEntries entriesFor(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        return studies.asMap().computeIfAbsent(studyId.getIdentifier(), id -> new StudyEntries());
+    }
+
+    // Loads outside of the cache, as the per-request maps this replaces did. Loaders may resolve other references
+    // of the same study, and exceptions from the services they call must reach the caller unwrapped.
+    private static <T> T get(Cache<String, T> cache, String key, Supplier<T> loader) {
+        T value = cache.getIfPresent(key);
+        if (value == null) {
+            value = checkNotNull(loader.get());
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    // Schemas (directly or in compound activities) are matched to clients on their OS and app version only. Using
+    // these rather than the whole ClientInfo keeps device names and OS versions from multiplying the entries.
+    private static String clientKey(ClientInfo clientInfo) {
+        checkNotNull(clientInfo);
+        return clientInfo.getOsName() + ":" + clientInfo.getAppVersion();
+    }
+
+    private static <T> Cache<String, T> newCache() {
+        return CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES_PER_STUDY).build();
+    }
+}
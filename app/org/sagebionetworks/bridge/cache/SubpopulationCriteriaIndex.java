@@ -0,0 +1,277 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.CriteriaContext;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>In-process index of each study's subpopulations and their criteria, so that finding the subpopulations a user
+ * belongs to (on every sign in and session refresh) doesn't read the subpopulations and each of their criteria from
+ * DynamoDB. A study's subpopulations are loaded once (concurrent requests wait for a single load) and compiled into
+ * bit sets, so matching a user against all of them is a handful of bit operations.</p>
+ *
+ * <p>Any change to a study's subpopulations or their criteria discards the study's index, here and (through the
+ * {@link CacheInvalidationBus}) on other nodes. An index whose load was in flight when the study was invalidated is
+ * returned to the requests waiting for it, but isn't kept. Indices also expire a fixed time after they are loaded,
+ * which bounds how stale a node can be if an invalidation is missed.</p>
+ *
+ * <p>Subpopulations are shared between requests and must be treated as read-only.</p>
+ */
+@Component
+public class SubpopulationCriteriaIndex implements CacheInvalidationBus.Listener {
+
+    static final String CACHE_NAME = "subpopulation-criteria-index";
+    private static final int MAX_STUDIES = 1000;
+    // Bounds how long a node can match users against stale subpopulations if an invalidation is missed
+    private static final int EXPIRE_IN_SECONDS = 5 * 60;
+
+    /**
+     * The subpopulations of one study, compiled for matching. Each subpopulation is a bit (its position in the list),
+     * and each criterion is compiled to the set of subpopulations it rules in or out. Matching starts with every
+     * subpopulation and removes the ones each of the user's attributes excludes, which gives the same result as
+     * {@link org.sagebionetworks.bridge.models.CriteriaUtils#matchCriteria} for each subpopulation in turn.
+     */
+    public static final class CompiledSubpopulations {
+        private final List<Subpopulation> subpopulations;
+        private final long loadGeneration;
+        private final BitSet allSubpopulations;
+        // Data groups named in any criteria, with the subpopulations that require and that prohibit each group
+        private final String[] dataGroups;
+        private final BitSet[] requiredBy;
+        private final BitSet[] prohibitedBy;
+        // Subpopulations with no language, and the subpopulations requiring each (lower-cased) language
+        private final BitSet anyLanguage;
+        private final Map<String, BitSet> byLanguage;
+        // For each OS named in any criteria, the subpopulations available from each app version on (a floor lookup)
+        private final Map<String, NavigableMap<Integer, BitSet>> byAppVersion;
+
+        CompiledSubpopulations(List<Subpopulation> subpopulations, long loadGeneration) {
+            this.subpopulations = ImmutableList.copyOf(subpopulations);
+            this.loadGeneration = loadGeneration;
+            int count = this.subpopulations.size();
+
+            allSubpopulations = new BitSet(count);
+            allSubpopulations.set(0, count);
+
+            Map<String, Integer> groupBits = new HashMap<>();
+            Map<String, BitSet> required = new HashMap<>();
+            Map<String, BitSet> prohibited = new HashMap<>();
+            anyLanguage = new BitSet(count);
+            byLanguage = new HashMap<>();
+            Set<String> osNames = new TreeSet<>();
+            for (int i = 0; i < count; i++) {
+                Criteria criteria = this.subpopulations.get(i).getCriteria();
+                checkNotNull(criteria);
+                checkNotNull(criteria.getAllOfGroups());
+                checkNotNull(criteria.getNoneOfGroups());
+
+                for (String group : criteria.getAllOfGroups()) {
+                    groupBits.putIfAbsent(group, groupBits.size());
+                    required.computeIfAbsent(group, g -> new BitSet(count)).set(i);
+                }
+                for (String group : criteria.getNoneOfGroups()) {
+                    groupBits.putIfAbsent(group, groupBits.size());
+                    prohibited.computeIfAbsent(group, g -> new BitSet(count)).set(i);
+                }
+                if (criteria.getLanguage() == null) {
+                    anyLanguage.set(i);
+                } else {
+                    byLanguage.computeIfAbsent(criteria.getLanguage().toLowerCase(Locale.ROOT),
+                            lang -> new BitSet(count)).set(i);
+                }
+                osNames.addAll(criteria.getAppVersionOperatingSystems());
+            }
+
+            dataGroups = new String[groupBits.size()];
+            requiredBy = new BitSet[groupBits.size()];
+            prohibitedBy = new BitSet[groupBits.size()];
+            for (Map.Entry<String, Integer> entry : groupBits.entrySet()) {
+                int bit = entry.getValue();
+                dataGroups[bit] = entry.getKey();
+                requiredBy[bit] = required.getOrDefault(entry.getKey(), new BitSet(count));
+                prohibitedBy[bit] = prohibited.getOrDefault(entry.getKey(), new BitSet(count));
+            }
+
+            byAppVersion = new HashMap<>();
+            for (String osName : osNames) {
+                byAppVersion.put(osName, indexForOsName(osName));
+            }
+        }
+
+        /** All of the study's subpopulations, in the order they were loaded. */
+        public List<Subpopulation> getSubpopulations() {
+            return subpopulations;
+        }
+
+        /** The subpopulations whose criteria match the context, in the order they were loaded. */
+        public List<Subpopulation> match(CriteriaContext context) {
+            checkNotNull(context);
+            checkNotNull(context.getLanguages());
+            checkNotNull(context.getClientInfo());
+            checkNotNull(context.getUserDataGroups());
+
+            BitSet matches = (BitSet) allSubpopulations.clone();
+
+            Integer appVersion = context.getClientInfo().getAppVersion();
+            String appOs = context.getClientInfo().getOsName();
+            if (appVersion != null && appOs != null) {
+                NavigableMap<Integer, BitSet> index = byAppVersion.get(appOs);
+                if (index != null) {
+                    matches.and(index.floorEntry(appVersion).getValue());
+                }
+            }
+
+            Set<String> userDataGroups = context.getUserDataGroups();
+            for (int bit = 0; bit < dataGroups.length; bit++) {
+                if (userDataGroups.contains(dataGroups[bit])) {
+                    matches.andNot(prohibitedBy[bit]);
+                } else {
+                    matches.andNot(requiredBy[bit]);
+                }
+            }
+
+            BitSet languageMatches = (BitSet) anyLanguage.clone();
+            for (String language : context.getLanguages()) {
+                BitSet requiringLanguage = byLanguage.get(language.toLowerCase(Locale.ROOT));
+                if (requiringLanguage != null) {
+                    languageMatches.or(requiringLanguage);
+                }
+            }
+            matches.and(languageMatches);
+
+            ImmutableList.Builder<Subpopulation> builder = ImmutableList.builder();
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                builder.add(subpopulations.get(i));
+            }
+            return builder.build();
+        }
+
+        // Which subpopulations are available only changes where some subpopulation's min app version starts or max
+        // app version ends, so it is computed once for each of those bounds.
+        private NavigableMap<Integer, BitSet> indexForOsName(String osName) {
+            SortedSet<Integer> bounds = new TreeSet<>();
+            bounds.add(Integer.MIN_VALUE);
+            for (Subpopulation subpop : subpopulations) {
+                Integer minAppVersion = subpop.getCriteria().getMinAppVersion(osName);
+                if (minAppVersion != null) {
+                    bounds.add(minAppVersion);
+                }
+                Integer maxAppVersion = subpop.getCriteria().getMaxAppVersion(osName);
+                if (maxAppVersion != null && maxAppVersion < Integer.MAX_VALUE) {
+                    bounds.add(maxAppVersion + 1);
+                }
+            }
+            NavigableMap<Integer, BitSet> index = new TreeMap<>();
+            for (int appVersion : bounds) {
+                BitSet available = new BitSet(subpopulations.size());
+                for (int i = 0; i < subpopulations.size(); i++) {
+                    Criteria criteria = subpopulations.get(i).getCriteria();
+                    Integer minAppVersion = criteria.getMinAppVersion(osName);
+                    Integer maxAppVersion = criteria.getMaxAppVersion(osName);
+                    if ((minAppVersion == null || appVersion >= minAppVersion) &&
+                        (maxAppVersion == null || appVersion <= maxAppVersion)) {
+                        available.set(i);
+                    }
+                }
+                index.put(appVersion, available);
+            }
+            return index;
+        }
+    }
+
+    private final Cache<String, CompiledSubpopulations> studies = CacheBuilder.newBuilder().maximumSize(MAX_STUDIES)
+            .expireAfterWrite(EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    // Generation of each study's latest invalidation, and of the latest invalidation of every study. Loads record the
+    // generation they started at, so one that started before an invalidation can be told apart from one after it.
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<String, Long> invalidatedAt = CacheBuilder.newBuilder()
+            .expireAfterWrite(EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    private final AtomicLong allInvalidatedAt = new AtomicLong();
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    public final void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.subscribe(CACHE_NAME, this);
+    }
+
+    /**
+     * The study's compiled subpopulations, loaded with the given loader if they aren't in the index. The loader must
+     * return the study's subpopulations that are not deleted, with their criteria. Exceptions thrown by the loader
+     * reach the caller unwrapped, and nothing is cached.
+     */
+    public CompiledSubpopulations getSubpopulations(StudyIdentifier studyId,
+            Supplier<List<Subpopulation>> loader) {
+        checkNotNull(studyId);
+        String key = studyId.getIdentifier();
+        CompiledSubpopulations compiled;
+        try {
+            compiled = studies.get(key, () -> {
+                long loadGeneration = generation.get();
+                return new CompiledSubpopulations(loader.get(), loadGeneration);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new BridgeServiceException(e.getCause());
+        }
+
+        // Guava caches a load that finishes after the key was invalidated, so an index compiled from subpopulations
+        // read before a change is removed here instead.
+        Long invalidatedGeneration = invalidatedAt.getIfPresent(key);
+        if (allInvalidatedAt.get() > compiled.loadGeneration
+                || (invalidatedGeneration != null && invalidatedGeneration > compiled.loadGeneration)) {
+            studies.asMap().remove(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Discard the study's index, on this node and on all other nodes. Call this after any change to the study's
+     * subpopulations or their criteria.
+     */
+    public void invalidateStudy(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        invalidate(studyId.getIdentifier());
+        cacheInvalidationBus.publish(CACHE_NAME, studyId.getIdentifier());
+    }
+
+    @Override
+    public void invalidate(String studyId) {
+        invalidatedAt.put(studyId, generation.incrementAndGet());
+        studies.invalidate(studyId);
+    }
+
+    @Override
+    public void invalidateAll() {
+        allInvalidatedAt.set(generation.incrementAndGet());
+        studies.invalidateAll();
+    }
+}
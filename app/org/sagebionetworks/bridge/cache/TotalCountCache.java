@@ -0,0 +1,65 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.IntSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+/**
+ * The total number of records in a paged list. Counting the records means reading every one of them, so a total is
+ * counted when it is first requested and then cached until it expires, or until a DAO invalidates it because it has
+ * added or removed records. Totals that depend on time (such as the number of external IDs that are reserved) can be
+ * out of date until they expire. Invalidating a total also changes its version, and a count is only cached if the
+ * version hasn't changed since before the count started, so a slow count can't cache a total from before a change.
+ */
+@Component
+public class TotalCountCache {
+
+    static final int EXPIRE_IN_SECONDS = 5 * 60;
+
+    private CacheProvider cacheProvider;
+
+    @Autowired
+    public final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /**
+     * Returns the cached total for this key, or if it isn't cached, counts the records with the counter and caches the
+     * result.
+     */
+    public int getTotal(String key, IntSupplier counter) {
+        checkNotNull(key);
+        checkNotNull(counter);
+
+        String redisKey = RedisKey.TOTAL_COUNT.getRedisKey(key);
+        String cachedTotal = cacheProvider.getString(redisKey);
+        if (cachedTotal != null) {
+            return Integer.parseInt(cachedTotal);
+        }
+        String versionKey = RedisKey.TOTAL_COUNT_VERSION.getRedisKey(key);
+        String version = cacheProvider.getString(versionKey);
+        int total = counter.getAsInt();
+        cacheProvider.setStringIfVersionUnchanged(redisKey, Integer.toString(total), EXPIRE_IN_SECONDS, versionKey,
+                version);
+        return total;
+    }
+
+    /** Removes the cached totals for these keys, so they are counted again the next time they are requested. */
+    public void invalidate(String... keys) {
+        checkArgument(keys.length > 0);
+
+        // Change the versions first, so a count in progress can't cache its total after the totals are removed.
+        String[] redisKeys = new String[keys.length];
+        for (int i=0; i < keys.length; i++) {
+            cacheProvider.incrementVersion(RedisKey.TOTAL_COUNT_VERSION.getRedisKey(keys[i]), EXPIRE_IN_SECONDS);
+            redisKeys[i] = RedisKey.TOTAL_COUNT.getRedisKey(keys[i]);
+        }
+        cacheProvider.removeString(redisKeys);
+    }
+}
@@ -0,0 +1,203 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>In-process catalog of upload schema revisions, so that resolving a schema for an upload or a scheduled activity
+ * doesn't read DynamoDB. Each schema's revisions are loaded once (concurrent requests wait for a single load) and
+ * indexed so the latest revision available to a client is found with one lookup in a sorted map.</p>
+ *
+ * <p>Writes drop the schema from the catalog, on this node directly and on other nodes through the
+ * {@link CacheInvalidationBus}, and it is loaded again when it is next needed. A load that was already in flight when
+ * the schema was dropped may have read the revisions from before the write, so it is discarded rather than kept.
+ * Entries also expire a fixed time after they are loaded, which bounds how stale a node can be if an invalidation is
+ * missed.</p>
+ *
+ * <p>Schemas are shared between requests and must be treated as read-only.</p>
+ */
+@Component
+public class UploadSchemaCatalog implements CacheInvalidationBus.Listener {
+
+    static final String CACHE_NAME = "upload-schema-catalog";
+    private static final int MAX_SCHEMAS = 10000;
+    // Bounds how long a node can resolve stale schema revisions if an invalidation is missed
+    private static final int EXPIRE_IN_SECONDS = 5 * 60;
+
+    /**
+     * All revisions of one schema. For each OS, revisions are indexed by the app versions at which the latest
+     * available revision changes, so the latest revision for any app version is a floor lookup.
+     */
+    public static final class SchemaRevisions {
+        private final ImmutableSortedMap<Integer, UploadSchema> revisions;
+        private final long loadGeneration;
+        private final ConcurrentMap<String, NavigableMap<Integer, UploadSchema>> latestByOsName =
+                new ConcurrentHashMap<>();
+
+        SchemaRevisions(Iterable<? extends UploadSchema> schemas, long loadGeneration) {
+            ImmutableSortedMap.Builder<Integer, UploadSchema> builder = ImmutableSortedMap.naturalOrder();
+            for (UploadSchema schema : schemas) {
+                builder.put(schema.getRevision(), schema);
+            }
+            this.revisions = builder.build();
+            this.loadGeneration = loadGeneration;
+        }
+
+        /** The revision, or null if this schema has no such revision. */
+        public UploadSchema getRevision(int revision) {
+            return revisions.get(revision);
+        }
+
+        /** The latest revision available to this client, or null if no revision is available. */
+        public UploadSchema getLatestRevision(ClientInfo clientInfo) {
+            checkNotNull(clientInfo);
+            String osName = clientInfo.getOsName();
+            Integer appVersion = clientInfo.getAppVersion();
+            if (osName == null || appVersion == null) {
+                return revisions.isEmpty() ? null : revisions.lastEntry().getValue();
+            }
+            Map.Entry<Integer, UploadSchema> entry = latestByOsName.computeIfAbsent(osName, this::indexForOsName)
+                    .floorEntry(appVersion);
+            return (entry != null) ? entry.getValue() : null;
+        }
+
+        // The latest available revision only changes where some revision's min app version starts or max app
+        // version ends, so it is computed once for each of those bounds. Bounds with no available revision map to
+        // null.
+        private NavigableMap<Integer, UploadSchema> indexForOsName(String osName) {
+            SortedSet<Integer> bounds = new TreeSet<>();
+            bounds.add(Integer.MIN_VALUE);
+            for (UploadSchema schema : revisions.values()) {
+                Integer minAppVersion = schema.getMinAppVersion(osName);
+                if (minAppVersion != null) {
+                    bounds.add(minAppVersion);
+                }
+                Integer maxAppVersion = schema.getMaxAppVersion(osName);
+                if (maxAppVersion != null && maxAppVersion < Integer.MAX_VALUE) {
+                    bounds.add(maxAppVersion + 1);
+                }
+            }
+            NavigableMap<Integer, UploadSchema> index = new TreeMap<>();
+            for (int appVersion : bounds) {
+                index.put(appVersion, revisions.descendingMap().values().stream()
+                        .filter(schema -> isAvailable(schema, osName, appVersion)).findFirst().orElse(null));
+            }
+            return index;
+        }
+    }
+
+    private final Cache<String, SchemaRevisions> schemas = CacheBuilder.newBuilder().maximumSize(MAX_SCHEMAS)
+            .expireAfterWrite(EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    // Counts invalidations. Each schema's latest invalidation is kept for as long as a load could be cached, so that
+    // a load that started before it is never kept.
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<String, Long> invalidatedAt = CacheBuilder.newBuilder()
+            .expireAfterWrite(EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    private final AtomicLong allInvalidatedAt = new AtomicLong();
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    public final void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.subscribe(CACHE_NAME, this);
+    }
+
+    /**
+     * A schema is available to a client unless its min or max app version for the client's OS excludes the
+     * client's app version.
+     */
+    public static boolean isAvailable(UploadSchema schema, String osName, int appVersion) {
+        Integer minAppVersion = schema.getMinAppVersion(osName);
+        if (minAppVersion != null && appVersion < minAppVersion) {
+            return false;
+        }
+        Integer maxAppVersion = schema.getMaxAppVersion(osName);
+        return (maxAppVersion == null || appVersion <= maxAppVersion);
+    }
+
+    /**
+     * All revisions of the schema, loaded with the given loader if they aren't in the catalog. Exceptions thrown by
+     * the loader (such as the schema not existing) reach the caller unwrapped, and nothing is cached.
+     */
+    public SchemaRevisions getSchemaRevisions(StudyIdentifier studyId, String schemaId,
+            Supplier<List<UploadSchema>> loader) {
+        String key = key(studyId, schemaId);
+        SchemaRevisions revisions;
+        try {
+            revisions = schemas.get(key, () -> {
+                long loadGeneration = generation.get();
+                return new SchemaRevisions(loader.get(), loadGeneration);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new BridgeServiceException(e.getCause());
+        }
+
+        // Invalidating a schema while it's being loaded doesn't stop the load from being cached, so if the schema was
+        // invalidated after this load started, drop it here. The revisions are still returned to this caller, as if
+        // it had read them just before the write.
+        Long invalidatedGeneration = invalidatedAt.getIfPresent(key);
+        if (allInvalidatedAt.get() > revisions.loadGeneration
+                || (invalidatedGeneration != null && invalidatedGeneration > revisions.loadGeneration)) {
+            schemas.asMap().remove(key, revisions);
+        }
+        return revisions;
+    }
+
+    /** Drop the schema from the catalog, on this node and on all other nodes. Call this after saving a revision. */
+    public void updateRevision(StudyIdentifier studyId, UploadSchema schema) {
+        checkNotNull(schema);
+        invalidateSchema(studyId, schema.getSchemaId());
+    }
+
+    /** Drop the schema from the catalog, on this node and on all other nodes. Call this after deleting revisions. */
+    public void invalidateSchema(StudyIdentifier studyId, String schemaId) {
+        String key = key(studyId, schemaId);
+        invalidate(key);
+        cacheInvalidationBus.publish(CACHE_NAME, key);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        invalidatedAt.put(key, generation.incrementAndGet());
+        schemas.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        allInvalidatedAt.set(generation.incrementAndGet());
+        schemas.invalidateAll();
+    }
+
+    private static String key(StudyIdentifier studyId, String schemaId) {
+        checkNotNull(studyId);
+        checkNotNull(schemaId);
+        return studyId.getIdentifier() + ":" + schemaId;
+    }
+}
@@ -14,7 +14,14 @@ import org.springframework.context.annotation.Configuration;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import org.sagebionetworks.bridge.cache.CacheInvalidationBus;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.RedisCacheInvalidationBus;
+import org.sagebionetworks.bridge.redis.RedisMetrics;
+import org.sagebionetworks.bridge.redis.RedisPipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.RedisUploadValidationQueue;
+import org.sagebionetworks.bridge.upload.UploadValidationQueue;
 
 /**
  * Production-only Spring config. This includes things that we don't want in our unit tests for
@@ -36,6 +43,24 @@ public class BridgeProductionSpringConfig {
         return new JedisOps(jedisPool);
     }
 
+    @Bean(name = "pipelinedJedisOps", initMethod = "start", destroyMethod = "shutdown")
+    @Resource(name = "jedisPool")
+    public PipelinedJedisOps pipelinedJedisOps(final JedisPool jedisPool) {
+        return new RedisPipelinedJedisOps(jedisPool, new RedisMetrics());
+    }
+
+    @Bean(name = "cacheInvalidationBus", initMethod = "start", destroyMethod = "shutdown")
+    @Resource(name = "jedisPool")
+    public CacheInvalidationBus cacheInvalidationBus(final JedisPool jedisPool) {
+        return new RedisCacheInvalidationBus(jedisPool);
+    }
+
+    @Bean(name = "uploadValidationQueue")
+    @Resource(name = "jedisPool")
+    public UploadValidationQueue uploadValidationQueue(final JedisPool jedisPool) {
+        return new RedisUploadValidationQueue(jedisPool);
+    }
+
     @Bean(name = "jedisPool")
     public JedisPool jedisPool() throws Exception {
         // Configure pool
@@ -23,6 +23,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stormpath.sdk.api.ApiKey;
 import com.stormpath.sdk.api.ApiKeys;
 import com.stormpath.sdk.application.Application;
@@ -40,6 +41,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoTopicSubscription;
 import org.sagebionetworks.client.SynapseAdminClientImpl;
 import org.sagebionetworks.client.SynapseClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -51,6 +53,9 @@ import org.sagebionetworks.bridge.crypto.AesGcmEncryptor;
 import org.sagebionetworks.bridge.crypto.BridgeEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptorCacheLoader;
+import org.sagebionetworks.bridge.crypto.StreamingCmsDecryptor;
+import org.sagebionetworks.bridge.crypto.StreamingCmsDecryptorCacheLoader;
+import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataAttachment;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
 import org.sagebionetworks.bridge.dynamodb.DynamoIndexHelper;
@@ -68,20 +73,34 @@ import org.sagebionetworks.bridge.dynamodb.DynamoCriteria;
 import org.sagebionetworks.bridge.dynamodb.DynamoExternalIdentifier;
 import org.sagebionetworks.bridge.dynamodb.DynamoFPHSExternalIdentifier;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.dynamodb.DynamoRecordDedupe;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadDedupe;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
 import org.sagebionetworks.bridge.dynamodb.DynamoUtils;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.play.interceptors.RequestMetricsRegistry;
+import org.sagebionetworks.bridge.play.interceptors.ServiceCallMetricsHandler;
 import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.services.ConsentPdfRenderer;
+import org.sagebionetworks.bridge.services.EmailOutbox;
+import org.sagebionetworks.bridge.services.EmailOutboxMetrics;
+import org.sagebionetworks.bridge.services.SendMailViaAmazonService;
 import org.sagebionetworks.bridge.upload.DecryptHandler;
 import org.sagebionetworks.bridge.upload.IosSchemaValidationHandler2;
 import org.sagebionetworks.bridge.upload.ParseJsonHandler;
 import org.sagebionetworks.bridge.upload.S3DownloadHandler;
+import org.sagebionetworks.bridge.upload.StreamingUnpackHandler;
 import org.sagebionetworks.bridge.upload.StrictValidationHandler;
 import org.sagebionetworks.bridge.upload.TranscribeConsentHandler;
 import org.sagebionetworks.bridge.upload.UnzipHandler;
 import org.sagebionetworks.bridge.upload.UploadArtifactsHandler;
+import org.sagebionetworks.bridge.upload.UploadValidationDispatcher;
+import org.sagebionetworks.bridge.upload.UploadValidationExecutor;
 import org.sagebionetworks.bridge.upload.UploadValidationHandler;
+import org.sagebionetworks.bridge.upload.UploadValidationMetrics;
+import org.sagebionetworks.bridge.upload.UploadValidationQueue;
+import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
 
 /**
  * Annotation-based Spring config. This class is shared between both production and (Spring-based) test configs. For
@@ -152,7 +171,9 @@ public class BridgeSpringConfig {
         int maxRetries = bridgeConfig().getPropertyAsInt("ddb.max.retries");
         ClientConfiguration awsClientConfig = PredefinedClientConfigurations.dynamoDefault()
                 .withMaxErrorRetry(maxRetries);
-        return new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        AmazonDynamoDBClient dynamoDbClient = new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        dynamoDbClient.addRequestHandler(new ServiceCallMetricsHandler(Metrics.DYNAMODB));
+        return dynamoDbClient;
     }
     
     @Bean(name = "snsClient")
@@ -170,19 +191,19 @@ public class BridgeSpringConfig {
     @Bean(name = "s3Client")
     @Resource(name = "awsCredentials")
     public AmazonS3Client s3Client(BasicAWSCredentials awsCredentials) {
-        return new AmazonS3Client(awsCredentials);
+        return withS3CallMetrics(new AmazonS3Client(awsCredentials));
     }
 
     @Bean(name = "s3UploadClient")
     @Resource(name = "s3UploadCredentials")
     public AmazonS3Client s3UploadClient(BasicAWSCredentials s3UploadCredentials) {
-        return new AmazonS3Client(s3UploadCredentials);
+        return withS3CallMetrics(new AmazonS3Client(s3UploadCredentials));
     }
 
     @Bean(name = "s3CmsClient")
     @Resource(name = "s3CmsCredentials")
     public AmazonS3Client s3CmsClient(BasicAWSCredentials s3CmsCredentials) {
-        return new AmazonS3Client(s3CmsCredentials);
+        return withS3CallMetrics(new AmazonS3Client(s3CmsCredentials));
     }
 
     @Bean(name ="uploadTokenServiceClient")
@@ -217,7 +238,12 @@ public class BridgeSpringConfig {
     @Bean(name = "s3ConsentsClient")
     @Resource(name = "s3ConsentsCredentials")
     public AmazonS3Client s3ConsentsClient(BasicAWSCredentials awsCredentials) {
-        return new AmazonS3Client(awsCredentials);
+        return withS3CallMetrics(new AmazonS3Client(awsCredentials));
+    }
+
+    private static AmazonS3Client withS3CallMetrics(AmazonS3Client s3Client) {
+        s3Client.addRequestHandler(new ServiceCallMetricsHandler(Metrics.S3));
+        return s3Client;
     }
 
     @Bean(name = "s3ConsentsHelper")
@@ -246,6 +272,59 @@ public class BridgeSpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    @Bean(name = "requestMetricsRegistry", initMethod = "start", destroyMethod = "shutdown")
+    public RequestMetricsRegistry requestMetricsRegistry() {
+        return new RequestMetricsRegistry();
+    }
+
+    @Bean(name = "consentPdfRenderer", initMethod = "start")
+    public ConsentPdfRenderer consentPdfRenderer() {
+        return new ConsentPdfRenderer();
+    }
+
+    @Bean(name = "ddbBatchLoadExecutor", destroyMethod = "shutdown")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService ddbBatchLoadExecutor(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("ddb.batch.load.thread.count"),
+                new ThreadFactoryBuilder().setNameFormat("ddb-index-batch-load-%d").setDaemon(true).build());
+    }
+
+    @Bean(name = "participantPurgeExecutorService", destroyMethod = "shutdown")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService participantPurgeExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("participant.purge.thread.count"));
+    }
+
+    @Bean(name = "uploadValidationExecutor", destroyMethod = "shutdown")
+    @Autowired
+    public UploadValidationExecutor uploadValidationExecutor(BridgeConfig bridgeConfig,
+            UploadValidationMetrics uploadValidationMetrics) {
+        return new UploadValidationExecutor(bridgeConfig.getPropertyAsInt("upload.validation.thread.count"),
+                bridgeConfig.getPropertyAsInt("upload.validation.queue.capacity"), uploadValidationMetrics);
+    }
+
+    @Bean(name = "uploadValidationDispatcher", initMethod = "start", destroyMethod = "shutdown")
+    @Autowired
+    public UploadValidationDispatcher uploadValidationDispatcher(BridgeConfig bridgeConfig,
+            UploadValidationQueue uploadValidationQueue, UploadValidationExecutor uploadValidationExecutor,
+            UploadValidationTaskFactory uploadValidationTaskFactory, UploadDao uploadDao) {
+        int leaseSeconds = bridgeConfig.getPropertyAsInt("upload.validation.lease.seconds");
+        return new UploadValidationDispatcher(uploadValidationQueue, uploadValidationExecutor,
+                uploadValidationTaskFactory, uploadDao, leaseSeconds);
+    }
+
+    @Bean(name = "emailOutbox", destroyMethod = "shutdown")
+    @Autowired
+    public EmailOutbox emailOutbox(BridgeConfig bridgeConfig, SendMailViaAmazonService sendMailViaAmazonService,
+            EmailOutboxMetrics emailOutboxMetrics) {
+        return new EmailOutbox(sendMailViaAmazonService, emailOutboxMetrics,
+                bridgeConfig.getPropertyAsInt("email.outbox.thread.count"),
+                bridgeConfig.getPropertyAsInt("email.outbox.queue.capacity"),
+                bridgeConfig.getPropertyAsInt("email.outbox.sends.per.second"),
+                bridgeConfig.getPropertyAsInt("email.outbox.max.attempts"),
+                bridgeConfig.getPropertyAsInt("email.outbox.initial.backoff.millis"));
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -258,6 +337,13 @@ public class BridgeSpringConfig {
         return CacheBuilder.newBuilder().build(cacheLoader);
     }
 
+    @Bean(name = "streamingCmsDecryptorCache")
+    @Autowired
+    public LoadingCache<String, StreamingCmsDecryptor> streamingCmsDecryptorCache(
+            StreamingCmsDecryptorCacheLoader cacheLoader) {
+        return CacheBuilder.newBuilder().build(cacheLoader);
+    }
+
     @Bean(name = "dynamoUtils")
     @Autowired
     public DynamoUtils dynamoUtils(DynamoNamingHelper dynamoNamingHelper, AmazonDynamoDB dynamoDB) {
@@ -363,56 +449,70 @@ public class BridgeSpringConfig {
     @Bean(name = "uploadHealthCodeRequestedOnIndex")
     @Autowired
     public DynamoIndexHelper uploadHealthCodeRequestedOnIndex(AmazonDynamoDBClient dynamoDBClient, DynamoUtils dynamoUtils,
-            DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoUpload2.class, "healthCode-requestedOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+            DynamoNamingHelper dynamoNamingHelper,
+            @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoUpload2.class, "healthCode-requestedOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
     
     @Bean(name = "uploadStudyIdRequestedOnIndex")
     @Autowired
     public DynamoIndexHelper uploadStudyIdRequestedOnIndex(AmazonDynamoDBClient dynamoDBClient, DynamoUtils dynamoUtils,
-            DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoUpload2.class, "studyId-requestedOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+            DynamoNamingHelper dynamoNamingHelper,
+            @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoUpload2.class, "studyId-requestedOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
     
     @Bean(name = "healthDataHealthCodeIndex")
     @Autowired
     public DynamoIndexHelper healthDataHealthCodeIndex(AmazonDynamoDBClient dynamoDBClient,
                                                        DynamoUtils dynamoUtils,
-                                                       DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "healthCode-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+                                                       DynamoNamingHelper dynamoNamingHelper,
+                                                       @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "healthCode-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
 
     @Bean(name = "healthDataHealthCodeCreatedOnIndex")
     @Autowired
     public DynamoIndexHelper healthDataHealthCodeCreatedOnIndex(AmazonDynamoDBClient dynamoDBClient,
                                                        DynamoUtils dynamoUtils,
-                                                       DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "healthCode-createdOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+                                                       DynamoNamingHelper dynamoNamingHelper,
+                                                       @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "healthCode-createdOn-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
 
     @Bean(name = "healthDataUploadDateIndex")
     @Autowired
     public DynamoIndexHelper healthDataUploadDateIndexDynamoUtils(AmazonDynamoDBClient dynamoDBClient,
                                                                   DynamoUtils dynamoUtils,
-                                                                  DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "uploadDate-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+                                                                  DynamoNamingHelper dynamoNamingHelper,
+                                                                  @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoHealthDataRecord.class, "uploadDate-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
 
     @Bean(name = "activitySchedulePlanGuidIndex")
     @Autowired
     public DynamoIndexHelper activitySchedulePlanGuidIndex(AmazonDynamoDBClient dynamoDBClient,
                                                            DynamoUtils dynamoUtils,
-                                                           DynamoNamingHelper dynamoNamingHelper) {
+                                                           DynamoNamingHelper dynamoNamingHelper,
+                                                           @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
         return DynamoIndexHelper
-                .create(DynamoScheduledActivity.class, "schedulePlanGuid-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+                .create(DynamoScheduledActivity.class, "schedulePlanGuid-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                        ddbBatchLoadExecutor);
     }
 
     @Bean(name = "uploadSchemaStudyIdIndex")
     @Autowired
     public DynamoIndexHelper uploadSchemaStudyIdIndex(AmazonDynamoDBClient dynamoDBClient,
                                                       DynamoUtils dynamoUtils,
-                                                      DynamoNamingHelper dynamoNamingHelper) {
-        return DynamoIndexHelper.create(DynamoUploadSchema.class, "studyId-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils);
+                                                      DynamoNamingHelper dynamoNamingHelper,
+                                                      @Qualifier("ddbBatchLoadExecutor") ExecutorService ddbBatchLoadExecutor) {
+        return DynamoIndexHelper.create(DynamoUploadSchema.class, "studyId-index", dynamoDBClient, dynamoNamingHelper, dynamoUtils,
+                ddbBatchLoadExecutor);
     }
 
     @Bean(name = "uploadDdbMapper")
@@ -421,6 +521,11 @@ public class BridgeSpringConfig {
         return dynamoUtils.getMapper(DynamoUpload2.class);
     }
 
+    @Bean(name = "recordDedupeDdbMapper")
+    public DynamoDBMapper recordDedupeDdbMapper(DynamoUtils dynamoUtils) {
+        return dynamoUtils.getMapper(DynamoRecordDedupe.class);
+    }
+
     @Bean(name = "uploadDedupeDdbMapper")
     public DynamoDBMapper uploadDedupeDdbMapper(DynamoUtils dynamoUtils) {
         return dynamoUtils.getMapper(DynamoUploadDedupe.class);
@@ -446,11 +551,16 @@ public class BridgeSpringConfig {
 
     @Bean(name = "uploadValidationHandlerList")
     @Autowired
-    public List<UploadValidationHandler> uploadValidationHandlerList(S3DownloadHandler s3DownloadHandler,
-            DecryptHandler decryptHandler, UnzipHandler unzipHandler, ParseJsonHandler parseJsonHandler,
+    public List<UploadValidationHandler> uploadValidationHandlerList(BridgeConfig bridgeConfig,
+            S3DownloadHandler s3DownloadHandler, DecryptHandler decryptHandler, UnzipHandler unzipHandler,
+            ParseJsonHandler parseJsonHandler, StreamingUnpackHandler streamingUnpackHandler,
             IosSchemaValidationHandler2 iosSchemaValidationHandler2,
             StrictValidationHandler strictValidationHandler, TranscribeConsentHandler transcribeConsentHandler,
             UploadArtifactsHandler uploadArtifactsHandler) {
+        if (Boolean.parseBoolean(bridgeConfig.getProperty("upload.validation.streaming"))) {
+            return ImmutableList.of(streamingUnpackHandler, iosSchemaValidationHandler2, strictValidationHandler,
+                    transcribeConsentHandler, uploadArtifactsHandler);
+        }
         return ImmutableList.of(s3DownloadHandler, decryptHandler, unzipHandler, parseJsonHandler,
                 iosSchemaValidationHandler2, strictValidationHandler, transcribeConsentHandler,
                 uploadArtifactsHandler);
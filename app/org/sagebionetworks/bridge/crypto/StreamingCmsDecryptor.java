@@ -0,0 +1,65 @@
+package org.sagebionetworks.bridge.crypto;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.cms.CMSEnvelopedDataParser;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.Recipient;
+import org.bouncycastle.cms.RecipientId;
+import org.bouncycastle.cms.RecipientInformation;
+import org.bouncycastle.cms.jcajce.JceKeyTransEnvelopedRecipient;
+import org.bouncycastle.cms.jcajce.JceKeyTransRecipientId;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Decrypts CMS enveloped data as a stream. Unlike {@link CmsEncryptor#decrypt}, which needs the whole encrypted
+ * payload and returns the whole decrypted payload as byte arrays, this reads the encrypted data incrementally as the
+ * decrypted stream is consumed, so neither needs to be held in memory.
+ */
+public class StreamingCmsDecryptor {
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final RecipientId recipientId;
+    private final Recipient recipient;
+
+    /** Creates a decryptor for data encrypted to the given certificate, using the certificate's private key. */
+    public StreamingCmsDecryptor(@Nonnull X509Certificate cert, @Nonnull PrivateKey privateKey) {
+        checkNotNull(cert);
+        checkNotNull(privateKey);
+        this.recipientId = new JceKeyTransRecipientId(cert);
+        this.recipient = new JceKeyTransEnvelopedRecipient(privateKey)
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME);
+    }
+
+    /**
+     * Returns a stream of the decrypted content of the given CMS enveloped data stream. The caller is responsible for
+     * closing the encrypted stream once it's done reading the decrypted stream.
+     *
+     * @param encryptedStream
+     *         stream of CMS enveloped data
+     * @return stream of decrypted data
+     * @throws CMSException
+     *         if the data isn't valid CMS, or wasn't encrypted for this decryptor's certificate
+     */
+    public InputStream decrypt(@Nonnull InputStream encryptedStream) throws CMSException, IOException {
+        checkNotNull(encryptedStream);
+        CMSEnvelopedDataParser parser = new CMSEnvelopedDataParser(new BufferedInputStream(encryptedStream));
+        RecipientInformation recipientInfo = parser.getRecipientInfos().get(recipientId);
+        if (recipientInfo == null) {
+            throw new CMSException("Data was not encrypted for this decryptor's certificate");
+        }
+        return recipientInfo.getContentStream(recipient).getContentStream();
+    }
+}
@@ -0,0 +1,46 @@
+package org.sagebionetworks.bridge.crypto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+
+import com.google.common.cache.CacheLoader;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.s3.S3Helper;
+
+/**
+ * Cache loader for streaming CMS decryptors, keyed by the study ID. This loads the same encryption materials as
+ * {@link CmsEncryptorCacheLoader}, from the same S3 buckets.
+ */
+@Component
+public class StreamingCmsDecryptorCacheLoader extends CacheLoader<String, StreamingCmsDecryptor> {
+    private static final String PEM_FILENAME_FORMAT = "%s.pem";
+
+    private S3Helper s3CmsHelper;
+
+    /** S3 helper, configured by Spring. */
+    @Resource(name = "s3CmsHelper")
+    public void setS3CmsHelper(S3Helper s3CmsHelper) {
+        this.s3CmsHelper = s3CmsHelper;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StreamingCmsDecryptor load(@Nonnull String studyId) throws CertificateEncodingException, IOException {
+        String pemFileName = String.format(PEM_FILENAME_FORMAT, studyId);
+
+        // download certificate
+        String certPem = s3CmsHelper.readS3FileAsString(CmsEncryptorCacheLoader.CERT_BUCKET, pemFileName);
+        X509Certificate cert = PemUtils.loadCertificateFromPem(certPem);
+
+        // download private key
+        String privKeyPem = s3CmsHelper.readS3FileAsString(CmsEncryptorCacheLoader.PRIV_KEY_BUCKET, pemFileName);
+        PrivateKey privKey = PemUtils.loadPrivateKeyFromPem(privKeyPem);
+
+        return new StreamingCmsDecryptor(cert, privKey);
+    }
+}
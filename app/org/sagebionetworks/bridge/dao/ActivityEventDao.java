@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
@@ -9,9 +10,17 @@ public interface ActivityEventDao {
 
     /**
      * Publish an event into this user's event stream. This event becomes available 
-     * for scheduling activities for this user.
+     * for scheduling activities for this user. Enrollment is only recorded once, and other 
+     * events only replace an earlier occurrence of the same event.
+     * 
+     * @return true if the event was saved, false if it was ignored
+     */
+    boolean publishEvent(ActivityEvent event);
+    
+    /**
+     * Get all the events stored for this user, without the calculated events.
      */
-    void publishEvent(ActivityEvent event);
+    List<ActivityEvent> getActivityEvents(String healthCode);
     
     /**
      * Get a map of events, where the string key is an event identifier, and the value 
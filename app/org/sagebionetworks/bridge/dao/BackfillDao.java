@@ -20,6 +20,18 @@ public interface BackfillDao {
      */
     void updateTaskStatus(String taskId, BackfillStatus status);
 
+    /**
+     * Records how many items the backfill task has finished, so a later task of the same name can resume from there
+     * if this one doesn't complete.
+     */
+    void updateTaskCheckpoint(String taskId, int checkpoint);
+
+    /**
+     * Gets the number of items the backfill task had finished when it last recorded a checkpoint, or 0 if it never
+     * recorded one.
+     */
+    int getTaskCheckpoint(String taskId);
+
     /**
      * Gets the backfill task by ID.
      */
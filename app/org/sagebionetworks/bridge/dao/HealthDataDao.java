@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
 import javax.annotation.Nonnull;
+import java.util.Iterator;
 import java.util.List;
 
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
@@ -39,13 +40,13 @@ public interface HealthDataDao {
 
     /**
      * DAO method used by worker apps to query all health data records uploaded for a specific date, generally used for
-     * export.
+     * export. Records are loaded as the caller iterates, since a day's records may not fit in memory.
      *
      * @param uploadDate
      *         upload date in YYYY-MM-DD format, must be non-null, non-empty, and must represent a valid date
-     * @return list of all health records uploaded on that date
+     * @return iterator over all health records uploaded on that date
      */
-    List<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate);
+    Iterator<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate);
 
     /**
      * Gets a builder instance, used for building prototype health data records. This is generally used by worker apps
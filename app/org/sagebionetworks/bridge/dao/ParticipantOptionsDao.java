@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Iterator;
 import java.util.Map;
 
 import org.sagebionetworks.bridge.models.accounts.AllParticipantOptionsLookup;
@@ -28,6 +29,13 @@ public interface ParticipantOptionsDao {
      * Get all the options for all participants in a study. 
      */
     AllParticipantOptionsLookup getOptionsForAllParticipants(StudyIdentifier studyIdentifier);
+    
+    /**
+     * Stream the options for all participants in a study, as entries of health code to options. Options are read a 
+     * page at a time as the iterator is consumed, so this can be used on studies too large to hold in memory. 
+     */
+    Iterator<Map.Entry<String,ParticipantOptionsLookup>> streamOptionsForAllParticipants(
+            StudyIdentifier studyIdentifier);
    
     /**
      * Clear a single option for a participant.
@@ -0,0 +1,58 @@
+package org.sagebionetworks.bridge.dao;
+
+/**
+ * DAO to answer, before a health data record is written: Has another upload already produced a record with the same
+ * content?
+ */
+public interface RecordDedupeDao {
+    /**
+     * <p>
+     * Registers the record content hash for the given upload, unless it's already registered. If a different upload
+     * registered it first, the record is a duplicate and this returns that upload's ID. Otherwise, returns null.
+     * </p>
+     * <p>
+     * Re-validating the same upload isn't a duplicate, since the hash is registered to the same upload ID. This costs
+     * one conditional write, plus one read only when the hash is already registered.
+     * </p>
+     *
+     * @param healthCode
+     *         user's health code
+     * @param contentHash
+     *         hash of the record's content, including its schema and created on time
+     * @param uploadId
+     *         ID of the upload the record comes from
+     * @return the upload ID of the previous upload, if it's a dupe; null if it's not
+     */
+    String registerRecord(String healthCode, String contentHash, String uploadId);
+
+    /**
+     * Re-registers the record content hash to the given upload, but only if it's still registered to the previous
+     * upload. This is used when the previous upload's record was never written, so that later uploads are compared
+     * against this one instead.
+     *
+     * @param healthCode
+     *         user's health code
+     * @param contentHash
+     *         hash of the record's content, including its schema and created on time
+     * @param previousUploadId
+     *         ID of the upload the hash is expected to be registered to
+     * @param uploadId
+     *         ID of the upload to register the hash to
+     * @return true if the hash was re-registered, false if it was registered to a different upload in the meantime
+     */
+    boolean replaceRegistration(String healthCode, String contentHash, String previousUploadId, String uploadId);
+
+    /**
+     * Removes the registration of the record content hash, if it's registered to the given upload. This is called
+     * when the upload's record couldn't be written, so that a re-upload of the same content isn't flagged as a
+     * duplicate.
+     *
+     * @param healthCode
+     *         user's health code
+     * @param contentHash
+     *         hash of the record's content, including its schema and created on time
+     * @param uploadId
+     *         ID of the upload that registered the hash
+     */
+    void unregisterRecord(String healthCode, String contentHash, String uploadId);
+}
@@ -1,9 +1,8 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import static com.amazonaws.services.dynamodbv2.model.ConditionalOperator.OR;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.ENROLLMENT;
-import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TWO_WEEKS_BEFORE_ENROLLMENT;
-import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TWO_MONTHS_BEFORE_ENROLLMENT;
 
 import java.util.List;
 import java.util.Map;
@@ -11,28 +10,31 @@ import java.util.Map;
 import javax.annotation.Resource;
 
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
-import org.sagebionetworks.bridge.models.activities.ActivityEventType;
+import org.sagebionetworks.bridge.models.activities.ActivityEventMaps;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 @Component
 public class DynamoActivityEventDao implements ActivityEventDao {
 
-    private static final String ANSWERED_EVENT_POSTFIX = ":"+ActivityEventType.ANSWERED.name().toLowerCase();
-    private static final String TWO_WEEKS = TWO_WEEKS_BEFORE_ENROLLMENT.name().toLowerCase();
-    private static final String TWO_MONTHS = TWO_MONTHS_BEFORE_ENROLLMENT.name().toLowerCase();
+    private static final String EVENT_ID = "eventId";
+    private static final String TIMESTAMP = "timestamp";
     
     private DynamoDBMapper mapper;
 
@@ -41,40 +43,39 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         this.mapper = mapper;
     }
     
+    /**
+     * Saves the event in a single conditional write, rather than loading the saved event first to compare 
+     * timestamps.
+     */
     @Override
-    public void publishEvent(ActivityEvent event) {
+    public boolean publishEvent(ActivityEvent event) {
         checkNotNull(event);
         
-        DynamoActivityEvent hashKey = new DynamoActivityEvent();
-        hashKey.setHealthCode(event.getHealthCode());
-        hashKey.setEventId(event.getEventId());
-        
-        ActivityEvent savedEvent = mapper.load(hashKey);
-        if (isLaterNonEnrollmentEvent(savedEvent, event)) {
-            mapper.save(event);
+        try {
+            mapper.save(event, getPublishExpression(event));
+            return true;
+        } catch(ConditionalCheckFailedException e) {
+            return false;
         }
     }
 
     @Override
-    public Map<String, DateTime> getActivityEventMap(String healthCode) {
+    public List<ActivityEvent> getActivityEvents(String healthCode) {
         checkNotNull(healthCode);
         
         DynamoActivityEvent hashKey = new DynamoActivityEvent();
         hashKey.setHealthCode(healthCode);
+        // Consistent, so events published just before this read (and the cache version change) are included.
         DynamoDBQueryExpression<DynamoActivityEvent> query = new DynamoDBQueryExpression<DynamoActivityEvent>()
-            .withHashKeyValues(hashKey);
+            .withHashKeyValues(hashKey).withConsistentRead(true);
 
         PaginatedQueryList<DynamoActivityEvent> queryResults = mapper.query(DynamoActivityEvent.class, query);
-        
-        Builder<String,DateTime> builder = ImmutableMap.<String,DateTime>builder();
-        for (DynamoActivityEvent event : queryResults) {
-            builder.put(getEventMapKey(event), new DateTime(event.getTimestamp(), DateTimeZone.UTC));
-            if (isEnrollment(event)) {
-                builder.put(TWO_WEEKS, new DateTime(event.getTimestamp(), DateTimeZone.UTC).minusWeeks(2));
-                builder.put(TWO_MONTHS, new DateTime(event.getTimestamp(), DateTimeZone.UTC).minusMonths(2));
-            }
-        }
-        return builder.build();
+        return ImmutableList.<ActivityEvent>copyOf(queryResults);
+    }
+    
+    @Override
+    public Map<String, DateTime> getActivityEventMap(String healthCode) {
+        return ActivityEventMaps.fromEvents(getActivityEvents(healthCode));
     }
     
     @Override
@@ -97,31 +98,21 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         }
     }
     
-    private boolean isEnrollment(ActivityEvent event) {
-        return ENROLLMENT.name().toLowerCase().equals(event.getEventId());
-    }
-    
     // Enrollment can only be recorded once, even if user withdraws and re-enrolls. Tasks are 
     // not deleted and so one-time tasks are not re-scheduled against a new enrollment date.
-    // Only save if the timestamp is later than the current timestamp in the table
-    private boolean isLaterNonEnrollmentEvent(ActivityEvent savedEvent, ActivityEvent event) {
-        if (savedEvent == null) {
-            return true;
-        }
-        return (!"enrollment".equals(event.getEventId()) && event.getTimestamp() > savedEvent.getTimestamp());
-    }
-
-    /**
-     * Answer events do schedule against a specific answer, which is added to the key in the
-     * map only. A change in the value is continued to be a change to the same event.
-     * @param event
-     * @return
-     */
-    private String getEventMapKey(DynamoActivityEvent event) {
-        if (event.getEventId().endsWith(ANSWERED_EVENT_POSTFIX)) {
-            return event.getEventId()+"="+event.getAnswerValue();
+    // Other events are only saved if the timestamp is later than the current timestamp in the table
+    private DynamoDBSaveExpression getPublishExpression(ActivityEvent event) {
+        Map<String, ExpectedAttributeValue> map = Maps.newHashMap();
+        map.put(EVENT_ID, new ExpectedAttributeValue().withExists(false));
+        
+        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression();
+        if (!ENROLLMENT.name().toLowerCase().equals(event.getEventId())) {
+            map.put(TIMESTAMP, new ExpectedAttributeValue()
+                    .withValue(new AttributeValue().withN(event.getTimestamp().toString()))
+                    .withComparisonOperator(ComparisonOperator.LT));
+            saveExpression.withConditionalOperator(OR);
         }
-        return event.getEventId();    
+        saveExpression.setExpected(map);
+        return saveExpression;
     }
-    
 }
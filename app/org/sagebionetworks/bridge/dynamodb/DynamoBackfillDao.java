@@ -61,6 +61,24 @@ public class DynamoBackfillDao implements BackfillDao {
         taskMapper.save(task);
     }
 
+    @Override
+    public void updateTaskCheckpoint(String taskId, int checkpoint) {
+        checkArgument(isNotBlank(taskId));
+        checkArgument(checkpoint >= 0);
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        task.setCheckpoint(checkpoint);
+        taskMapper.save(task);
+    }
+
+    @Override
+    public int getTaskCheckpoint(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        return (task != null && task.getCheckpoint() != null) ? task.getCheckpoint() : 0;
+    }
+
     @Override
     public BackfillTask getTask(String taskId) {
         checkArgument(isNotBlank(taskId));
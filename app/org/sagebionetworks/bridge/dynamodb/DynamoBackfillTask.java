@@ -24,6 +24,7 @@ public class DynamoBackfillTask implements BackfillTask {
 
     private String user;
     private String status;
+    private Integer checkpoint;
 
     public DynamoBackfillTask() {
     }
@@ -84,6 +85,14 @@ public class DynamoBackfillTask implements BackfillTask {
         this.status = status;
     }
 
+    /** Number of items the task had finished when it last recorded its progress. Null if it never has. */
+    public Integer getCheckpoint() {
+        return checkpoint;
+    }
+    public void setCheckpoint(Integer checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     @DynamoDBIgnore
     @Override
     public String getId() {
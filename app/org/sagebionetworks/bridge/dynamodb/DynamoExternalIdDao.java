@@ -14,20 +14,29 @@ import static com.amazonaws.services.dynamodbv2.model.ConditionalOperator.OR;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
 import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.TotalCountCache;
 import org.sagebionetworks.bridge.config.Config;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.DateUtils;
@@ -47,14 +56,25 @@ import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoExternalIdDao implements ExternalIdDao {
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoExternalIdDao.class);
     
     static final String PAGE_SIZE_ERROR = "pageSize must be from 1-"+API_MAXIMUM_PAGE_SIZE+" records";
     
+    // DynamoDB loads at most 100 items in a batch. Identifiers are added in chunks of this size.
+    static final int ADD_CHUNK_SIZE = 100;
+    static final int MAX_SAVE_ATTEMPTS = 5;
+    private static final long SAVE_RETRY_DELAY_MILLIS = 100L;
+    
     private static final String RESERVATION = "reservation";
     private static final String HEALTH_CODE = "healthCode";
     private static final String IDENTIFIER = "identifier";
@@ -65,6 +85,8 @@ public class DynamoExternalIdDao implements ExternalIdDao {
     private int addLimit;
     private int lockDuration;
     private DynamoDBMapper mapper;
+    private ExecutorService executorService;
+    private TotalCountCache totalCountCache;
 
     /** Gets the add limit and lock duration from Config. */
     @Autowired
@@ -77,6 +99,17 @@ public class DynamoExternalIdDao implements ExternalIdDao {
     public final void setMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
+    
+    /** Chunks of a large list of external IDs are added in parallel on this executor. */
+    @Resource(name = "asyncExecutorService")
+    public final void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    @Autowired
+    public final void setTotalCountCache(TotalCountCache totalCountCache) {
+        this.totalCountCache = totalCountCache;
+    }
 
     @Override
     public PagedResourceList<ExternalIdentifierInfo> getExternalIds(StudyIdentifier studyId, String offsetKey, 
@@ -96,7 +129,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         PaginatedQueryList<DynamoExternalIdentifier> list = mapper.query(DynamoExternalIdentifier.class,
                 createGetQuery(studyId, offsetKey, pageSize, idFilter, assignmentFilter));
         
-        int total = mapper.count(DynamoExternalIdentifier.class, createCountQuery(studyId, idFilter, assignmentFilter));
+        int total = getTotal(studyId, idFilter, assignmentFilter);
         
         List<ExternalIdentifierInfo> identifiers = Lists.newArrayListWithCapacity(pageSize);
         
@@ -128,15 +161,106 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         if (externalIds.size() > addLimit) {
             throw new BadRequestException("List of externalIds is too large; size=" + externalIds.size() + ", limit=" + addLimit);
         }
-        List<DynamoExternalIdentifier> idsToSave = externalIds.stream().map(id -> {
+        // A batch load can't contain the same key twice
+        List<String> distinctIds = ImmutableList.copyOf(new LinkedHashSet<>(externalIds));
+        
+        List<Future<Integer>> futures = Lists.newArrayList();
+        for (List<String> chunk : Lists.partition(distinctIds, ADD_CHUNK_SIZE)) {
+            futures.add(executorService.submit(() -> addExternalIdChunk(studyId, chunk)));
+        }
+        int addedCount = 0;
+        for (Future<Integer> future : futures) {
+            addedCount += getChunkResult(future);
+        }
+        if (addedCount > 0) {
+            invalidateTotals(studyId);
+        }
+        LOG.info("Added " + addedCount + " of " + distinctIds.size() + " external IDs to study "
+                + studyId.getIdentifier());
+    }
+    
+    /**
+     * Checks which identifiers in the chunk already exist with one batch load, and saves the others with one batch 
+     * save. Returns the number of identifiers that were saved.
+     */
+    private int addExternalIdChunk(StudyIdentifier studyId, List<String> chunk) {
+        List<Object> keys = chunk.stream().map(id -> {
             return new DynamoExternalIdentifier(studyId, id);
-        }).filter(externalId -> {
-            return mapper.load(externalId) == null;
         }).collect(Collectors.toList());
         
-        if (!idsToSave.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchSave(idsToSave);
-            BridgeUtils.ifFailuresThrowException(failures);
+        Set<String> existingIds = Sets.newHashSet();
+        for (List<Object> results : mapper.batchLoad(keys).values()) {
+            for (Object result : results) {
+                existingIds.add(((DynamoExternalIdentifier) result).getIdentifier());
+            }
+        }
+        List<DynamoExternalIdentifier> idsToSave = chunk.stream().filter(id -> {
+            return !existingIds.contains(id);
+        }).map(id -> {
+            return new DynamoExternalIdentifier(studyId, id);
+        }).collect(Collectors.toList());
+        
+        saveWithRetry(idsToSave);
+        return idsToSave.size();
+    }
+    
+    /**
+     * Batch saves the identifiers. If writes are throttled, the items that were not written are retried with an 
+     * increasing delay, up to MAX_SAVE_ATTEMPTS in total. Any other failure is thrown immediately.
+     */
+    private void saveWithRetry(List<DynamoExternalIdentifier> idsToSave) {
+        List<DynamoExternalIdentifier> remaining = idsToSave;
+        for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+            List<FailedBatch> failures = mapper.batchSave(remaining);
+            if (failures.isEmpty()) {
+                return;
+            }
+            if (attempt >= MAX_SAVE_ATTEMPTS || !isThrottled(failures)) {
+                BridgeUtils.ifFailuresThrowException(failures);
+            }
+            remaining = getUnprocessed(remaining, failures);
+            try {
+                Thread.sleep(SAVE_RETRY_DELAY_MILLIS << (attempt-1));
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException(e);
+            }
+        }
+    }
+    
+    private boolean isThrottled(List<FailedBatch> failures) {
+        for (FailedBatch failure : failures) {
+            if (!(failure.getException() instanceof ProvisionedThroughputExceededException)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private List<DynamoExternalIdentifier> getUnprocessed(List<DynamoExternalIdentifier> ids,
+            List<FailedBatch> failures) {
+        Set<String> unprocessedIds = Sets.newHashSet();
+        for (FailedBatch failure : failures) {
+            for (List<WriteRequest> requests : failure.getUnprocessedItems().values()) {
+                for (WriteRequest request : requests) {
+                    unprocessedIds.add(request.getPutRequest().getItem().get(IDENTIFIER).getS());
+                }
+            }
+        }
+        return ids.stream().filter(id -> {
+            return unprocessedIds.contains(id.getIdentifier());
+        }).collect(Collectors.toList());
+    }
+    
+    private int getChunkResult(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        } catch(ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new BridgeServiceException(e.getCause());
         }
     }
     
@@ -156,6 +280,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
             
             identifier.setReservation(newReservation);
             mapper.save(identifier, getReservationExpression(newReservation));
+            invalidateTotals(studyId);
             
         } catch(ConditionalCheckFailedException e) {
             // The timeout is in effect or the healthCode is set, either way, code is "taken"
@@ -182,6 +307,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
                 identifier.setReservation(0L);
                 identifier.setHealthCode(healthCode);
                 mapper.save(identifier, getAssignmentExpression());
+                invalidateTotals(studyId);
                 
             } catch(ConditionalCheckFailedException e) {
                 // The timeout is in effect or the healthCode is set, either way, code is "taken"
@@ -203,6 +329,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
             identifier.setHealthCode(null);
             identifier.setReservation(0L);
             mapper.save(identifier);
+            invalidateTotals(studyId);
         }
     }
     
@@ -220,9 +347,33 @@ public class DynamoExternalIdDao implements ExternalIdDao {
             }).collect(Collectors.toList());
             
             List<FailedBatch> failures = mapper.batchDelete(idsToDelete);
+            invalidateTotals(studyId);
             BridgeUtils.ifFailuresThrowException(failures);
         }
     }
+    
+    /**
+     * Totals filtered by identifier prefix are counted on every request; the prefix narrows the count to a range of 
+     * the table. Unfiltered totals, and totals filtered only by assignment, are cached per study.
+     */
+    private int getTotal(StudyIdentifier studyId, String idFilter, Boolean assignmentFilter) {
+        if (idFilter != null) {
+            return mapper.count(DynamoExternalIdentifier.class, createCountQuery(studyId, idFilter, assignmentFilter));
+        }
+        return totalCountCache.getTotal(getTotalKey(studyId, assignmentFilter), () -> {
+            return mapper.count(DynamoExternalIdentifier.class, createCountQuery(studyId, null, assignmentFilter));
+        });
+    }
+    
+    private void invalidateTotals(StudyIdentifier studyId) {
+        totalCountCache.invalidate(getTotalKey(studyId, null), getTotalKey(studyId, Boolean.TRUE),
+                getTotalKey(studyId, Boolean.FALSE));
+    }
+    
+    private String getTotalKey(StudyIdentifier studyId, Boolean assignmentFilter) {
+        String assignment = (assignmentFilter == null) ? "all" : (assignmentFilter ? "assigned" : "unassigned");
+        return "external-ids:" + studyId.getIdentifier() + ":" + assignment;
+    }
 
     /**
      * Get the count query (applies filters) and then sets an offset key and the limit to a page of records, 
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -74,15 +75,10 @@ public class DynamoHealthDataDao implements HealthDataDao {
     /** {@inheritDoc} */
     @Override
     public int deleteRecordsForHealthCode(@Nonnull String healthCode) {
-        // query for the keys we need to delete
-        List<HealthDataRecord> keysToDelete = healthCodeIndex.queryKeys(HealthDataRecord.class, "healthCode",
-                healthCode, null);
-
-        // and then delete
-        List<DynamoDBMapper.FailedBatch> failureList = mapper.batchDelete(keysToDelete);
-        BridgeUtils.ifFailuresThrowException(failureList);
-
-        return keysToDelete.size();
+        // read the keys we need to delete a page at a time, and delete each page as it's read
+        Iterator<HealthDataRecord> keysToDelete = healthCodeIndex.queryKeysIterator(HealthDataRecord.class,
+                "healthCode", healthCode, null);
+        return BridgeUtils.batchDeleteInPages(mapper, keysToDelete);
     }
 
     /** {@inheritDoc} */
@@ -93,8 +89,8 @@ public class DynamoHealthDataDao implements HealthDataDao {
 
     /** {@inheritDoc} */
     @Override
-    public List<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate) {
-        return uploadDateIndex.query(HealthDataRecord.class, "uploadDate", uploadDate, null);
+    public Iterator<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate) {
+        return uploadDateIndex.queryIterator(HealthDataRecord.class, "uploadDate", uploadDate, null);
     }
 
     /** {@inheritDoc} */
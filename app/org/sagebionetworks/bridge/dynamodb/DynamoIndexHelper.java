@@ -1,19 +1,35 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 
@@ -25,18 +41,28 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 public class DynamoIndexHelper {
 
     public static DynamoIndexHelper create(final Class<?> dynamoTable, final String indexName,
-           final AmazonDynamoDB client, DynamoNamingHelper dynamoNamingHelper, DynamoUtils dynamoUtils) {
+           final AmazonDynamoDB client, DynamoNamingHelper dynamoNamingHelper, DynamoUtils dynamoUtils,
+           ExecutorService batchLoadExecutor) {
         final DynamoDB ddb = new DynamoDB(client);
         final Table ddbTable = ddb.getTable(dynamoNamingHelper.getFullyQualifiedTableName(dynamoTable));
         final Index ddbIndex = ddbTable.getIndex(indexName);
         final DynamoIndexHelper indexHelper = new DynamoIndexHelper();
         indexHelper.setIndex(ddbIndex);
         indexHelper.setMapper(dynamoUtils.getMapper(dynamoTable));
+        indexHelper.setTableClass(dynamoTable);
+        indexHelper.setBatchLoadExecutor(batchLoadExecutor);
         return indexHelper;
     }
 
+    // DynamoDB's BatchGetItem limit
+    static final int BATCH_LOAD_SIZE = 100;
+    // How many batch loads each query keeps running ahead of its caller
+    static final int MAX_BATCH_LOADS_IN_FLIGHT = 4;
+
     private Index index;
     private DynamoDBMapper mapper;
+    private List<Method> tableKeyGetters = Collections.emptyList();
+    private ExecutorService batchLoadExecutor = MoreExecutors.newDirectExecutorService();
 
     /** DynamoDB index. This is used to query the secondary index. This is configured by Spring. */
     private void setIndex(Index index) {
@@ -51,6 +77,50 @@ public class DynamoIndexHelper {
         this.mapper = mapper;
     }
 
+    /**
+     * DynamoDB table class. Its hash and range key getters are used to put the full entries from batch loads back in
+     * the order of the index. The key annotations must be on public getters. This setter is called by tests.
+     *
+     * @throws IllegalArgumentException
+     *         if the class has no public hash key getter, or has key annotations on fields
+     */
+    public void setTableClass(Class<?> dynamoTable) {
+        for (Class<?> oneClass = dynamoTable; oneClass != null; oneClass = oneClass.getSuperclass()) {
+            for (Field oneField : oneClass.getDeclaredFields()) {
+                if (oneField.isAnnotationPresent(DynamoDBHashKey.class)
+                        || oneField.isAnnotationPresent(DynamoDBRangeKey.class)) {
+                    throw new IllegalArgumentException("Table class " + dynamoTable.getName()
+                            + " has key annotations on field " + oneField.getName()
+                            + ". Index helpers need them on getters.");
+                }
+            }
+        }
+
+        List<Method> keyGetters = new ArrayList<>();
+        boolean hasHashKey = false;
+        for (Method oneMethod : dynamoTable.getMethods()) {
+            if (oneMethod.isAnnotationPresent(DynamoDBHashKey.class)) {
+                hasHashKey = true;
+                keyGetters.add(oneMethod);
+            } else if (oneMethod.isAnnotationPresent(DynamoDBRangeKey.class)) {
+                keyGetters.add(oneMethod);
+            }
+        }
+        if (!hasHashKey) {
+            throw new IllegalArgumentException("Table class " + dynamoTable.getName()
+                    + " has no public getter annotated with @DynamoDBHashKey");
+        }
+        this.tableKeyGetters = keyGetters;
+    }
+
+    /**
+     * Executor that batch loads full rows from the table while the index is read. This is configured by Spring
+     * through {@link #create}. If it's not set, batch loads run on the calling thread.
+     */
+    public void setBatchLoadExecutor(ExecutorService batchLoadExecutor) {
+        this.batchLoadExecutor = batchLoadExecutor;
+    }
+
     /**
      * Queries the secondary index with the specified key name and value, and an optional range key condition. Only 
      * the attributes projected onto the index will be returned. (Generally, this is only the table index keys 
@@ -71,17 +141,36 @@ public class DynamoIndexHelper {
      */
     public <T> List<T> queryKeys(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
             @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
-        // query the index
-        Iterable<Item> itemIter = queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition);
-
-        // convert items to the specified class
         List<T> recordKeyList = new ArrayList<>();
-        for (Item oneItem : itemIter) {
-            T oneRecord = BridgeObjectMapper.get().convertValue(oneItem.asMap(), clazz);
-            recordKeyList.add(oneRecord);
+        Iterator<T> recordKeyIter = queryKeysIterator(clazz, indexKeyName, indexKeyValue, rangeKeyCondition);
+        while (recordKeyIter.hasNext()) {
+            recordKeyList.add(recordKeyIter.next());
         }
         return recordKeyList;
     }
+
+    /**
+     * Like {@link #queryKeys}, but the index is read a page at a time as the caller iterates, so memory use doesn't
+     * grow with the size of the result. Use this to batch delete rows from partitions that may be large.
+     *
+     * @param clazz
+     *         expected result class
+     * @param indexKeyName
+     *         index key name to query on
+     * @param indexKeyValue
+     *         index key value to query on
+     * @param rangeKeyCondition
+     *         range condition for query on range portion of key (optional)
+     * @param <T>
+     *         expected result type
+     * @return iterator over key objects returned by the query
+     */
+    public <T> Iterator<T> queryKeysIterator(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
+            @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
+        Iterator<Item> itemIter = queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition).iterator();
+        return Iterators.transform(itemIter, oneItem -> BridgeObjectMapper.get().convertValue(oneItem.asMap(),
+                clazz));
+    }
     
     /**
      * Query via a secondary index to return the count of matching items in the table.
@@ -105,15 +194,43 @@ public class DynamoIndexHelper {
     }
     
     /**
-     * <p>
      * Queries the secondary index with the specified key name and value. Results will be returned as a list of
-     * the specified class. Unlike {@link #queryKeys}, this method re-queries DynamoDB to get the full rows of the
-     * DynamoDB rows.
+     * the specified class, in the order of the index. Unlike {@link #queryKeys}, this method re-queries DynamoDB to
+     * get the full rows of the DynamoDB rows. For queries that can return many rows, prefer {@link #queryIterator}.
+     *
+     * @param clazz
+     *         expected result class
+     * @param indexKeyName
+     *         index key name to query on
+     * @param indexKeyValue
+     *         index key value to query on
+     * @param rangeKeyCondition
+     *         condition for query on range portion of key (optional)
+     * @param <T>
+     *         expected result type
+     * @return list of query results
+     */
+    public <T> List<T> query(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
+            @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
+        List<T> recordList = new ArrayList<>();
+        Iterator<T> recordIter = queryIterator(clazz, indexKeyName, indexKeyValue, rangeKeyCondition);
+        while (recordIter.hasNext()) {
+            recordList.add(recordIter.next());
+        }
+        return recordList;
+    }
+
+    /**
+     * <p>
+     * Queries the secondary index with the specified key name and value, and streams the full rows, in the order of
+     * the index. Like {@link #query}, but rows are loaded as the caller iterates, so memory use doesn't grow with the
+     * size of the result.
      * </p>
      * <p>
-     * Note that for some reason, this method seems to return results in an unspecified order (generally sorted forward
-     * on the range key or sorted backwards). It's unclear why this is the case, and it's not obvious how to fix it.
-     * See https://sagebionetworks.jira.com/browse/BRIDGE-1467
+     * In general, we only project keys onto global secondary indices, to save storage space, so the index only gives
+     * us "key objects". These are read from the index a page at a time, in chunks of 100, and each chunk is batch
+     * loaded from the table in the background while the next chunks are read. A few chunks are kept in flight ahead
+     * of the caller. Rows deleted between reading the index and loading the table are skipped.
      * </p>
      *
      * @param clazz
@@ -126,39 +243,103 @@ public class DynamoIndexHelper {
      *         condition for query on range portion of key (optional)
      * @param <T>
      *         expected result type
-     * @return list of query results
+     * @return iterator over query results
      */
-    @SuppressWarnings("unchecked")
-    public <T> List<T> query(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
+    public <T> Iterator<T> queryIterator(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
             @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
-        // In general, we only project keys onto global secondary indices, to save storage space. This means the
-        // objects we get back aren't full fledged objects. However, we can use them as "key objects" to re-query
-        // the DDB table to get full results.
-        //
-        // First step is to query the index to get these "key objects".
-        List<T> recordKeyList = queryKeys(clazz, indexKeyName, indexKeyValue, rangeKeyCondition);
+        if (tableKeyGetters.isEmpty()) {
+            throw new IllegalStateException("Table class must be set to load rows in index order");
+        }
+        final Iterator<Item> itemIter = queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition).iterator();
+        final Deque<Future<List<T>>> batchLoads = new ArrayDeque<>();
 
-        // Using the "key objects", batch query DDB to get full records. For some reason, batchLoad() returns a map.
-        // Flatten that map into a list.
-        //
-        // Also, for some reason, batchLoad() takes a List<Object>, not a List<T> or List<?>. Fortunately, Java type
+        return new AbstractIterator<T>() {
+            private Iterator<T> currentBatch = Collections.emptyIterator();
+
+            @Override
+            protected T computeNext() {
+                while (!currentBatch.hasNext()) {
+                    startBatchLoads();
+                    if (batchLoads.isEmpty()) {
+                        return endOfData();
+                    }
+                    currentBatch = getBatch(batchLoads.remove()).iterator();
+                }
+                return currentBatch.next();
+            }
+
+            // Read the index until enough batch loads are in flight, or the index runs out.
+            private void startBatchLoads() {
+                while (batchLoads.size() < MAX_BATCH_LOADS_IN_FLIGHT && itemIter.hasNext()) {
+                    List<T> recordKeyList = new ArrayList<>(BATCH_LOAD_SIZE);
+                    while (recordKeyList.size() < BATCH_LOAD_SIZE && itemIter.hasNext()) {
+                        recordKeyList.add(BridgeObjectMapper.get().convertValue(itemIter.next().asMap(), clazz));
+                    }
+                    batchLoads.add(batchLoadExecutor.submit(() -> batchLoad(clazz, recordKeyList)));
+                }
+            }
+        };
+    }
+
+    /**
+     * Batch loads full rows from the table using the given key objects, and returns them in the order of the keys.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> batchLoad(Class<? extends T> clazz, List<T> recordKeyList) {
+        // For some reason, batchLoad() takes a List<Object>, not a List<T> or List<?>. Fortunately, Java type
         // erasure means we can safely cast this to a List<Object>.
+        //
+        // Also, batchLoad() returns a map of table name to results, with results in no particular order.
         Map<String, List<Object>> resultMap = mapper.batchLoad((List<Object>) recordKeyList);
-        List<T> recordList = new ArrayList<>();
-        for (List<Object> resultList : resultMap.values()) {
-            for (Object oneResult : resultList) {
+        List<T> resultList = new ArrayList<>();
+        for (List<Object> oneResultList : resultMap.values()) {
+            for (Object oneResult : oneResultList) {
                 if (!clazz.isInstance(oneResult)) {
                     // This should never happen, but just in case.
                     throw new BridgeServiceException(String.format(
                             "DynamoDB returned objects of type %s instead of %s",
                             oneResult.getClass().getName(), clazz.getName()));
                 }
+                resultList.add((T) oneResult);
+            }
+        }
+        // Put results back in key order.
+        Map<List<Object>, T> resultsByKey = new HashMap<>();
+        for (T oneResult : resultList) {
+            resultsByKey.put(getTableKey(oneResult), oneResult);
+        }
+        List<T> orderedResultList = new ArrayList<>(resultList.size());
+        for (T oneRecordKey : recordKeyList) {
+            T oneResult = resultsByKey.get(getTableKey(oneRecordKey));
+            if (oneResult != null) {
+                orderedResultList.add(oneResult);
+            }
+        }
+        return orderedResultList;
+    }
 
-                recordList.add((T) oneResult);
+    private List<Object> getTableKey(Object record) {
+        List<Object> key = new ArrayList<>(tableKeyGetters.size());
+        for (Method oneGetter : tableKeyGetters) {
+            try {
+                key.add(oneGetter.invoke(record));
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new BridgeServiceException(ex);
             }
         }
+        return key;
+    }
 
-        return recordList;
+    private static <T> List<T> getBatch(Future<List<T>> batchLoad) {
+        try {
+            return batchLoad.get();
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfPossible(ex.getCause());
+            throw new BridgeServiceException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        }
     }
 
     /**
@@ -10,7 +10,9 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.Maps;
@@ -20,10 +22,12 @@ import com.google.common.collect.Maps;
 public class DynamoParticipantOptions { 
     
     private String healthCode; // hash
-    private String studyKey; // range
+    private String studyKey; // hash key of studyKey-index
     private Map<String,String> options = Maps.newHashMap();
     
     @DynamoDBAttribute
+    @DynamoDBIndexHashKey(attributeName="studyKey", globalSecondaryIndexName = "studyKey-index")
+    @DynamoProjection(projectionType=ProjectionType.ALL, globalSecondaryIndexName = "studyKey-index")
     public String getStudyKey() {
         return studyKey;
     }
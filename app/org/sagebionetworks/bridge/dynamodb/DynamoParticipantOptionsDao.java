@@ -4,7 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
 
 import javax.annotation.Resource;
@@ -18,15 +18,22 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
-import com.amazonaws.services.dynamodbv2.model.AttributeValue;
-import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
-import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 
 @Component
 public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
 
+    static final String STUDY_KEY_INDEX = "studyKey-index";
+    
+    /** Only keep the current page of a query in memory, so reading a large study doesn't accumulate every page. */
+    static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = new DynamoDBMapperConfig(
+            PaginationLoadingStrategy.ITERATION_ONLY);
+    
     private DynamoDBMapper mapper;
     
     @Resource(name = "participantOptionsDbMapper")
@@ -126,18 +133,33 @@ public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
         checkNotNull(studyIdentifier);
         
         AllParticipantOptionsLookup allLookup = new AllParticipantOptionsLookup();
-        
-        DynamoDBScanExpression scan = new DynamoDBScanExpression();
-        Condition condition = new Condition();
-        condition.withComparisonOperator(ComparisonOperator.EQ);
-        condition.withAttributeValueList(new AttributeValue().withS(studyIdentifier.getIdentifier()));
-        scan.addFilterCondition("studyKey", condition);
-        
-        List<DynamoParticipantOptions> mappings = mapper.scan(DynamoParticipantOptions.class, scan);
-        for (DynamoParticipantOptions mapping : mappings) {
-            allLookup.put(mapping.getHealthCode(), new ParticipantOptionsLookup(mapping.getOptions()));
+        Iterator<Map.Entry<String,ParticipantOptionsLookup>> iterator =
+                streamOptionsForAllParticipants(studyIdentifier);
+        while (iterator.hasNext()) {
+            Map.Entry<String,ParticipantOptionsLookup> entry = iterator.next();
+            allLookup.put(entry.getKey(), entry.getValue());
         }
         return allLookup;
     }
 
+    @Override
+    public Iterator<Map.Entry<String,ParticipantOptionsLookup>> streamOptionsForAllParticipants(
+            StudyIdentifier studyIdentifier) {
+        checkNotNull(studyIdentifier);
+        
+        // Query the study's partition of studyKey-index, rather than scanning the options of every study.
+        DynamoParticipantOptions hashKey = new DynamoParticipantOptions();
+        hashKey.setStudyKey(studyIdentifier.getIdentifier());
+        
+        DynamoDBQueryExpression<DynamoParticipantOptions> query = new DynamoDBQueryExpression<>();
+        query.withIndexName(STUDY_KEY_INDEX);
+        query.withHashKeyValues(hashKey);
+        query.withConsistentRead(false);
+        
+        Iterator<DynamoParticipantOptions> results = mapper.query(DynamoParticipantOptions.class, query,
+                ITERATION_ONLY_CONFIG).iterator();
+        return Iterators.transform(results, options -> Maps.immutableEntry(options.getHealthCode(),
+                new ParticipantOptionsLookup(options.getOptions())));
+    }
+
 }
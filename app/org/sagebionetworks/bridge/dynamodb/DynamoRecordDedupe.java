@@ -0,0 +1,69 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.StringUtils;
+
+/** DDB implementation of RecordDedupe. */
+@DynamoThroughput(readCapacity=5, writeCapacity=10)
+@DynamoDBTable(tableName = "RecordDedupe")
+public class DynamoRecordDedupe {
+    private String healthCode;
+    private String contentHash;
+    private String originalUploadId;
+
+    /** DDB hash key, which is the concatenation of the health code and the record content hash. */
+    @DynamoDBHashKey
+    public String getDdbKey() {
+        Preconditions.checkArgument(StringUtils.isNotBlank(healthCode), "healthCode must be specified");
+        Preconditions.checkArgument(StringUtils.isNotBlank(contentHash), "contentHash must be specified");
+        return healthCode + ":" + contentHash;
+    }
+
+    /** Sets the DDB key. Generally only called by the DDB mapper. */
+    public void setDdbKey(String ddbKey) {
+        Preconditions.checkArgument(StringUtils.isNotBlank(ddbKey), "ddbKey must be specified");
+
+        String[] parts = ddbKey.split(":", 2);
+        Preconditions.checkArgument(parts.length == 2, "ddbKey has wrong number of parts");
+        Preconditions.checkArgument(StringUtils.isNotBlank(parts[0]), "ddbKey must contain healthCode");
+        Preconditions.checkArgument(StringUtils.isNotBlank(parts[1]), "ddbKey must contain contentHash");
+
+        this.healthCode = parts[0];
+        this.contentHash = parts[1];
+    }
+
+    /** Health code of uploading user, part of the hash key. */
+    @DynamoDBIgnore
+    public String getHealthCode() {
+        return healthCode;
+    }
+
+    /** @see #getHealthCode */
+    public void setHealthCode(String healthCode) {
+        this.healthCode = healthCode;
+    }
+
+    /** Hash of the record's content, part of the hash key. */
+    @DynamoDBIgnore
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /** @see #getContentHash */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /** ID of the first upload with this content, used to key into the Uploads table. */
+    public String getOriginalUploadId() {
+        return originalUploadId;
+    }
+
+    /** @see #getOriginalUploadId */
+    public void setOriginalUploadId(String originalUploadId) {
+        this.originalUploadId = originalUploadId;
+    }
+}
@@ -0,0 +1,84 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import javax.annotation.Resource;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDeleteExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.google.common.collect.ImmutableMap;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.dao.RecordDedupeDao;
+
+/** DDB implementation of RecordDedupeDao. */
+@Component
+public class DynamoRecordDedupeDao implements RecordDedupeDao {
+    private static final DynamoDBSaveExpression DOES_NOT_EXIST_EXPRESSION = new DynamoDBSaveExpression()
+            .withExpected(ImmutableMap.of("ddbKey", new ExpectedAttributeValue().withExists(false)));
+
+    private DynamoDBMapper mapper;
+
+    /** RecordDedupe DDB mapper. */
+    @Resource(name = "recordDedupeDdbMapper")
+    public void setMapper(DynamoDBMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String registerRecord(String healthCode, String contentHash, String uploadId) {
+        DynamoRecordDedupe dedupe = new DynamoRecordDedupe();
+        dedupe.setHealthCode(healthCode);
+        dedupe.setContentHash(contentHash);
+        dedupe.setOriginalUploadId(uploadId);
+        try {
+            mapper.save(dedupe, DOES_NOT_EXIST_EXPRESSION);
+            return null;
+        } catch (ConditionalCheckFailedException ex) {
+            // Already registered. Only read the entry in this case, to find out which upload registered it.
+            DynamoRecordDedupe original = mapper.load(dedupe);
+            if (original == null || uploadId.equals(original.getOriginalUploadId())) {
+                return null;
+            }
+            return original.getOriginalUploadId();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean replaceRegistration(String healthCode, String contentHash, String previousUploadId,
+            String uploadId) {
+        DynamoRecordDedupe dedupe = new DynamoRecordDedupe();
+        dedupe.setHealthCode(healthCode);
+        dedupe.setContentHash(contentHash);
+        dedupe.setOriginalUploadId(uploadId);
+        try {
+            mapper.save(dedupe, new DynamoDBSaveExpression().withExpected(
+                    registeredToUploadExpectation(previousUploadId)));
+            return true;
+        } catch (ConditionalCheckFailedException ex) {
+            return false;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void unregisterRecord(String healthCode, String contentHash, String uploadId) {
+        DynamoRecordDedupe dedupe = new DynamoRecordDedupe();
+        dedupe.setHealthCode(healthCode);
+        dedupe.setContentHash(contentHash);
+        try {
+            mapper.delete(dedupe, new DynamoDBDeleteExpression().withExpected(
+                    registeredToUploadExpectation(uploadId)));
+        } catch (ConditionalCheckFailedException ex) {
+            // Registered to a different upload (or not at all), so it's not ours to remove.
+        }
+    }
+
+    private static ImmutableMap<String, ExpectedAttributeValue> registeredToUploadExpectation(String uploadId) {
+        return ImmutableMap.of("originalUploadId", new ExpectedAttributeValue(new AttributeValue(uploadId)));
+    }
+}
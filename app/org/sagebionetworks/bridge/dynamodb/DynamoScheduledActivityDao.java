@@ -8,10 +8,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.TotalCountCache;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -19,10 +21,13 @@ import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 
 import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
@@ -30,6 +35,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoScheduledActivityDao implements ScheduledActivityDao {
@@ -38,15 +44,25 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
 
     private static final String GUID = "guid";
 
+    // Query results are read once and not kept, so deleting a large partition doesn't hold it in memory
+    static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = new DynamoDBMapperConfig(
+            PaginationLoadingStrategy.ITERATION_ONLY);
     static final String PAGE_SIZE_ERROR = "pageSize must be from 1-"+API_MAXIMUM_PAGE_SIZE+" records";
     
     private DynamoDBMapper mapper;
+    private TotalCountCache totalCountCache;
     
     @Resource(name = "activityDdbMapper")
     public final void setDdbMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
     
+    /** The total number of a user's activities is cached, and invalidated when activities are saved or deleted. */
+    @Autowired
+    public final void setTotalCountCache(TotalCountCache totalCountCache) {
+        this.totalCountCache = totalCountCache;
+    }
+    
     @Override
     public PagedResourceList<? extends ScheduledActivity> getActivityHistory(String healthCode, String offsetKey, int pageSize){
         // Just set a sane upper limit on this.
@@ -58,7 +74,9 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         
         String nextPageOffsetKey = (page.getLastEvaluatedKey() != null) ? page.getLastEvaluatedKey().get(GUID).getS() : null;
         
-        int total = mapper.count(DynamoScheduledActivity.class, createCountQuery(healthCode));
+        int total = totalCountCache.getTotal(getTotalKey(healthCode), () -> {
+            return mapper.count(DynamoScheduledActivity.class, createCountQuery(healthCode));
+        });
         
         PagedResourceList<? extends ScheduledActivity> resourceList = new PagedResourceList<>(page.getResults(), null,
                 pageSize, total).withOffsetKey(nextPageOffsetKey);
@@ -143,6 +161,7 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         if (!activities.isEmpty()) {
             // Health code is (now) set during construction in the scheduler.
             List<FailedBatch> failures = mapper.batchSave(activities);
+            invalidateTotals(activities);
             BridgeUtils.ifFailuresThrowException(failures);
         }
     }
@@ -151,6 +170,7 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
     @Override
     public void updateActivities(String healthCode, List<ScheduledActivity> activities) {
         if (!activities.isEmpty()) {
+            // Activities are updated when they are started or finished, which doesn't change the total
             List<FailedBatch> failures = mapper.batchSave(activities);
             BridgeUtils.ifFailuresThrowException(failures);
         }
@@ -165,16 +185,26 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         DynamoDBQueryExpression<DynamoScheduledActivity> query = new DynamoDBQueryExpression<DynamoScheduledActivity>()
                 .withHashKeyValues(hashKey);
         
-        PaginatedQueryList<DynamoScheduledActivity> queryResults = mapper.query(DynamoScheduledActivity.class, query);
-        
-        // Confirmed that you have to transfer these activities to a list or the batchDelete does not work.
-        List<ScheduledActivity> activitiesToDelete = Lists.newArrayListWithCapacity(queryResults.size());
-        activitiesToDelete.addAll(queryResults);
-
-        if (!activitiesToDelete.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchDelete(activitiesToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
+        // Iterate over the results without keeping them, and delete them a page at a time, so a user with many
+        // activities doesn't have to be held in memory.
+        PaginatedQueryList<DynamoScheduledActivity> queryResults = mapper.query(DynamoScheduledActivity.class, query,
+                ITERATION_ONLY_CONFIG);
+        try {
+            BridgeUtils.batchDeleteInPages(mapper, queryResults.iterator());
+        } finally {
+            totalCountCache.invalidate(getTotalKey(healthCode));
         }
     }
     
+    private void invalidateTotals(List<ScheduledActivity> activities) {
+        Set<String> keys = Sets.newHashSet();
+        for (ScheduledActivity activity : activities) {
+            keys.add(getTotalKey(activity.getHealthCode()));
+        }
+        totalCountCache.invalidate(keys.toArray(new String[keys.size()]));
+    }
+    
+    private String getTotalKey(String healthCode) {
+        return "activities:" + healthCode;
+    }
 }
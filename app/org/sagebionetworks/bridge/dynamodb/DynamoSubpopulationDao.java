@@ -13,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.SubpopulationCriteriaIndex;
 import org.sagebionetworks.bridge.dao.CriteriaDao;
 import org.sagebionetworks.bridge.dao.StudyConsentDao;
 import org.sagebionetworks.bridge.dao.SubpopulationDao;
@@ -20,7 +21,6 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.Criteria;
 import org.sagebionetworks.bridge.models.CriteriaContext;
-import org.sagebionetworks.bridge.models.CriteriaUtils;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
@@ -37,6 +37,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
     private DynamoDBMapper mapper;
     private StudyConsentDao studyConsentDao;
     private CriteriaDao criteriaDao;
+    private SubpopulationCriteriaIndex subpopulationCriteriaIndex;
 
     @Resource(name = "subpopulationDdbMapper")
     final void setMapper(DynamoDBMapper mapper) {
@@ -53,6 +54,11 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
         this.criteriaDao = criteriaDao;
     }
     
+    @Autowired
+    final void setSubpopulationCriteriaIndex(SubpopulationCriteriaIndex subpopulationCriteriaIndex) {
+        this.subpopulationCriteriaIndex = subpopulationCriteriaIndex;
+    }
+    
     @Override
     public Subpopulation createSubpopulation(Subpopulation subpop) {
         checkNotNull(subpop);
@@ -68,6 +74,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
         subpop.setCriteria(criteria);
 
         mapper.save(subpop);
+        subpopulationCriteriaIndex.invalidateStudy(new StudyIdentifierImpl(subpop.getStudyIdentifier()));
         return subpop;
     }
 
@@ -93,6 +100,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
         subpop.setDefaultGroup(existing.isDefaultGroup()); 
         subpop.setDeleted(false);
         mapper.save(subpop);
+        subpopulationCriteriaIndex.invalidateStudy(studyId);
         return subpop;
     }
 
@@ -141,6 +149,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
         subpop.setCriteria(criteria);
         
         mapper.save(subpop);
+        subpopulationCriteriaIndex.invalidateStudy(studyId);
         return subpop;
     }
     
@@ -161,12 +170,11 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
 
     @Override
     public List<Subpopulation> getSubpopulationsForUser(CriteriaContext context) {
-        // criteria are loaded by this method
-        List<Subpopulation> subpops = getSubpopulations(context.getStudyIdentifier(), true, false);
-
-        return subpops.stream().filter(subpop -> {
-            return CriteriaUtils.matchCriteria(context, subpop.getCriteria());
-        }).collect(toImmutableList());
+        StudyIdentifier studyId = context.getStudyIdentifier();
+        
+        // Subpopulations and their criteria are only read from DynamoDB when the study's index is loaded
+        return subpopulationCriteriaIndex.getSubpopulations(studyId, () -> getSubpopulations(studyId, true, false))
+                .match(context);
     }
     
     @Override
@@ -186,6 +194,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
             subpop.setDeleted(true);
             mapper.save(subpop);
         }
+        subpopulationCriteriaIndex.invalidateStudy(studyId);
     }
 
     @Override
@@ -197,6 +206,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
                 criteriaDao.deleteCriteria(subpop.getCriteria().getKey());
             }
             List<FailedBatch> failures = mapper.batchDelete(subpops);
+            subpopulationCriteriaIndex.invalidateStudy(studyId);
             BridgeUtils.ifFailuresThrowException(failures);
         }
     }
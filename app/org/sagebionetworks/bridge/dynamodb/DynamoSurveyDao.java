@@ -33,13 +33,20 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 @Component
 public class DynamoSurveyDao implements SurveyDao {
 
+    private static final int PUBLISHED_ELEMENT_CACHE_MAX_SIZE = 1000;
+
     class QueryBuilder {
         
         private static final String PUBLISHED_PROPERTY = "published";
@@ -111,8 +118,13 @@ public class DynamoSurveyDao implements SurveyDao {
         Survey getOne(boolean exceptionIfEmpty) {
             List<Survey> surveys = getAll(exceptionIfEmpty);
             if (!surveys.isEmpty()) {
-                attachSurveyElements(surveys.get(0));
-                return surveys.get(0);
+                Survey survey = surveys.get(0);
+                if (survey.isPublished()) {
+                    survey.setElements(getPublishedSurveyElements(survey));
+                } else {
+                    survey.setElements(loadSurveyElements(survey.getGuid(), survey.getCreatedOn()));
+                }
+                return survey;
             }
             return null;
         }
@@ -169,24 +181,21 @@ public class DynamoSurveyDao implements SurveyDao {
             condition.withAttributeValueList(new AttributeValue().withS(equalTo));
             return condition;
         }
-        
-        private void attachSurveyElements(Survey survey) {
-            DynamoSurveyElement template = new DynamoSurveyElement();
-            template.setSurveyKeyComponents(survey.getGuid(), survey.getCreatedOn());
-            
-            DynamoDBQueryExpression<DynamoSurveyElement> query = new DynamoDBQueryExpression<DynamoSurveyElement>();
-            query.withHashKeyValues(template);
-            
-            QueryResultPage<DynamoSurveyElement> page = surveyElementMapper.queryPage(DynamoSurveyElement.class, query);
-
-            List<SurveyElement> elements = Lists.newArrayList();
-            for (DynamoSurveyElement element : page.getResults()) {
-                elements.add(SurveyElementFactory.fromDynamoEntity(element));
-            }
-            survey.setElements(elements);
-        }
     }
 
+    // The elements of a published survey version can't change, so they are loaded once per node and shared by
+    // every request for that version (scheduling, upload validation and the survey APIs all read surveys here).
+    // The survey record itself is still read on each call, as it can be deleted after it is published. Concurrent
+    // requests for a version that isn't cached wait for a single load, rather than each querying DynamoDB.
+    private final LoadingCache<String, List<SurveyElement>> publishedElementCache = CacheBuilder.newBuilder()
+            .maximumSize(PUBLISHED_ELEMENT_CACHE_MAX_SIZE).build(new CacheLoader<String, List<SurveyElement>>() {
+                @Override
+                public List<SurveyElement> load(String key) {
+                    int separator = key.lastIndexOf(':');
+                    return ImmutableList.copyOf(loadSurveyElements(key.substring(0, separator),
+                            Long.parseLong(key.substring(separator + 1))));
+                }
+            });
     private DynamoDBMapper surveyMapper;
     private DynamoDBMapper surveyElementMapper;
     private UploadSchemaDao uploadSchemaDao;
@@ -306,6 +315,7 @@ public class DynamoSurveyDao implements SurveyDao {
         Survey existing = getSurvey(keys);
         deleteAllElements(existing.getGuid(), existing.getCreatedOn());
         surveyMapper.delete(existing);
+        publishedElementCache.invalidate(getElementCacheKey(existing.getGuid(), existing.getCreatedOn()));
         
         // Delete the schemas as well, or they accumulate.
         try {
@@ -375,6 +385,38 @@ public class DynamoSurveyDao implements SurveyDao {
         return ImmutableList.copyOf(map.values());
     }
     
+    /**
+     * Elements of a published survey, from the cache. The list and its elements are shared and must not be changed.
+     */
+    private List<SurveyElement> getPublishedSurveyElements(Survey survey) {
+        try {
+            return publishedElementCache.getUnchecked(getElementCacheKey(survey.getGuid(), survey.getCreatedOn()));
+        } catch(UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new BridgeServiceException(e.getCause());
+        }
+    }
+    
+    private List<SurveyElement> loadSurveyElements(String surveyGuid, long createdOn) {
+        DynamoSurveyElement template = new DynamoSurveyElement();
+        template.setSurveyKeyComponents(surveyGuid, createdOn);
+        
+        DynamoDBQueryExpression<DynamoSurveyElement> query = new DynamoDBQueryExpression<DynamoSurveyElement>();
+        query.withHashKeyValues(template);
+        
+        QueryResultPage<DynamoSurveyElement> page = surveyElementMapper.queryPage(DynamoSurveyElement.class, query);
+
+        List<SurveyElement> elements = Lists.newArrayList();
+        for (DynamoSurveyElement element : page.getResults()) {
+            elements.add(SurveyElementFactory.fromDynamoEntity(element));
+        }
+        return elements;
+    }
+    
+    private static String getElementCacheKey(String surveyGuid, long createdOn) {
+        return surveyGuid + ":" + createdOn;
+    }
+    
     private Survey saveSurvey(Survey survey) {
         deleteAllElements(survey.getGuid(), survey.getCreatedOn());
         
@@ -7,6 +7,7 @@ import static org.sagebionetworks.bridge.dynamodb.DynamoExternalIdDao.PAGE_SIZE_
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
@@ -14,7 +15,6 @@ import javax.annotation.Nullable;
 import javax.annotation.Resource;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
@@ -230,13 +230,9 @@ public class DynamoUploadDao implements UploadDao {
     
     @Override
     public void deleteUploadsForHealthCode(@Nonnull String healthCode) {
-        List<? extends Upload> uploadsToDelete = healthCodeRequestedOnIndex.queryKeys(
+        Iterator<DynamoUpload2> uploadsToDelete = healthCodeRequestedOnIndex.queryKeysIterator(
                 DynamoUpload2.class, "healthCode", healthCode, null);
-        
-        if (!uploadsToDelete.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchDelete(uploadsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        BridgeUtils.batchDeleteInPages(mapper, uploadsToDelete);
     }
 }
 
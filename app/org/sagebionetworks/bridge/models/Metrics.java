@@ -9,20 +9,47 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
- * Request-scoped metrics.
+ * Request-scoped metrics. The metrics of the request being handled are bound to the handling thread, so code below
+ * the controllers (such as DAOs and AWS clients) can count the calls it makes to other services.
  */
 public class Metrics {
 
+    /** Call counts of DynamoDB requests. */
+    public static final String DYNAMODB = "ddb";
+    /** Call counts of Redis operations. */
+    public static final String REDIS = "redis";
+    /** Call counts of S3 requests. */
+    public static final String S3 = "s3";
+
     /** The version of the metrics schema. */
     private static final int VERSION = 1;
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<>();
+
     private final ObjectNode json;
 
-    public static String getCacheKey(String requestId) {
-        checkArgument(isNotBlank(requestId), "Request ID cannot be blank.");
-        return requestId + ":" + Metrics.class.getSimpleName();
+    /** The metrics of the request being handled on this thread, or null if there isn't one. */
+    public static Metrics getCurrent() {
+        return CURRENT.get();
+    }
+
+    /** Binds the metrics to this thread, or unbinds this thread's metrics if the metrics are null. */
+    public static void setCurrent(Metrics metrics) {
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
+    }
+
+    /** Counts a call to the given service against the request being handled on this thread, if there is one. */
+    public static void recordCurrentCall(String service) {
+        Metrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.recordCall(service);
+        }
     }
 
     public Metrics(final String requestId) {
@@ -32,10 +59,6 @@ public class Metrics {
         setRequestId(requestId);
     }
 
-    public String getCacheKey() {
-        return Metrics.getCacheKey(json.get("request_id").asText());
-    }
-
     /** The JSON node backing this metrics object. This is used primarily for testing. */
     public ObjectNode getJson() {
         return json;
@@ -110,6 +133,18 @@ public class Metrics {
         put("sharing_option", sharingOption);
     }
 
+    /** Counts a call made to another service, such as DynamoDB, while handling the request. */
+    public void recordCall(String service) {
+        checkArgument(isNotBlank(service), "Service cannot be blank.");
+        ObjectNode calls = json.with("calls");
+        calls.put(service, calls.path(service).asInt() + 1);
+    }
+
+    /** The number of calls made to the given service while handling the request. */
+    public int getCallCount(String service) {
+        return json.path("calls").path(service).asInt();
+    }
+
     private void put(final String field, final String value) {
         if (isNotBlank(value)) {
             json.put(field, value);
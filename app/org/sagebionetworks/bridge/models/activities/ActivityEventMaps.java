@@ -0,0 +1,55 @@
+package org.sagebionetworks.bridge.models.activities;
+
+import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.ENROLLMENT;
+import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TWO_MONTHS_BEFORE_ENROLLMENT;
+import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TWO_WEEKS_BEFORE_ENROLLMENT;
+
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Builds the map of event timestamps that activities are scheduled against from a user's stored events, whether
+ * they were read from DynamoDB or from the cache.
+ */
+public final class ActivityEventMaps {
+
+    private static final String ENROLLMENT_EVENT_ID = ENROLLMENT.name().toLowerCase();
+    private static final String ANSWERED_EVENT_POSTFIX = ":"+ActivityEventType.ANSWERED.name().toLowerCase();
+    private static final String TWO_WEEKS = TWO_WEEKS_BEFORE_ENROLLMENT.name().toLowerCase();
+    private static final String TWO_MONTHS = TWO_MONTHS_BEFORE_ENROLLMENT.name().toLowerCase();
+
+    private ActivityEventMaps() {
+    }
+
+    /**
+     * Get a map of events, where the string key is an event identifier, and the value is the timestamp of the
+     * event in UTC. This map will include calculated events like "two_weeks_before_enrollment".
+     */
+    public static Map<String, DateTime> fromEvents(Iterable<? extends ActivityEvent> events) {
+        ImmutableMap.Builder<String,DateTime> builder = ImmutableMap.<String,DateTime>builder();
+        for (ActivityEvent event : events) {
+            DateTime timestamp = new DateTime(event.getTimestamp(), DateTimeZone.UTC);
+            builder.put(getEventMapKey(event), timestamp);
+            if (ENROLLMENT_EVENT_ID.equals(event.getEventId())) {
+                builder.put(TWO_WEEKS, timestamp.minusWeeks(2));
+                builder.put(TWO_MONTHS, timestamp.minusMonths(2));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Answer events do schedule against a specific answer, which is added to the key in the
+     * map only. A change in the value is continued to be a change to the same event.
+     */
+    private static String getEventMapKey(ActivityEvent event) {
+        if (event.getEventId().endsWith(ANSWERED_EVENT_POSTFIX)) {
+            return event.getEventId()+"="+event.getAnswerValue();
+        }
+        return event.getEventId();
+    }
+}
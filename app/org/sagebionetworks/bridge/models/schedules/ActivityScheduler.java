@@ -5,16 +5,24 @@ import static org.sagebionetworks.bridge.models.schedules.ScheduleType.ONCE;
 import java.util.List;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
+import org.joda.time.Period;
+
+import org.sagebionetworks.bridge.models.schedules.CompiledSchedule.CompiledActivity;
 
 public abstract class ActivityScheduler {
     
     protected final Schedule schedule;
+    protected final CompiledSchedule compiledSchedule;
+    private ScheduleContext localNowContext;
+    private LocalDateTime localNow;
     
     ActivityScheduler(Schedule schedule) {
         this.schedule = schedule;
+        this.compiledSchedule = new CompiledSchedule(schedule);
     }
     
     public abstract List<ScheduledActivity> getScheduledActivities(SchedulePlan plan, ScheduleContext context);
@@ -24,11 +32,7 @@ public abstract class ActivityScheduler {
             return null;
         }
         // If no event is specified, it's enrollment by default.
-        String eventIdString = schedule.getEventId();
-        if (eventIdString == null) {
-            eventIdString = "enrollment";
-        }
-        DateTime eventTime = getFirstEventDateTime(context, eventIdString);
+        DateTime eventTime = getFirstEventDateTime(context, compiledSchedule.getEventIds());
 
         // An event was specified, but it hasn't happened yet.. So no activities are generated.
         if (eventTime == null) {
@@ -43,12 +47,14 @@ public abstract class ActivityScheduler {
     protected void addScheduledActivityForAllTimes(List<ScheduledActivity> scheduledActivities, SchedulePlan plan,
             ScheduleContext context, DateTime dateTime) {
 
-        if (schedule.getTimes().isEmpty()) {
+        List<LocalTime> times = compiledSchedule.getTimes();
+        if (times.isEmpty()) {
             DateTime localDateTime = dateTime.withZone(context.getInitialTimeZone());
             addScheduledActivityAtTime(scheduledActivities, plan, context, localDateTime.toLocalDate(), localDateTime.toLocalTime());
         } else {
-            for (LocalTime localTime : schedule.getTimes()) {
-                addScheduledActivityAtTime(scheduledActivities, plan, context, dateTime.toLocalDate(), localTime);
+            LocalDate localDate = dateTime.toLocalDate();
+            for (int i=0; i < times.size(); i++) {
+                addScheduledActivityAtTime(scheduledActivities, plan, context, localDate, times.get(i));
             }
         }
     }
@@ -56,27 +62,37 @@ public abstract class ActivityScheduler {
     protected void addScheduledActivityAtTime(List<ScheduledActivity> scheduledActivities, SchedulePlan plan,
             ScheduleContext context, LocalDate localDate, LocalTime localTime) {
         
-        DateTime localDateTime = localDate.toDateTime(localTime, context.getInitialTimeZone());
-        if (isInWindow(localDateTime)) {
-            // As long at the activities are not already expired, add them.
-            LocalDateTime expiresOn = getExpiresOn(localDate, localTime);
-            if (expiresOn == null || expiresOn.isAfter(context.getNow().toLocalDateTime())) {
-                for (Activity activity : schedule.getActivities()) {
-                    ScheduledActivity schActivity = ScheduledActivity.create();
-                    schActivity.setSchedulePlanGuid(plan.getGuid());
-                    // Use the time zone of the request, not the initial time zone that is used for event dates
-                    schActivity.setTimeZone(context.getEndsOn().getZone());
-                    schActivity.setHealthCode(context.getCriteriaContext().getHealthCode());
-                    schActivity.setActivity(activity);
-                    schActivity.setLocalScheduledOn(localDate.toLocalDateTime(localTime));
-                    schActivity.setGuid(activity.getGuid() + ":" + localDate.toLocalDateTime(localTime));
-                    schActivity.setPersistent(activity.isPersistentlyRescheduledBy(schedule));
-                    if (expiresOn != null) {
-                        schActivity.setLocalExpiresOn(expiresOn);
-                    }
-                    scheduledActivities.add(schActivity);
-                }
+        // Only schedules with a startsOn or endsOn time need the scheduled time as a DateTime
+        if (compiledSchedule.hasWindow() && !isInWindow(localDate.toDateTime(localTime, context.getInitialTimeZone()))) {
+            return;
+        }
+        // As long at the activities are not already expired, add them.
+        LocalDateTime localScheduledOn = localDate.toLocalDateTime(localTime);
+        LocalDateTime expiresOn = getExpiresOn(localScheduledOn);
+        if (expiresOn != null && !expiresOn.isAfter(getLocalNow(context))) {
+            return;
+        }
+        // These are the same for every activity scheduled at this time
+        String guidSuffix = localScheduledOn.toString();
+        String healthCode = context.getCriteriaContext().getHealthCode();
+        // Use the time zone of the request, not the initial time zone that is used for event dates
+        DateTimeZone timeZone = context.getEndsOn().getZone();
+        
+        List<CompiledActivity> activities = compiledSchedule.getActivities();
+        for (int i=0; i < activities.size(); i++) {
+            CompiledActivity activity = activities.get(i);
+            ScheduledActivity schActivity = ScheduledActivity.create();
+            schActivity.setSchedulePlanGuid(plan.getGuid());
+            schActivity.setTimeZone(timeZone);
+            schActivity.setHealthCode(healthCode);
+            schActivity.setActivity(activity.getActivity());
+            schActivity.setLocalScheduledOn(localScheduledOn);
+            schActivity.setGuid(activity.getGuidPrefix().concat(guidSuffix));
+            schActivity.setPersistent(activity.isPersistent());
+            if (expiresOn != null) {
+                schActivity.setLocalExpiresOn(expiresOn);
             }
+            scheduledActivities.add(schActivity);
         }
     }
     
@@ -101,25 +117,28 @@ public abstract class ActivityScheduler {
         return (endsOn == null || scheduledTime.isEqual(endsOn) || scheduledTime.isBefore(endsOn));
     }
     
-    private LocalDateTime getExpiresOn(LocalDate localDate, LocalTime localTime) {
-        if (schedule.getExpires() == null) {
-            return null;
+    private LocalDateTime getExpiresOn(LocalDateTime localScheduledOn) {
+        Period expires = compiledSchedule.getExpires();
+        return (expires == null) ? null : localScheduledOn.plus(expires);
+    }
+    
+    // Now doesn't change while a scheduler is scheduling for a context, so it's only converted once.
+    private LocalDateTime getLocalNow(ScheduleContext context) {
+        if (context != localNowContext) {
+            localNow = context.getNow().toLocalDateTime();
+            localNowContext = context;
         }
-        return localDate.toLocalDateTime(localTime).plus(schedule.getExpires());
+        return localNow;
     }
 
-    protected DateTime getFirstEventDateTime(ScheduleContext context, String eventIdsString) {
-        DateTime eventDateTime = null;
-        if (eventIdsString != null) {
-            String[] eventIds = eventIdsString.trim().split("\\s*,\\s*");
-            for (String thisEventId : eventIds) {
-                if (context.getEvent(thisEventId) != null) {
-                    eventDateTime = context.getEvent(thisEventId);
-                    break;
-                }
+    protected DateTime getFirstEventDateTime(ScheduleContext context, List<String> eventIds) {
+        for (int i=0; i < eventIds.size(); i++) {
+            DateTime eventDateTime = context.getEvent(eventIds.get(i));
+            if (eventDateTime != null) {
+                return eventDateTime;
             }
         }
-        return eventDateTime;
+        return null;
     }
     
     /**
@@ -0,0 +1,101 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import java.util.List;
+
+import org.joda.time.LocalTime;
+import org.joda.time.Period;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The parts of a schedule that are consulted for every activity a scheduler creates, prepared once when the
+ * scheduler is created rather than for every day, time and activity that is scheduled. Later changes to the
+ * schedule are not reflected, so a scheduler should be obtained from the schedule for each use (as
+ * {@link Schedule#getScheduler()} does).
+ */
+final class CompiledSchedule {
+
+    private static final String ENROLLMENT = "enrollment";
+
+    /**
+     * An activity of the schedule, with the values that are copied into each of its scheduled activities.
+     */
+    static final class CompiledActivity {
+        private final Activity activity;
+        private final String guidPrefix;
+        private final boolean persistent;
+        private final List<String> persistentEventIds;
+
+        private CompiledActivity(Schedule schedule, Activity activity, List<String> eventIds) {
+            this.activity = activity;
+            this.guidPrefix = activity.getGuid() + ":";
+            this.persistent = activity.isPersistentlyRescheduledBy(schedule);
+            // A persistent schedule also reschedules an activity whenever that activity is finished
+            this.persistentEventIds = new ImmutableList.Builder<String>()
+                    .add("activity:" + activity.getGuid() + ":finished").addAll(eventIds).build();
+        }
+        Activity getActivity() {
+            return activity;
+        }
+        /** The scheduled activity GUID is this prefix followed by the local date and time it is scheduled for. */
+        String getGuidPrefix() {
+            return guidPrefix;
+        }
+        boolean isPersistent() {
+            return persistent;
+        }
+        /** The events a persistent schedule looks for, in order, to schedule this activity. */
+        List<String> getPersistentEventIds() {
+            return persistentEventIds;
+        }
+    }
+
+    private final List<String> eventIds;
+    private final List<LocalTime> times;
+    private final Period expires;
+    private final boolean hasWindow;
+    private final List<CompiledActivity> activities;
+
+    CompiledSchedule(Schedule schedule) {
+        this.eventIds = parseEventIds(schedule.getEventId());
+        this.times = ImmutableList.copyOf(schedule.getTimes());
+        this.expires = schedule.getExpires();
+        this.hasWindow = (schedule.getStartsOn() != null || schedule.getEndsOn() != null);
+
+        ImmutableList.Builder<CompiledActivity> builder = new ImmutableList.Builder<>();
+        for (Activity activity : schedule.getActivities()) {
+            builder.add(new CompiledActivity(schedule, activity, eventIds));
+        }
+        this.activities = builder.build();
+    }
+
+    /** The events that start the schedule, in order of preference. If no event is specified, it's enrollment. */
+    List<String> getEventIds() {
+        return eventIds;
+    }
+
+    /** The times of day, in the order they were given (the validator requires them to be in chronological order). */
+    List<LocalTime> getTimes() {
+        return times;
+    }
+
+    Period getExpires() {
+        return expires;
+    }
+
+    /** True if the schedule has a startsOn or endsOn time that limits when activities can be scheduled. */
+    boolean hasWindow() {
+        return hasWindow;
+    }
+
+    List<CompiledActivity> getActivities() {
+        return activities;
+    }
+
+    private static List<String> parseEventIds(String eventIdsString) {
+        if (eventIdsString == null) {
+            return ImmutableList.of(ENROLLMENT);
+        }
+        return ImmutableList.copyOf(eventIdsString.trim().split("\\s*,\\s*"));
+    }
+}
@@ -5,6 +5,8 @@ import java.util.List;
 import org.joda.time.DateTime;
 import org.joda.time.LocalTime;
 
+import org.sagebionetworks.bridge.models.schedules.CompiledSchedule.CompiledActivity;
+
 import com.google.common.collect.Lists;
 
 public class PersistentActivityScheduler extends ActivityScheduler {
@@ -16,19 +18,14 @@ public class PersistentActivityScheduler extends ActivityScheduler {
     @Override
     public List<ScheduledActivity> getScheduledActivities(SchedulePlan plan, ScheduleContext context) {
         List<ScheduledActivity> scheduledActivities = Lists.newArrayList();
-        for (Activity activity : schedule.getActivities()) {
+        for (CompiledActivity activity : compiledSchedule.getActivities()) {
 
             // A persistent schedule can start on any event, typically enrollment, but it also reschedules an 
             // activity whenever that activity is finished. This is implicit and does not need to be configured 
             // when creating a schedule. It's clearer if you don't include this "finished" event, though it 
-            // won't break anything if a user does include it in the eventId.
-            
-            // similar to a safety check in ActivityScheduler.getScheduledTimeBasedOnEvent
-            if (schedule.getEventId() == null) {
-                schedule.setEventId("enrollment");
-            }
-            String finishedId = "activity:"+activity.getGuid()+":finished";
-            DateTime scheduledTime = getFirstEventDateTime(context, finishedId+"," + schedule.getEventId());
+            // won't break anything if a user does include it in the eventId. The compiled schedule puts the 
+            // "finished" event ahead of the schedule's events (which default to enrollment).
+            DateTime scheduledTime = getFirstEventDateTime(context, activity.getPersistentEventIds());
             
             if (scheduledTime != null) {
                 addScheduledActivityAtTime(scheduledActivities, plan, context, scheduledTime.toLocalDate(), LocalTime.MIDNIGHT);            
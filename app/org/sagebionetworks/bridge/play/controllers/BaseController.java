@@ -35,7 +35,6 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
-import org.sagebionetworks.bridge.play.interceptors.RequestUtils;
 import org.sagebionetworks.bridge.services.AuthenticationService;
 import org.sagebionetworks.bridge.services.ParticipantOptionsService;
 import org.sagebionetworks.bridge.services.StudyService;
@@ -45,7 +44,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import play.cache.Cache;
 import play.libs.Json;
 import play.mvc.Controller;
 import play.mvc.Http;
@@ -379,12 +377,10 @@ public abstract class BaseController extends Controller {
     }
     
     /**
-     * Retrieves the metrics object from the cache. Can be null if the metrics is not in the cache.
+     * Retrieves the metrics of the request being handled. Can be null if the request isn't being measured.
      */
     Metrics getMetrics() {
-        final String requestId = RequestUtils.getRequestId(request());
-        final String cacheKey = Metrics.getCacheKey(requestId);
-        return (Metrics)Cache.get(cacheKey);
+        return Metrics.getCurrent();
     }
 
     /** Writes the user's stormpath token, internal session ID, and study ID to the metrics. */
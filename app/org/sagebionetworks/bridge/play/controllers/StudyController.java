@@ -156,9 +156,10 @@ public class StudyController extends BaseController {
 
         // then create project and team and grant admin permission to current user and exporter
         List<String> userIds = Arrays.asList(parseJson(request(), String[].class));
-        studyService.createSynapseProjectTeam(ImmutableList.copyOf(userIds), study);
+        Study updatedStudy = studyService.createSynapseProjectTeam(ImmutableList.copyOf(userIds), study);
 
-        return createdResult(new SynapseProjectIdTeamIdHolder(study.getSynapseProjectId(), study.getSynapseDataAccessTeamId()));
+        return createdResult(new SynapseProjectIdTeamIdHolder(updatedStudy.getSynapseProjectId(),
+                updatedStudy.getSynapseDataAccessTeamId()));
     }
 
     // since only admin can delete study, no need to check if return results should contain deactivated ones
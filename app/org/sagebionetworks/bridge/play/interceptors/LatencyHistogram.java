@@ -0,0 +1,109 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * <p>
+ * Histogram of latencies in microseconds, precise enough to report percentiles. Like an HDR histogram, each power of
+ * two is split into the same number of linear sub-buckets, so every recorded value is kept to within about 3% no
+ * matter how large it is, in a fixed amount of memory. Values of 2^31 microseconds (about 35 minutes) or more are
+ * recorded as the largest bucket.
+ * </p>
+ * <p>
+ * This class isn't thread-safe. Callers synchronize on it.
+ * </p>
+ */
+final class LatencyHistogram {
+
+    static final double[] REPORTED_PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 30;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    // Values below SUB_BUCKET_COUNT each have their own bucket. Each power of two above that has SUB_BUCKET_COUNT.
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long totalMicros;
+    private long maxMicros;
+
+    void record(long micros) {
+        long value = Math.min(Math.max(micros, 0L), MAX_VALUE);
+        counts[bucketIndex(value)]++;
+        count++;
+        totalMicros += value;
+        maxMicros = Math.max(maxMicros, value);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * The value at the given percentile (0 to 100). This is the upper bound of the bucket the percentile falls in,
+     * but never more than the largest recorded value. Returns 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /** Returns a JSON report of the count, average, max and percentiles, and resets the histogram. */
+    ObjectNode reportAndReset() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put("count", count);
+        node.put("avgMicros", count > 0 ? totalMicros / count : 0L);
+        node.put("maxMicros", maxMicros);
+        for (double onePercentile : REPORTED_PERCENTILES) {
+            node.put("p" + formatPercentile(onePercentile) + "Micros", getValueAtPercentile(onePercentile));
+        }
+        Arrays.fill(counts, 0L);
+        count = 0;
+        totalMicros = 0;
+        maxMicros = 0;
+        return node;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    // 50.0 -> "50", 99.9 -> "99_9"
+    private static String formatPercentile(double percentile) {
+        if (percentile == Math.rint(percentile)) {
+            return String.valueOf((long) percentile);
+        }
+        return String.valueOf(percentile).replace('.', '_');
+    }
+}
@@ -1,17 +1,20 @@
 package org.sagebionetworks.bridge.play.interceptors;
 
 import static org.apache.http.HttpHeaders.USER_AGENT;
-import static org.sagebionetworks.bridge.BridgeConstants.METRICS_EXPIRE_SECONDS;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.apache.http.HttpStatus;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import play.cache.Cache;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import play.mvc.Result;
@@ -21,18 +24,35 @@ public class MetricsInterceptor implements MethodInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(MetricsInterceptor.class);
 
+    private RequestMetricsRegistry requestMetricsRegistry;
+
+    /** Aggregates the metrics of all requests. This is set by Spring. */
+    @Autowired
+    final void setRequestMetricsRegistry(RequestMetricsRegistry requestMetricsRegistry) {
+        this.requestMetricsRegistry = requestMetricsRegistry;
+    }
+
     @Override
     public Object invoke(MethodInvocation method) throws Throwable {
         final Metrics metrics = initMetrics();
-        Cache.set(metrics.getCacheKey(), metrics, METRICS_EXPIRE_SECONDS);
+        // Bind the metrics to this thread for the rest of the request, so calls to other services are counted.
+        final Metrics previousMetrics = Metrics.getCurrent();
+        Metrics.setCurrent(metrics);
+        final long startNanos = System.nanoTime();
+        int status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
         try {
             final Result result = (Result)method.proceed();
-            metrics.setStatus(result.toScala().header().status());
+            status = result.toScala().header().status();
+            metrics.setStatus(status);
             return result;
         } finally {
-            Cache.remove(metrics.getCacheKey());
+            Metrics.setCurrent(previousMetrics);
             metrics.end();
-            logger.info(metrics.toJsonString());
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            requestMetricsRegistry.recordRequest(getRoute(method.getMethod()), status, latencyMicros, metrics);
+            if (logger.isDebugEnabled()) {
+                logger.debug(metrics.toJsonString());
+            }
         }
     }
 
@@ -46,4 +66,12 @@ public class MetricsInterceptor implements MethodInterceptor {
         metrics.setUserAgent(RequestUtils.header(request, USER_AGENT, null));
         return metrics;
     }
+
+    /**
+     * Requests are aggregated by the controller action that handled them, rather than by URI, since URIs contain
+     * IDs.
+     */
+    static String getRoute(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
 }
@@ -0,0 +1,119 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Aggregates request metrics in process: a latency histogram for each route (controller action) and response
+ * status, and the number of DynamoDB, Redis and S3 calls those requests made. Values accumulate between reports and
+ * are reset each time a report is taken, so each report covers the interval since the previous one. Once started,
+ * a report is logged every minute.
+ */
+public class RequestMetricsRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestMetricsRegistry.class);
+
+    private static final long METRICS_REPORT_INTERVAL_SECONDS = 60;
+    private static final List<String> SERVICES = ImmutableList.of(Metrics.DYNAMODB, Metrics.REDIS, Metrics.S3);
+
+    /** Latency histogram and service call counts of one route and status. */
+    private static final class RouteMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final long[] calls = new long[SERVICES.size()];
+
+        synchronized void record(long latencyMicros, Metrics metrics) {
+            latency.record(latencyMicros);
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] += metrics.getCallCount(SERVICES.get(i));
+            }
+        }
+
+        synchronized ObjectNode reportAndReset() {
+            long count = latency.getCount();
+            ObjectNode node = latency.reportAndReset();
+            ObjectNode callsNode = node.putObject("calls");
+            for (int i = 0; i < calls.length; i++) {
+                ObjectNode serviceNode = callsNode.putObject(SERVICES.get(i));
+                serviceNode.put("total", calls[i]);
+                serviceNode.put("perRequest", count > 0 ? (double) calls[i] / count : 0.0);
+                calls[i] = 0;
+            }
+            return node;
+        }
+    }
+
+    private final ConcurrentMap<String, RouteMetrics> routeMetrics = new ConcurrentHashMap<>();
+    private ScheduledExecutorService metricsReporter;
+
+    /** Start logging metrics. */
+    public void start() {
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("request-metrics").setDaemon(true).build());
+        metricsReporter.scheduleAtFixedRate(this::reportMetrics, METRICS_REPORT_INTERVAL_SECONDS,
+                METRICS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Stop logging metrics. */
+    public void shutdown() {
+        if (metricsReporter != null) {
+            metricsReporter.shutdownNow();
+        }
+    }
+
+    /**
+     * Records a finished request.
+     *
+     * @param route
+     *         the controller action that handled the request, such as "UploadController.upload"
+     * @param status
+     *         response status
+     * @param latencyMicros
+     *         how long the request took
+     * @param metrics
+     *         the request's metrics, for the calls it made to other services
+     */
+    public void recordRequest(String route, int status, long latencyMicros, Metrics metrics) {
+        checkNotNull(route);
+        checkNotNull(metrics);
+        routeMetrics.computeIfAbsent(route + " " + status, key -> new RouteMetrics()).record(latencyMicros, metrics);
+    }
+
+    /**
+     * Returns a JSON report of the requests recorded since the last report, keyed by route and status, and resets
+     * the metrics. Routes with no requests since the last report are left out.
+     */
+    public ObjectNode reportAndReset() {
+        ObjectNode report = BridgeObjectMapper.get().createObjectNode();
+        for (Map.Entry<String, RouteMetrics> oneRoute : routeMetrics.entrySet()) {
+            ObjectNode routeReport = oneRoute.getValue().reportAndReset();
+            if (routeReport.get("count").asLong() > 0) {
+                report.set(oneRoute.getKey(), routeReport);
+            }
+        }
+        return report;
+    }
+
+    private void reportMetrics() {
+        try {
+            LOG.info("Request metrics: " + reportAndReset());
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel future reports.
+            LOG.error("Error reporting request metrics: " + ex.getMessage(), ex);
+        }
+    }
+}
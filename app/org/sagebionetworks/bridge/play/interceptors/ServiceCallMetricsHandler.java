@@ -0,0 +1,36 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Counts the calls an AWS client makes against the request being handled on the calling thread. Add one to each
+ * client whose calls should show up in the request metrics.
+ */
+public class ServiceCallMetricsHandler extends RequestHandler2 {
+
+    private final String service;
+
+    /** @param service the name the calls are counted under, such as {@link Metrics#DYNAMODB} */
+    public ServiceCallMetricsHandler(String service) {
+        this.service = checkNotNull(service);
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        Metrics.recordCurrentCall(service);
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+    }
+}
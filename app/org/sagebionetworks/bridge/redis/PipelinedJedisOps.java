@@ -0,0 +1,80 @@
+package org.sagebionetworks.bridge.redis;
+
+import java.util.Map;
+
+/**
+ * Redis operations for the request path, where each call is a single round trip to Redis no matter how many
+ * commands it issues. Commands that don't depend on each other are pipelined; commands that do (such as setting a
+ * key to expire when another key expires) run as a Lua script.
+ */
+public interface PipelinedJedisOps {
+
+    /** The value of a key and its remaining time to live, read together. */
+    final class ValueWithTtl {
+        private final String value;
+        private final long ttl;
+
+        public ValueWithTtl(String value, long ttl) {
+            this.value = value;
+            this.ttl = ttl;
+        }
+        /** The value, or null if the key does not exist. */
+        public String getValue() {
+            return value;
+        }
+        /** Seconds until the key expires, or a negative number if it does not exist or does not expire. */
+        public long getTtl() {
+            return ttl;
+        }
+    }
+
+    String get(String key);
+
+    /** GET and TTL for the key, in one round trip. */
+    ValueWithTtl getWithTtl(String key);
+
+    /** Returns true if the value was stored. */
+    boolean setex(String key, int expireInSeconds, String value);
+
+    /**
+     * Sets the key as {@link #setex} does, but only if the string at checkKey has the expected value (null meaning
+     * checkKey doesn't exist). The check and the write are atomic. Returns true if the value was stored.
+     */
+    boolean setexIfEquals(String key, int expireInSeconds, String value, String checkKey, String expectedValue);
+
+    /**
+     * Sets every key to its value, to expire when the ttlKey currently expires. If the ttlKey doesn't exist (or doesn't
+     * expire), the keys expire after defaultExpireInSeconds. The TTL is read and the keys are written atomically.
+     *
+     * @return the number of seconds until the keys expire
+     */
+    int setexWithRemainingTtl(String ttlKey, int defaultExpireInSeconds, Map<String, String> values);
+
+    /** HGETALL for the key. Returns an empty map if the key does not exist. */
+    Map<String, String> hgetAll(String key);
+
+    /**
+     * Replaces the hash at the key with the given fields, set to expire after expireInSeconds. The old hash is
+     * deleted, the fields written and the expiration set atomically.
+     */
+    void hmsetex(String key, int expireInSeconds, Map<String, String> fields);
+
+    /**
+     * Sets one field of the hash at the key, but only if the hash exists, so a partial hash is never created. The
+     * hash keeps its expiration. Returns true if the field was set.
+     */
+    boolean hsetIfExists(String key, String field, String value);
+
+    /**
+     * Replaces the hash at the key as {@link #hmsetex} does, but only if the string at checkKey has the expected value
+     * (null meaning checkKey doesn't exist). The check and the write are atomic. Returns true if the hash was written.
+     */
+    boolean hmsetexIfEquals(String key, int expireInSeconds, Map<String, String> fields, String checkKey,
+            String expectedValue);
+
+    /** Increments the number at the key and sets it to expire after expireInSeconds. Returns the new number. */
+    long incrWithExpire(String key, int expireInSeconds);
+
+    /** Deletes all the keys with a single DEL. Returns the number of keys that were deleted. */
+    long del(String... keys);
+}
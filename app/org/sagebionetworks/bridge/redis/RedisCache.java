@@ -21,10 +21,10 @@ public class RedisCache implements Cache {
     private static final String KEY_PATTERN = "%s:%s";
     private static final String LIST_KEY_PATTERN = "List:%s:%s";
 
-    private JedisOps jedisOps;
+    private PipelinedJedisOps jedisOps;
 
     @Autowired
-    public void setStringOps(JedisOps jedisOps) {
+    public void setStringOps(PipelinedJedisOps jedisOps) {
         this.jedisOps = jedisOps;
     }
 
@@ -89,9 +89,8 @@ public class RedisCache implements Cache {
     private <T> void putInternal(String internalKey, T value, int ttlSeconds) {
         try {
             String json = BridgeObjectMapper.get().writeValueAsString(value);
-            String result = jedisOps.setex(internalKey, ttlSeconds, json);
-            if (!"OK".equals(result)) {
-                logger.error(String.format("Error putting redis object for key %s, result code %s", internalKey, result));
+            if (!jedisOps.setex(internalKey, ttlSeconds, json)) {
+                logger.error(String.format("Error putting redis object for key %s", internalKey));
             }
         } catch (JsonProcessingException | RuntimeException ex) {
             logger.error(String.format("Error putting redis object for key %s", internalKey), ex);
@@ -0,0 +1,136 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheInvalidationBus;
+
+/**
+ * Cache invalidation bus over Redis pub/sub. All invalidations travel on a single Redis channel as messages of the
+ * form <code>{nodeId}:{cacheName}:{key}</code>. Every node subscribes on a dedicated daemon thread (subscribing
+ * blocks a Redis connection) and ignores the messages it published itself. If the subscription is lost, it is
+ * re-established and every listener is told to invalidate all entries, since messages may have been missed.
+ */
+public class RedisCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCacheInvalidationBus.class);
+
+    static final String CHANNEL = "cache-invalidation";
+    private static final long RETRY_DELAY_MILLIS = 5000L;
+
+    private final JedisPool jedisPool;
+    private final String nodeId = BridgeUtils.generateGuid();
+    private final ConcurrentMap<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+    private final JedisPubSub pubSub = new JedisPubSub() {
+        @Override
+        public void onMessage(String channel, String message) {
+            dispatch(message);
+        }
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            // Anything published while we were not subscribed has been missed
+            if (resubscribing) {
+                invalidateAll();
+            }
+        }
+    };
+    private volatile boolean running;
+    private volatile boolean resubscribing;
+
+    public RedisCacheInvalidationBus(JedisPool jedisPool) {
+        this.jedisPool = checkNotNull(jedisPool);
+    }
+
+    /** Start the subscriber thread. */
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::subscribeLoop, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop the subscriber thread. */
+    public void shutdown() {
+        running = false;
+        if (pubSub.isSubscribed()) {
+            pubSub.unsubscribe();
+        }
+    }
+
+    @Override
+    public void publish(String cacheName, String key) {
+        checkArgument(cacheName != null && !cacheName.contains(RedisKey.SEPARATOR));
+        checkNotNull(key);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(CHANNEL, nodeId + RedisKey.SEPARATOR + cacheName + RedisKey.SEPARATOR + key);
+        } catch (RuntimeException e) {
+            // Other nodes will serve a stale entry until it expires. Don't fail the write that triggered this.
+            LOG.error("Could not publish invalidation of '" + key + "' in cache " + cacheName, e);
+        }
+    }
+
+    @Override
+    public void subscribe(String cacheName, Listener listener) {
+        checkArgument(cacheName != null && !cacheName.contains(RedisKey.SEPARATOR));
+        checkNotNull(listener);
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    void dispatch(String message) {
+        String[] parts = message.split(RedisKey.SEPARATOR, 3);
+        if (parts.length != 3) {
+            LOG.warn("Ignoring malformed cache invalidation message: " + message);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        List<Listener> cacheListeners = listeners.get(parts[1]);
+        if (cacheListeners != null) {
+            for (Listener listener : cacheListeners) {
+                listener.invalidate(parts[2]);
+            }
+        }
+    }
+
+    void invalidateAll() {
+        for (List<Listener> cacheListeners : listeners.values()) {
+            for (Listener listener : cacheListeners) {
+                listener.invalidateAll();
+            }
+        }
+    }
+
+    private void subscribeLoop() {
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                // Blocks until unsubscribed or the connection fails
+                jedis.subscribe(pubSub, CHANNEL);
+            } catch (RuntimeException e) {
+                LOG.warn("Lost cache invalidation subscription, retrying in " + RETRY_DELAY_MILLIS + " ms", e);
+            }
+            resubscribing = true;
+            if (running) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
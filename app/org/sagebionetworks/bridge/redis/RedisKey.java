@@ -51,6 +51,18 @@ public interface RedisKey {
 
     RedisKey STUDY_EMAIL_STATUS = new SimpleKey("study-email-status");
     
+    /** Total number of records in a paged list. */
+    RedisKey TOTAL_COUNT = new SimpleKey("total-count");
+    
+    /** Changes each time a paged list's total changes, so a count that raced with the change is discarded. */
+    RedisKey TOTAL_COUNT_VERSION = new SimpleKey("total-count-version");
+    
+    /** A user's activity events, by event ID. */
+    RedisKey ACTIVITY_EVENTS = new SimpleKey("activity-events");
+    
+    /** Changes each time a user's activity events change, so a cache load that raced with the change is discarded. */
+    RedisKey ACTIVITY_EVENTS_VERSION = new SimpleKey("activity-events-version");
+    
     String SEPARATOR = ":";
 
     /**
@@ -0,0 +1,92 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Metrics for Redis calls made through {@link RedisPipelinedJedisOps}: how long callers wait to borrow a connection
+ * from the pool, and how long each operation takes once it has one. Values accumulate between reports and are reset
+ * each time a report is taken, so each report covers the interval since the previous one.
+ */
+public class RedisMetrics {
+
+    /** Upper bounds of the histogram buckets, in microseconds. Anything slower falls into a final, unbounded bucket. */
+    private static final long[] BUCKET_BOUNDS_MICROS = { 250, 500, 1000, 2000, 5000, 10000, 50000, 100000 };
+
+    /** Count, total, max and histogram of a latency, in microseconds. */
+    private static final class Latency {
+        private final long[] buckets = new long[BUCKET_BOUNDS_MICROS.length + 1];
+        private long count;
+        private long totalMicros;
+        private long maxMicros;
+
+        synchronized void record(long micros) {
+            count++;
+            totalMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+            int i = 0;
+            while (i < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[i]) {
+                i++;
+            }
+            buckets[i]++;
+        }
+
+        synchronized ObjectNode reportAndReset() {
+            ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+            node.put("count", count);
+            node.put("avgMicros", count > 0 ? totalMicros / count : 0L);
+            node.put("maxMicros", maxMicros);
+            ObjectNode histogram = node.putObject("histogramMicros");
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                histogram.put("le" + BUCKET_BOUNDS_MICROS[i], buckets[i]);
+            }
+            histogram.put("inf", buckets[BUCKET_BOUNDS_MICROS.length]);
+            count = 0;
+            totalMicros = 0;
+            maxMicros = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = 0;
+            }
+            return node;
+        }
+    }
+
+    private final Latency borrowWait = new Latency();
+    private final ConcurrentMap<String, Latency> commandLatencies = new ConcurrentHashMap<>();
+
+    /** Records the time spent waiting for a connection from the pool. */
+    public void recordBorrowWait(long micros) {
+        borrowWait.record(micros);
+    }
+
+    /** Records the time an operation took, from sending its commands to reading all of their replies. */
+    public void recordCommandLatency(String command, long micros) {
+        checkNotNull(command);
+        commandLatencies.computeIfAbsent(command, name -> new Latency()).record(micros);
+    }
+
+    /**
+     * Returns a JSON report of the metrics recorded since the last report, along with the current state of the
+     * connection pool, and resets the metrics.
+     */
+    public ObjectNode reportAndReset(int numActive, int numIdle, int numWaiters) {
+        ObjectNode report = BridgeObjectMapper.get().createObjectNode();
+        ObjectNode pool = report.putObject("pool");
+        pool.put("active", numActive);
+        pool.put("idle", numIdle);
+        pool.put("waiters", numWaiters);
+        report.set("borrowWait", borrowWait.reportAndReset());
+        ObjectNode commands = report.putObject("commands");
+        for (Map.Entry<String, Latency> oneCommand : commandLatencies.entrySet()) {
+            commands.set(oneCommand.getKey(), oneCommand.getValue().reportAndReset());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,256 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Pipelined Redis operations over a Jedis pool. Every operation borrows one connection and makes one round trip.
+ * The time spent waiting for a connection and the time each operation takes are recorded in {@link RedisMetrics},
+ * which is logged once a minute along with the pool's active, idle and waiting counts.
+ */
+public class RedisPipelinedJedisOps implements PipelinedJedisOps {
+    private static final Logger LOG = LoggerFactory.getLogger(RedisPipelinedJedisOps.class);
+
+    private static final long METRICS_REPORT_INTERVAL_SECONDS = 60;
+
+    // KEYS: ttlKey, then the keys to set. ARGV: defaultExpireInSeconds, then a value for each key to set.
+    private static final String SETEX_WITH_REMAINING_TTL_SCRIPT =
+            "local ttl = redis.call('TTL', KEYS[1]) " +
+            "if ttl <= 0 then ttl = tonumber(ARGV[1]) end " +
+            "for i = 2, #KEYS do redis.call('SETEX', KEYS[i], ttl, ARGV[i]) end " +
+            "return ttl";
+
+    // KEYS: the hash. ARGV: expireInSeconds, then alternating fields and values.
+    private static final String HMSETEX_SCRIPT =
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HMSET', KEYS[1], unpack(ARGV, 2)) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1";
+
+    // KEYS: the hash. ARGV: field, value.
+    private static final String HSET_IF_EXISTS_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+            "return 1";
+
+    // KEYS: the key, then the key to check. ARGV: expireInSeconds, the value, then the expected value ('' if the key
+    // to check shouldn't exist).
+    private static final String SETEX_IF_EQUALS_SCRIPT =
+            "local actual = redis.call('GET', KEYS[2]) " +
+            "if not actual then actual = '' end " +
+            "if actual ~= ARGV[3] then return 0 end " +
+            "redis.call('SETEX', KEYS[1], ARGV[1], ARGV[2]) " +
+            "return 1";
+
+    // KEYS: the hash, then the key to check. ARGV: expireInSeconds, the expected value ('' if the key to check
+    // shouldn't exist), then alternating fields and values.
+    private static final String HMSETEX_IF_EQUALS_SCRIPT =
+            "local actual = redis.call('GET', KEYS[2]) " +
+            "if not actual then actual = '' end " +
+            "if actual ~= ARGV[2] then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HMSET', KEYS[1], unpack(ARGV, 3)) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1";
+
+    // KEYS: the number. ARGV: expireInSeconds.
+    private static final String INCR_WITH_EXPIRE_SCRIPT =
+            "local value = redis.call('INCR', KEYS[1]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return value";
+
+    private final JedisPool jedisPool;
+    private final RedisMetrics metrics;
+    private ScheduledExecutorService metricsReporter;
+
+    public RedisPipelinedJedisOps(JedisPool jedisPool, RedisMetrics metrics) {
+        this.jedisPool = checkNotNull(jedisPool);
+        this.metrics = checkNotNull(metrics);
+    }
+
+    /** Start logging metrics. */
+    public void start() {
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("redis-metrics").setDaemon(true).build());
+        metricsReporter.scheduleAtFixedRate(this::reportMetrics, METRICS_REPORT_INTERVAL_SECONDS,
+                METRICS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Stop logging metrics. */
+    public void shutdown() {
+        if (metricsReporter != null) {
+            metricsReporter.shutdownNow();
+        }
+    }
+
+    @Override
+    public String get(String key) {
+        checkNotNull(key);
+        return execute("get", jedis -> jedis.get(key));
+    }
+
+    @Override
+    public ValueWithTtl getWithTtl(String key) {
+        checkNotNull(key);
+        return execute("getWithTtl", jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<String> value = pipeline.get(key);
+            Response<Long> ttl = pipeline.ttl(key);
+            pipeline.sync();
+            return new ValueWithTtl(value.get(), ttl.get());
+        });
+    }
+
+    @Override
+    public boolean setex(String key, int expireInSeconds, String value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        return execute("setex", jedis -> "OK".equals(jedis.setex(key, expireInSeconds, value)));
+    }
+
+    @Override
+    public int setexWithRemainingTtl(String ttlKey, int defaultExpireInSeconds, Map<String, String> values) {
+        checkNotNull(ttlKey);
+        checkArgument(defaultExpireInSeconds > 0);
+        checkArgument(values != null && !values.isEmpty());
+
+        List<String> keys = Lists.newArrayListWithCapacity(values.size() + 1);
+        List<String> args = Lists.newArrayListWithCapacity(values.size() + 1);
+        keys.add(ttlKey);
+        args.add(String.valueOf(defaultExpireInSeconds));
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            keys.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        Object result = execute("setexWithRemainingTtl",
+                jedis -> jedis.eval(SETEX_WITH_REMAINING_TTL_SCRIPT, keys, args));
+        return ((Long) result).intValue();
+    }
+
+    @Override
+    public Map<String, String> hgetAll(String key) {
+        checkNotNull(key);
+        return execute("hgetAll", jedis -> jedis.hgetAll(key));
+    }
+
+    @Override
+    public void hmsetex(String key, int expireInSeconds, Map<String, String> fields) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        checkArgument(fields != null && !fields.isEmpty());
+
+        List<String> args = Lists.newArrayListWithCapacity(fields.size() * 2 + 1);
+        args.add(String.valueOf(expireInSeconds));
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        execute("hmsetex", jedis -> jedis.eval(HMSETEX_SCRIPT, ImmutableList.of(key), args));
+    }
+
+    @Override
+    public boolean hsetIfExists(String key, String field, String value) {
+        checkNotNull(key);
+        checkNotNull(field);
+        checkNotNull(value);
+        Object result = execute("hsetIfExists",
+                jedis -> jedis.eval(HSET_IF_EXISTS_SCRIPT, ImmutableList.of(key), ImmutableList.of(field, value)));
+        return ((Long) result) == 1L;
+    }
+
+    @Override
+    public boolean hmsetexIfEquals(String key, int expireInSeconds, Map<String, String> fields, String checkKey,
+            String expectedValue) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        checkArgument(fields != null && !fields.isEmpty());
+        checkNotNull(checkKey);
+
+        List<String> args = Lists.newArrayListWithCapacity(fields.size() * 2 + 2);
+        args.add(String.valueOf(expireInSeconds));
+        args.add((expectedValue != null) ? expectedValue : "");
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        Object result = execute("hmsetexIfEquals",
+                jedis -> jedis.eval(HMSETEX_IF_EQUALS_SCRIPT, ImmutableList.of(key, checkKey), args));
+        return ((Long) result) == 1L;
+    }
+
+    @Override
+    public boolean setexIfEquals(String key, int expireInSeconds, String value, String checkKey,
+            String expectedValue) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        checkNotNull(value);
+        checkNotNull(checkKey);
+
+        Object result = execute("setexIfEquals", jedis -> jedis.eval(SETEX_IF_EQUALS_SCRIPT,
+                ImmutableList.of(key, checkKey), ImmutableList.of(String.valueOf(expireInSeconds), value,
+                        (expectedValue != null) ? expectedValue : "")));
+        return ((Long) result) == 1L;
+    }
+
+    @Override
+    public long incrWithExpire(String key, int expireInSeconds) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        Object result = execute("incrWithExpire", jedis -> jedis.eval(INCR_WITH_EXPIRE_SCRIPT, ImmutableList.of(key),
+                ImmutableList.of(String.valueOf(expireInSeconds))));
+        return (Long) result;
+    }
+
+    @Override
+    public long del(String... keys) {
+        checkArgument(keys.length > 0);
+        Long result = execute("del", jedis -> jedis.del(keys));
+        return (result != null) ? result : 0L;
+    }
+
+    /**
+     * Runs an operation on a pooled connection, recording the wait for the connection and the operation's latency,
+     * and counting the call against the current request.
+     */
+    private <T> T execute(String command, Function<Jedis, T> operation) {
+        Metrics.recordCurrentCall(Metrics.REDIS);
+        long requestedOn = System.nanoTime();
+        try (Jedis jedis = jedisPool.getResource()) {
+            long borrowedOn = System.nanoTime();
+            metrics.recordBorrowWait(TimeUnit.NANOSECONDS.toMicros(borrowedOn - requestedOn));
+            T result = operation.apply(jedis);
+            metrics.recordCommandLatency(command, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - borrowedOn));
+            return result;
+        }
+    }
+
+    private void reportMetrics() {
+        try {
+            LOG.info("Redis metrics: " + metrics.reportAndReset(jedisPool.getNumActive(), jedisPool.getNumIdle(),
+                    jedisPool.getNumWaiters()));
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel future reports.
+            LOG.error("Error reporting Redis metrics: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.json.DateUtils;
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
+import org.sagebionetworks.bridge.upload.UploadValidationQueue;
+
+/**
+ * <p>
+ * Upload validation queue in Redis, shared by all server nodes. The queue is made of four keys:
+ * </p>
+ * <ul>
+ *     <li>a hash of study IDs keyed by upload ID, for every upload in the queue</li>
+ *     <li>a list of upload IDs waiting to be leased</li>
+ *     <li>a sorted set of leased upload IDs, scored by lease expiration</li>
+ *     <li>a hash of lease IDs keyed by upload ID, for every leased upload</li>
+ * </ul>
+ * <p>
+ * Every operation touches several keys, so each one runs as a Lua script, which Redis executes atomically.
+ * </p>
+ */
+public class RedisUploadValidationQueue implements UploadValidationQueue {
+
+    static final String STUDIES_KEY = "upload-validation:studies";
+    static final String PENDING_KEY = "upload-validation:pending";
+    static final String EXPIRATIONS_KEY = "upload-validation:expirations";
+    static final String LEASES_KEY = "upload-validation:leases";
+
+    // KEYS: studies, expirations, leases. ARGV: uploadId, studyId, expiresOn, leaseId. Skips uploads already queued.
+    private static final String ADD_LEASED_SCRIPT =
+            "if redis.call('HSETNX', KEYS[1], ARGV[1], ARGV[2]) == 0 then return 0 end " +
+            "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1]) " +
+            "redis.call('HSET', KEYS[3], ARGV[1], ARGV[4]) " +
+            "return 1";
+
+    // KEYS: pending, studies, expirations, leases. ARGV: expiresOn, leaseId. Skips uploads that have been completed.
+    private static final String LEASE_SCRIPT =
+            "while true do " +
+            "  local uploadId = redis.call('RPOP', KEYS[1]) " +
+            "  if not uploadId then return nil end " +
+            "  local studyId = redis.call('HGET', KEYS[2], uploadId) " +
+            "  if studyId then " +
+            "    redis.call('ZADD', KEYS[3], ARGV[1], uploadId) " +
+            "    redis.call('HSET', KEYS[4], uploadId, ARGV[2]) " +
+            "    return {uploadId, studyId} " +
+            "  end " +
+            "end";
+
+    // KEYS: expirations, leases. ARGV: uploadId, leaseId, expiresOn
+    private static final String RENEW_SCRIPT =
+            "if redis.call('HGET', KEYS[2], ARGV[1]) ~= ARGV[2] then return 0 end " +
+            "redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1]) " +
+            "return 1";
+
+    // KEYS: studies, expirations, leases. ARGV: uploadId, leaseId
+    private static final String COMPLETE_SCRIPT =
+            "if redis.call('HGET', KEYS[3], ARGV[1]) ~= ARGV[2] then return 0 end " +
+            "redis.call('HDEL', KEYS[1], ARGV[1]) " +
+            "redis.call('ZREM', KEYS[2], ARGV[1]) " +
+            "redis.call('HDEL', KEYS[3], ARGV[1]) " +
+            "return 1";
+
+    // KEYS: expirations, leases, pending. ARGV: now
+    private static final String REQUEUE_EXPIRED_SCRIPT =
+            "local uploadIds = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) " +
+            "for _, uploadId in ipairs(uploadIds) do " +
+            "  redis.call('ZREM', KEYS[1], uploadId) " +
+            "  redis.call('HDEL', KEYS[2], uploadId) " +
+            "  redis.call('LPUSH', KEYS[3], uploadId) " +
+            "end " +
+            "return #uploadIds";
+
+    private final JedisPool jedisPool;
+
+    public RedisUploadValidationQueue(JedisPool jedisPool) {
+        this.jedisPool = checkNotNull(jedisPool);
+    }
+
+    @Override
+    public UploadValidationLease addLeased(String studyId, String uploadId, int leaseSeconds) {
+        checkNotNull(studyId);
+        checkNotNull(uploadId);
+        checkArgument(leaseSeconds > 0);
+        String leaseId = BridgeUtils.generateGuid();
+        Object result = eval(ADD_LEASED_SCRIPT, ImmutableList.of(STUDIES_KEY, EXPIRATIONS_KEY, LEASES_KEY),
+                ImmutableList.of(uploadId, studyId, expiresOn(leaseSeconds), leaseId));
+        if (!Long.valueOf(1L).equals(result)) {
+            return null;
+        }
+        return new UploadValidationLease(studyId, uploadId, leaseId);
+    }
+
+    @Override
+    public UploadValidationLease lease(int leaseSeconds) {
+        checkArgument(leaseSeconds > 0);
+        String leaseId = BridgeUtils.generateGuid();
+        Object result = eval(LEASE_SCRIPT, ImmutableList.of(PENDING_KEY, STUDIES_KEY, EXPIRATIONS_KEY, LEASES_KEY),
+                ImmutableList.of(expiresOn(leaseSeconds), leaseId));
+        if (result == null) {
+            return null;
+        }
+        List<?> uploadIdAndStudyId = (List<?>) result;
+        return new UploadValidationLease((String) uploadIdAndStudyId.get(1), (String) uploadIdAndStudyId.get(0),
+                leaseId);
+    }
+
+    @Override
+    public boolean renew(UploadValidationLease lease, int leaseSeconds) {
+        checkNotNull(lease);
+        checkArgument(leaseSeconds > 0);
+        Object result = eval(RENEW_SCRIPT, ImmutableList.of(EXPIRATIONS_KEY, LEASES_KEY),
+                ImmutableList.of(lease.getUploadId(), lease.getLeaseId(), expiresOn(leaseSeconds)));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public boolean complete(UploadValidationLease lease) {
+        checkNotNull(lease);
+        Object result = eval(COMPLETE_SCRIPT, ImmutableList.of(STUDIES_KEY, EXPIRATIONS_KEY, LEASES_KEY),
+                ImmutableList.of(lease.getUploadId(), lease.getLeaseId()));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public int requeueExpired() {
+        Object result = eval(REQUEUE_EXPIRED_SCRIPT, ImmutableList.of(EXPIRATIONS_KEY, LEASES_KEY, PENDING_KEY),
+                ImmutableList.of(String.valueOf(DateUtils.getCurrentMillisFromEpoch())));
+        return ((Long) result).intValue();
+    }
+
+    private Object eval(String script, List<String> keys, List<String> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    private static String expiresOn(int leaseSeconds) {
+        return String.valueOf(DateUtils.getCurrentMillisFromEpoch() + leaseSeconds * 1000L);
+    }
+}
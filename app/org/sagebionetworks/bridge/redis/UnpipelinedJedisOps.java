@@ -0,0 +1,151 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.Maps;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Runs each operation as separate calls to a {@link JedisOps}, so it works with the in-memory JedisOps used in unit
+ * tests. Operations are neither pipelined nor atomic; don't use this against a shared Redis server. Hashes are
+ * stored as JSON objects in string keys, since JedisOps only reads and writes strings.
+ */
+public class UnpipelinedJedisOps implements PipelinedJedisOps {
+
+    private static final TypeReference<Map<String, String>> HASH_TYPE = new TypeReference<Map<String, String>>() {};
+
+    private final JedisOps jedisOps;
+
+    public UnpipelinedJedisOps(JedisOps jedisOps) {
+        this.jedisOps = checkNotNull(jedisOps);
+    }
+
+    @Override
+    public String get(String key) {
+        checkNotNull(key);
+        return jedisOps.get(key);
+    }
+
+    @Override
+    public ValueWithTtl getWithTtl(String key) {
+        checkNotNull(key);
+        String value = jedisOps.get(key);
+        Long ttl = jedisOps.ttl(key);
+        return new ValueWithTtl(value, (ttl != null) ? ttl : -2L);
+    }
+
+    @Override
+    public boolean setex(String key, int expireInSeconds, String value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        return "OK".equals(jedisOps.setex(key, expireInSeconds, value));
+    }
+
+    @Override
+    public int setexWithRemainingTtl(String ttlKey, int defaultExpireInSeconds, Map<String, String> values) {
+        checkNotNull(ttlKey);
+        checkArgument(defaultExpireInSeconds > 0);
+        checkArgument(values != null && !values.isEmpty());
+
+        Long ttl = jedisOps.ttl(ttlKey);
+        int expiration = (ttl != null && ttl > 0L) ? ttl.intValue() : defaultExpireInSeconds;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            jedisOps.setex(entry.getKey(), expiration, entry.getValue());
+        }
+        return expiration;
+    }
+
+    @Override
+    public Map<String, String> hgetAll(String key) {
+        checkNotNull(key);
+        String json = jedisOps.get(key);
+        return (json != null) ? readHash(json) : Maps.newHashMap();
+    }
+
+    @Override
+    public void hmsetex(String key, int expireInSeconds, Map<String, String> fields) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        checkArgument(fields != null && !fields.isEmpty());
+        jedisOps.setex(key, expireInSeconds, writeHash(fields));
+    }
+
+    @Override
+    public boolean hsetIfExists(String key, String field, String value) {
+        checkNotNull(key);
+        checkNotNull(field);
+        checkNotNull(value);
+
+        String json = jedisOps.get(key);
+        Long ttl = jedisOps.ttl(key);
+        if (json == null || ttl == null || ttl <= 0L) {
+            return false;
+        }
+        Map<String, String> fields = readHash(json);
+        fields.put(field, value);
+        jedisOps.setex(key, ttl.intValue(), writeHash(fields));
+        return true;
+    }
+
+    @Override
+    public boolean hmsetexIfEquals(String key, int expireInSeconds, Map<String, String> fields, String checkKey,
+            String expectedValue) {
+        checkNotNull(checkKey);
+        if (!Objects.equals(jedisOps.get(checkKey), expectedValue)) {
+            return false;
+        }
+        hmsetex(key, expireInSeconds, fields);
+        return true;
+    }
+
+    @Override
+    public boolean setexIfEquals(String key, int expireInSeconds, String value, String checkKey,
+            String expectedValue) {
+        checkNotNull(checkKey);
+        if (!Objects.equals(jedisOps.get(checkKey), expectedValue)) {
+            return false;
+        }
+        return setex(key, expireInSeconds, value);
+    }
+
+    @Override
+    public long incrWithExpire(String key, int expireInSeconds) {
+        checkNotNull(key);
+        checkArgument(expireInSeconds > 0);
+        String value = jedisOps.get(key);
+        long incremented = ((value != null) ? Long.parseLong(value) : 0L) + 1L;
+        jedisOps.setex(key, expireInSeconds, String.valueOf(incremented));
+        return incremented;
+    }
+
+    @Override
+    public long del(String... keys) {
+        checkArgument(keys.length > 0);
+        Long result = jedisOps.del(keys);
+        return (result != null) ? result : 0L;
+    }
+
+    private static Map<String, String> readHash(String json) {
+        try {
+            return BridgeObjectMapper.get().readValue(json, HASH_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String writeHash(Map<String, String> fields) {
+        try {
+            return BridgeObjectMapper.get().writeValueAsString(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,30 +3,56 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.BridgeUtils.COMMA_JOINER;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
+import org.sagebionetworks.bridge.models.activities.ActivityEventMaps;
 import org.sagebionetworks.bridge.models.activities.ActivityEventObjectType;
 import org.sagebionetworks.bridge.models.activities.ActivityEventType;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
 import org.sagebionetworks.bridge.models.surveys.SurveyAnswer;
+import org.sagebionetworks.bridge.redis.RedisKey;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Publishes activity events and reads them back for scheduling. Each user's stored events are cached in Redis as a 
+ * hash of eventId to timestamp (and answer value, for answered questions). Published events are written through to 
+ * the hash when they are saved; if the hash isn't cached it is left alone, and the next read loads it from DynamoDB.
+ * 
+ * A read that loads events from DynamoDB could miss an event published during the load, and caching that result 
+ * would hide the event until the hash expires. So each publish (and delete) also changes a per-user version, and a 
+ * loaded hash is only cached if the version hasn't changed since before the load.
+ */
 @Component
 public class ActivityEventService {
+    
+    static final int EVENT_CACHE_EXPIRE_IN_SECONDS = 60 * 60;
+    // Always present in a cached hash, so a user with no events is cached too.
+    static final String CACHED_FIELD = "_cached";
 
     private ActivityEventDao activityEventDao;
+    private CacheProvider cacheProvider;
     
     @Autowired
     public void setActivityEventDao(ActivityEventDao activityEventDao) {
         this.activityEventDao = activityEventDao;
     }
     
+    @Autowired
+    public final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
     public void publishEnrollmentEvent(String healthCode, ConsentSignature signature) {
         checkNotNull(signature);
         
@@ -34,7 +60,7 @@ public class ActivityEventService {
             .withHealthCode(healthCode)
             .withTimestamp(signature.getSignedOn())
             .withObjectType(ActivityEventObjectType.ENROLLMENT).build();
-        activityEventDao.publishEvent(event);    
+        publishEvent(event);
     }
     
     public void publishQuestionAnsweredEvent(String healthCode, SurveyAnswer answer) {
@@ -48,7 +74,7 @@ public class ActivityEventService {
             .withObjectId(answer.getQuestionGuid())
             .withEventType(ActivityEventType.ANSWERED)
             .withAnswerValue(COMMA_JOINER.join(answer.getAnswers())).build();
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
     
     public void publishActivityFinishedEvent(ScheduledActivity schActivity) {
@@ -67,7 +93,7 @@ public class ActivityEventService {
                 .withTimestamp(schActivity.getFinishedOn())
                 .build();
 
-            activityEventDao.publishEvent(event);
+            publishEvent(event);
         }
     }
     
@@ -81,7 +107,7 @@ public class ActivityEventService {
      */
     public void publishActivityEvent(ActivityEvent event) {
         checkNotNull(event);
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
 
     /**
@@ -91,12 +117,71 @@ public class ActivityEventService {
      */
     public Map<String, DateTime> getActivityEventMap(String healthCode) {
         checkNotNull(healthCode);
-        return activityEventDao.getActivityEventMap(healthCode);
+        
+        String cacheKey = RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode);
+        Map<String,String> cachedEvents = cacheProvider.getHash(cacheKey);
+        if (!cachedEvents.isEmpty()) {
+            return ActivityEventMaps.fromEvents(decodeEvents(healthCode, cachedEvents));
+        }
+        // Read the version before loading, so a publish that completes during the load stops us caching the result.
+        String versionKey = RedisKey.ACTIVITY_EVENTS_VERSION.getRedisKey(healthCode);
+        String version = cacheProvider.getString(versionKey);
+        List<ActivityEvent> events = activityEventDao.getActivityEvents(healthCode);
+        cacheProvider.setHashIfVersionUnchanged(cacheKey, encodeEvents(events), EVENT_CACHE_EXPIRE_IN_SECONDS,
+                versionKey, version);
+        return ActivityEventMaps.fromEvents(events);
     }
 
     public void deleteActivityEvents(String healthCode) {
         checkNotNull(healthCode);
         activityEventDao.deleteActivityEvents(healthCode);
+        cacheProvider.incrementVersion(RedisKey.ACTIVITY_EVENTS_VERSION.getRedisKey(healthCode),
+                EVENT_CACHE_EXPIRE_IN_SECONDS);
+        cacheProvider.removeString(RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode));
+    }
+    
+    private void publishEvent(ActivityEvent event) {
+        if (activityEventDao.publishEvent(event)) {
+            // The version changes after the event is saved and before the hash is updated, so a concurrent load either 
+            // sees the event or isn't cached.
+            cacheProvider.incrementVersion(RedisKey.ACTIVITY_EVENTS_VERSION.getRedisKey(event.getHealthCode()),
+                    EVENT_CACHE_EXPIRE_IN_SECONDS);
+            cacheProvider.setHashFieldIfPresent(RedisKey.ACTIVITY_EVENTS.getRedisKey(event.getHealthCode()),
+                    event.getEventId(), encodeEvent(event));
+        }
+    }
+    
+    private static Map<String,String> encodeEvents(List<ActivityEvent> events) {
+        Map<String,String> fields = Maps.newHashMapWithExpectedSize(events.size()+1);
+        fields.put(CACHED_FIELD, "true");
+        for (ActivityEvent event : events) {
+            fields.put(event.getEventId(), encodeEvent(event));
+        }
+        return fields;
+    }
+    
+    // The timestamp, followed by the answer value if there is one. Timestamps never contain a colon.
+    private static String encodeEvent(ActivityEvent event) {
+        String timestamp = event.getTimestamp().toString();
+        return (event.getAnswerValue() == null) ? timestamp : timestamp + ":" + event.getAnswerValue();
+    }
+    
+    private static List<ActivityEvent> decodeEvents(String healthCode, Map<String,String> fields) {
+        List<ActivityEvent> events = Lists.newArrayListWithCapacity(fields.size());
+        for (Map.Entry<String,String> field : fields.entrySet()) {
+            if (CACHED_FIELD.equals(field.getKey())) {
+                continue;
+            }
+            String[] parts = field.getValue().split(":", 2);
+            
+            DynamoActivityEvent event = new DynamoActivityEvent();
+            event.setHealthCode(healthCode);
+            event.setEventId(field.getKey());
+            event.setTimestamp(Long.parseLong(parts[0]));
+            event.setAnswerValue((parts.length > 1) ? parts[1] : null);
+            events.add(event);
+        }
+        return events;
     }
 
 }
@@ -6,6 +6,7 @@ import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.CompoundActivityDefinitionDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
@@ -26,6 +27,8 @@ public class CompoundActivityDefinitionService {
     
     private CompoundActivityDefinitionDao compoundActivityDefDao;
 
+    private ScheduleResolutionCache scheduleResolutionCache;
+
     @Autowired
     public final void setSchedulePlanService(SchedulePlanService schedulePlanService) {
         this.schedulePlanService = schedulePlanService;
@@ -37,6 +40,12 @@ public class CompoundActivityDefinitionService {
         this.compoundActivityDefDao = compoundActivityDefDao;
     }
 
+    /** Cache of compound activities resolved for scheduled activities, autowired by Spring. */
+    @Autowired
+    public final void setScheduleResolutionCache(ScheduleResolutionCache scheduleResolutionCache) {
+        this.scheduleResolutionCache = scheduleResolutionCache;
+    }
+
     /** Creates a compound activity definition. */
     public CompoundActivityDefinition createCompoundActivityDefinition(StudyIdentifier studyId,
             CompoundActivityDefinition compoundActivityDefinition) {
@@ -47,7 +56,10 @@ public class CompoundActivityDefinitionService {
         Validate.entityThrowingException(CompoundActivityDefinitionValidator.INSTANCE, compoundActivityDefinition);
 
         // call through to dao
-        return compoundActivityDefDao.createCompoundActivityDefinition(compoundActivityDefinition);
+        CompoundActivityDefinition createdDef = compoundActivityDefDao.createCompoundActivityDefinition(
+                compoundActivityDefinition);
+        scheduleResolutionCache.invalidateStudy(studyId);
+        return createdDef;
     }
 
     /** Deletes a compound activity definition. */
@@ -60,6 +72,7 @@ public class CompoundActivityDefinitionService {
         
         // call through to dao
         compoundActivityDefDao.deleteCompoundActivityDefinition(studyId, taskId);
+        scheduleResolutionCache.invalidateStudy(studyId);
     }
 
     /** Deletes all compound activity definitions in the specified study. Used when we physically delete a study. */
@@ -68,6 +81,7 @@ public class CompoundActivityDefinitionService {
 
         // call through to dao
         compoundActivityDefDao.deleteAllCompoundActivityDefinitionsInStudy(studyId);
+        scheduleResolutionCache.invalidateStudy(studyId);
     }
 
     /** List all compound activity definitions in a study. */
@@ -106,7 +120,10 @@ public class CompoundActivityDefinitionService {
         Validate.entityThrowingException(CompoundActivityDefinitionValidator.INSTANCE, compoundActivityDefinition);
 
         // call through to dao
-        return compoundActivityDefDao.updateCompoundActivityDefinition(compoundActivityDefinition);
+        CompoundActivityDefinition updatedDef = compoundActivityDefDao.updateCompoundActivityDefinition(
+                compoundActivityDefinition);
+        scheduleResolutionCache.invalidateStudy(studyId);
+        return updatedDef;
     }
     
     private void checkConstraintViolations(StudyIdentifier studyId, String taskId) {
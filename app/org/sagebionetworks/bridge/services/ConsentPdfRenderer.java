@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.lowagie.text.DocumentException;
+
+/**
+ * Renders consent documents (which must be valid XHTML) to PDF. The first document rendered in a JVM is much slower
+ * than the ones after it, because the renderer loads its classes, default stylesheets and fonts. Once started, this
+ * renders a small document on a background thread so that the first participant to consent doesn't wait for that.
+ * Renderers aren't thread-safe, so each document is rendered with its own.
+ */
+public class ConsentPdfRenderer {
+    private static final Logger LOG = LoggerFactory.getLogger(ConsentPdfRenderer.class);
+
+    static final String WARM_UP_DOCUMENT = "<html><head><title>Consent</title></head>"
+            + "<body><h1>Consent</h1><p>Signature</p></body></html>";
+
+    /** Warm up the renderer in the background. */
+    public void start() {
+        Thread warmUpThread = new Thread(this::warmUp, "consent-pdf-warm-up");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+    }
+
+    /**
+     * Render the XHTML document to PDF.
+     *
+     * @param xhtml
+     *         the complete document
+     * @return the PDF bytes
+     */
+    public byte[] render(String xhtml) throws DocumentException {
+        checkNotNull(xhtml);
+
+        try (ByteArrayBuilder buffer = new ByteArrayBuilder()) {
+            ITextRenderer renderer = new ITextRenderer();
+            renderer.setDocumentFromString(xhtml);
+            renderer.layout();
+            renderer.createPDF(buffer);
+            buffer.flush();
+            return buffer.toByteArray();
+        }
+    }
+
+    void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            render(WARM_UP_DOCUMENT);
+            LOG.info("Consent PDF renderer warmed up in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (DocumentException | RuntimeException ex) {
+            // Not fatal; the first consent will just be slower.
+            LOG.warn("Error warming up consent PDF renderer: " + ex.getMessage(), ex);
+        }
+    }
+}
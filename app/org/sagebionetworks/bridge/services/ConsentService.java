@@ -31,6 +31,7 @@ import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.services.email.ConsentEmailProvider;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 import org.sagebionetworks.bridge.services.email.WithdrawConsentEmailProvider;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.sagebionetworks.bridge.validators.ConsentAgeValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
@@ -55,11 +56,18 @@ public class ConsentService {
     private SubpopulationService subpopService;
     private StudyService studyService;
     
-    private String consentTemplate;
+    private ConsentPdfRenderer consentPdfRenderer;
+    
+    private CompiledTemplate consentTemplate;
     
     @Value("classpath:study-defaults/consent-page.xhtml")
     final void setConsentTemplate(org.springframework.core.io.Resource resource) throws IOException {
-        this.consentTemplate = IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
+        this.consentTemplate = CompiledTemplate.compile(
+                IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8));
+    }
+    @Autowired
+    final void setConsentPdfRenderer(ConsentPdfRenderer consentPdfRenderer) {
+        this.consentPdfRenderer = consentPdfRenderer;
     }
     @Resource(name="stormpathAccountDao")
     final void setAccountDao(AccountDao accountDao) {
@@ -69,7 +77,7 @@ public class ConsentService {
     final void setOptionsService(ParticipantOptionsService optionsService) {
         this.optionsService = optionsService;
     }
-    @Autowired
+    @Resource(name="emailOutbox")
     final void setSendMailService(SendMailService sendMailService) {
         this.sendMailService = sendMailService;
     }
@@ -173,7 +181,8 @@ public class ConsentService {
         // Send email, if required.
         if (sendEmail) {
             MimeTypeEmailProvider consentEmail = new ConsentEmailProvider(study, participant.getEmail(),
-                    withConsentCreatedOnSignature, sharingScope, studyConsent.getDocumentContent(), consentTemplate);
+                    withConsentCreatedOnSignature, sharingScope, studyConsent.getDocumentContent(), consentTemplate,
+                    consentPdfRenderer);
 
             sendMailService.sendEmail(consentEmail);
         }
@@ -305,7 +314,7 @@ public class ConsentService {
         String htmlTemplate = studyConsentService.getActiveConsent(subpop).getDocumentContent();
         
         MimeTypeEmailProvider consentEmail = new ConsentEmailProvider(study, participant.getEmail(), consentSignature,
-                sharingScope, htmlTemplate, consentTemplate);
+                sharingScope, htmlTemplate, consentTemplate, consentPdfRenderer);
         sendMailService.sendEmail(consentEmail);
     }
 
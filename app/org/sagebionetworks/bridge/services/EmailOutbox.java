@@ -0,0 +1,220 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.simpleemail.model.MessageRejectedException;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.json.DateUtils;
+import org.sagebionetworks.bridge.services.email.MimeTypeEmail;
+import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
+
+/**
+ * <p>
+ * Sends email in the background, so callers (such as the consent and withdrawal endpoints) don't wait for the email
+ * to be built, its PDF to be rendered, or SES to accept it. Emails wait in a bounded in-memory queue for one of a
+ * fixed pool of worker threads. Sends to SES are paced to a configured rate, and sends that fail because SES is
+ * throttling us, has an internal error or can't be reached are retried with exponential backoff.
+ * </p>
+ * <p>
+ * If the queue is full, the email is sent on the caller's thread, as {@link SendMailViaAmazonService} would. Emails
+ * still in the queue when the server shuts down are given a short time to go out, and are then dropped and logged.
+ * </p>
+ * <p>
+ * Activity is recorded in {@link EmailOutboxMetrics}, which the outbox logs once a minute.
+ * </p>
+ */
+public class EmailOutbox implements SendMailService {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailOutbox.class);
+
+    private static final long METRICS_REPORT_INTERVAL_SECONDS = 60;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    // SES's error code when we exceed our sending rate (or daily quota)
+    static final String THROTTLING_ERROR_CODE = "Throttling";
+
+    private final SendMailViaAmazonService sesSender;
+    private final EmailOutboxMetrics metrics;
+    private final RateLimiter rateLimiter;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService metricsReporter;
+
+    /**
+     * @param sesSender
+     *         sends the emails to SES
+     * @param metrics
+     *         metrics to record sends, retries and failures in
+     * @param threadCount
+     *         number of worker threads, which is the number of emails built and sent at once
+     * @param queueCapacity
+     *         max number of emails waiting for a worker
+     * @param sendsPerSecond
+     *         max number of emails sent to SES per second from this server
+     * @param maxAttempts
+     *         number of times an email is sent to SES before it's dropped
+     * @param initialBackoffMillis
+     *         time to wait before the first retry, doubled for each retry after it
+     */
+    public EmailOutbox(SendMailViaAmazonService sesSender, EmailOutboxMetrics metrics, int threadCount,
+            int queueCapacity, double sendsPerSecond, int maxAttempts, long initialBackoffMillis) {
+        checkNotNull(sesSender);
+        checkNotNull(metrics);
+        checkArgument(threadCount > 0);
+        checkArgument(queueCapacity > 0);
+        checkArgument(sendsPerSecond > 0);
+        checkArgument(maxAttempts > 0);
+        checkArgument(initialBackoffMillis >= 0);
+        this.sesSender = sesSender;
+        this.metrics = metrics;
+        this.rateLimiter = RateLimiter.create(sendsPerSecond);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadFactoryBuilder()
+                        .setNameFormat("email-outbox-worker-%d").setDaemon(true).build());
+
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("email-outbox-metrics").setDaemon(true).build());
+        metricsReporter.scheduleAtFixedRate(this::reportMetrics, METRICS_REPORT_INTERVAL_SECONDS,
+                METRICS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues the email to be built and sent. Errors are logged rather than thrown, unless the outbox is full and the
+     * email is sent on this thread.
+     */
+    @Override
+    public void sendEmail(MimeTypeEmailProvider provider) {
+        checkNotNull(provider);
+
+        long enqueuedOn = DateUtils.getCurrentMillisFromEpoch();
+        try {
+            executor.execute(() -> deliver(provider, enqueuedOn));
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Email outbox is full or shut down, sending email on the caller's thread");
+            metrics.recordSentInline();
+            sesSender.sendEmail(provider);
+        }
+    }
+
+    /** Number of emails waiting for a worker. */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops taking emails, waits briefly for the queued emails to be sent, then stops the workers and the metrics
+     * reporter.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                int unsent = executor.shutdownNow().size();
+                LOG.warn("Shutting down email outbox with " + unsent + " emails unsent");
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        metricsReporter.shutdown();
+    }
+
+    private void deliver(MimeTypeEmailProvider provider, long enqueuedOn) {
+        metrics.recordQueueWait(DateUtils.getCurrentMillisFromEpoch() - enqueuedOn);
+
+        MimeTypeEmail email;
+        try {
+            email = provider.getMimeTypeEmail();
+        } catch (MessagingException | RuntimeException ex) {
+            LOG.error("Error building email, email dropped: " + ex.getMessage(), ex);
+            metrics.recordFailed();
+            return;
+        }
+        for (String recipient : email.getRecipientAddresses()) {
+            if (!sendWithRetries(recipient, email)) {
+                // The worker was interrupted during shutdown.
+                return;
+            }
+        }
+    }
+
+    // Returns false if interrupted, true otherwise (whether or not the email was sent).
+    private boolean sendWithRetries(String recipient, MimeTypeEmail email) {
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            long start = DateUtils.getCurrentMillisFromEpoch();
+            try {
+                sesSender.sendEmail(recipient, email);
+                metrics.recordSent(DateUtils.getCurrentMillisFromEpoch() - start);
+                return true;
+            } catch (MessageRejectedException ex) {
+                // The sender isn't verified in SES. Sending again won't help.
+                LOG.error("SES rejected email: " + ex.getMessage(), ex);
+                metrics.recordFailed();
+                return true;
+            } catch (AmazonClientException ex) {
+                if (!isRetryable(ex) || attempt >= maxAttempts) {
+                    LOG.error("Error sending email after " + attempt + " attempts, email dropped: " + ex.getMessage(),
+                            ex);
+                    metrics.recordFailed();
+                    return true;
+                }
+                LOG.warn("Error sending email, retrying in " + backoffMillis + " ms: " + ex.getMessage());
+            } catch (MessagingException | IOException | RuntimeException ex) {
+                LOG.error("Error sending email, email dropped: " + ex.getMessage(), ex);
+                metrics.recordFailed();
+                return true;
+            }
+
+            metrics.recordRetried();
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                metrics.recordFailed();
+                return false;
+            }
+            backoffMillis *= 2;
+        }
+    }
+
+    // Throttling, SES internal errors and errors reaching SES are worth retrying. Other errors from SES mean it
+    // doesn't like the request, and sending it again won't change that.
+    static boolean isRetryable(AmazonClientException ex) {
+        if (ex instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException) ex;
+            return serviceException.getErrorType() == AmazonServiceException.ErrorType.Service
+                    || THROTTLING_ERROR_CODE.equals(serviceException.getErrorCode());
+        }
+        return true;
+    }
+
+    private void reportMetrics() {
+        try {
+            LOG.info("Email outbox metrics: " + metrics.reportAndReset(getQueueDepth()));
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel future reports.
+            LOG.error("Error reporting email outbox metrics: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Metrics for the {@link EmailOutbox}: how long emails wait for a worker, how long SES takes to accept them, and how
+ * many were sent, retried, dropped or sent on the caller's thread because the outbox was full. Values accumulate
+ * between reports and are reset each time a report is taken, so each report covers the interval since the previous
+ * one.
+ */
+@Component
+public class EmailOutboxMetrics {
+
+    /** Count, total and max of a latency, in milliseconds. */
+    private static final class Latency {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        synchronized ObjectNode reportAndReset() {
+            ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+            node.put("count", count);
+            node.put("avgMillis", count > 0 ? totalMillis / count : 0L);
+            node.put("maxMillis", maxMillis);
+            count = 0;
+            totalMillis = 0;
+            maxMillis = 0;
+            return node;
+        }
+    }
+
+    private final Latency queueWait = new Latency();
+    private final Latency sesLatency = new Latency();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder retriedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder sentInlineCount = new LongAdder();
+
+    /** Records the time an email spent in the outbox before a worker picked it up. */
+    public void recordQueueWait(long millis) {
+        queueWait.record(millis);
+    }
+
+    /** Records an email accepted by SES for one recipient, and how long the successful call took. */
+    public void recordSent(long sesMillis) {
+        sentCount.increment();
+        sesLatency.record(sesMillis);
+    }
+
+    /** Records a failed send to one recipient that will be retried. */
+    public void recordRetried() {
+        retriedCount.increment();
+    }
+
+    /** Records an email that was dropped, because it couldn't be built or SES wouldn't accept it. */
+    public void recordFailed() {
+        failedCount.increment();
+    }
+
+    /** Records an email sent on the caller's thread because the outbox was full. */
+    public void recordSentInline() {
+        sentInlineCount.increment();
+    }
+
+    /**
+     * Returns a JSON report of the metrics recorded since the last report, along with the current queue depth, and
+     * resets the metrics.
+     */
+    public ObjectNode reportAndReset(int queueDepth) {
+        ObjectNode report = BridgeObjectMapper.get().createObjectNode();
+        report.put("queueDepth", queueDepth);
+        report.put("sent", sentCount.sumThenReset());
+        report.put("retried", retriedCount.sumThenReset());
+        report.put("failed", failedCount.sumThenReset());
+        report.put("sentInline", sentInlineCount.sumThenReset());
+        report.set("queueWait", queueWait.reportAndReset());
+        report.set("sesLatency", sesLatency.reportAndReset());
+        return report;
+    }
+}
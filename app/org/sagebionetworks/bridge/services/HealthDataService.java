@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.services;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -103,14 +104,14 @@ public class HealthDataService {
     }
 
     /**
-     * Returns a list of all health data records with the given upload date. THis method is generally called by
-     * worker apps as part of data export.
+     * Returns all health data records with the given upload date. THis method is generally called by worker apps as
+     * part of data export. Records are loaded as the caller iterates, so a whole day's records aren't held in memory.
      *
      * @param uploadDate
      *         an upload date in YYYY-MM-DD format, must be non-null, non-empty, and represent a valid date
-     * @return list of health data records
+     * @return iterator over health data records
      */
-    public List<HealthDataRecord> getRecordsForUploadDate(String uploadDate) {
+    public Iterator<HealthDataRecord> getRecordsForUploadDate(String uploadDate) {
         // validate upload date
         if (StringUtils.isBlank(uploadDate)) {
             throw new BadRequestException(String.format(Validate.CANNOT_BE_BLANK, "uploadDate"));
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -49,6 +50,18 @@ public class ParticipantOptionsService {
     public AllParticipantOptionsLookup getOptionsForAllParticipants(StudyIdentifier studyIdentifier) {
         return optionsDao.getOptionsForAllParticipants(studyIdentifier);
     }
+    
+    /**
+     * Stream the options for all participants in a study, as entries of health code to options. Unlike 
+     * getOptionsForAllParticipants(), the options aren't all held in memory at once, so this should be preferred 
+     * for very large studies. Participants with no options saved are not included.
+     */
+    public Iterator<Map.Entry<String,ParticipantOptionsLookup>> streamOptionsForAllParticipants(
+            StudyIdentifier studyIdentifier) {
+        checkNotNull(studyIdentifier);
+        
+        return optionsDao.streamOptionsForAllParticipants(studyIdentifier);
+    }
 
     /**
      * Persist a boolean participant option.
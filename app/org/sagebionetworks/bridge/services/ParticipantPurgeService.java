@@ -0,0 +1,260 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * <p>
+ * Deletes participants' data (health data records, uploads, scheduled activities and activity events) by health
+ * code. Each table is deleted on its own thread, and each table's DAO reads and deletes its rows a page at a time, so
+ * a participant with a lot of data is neither slow to delete nor held in memory.
+ * </p>
+ * <p>
+ * Many participants can be purged at once, for example when a study is deleted. Tables for several participants are
+ * deleted concurrently, participants are read and their health codes looked up as the purge goes, and progress is
+ * logged as participants finish.
+ * </p>
+ */
+@Component
+public class ParticipantPurgeService {
+    private static final Logger LOG = LoggerFactory.getLogger(ParticipantPurgeService.class);
+
+    // How many participants a bulk purge deletes at once
+    static final int MAX_PARTICIPANTS_IN_FLIGHT = 10;
+    // How many participants between progress messages in a bulk purge
+    static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private HealthDataService healthDataService;
+    private UploadService uploadService;
+    private ScheduledActivityService scheduledActivityService;
+    private ActivityEventService activityEventService;
+    private ExecutorService purgeExecutorService;
+
+    @Autowired
+    final void setHealthDataService(HealthDataService healthDataService) {
+        this.healthDataService = healthDataService;
+    }
+    @Autowired
+    final void setUploadService(UploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+    @Autowired
+    final void setScheduledActivityService(ScheduledActivityService scheduledActivityService) {
+        this.scheduledActivityService = scheduledActivityService;
+    }
+    @Autowired
+    final void setActivityEventService(ActivityEventService activityEventService) {
+        this.activityEventService = activityEventService;
+    }
+    /** Runs the per-table deletes. This is set by Spring. */
+    @Resource(name = "participantPurgeExecutorService")
+    final void setPurgeExecutorService(ExecutorService purgeExecutorService) {
+        this.purgeExecutorService = purgeExecutorService;
+    }
+
+    /**
+     * Delete one participant's data from each table, with the tables deleted concurrently. All of the tables are
+     * attempted even if one fails, and the first failure is then thrown.
+     *
+     * @param healthCode
+     *      health code of the participant to purge
+     */
+    public void purgeParticipantData(String healthCode) {
+        checkArgument(StringUtils.isNotBlank(healthCode));
+
+        RuntimeException failure = waitForTableDeletes(submitTableDeletes(healthCode));
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Delete the data of many participants, such as all the participants in a study that is being deleted. A
+     * failure to purge one participant doesn't stop the others; failures are logged, and an exception is thrown at
+     * the end if any participant couldn't be purged.
+     *
+     * @param healthCodes
+     *      health codes of the participants to purge
+     * @return the number of participants purged
+     */
+    public int purgeParticipantData(Collection<String> healthCodes) {
+        checkNotNull(healthCodes);
+        return purgeParticipantData(healthCodes.iterator(), Function.identity());
+    }
+
+    /**
+     * Delete the data of many participants whose health codes have to be looked up first, such as from their
+     * accounts. Participants are read from the iterator as they're purged, and the health code lookups run on the
+     * purge threads ahead of the deletes, so the lookups are neither serial nor all done before the first delete. A
+     * lookup that returns null means the participant has no data to purge. A failure to look up or purge one
+     * participant doesn't stop the others; failures are logged, and an exception is thrown at the end if any
+     * participant couldn't be purged.
+     *
+     * @param participants
+     *      participants to purge
+     * @param healthCodeLookup
+     *      returns a participant's health code, or null if the participant has none
+     * @return the number of participants purged
+     */
+    public <T> int purgeParticipantData(Iterator<T> participants, Function<? super T, String> healthCodeLookup) {
+        checkNotNull(participants);
+        checkNotNull(healthCodeLookup);
+
+        PurgeProgress progress = new PurgeProgress();
+        // Lookups and participants in flight, in the order they were started
+        Deque<Future<String>> lookups = new ArrayDeque<>();
+        Deque<ParticipantPurge> inFlight = new ArrayDeque<>();
+        while (participants.hasNext()) {
+            T participant = participants.next();
+            lookups.add(purgeExecutorService.submit(() -> healthCodeLookup.apply(participant)));
+            if (lookups.size() >= MAX_PARTICIPANTS_IN_FLIGHT) {
+                startParticipant(lookups.remove(), inFlight, progress);
+            }
+        }
+        while (!lookups.isEmpty()) {
+            startParticipant(lookups.remove(), inFlight, progress);
+        }
+        while (!inFlight.isEmpty()) {
+            finishParticipant(inFlight.remove(), progress);
+        }
+
+        int total = progress.purged + progress.failed;
+        LOG.info("Purged " + progress.purged + " of " + total + " participants, " + progress.failed + " failed");
+        if (progress.failed > 0) {
+            throw new BridgeServiceException("Failed to purge " + progress.failed + " of " + total + " participants");
+        }
+        return progress.purged;
+    }
+
+    /** Waits for the health code lookup, then starts deleting the participant's tables. */
+    private void startParticipant(Future<String> lookup, Deque<ParticipantPurge> inFlight, PurgeProgress progress) {
+        String healthCode;
+        try {
+            healthCode = lookup.get();
+        } catch (ExecutionException ex) {
+            LOG.error("Failed to look up health code to purge: " + ex.getCause().getMessage(), ex.getCause());
+            progress.recordFailed();
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        }
+        if (healthCode == null) {
+            return;
+        }
+
+        if (inFlight.size() >= MAX_PARTICIPANTS_IN_FLIGHT) {
+            finishParticipant(inFlight.remove(), progress);
+        }
+        inFlight.add(new ParticipantPurge(healthCode, submitTableDeletes(healthCode)));
+    }
+
+    private List<Future<?>> submitTableDeletes(String healthCode) {
+        List<Consumer<String>> tableDeletes = ImmutableList.of(
+                healthDataService::deleteRecordsForHealthCode,
+                uploadService::deleteUploadsForHealthCode,
+                scheduledActivityService::deleteActivitiesForUser,
+                activityEventService::deleteActivityEvents);
+
+        List<Future<?>> futures = new ArrayList<>(tableDeletes.size());
+        for (Consumer<String> tableDelete : tableDeletes) {
+            futures.add(purgeExecutorService.submit(() -> tableDelete.accept(healthCode)));
+        }
+        return futures;
+    }
+
+    private void finishParticipant(ParticipantPurge purge, PurgeProgress progress) {
+        RuntimeException failure = waitForTableDeletes(purge.futures);
+        if (failure != null) {
+            LOG.error("Failed to purge data for health code " + purge.healthCode + ": " + failure.getMessage(),
+                    failure);
+            progress.recordFailed();
+        } else {
+            progress.recordPurged();
+        }
+    }
+
+    /** Waits for all of the deletes, and returns the first failure, or null if they all succeeded. */
+    private static RuntimeException waitForTableDeletes(List<Future<?>> futures) {
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = asRuntimeException(ex.getCause());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException(ex);
+            }
+        }
+        return failure;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        try {
+            Throwables.propagateIfPossible(cause);
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+        return new BridgeServiceException(cause);
+    }
+
+    /** Counts of participants purged and failed in a bulk purge, logged every so often. */
+    private static final class PurgeProgress {
+        private int purged;
+        private int failed;
+
+        void recordPurged() {
+            purged++;
+            logProgress();
+        }
+
+        void recordFailed() {
+            failed++;
+            logProgress();
+        }
+
+        private void logProgress() {
+            if ((purged + failed) % PROGRESS_LOG_INTERVAL == 0) {
+                LOG.info("Purged " + purged + " participants so far, " + failed + " failed");
+            }
+        }
+    }
+
+    private static final class ParticipantPurge {
+        private final String healthCode;
+        private final List<Future<?>> futures;
+
+        ParticipantPurge(String healthCode, List<Future<?>> futures) {
+            this.healthCode = healthCode;
+            this.futures = futures;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import java.util.List;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
@@ -29,6 +30,7 @@ public class SchedulePlanService {
     
     private SchedulePlanDao schedulePlanDao;
     private SurveyService surveyService;
+    private ScheduleResolutionCache scheduleResolutionCache;
 
     @Autowired
     public final void setSchedulePlanDao(SchedulePlanDao schedulePlanDao) {
@@ -38,6 +40,11 @@ public class SchedulePlanService {
     public final void setSurveyService(SurveyService surveyService) {
         this.surveyService = surveyService;
     }
+    /** Discards schedule resolutions cached for a study when its schedule plans change. */
+    @Autowired
+    public final void setScheduleResolutionCache(ScheduleResolutionCache scheduleResolutionCache) {
+        this.scheduleResolutionCache = scheduleResolutionCache;
+    }
 
     public List<SchedulePlan> getSchedulePlans(ClientInfo clientInfo, StudyIdentifier studyIdentifier) {
         return schedulePlanDao.getSchedulePlans(clientInfo, studyIdentifier);
@@ -59,7 +66,9 @@ public class SchedulePlanService {
         updateGuids(plan);
 
         lookupSurveyReferenceIdentifiers(study.getStudyIdentifier(), plan);
-        return schedulePlanDao.createSchedulePlan(study.getStudyIdentifier(), plan);
+        SchedulePlan createdPlan = schedulePlanDao.createSchedulePlan(study.getStudyIdentifier(), plan);
+        scheduleResolutionCache.invalidateStudy(study.getStudyIdentifier());
+        return createdPlan;
     }
     
     public SchedulePlan updateSchedulePlan(Study study, SchedulePlan plan) {
@@ -73,7 +82,9 @@ public class SchedulePlanService {
         
         StudyIdentifier studyId = new StudyIdentifierImpl(plan.getStudyKey());
         lookupSurveyReferenceIdentifiers(studyId, plan);
-        return schedulePlanDao.updateSchedulePlan(studyId, plan);
+        SchedulePlan updatedPlan = schedulePlanDao.updateSchedulePlan(studyId, plan);
+        scheduleResolutionCache.invalidateStudy(studyId);
+        return updatedPlan;
     }
 
     public void deleteSchedulePlan(StudyIdentifier studyIdentifier, String guid) {
@@ -81,6 +92,7 @@ public class SchedulePlanService {
         checkNotNull(isNotBlank(guid));
         
         schedulePlanDao.deleteSchedulePlan(studyIdentifier, guid);
+        scheduleResolutionCache.invalidateStudy(studyIdentifier);
     }
     
     /**
@@ -8,7 +8,6 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.util.BridgeCollectors.toImmutableList;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,8 +15,10 @@ import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
@@ -58,6 +59,8 @@ public class ScheduledActivityService {
     private UploadSchemaService schemaService;
 
     private SurveyService surveyService;
+
+    private ScheduleResolutionCache scheduleResolutionCache;
     
     @Autowired
     public final void setScheduledActivityDao(ScheduledActivityDao activityDao) {
@@ -92,6 +95,12 @@ public class ScheduledActivityService {
     public final void setSurveyService(SurveyService surveyService) {
         this.surveyService = surveyService;
     }
+
+    /** Cache of schedule plans and resolved references, shared by requests for the same study. */
+    @Autowired
+    public final void setScheduleResolutionCache(ScheduleResolutionCache scheduleResolutionCache) {
+        this.scheduleResolutionCache = scheduleResolutionCache;
+    }
     
     public List<ScheduledActivity> getScheduledActivities(ScheduleContext context) {
         checkNotNull(context);
@@ -152,7 +161,8 @@ public class ScheduledActivityService {
         
         // Find activities that have been scheduled, but not saved. If they have been scheduled and saved,
         // replace the scheduled activity with the database activity so the existing state is returned to 
-        // user (startedOn/finishedOn). Don't save expired tasks though.
+        // user (startedOn/finishedOn). Don't save expired tasks though, or tasks that are identical to their persisted
+        // copy, which leaves only those that have never been persisted or whose schedule, survey or schema has changed.
         List<ScheduledActivity> saves = Lists.newArrayList();
         for (int i=0; i < scheduledActivities.size(); i++) {
             ScheduledActivity activity = scheduledActivities.get(i);
@@ -168,7 +178,7 @@ public class ScheduledActivityService {
                 // activity guid concatenated with scheduled time. So when the scheduler regenerates the scheduled
                 // activity, it always has the same guid.
                 scheduledActivities.set(i, dbActivity);
-            } else if (activity.getStatus() != ScheduledActivityStatus.EXPIRED) {
+            } else if (activity.getStatus() != ScheduledActivityStatus.EXPIRED && !activity.equals(dbActivity)) {
                 saves.add(activity);
             }
         }
@@ -196,30 +206,27 @@ public class ScheduledActivityService {
     }
     
     protected List<ScheduledActivity> scheduleActivitiesForPlans(ScheduleContext context) {
-        // Cache compound activity defs, schemas, and surveys to reduce calls from duplicate requests.
-        Map<String, CompoundActivity> compoundActivityCache = new HashMap<>();
-        Map<String, SchemaReference> schemaCache = new HashMap<>();
-        Map<String, SurveyReference> surveyCache = new HashMap<>();
+        CriteriaContext criteriaContext = context.getCriteriaContext();
         List<ScheduledActivity> scheduledActivities = new ArrayList<>();
         
-        List<SchedulePlan> plans = schedulePlanService.getSchedulePlans(context.getCriteriaContext().getClientInfo(),
-                context.getCriteriaContext().getStudyIdentifier());
+        // Plans, compound activity defs, schemas, and surveys are cached across requests, per study. The plans are
+        // the same for every client, and each plan's strategy selects the schedule (if any) for this client.
+        List<SchedulePlan> plans = scheduleResolutionCache.getSchedulePlans(criteriaContext.getStudyIdentifier(),
+                () -> schedulePlanService.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT,
+                        criteriaContext.getStudyIdentifier()));
         
         for (SchedulePlan plan : plans) {
             Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
             if (schedule != null) {
                 List<ScheduledActivity> activities = schedule.getScheduler().getScheduledActivities(plan, context);
-                List<ScheduledActivity> resolvedActivities = resolveLinks(context.getCriteriaContext(),
-                        compoundActivityCache, schemaCache, surveyCache, activities);
+                List<ScheduledActivity> resolvedActivities = resolveLinks(criteriaContext, activities);
                 scheduledActivities.addAll(resolvedActivities);    
             }
         }
         return scheduledActivities;
     }
     
-    private List<ScheduledActivity> resolveLinks(CriteriaContext context,
-            Map<String, CompoundActivity> compoundActivityCache, Map<String, SchemaReference> schemaCache,
-            Map<String, SurveyReference> surveyCache, List<ScheduledActivity> activities) {
+    private List<ScheduledActivity> resolveLinks(CriteriaContext context, List<ScheduledActivity> activities) {
 
         return activities.stream().map(schActivity -> {
             Activity activity = schActivity.getActivity();
@@ -230,8 +237,7 @@ public class ScheduledActivityService {
             if (activityType == ActivityType.COMPOUND) {
                 // Resolve compound activity.
                 CompoundActivity compoundActivity = activity.getCompoundActivity();
-                CompoundActivity resolvedCompoundActivity = resolveCompoundActivity(context, compoundActivityCache,
-                        schemaCache, surveyCache, compoundActivity);
+                CompoundActivity resolvedCompoundActivity = resolveCompoundActivity(context, compoundActivity);
 
                 // If resolution changed the compound activity, generate a new activity instance that contains it.
                 if (!resolvedCompoundActivity.equals(compoundActivity)) {
@@ -240,7 +246,7 @@ public class ScheduledActivityService {
                 }
             } else if (activityType == ActivityType.SURVEY) {
                 SurveyReference surveyRef = activity.getSurvey();
-                SurveyReference resolvedSurveyRef = resolveSurvey(context, surveyCache, surveyRef);
+                SurveyReference resolvedSurveyRef = resolveSurvey(context, surveyRef);
 
                 if (!resolvedSurveyRef.equals(surveyRef)) {
                     resolvedActivity = new Activity.Builder().withActivity(activity).withSurvey(resolvedSurveyRef)
@@ -251,7 +257,7 @@ public class ScheduledActivityService {
                 SchemaReference schemaRef = taskRef.getSchema();
 
                 if (schemaRef != null) {
-                    SchemaReference resolvedSchemaRef = resolveSchema(context, schemaCache, schemaRef);
+                    SchemaReference resolvedSchemaRef = resolveSchema(context, schemaRef);
 
                     if (!resolvedSchemaRef.equals(schemaRef)) {
                         TaskReference resolvedTaskRef = new TaskReference(taskRef.getIdentifier(), resolvedSchemaRef);
@@ -269,12 +275,11 @@ public class ScheduledActivityService {
     }
 
     // Helper method to resolve a compound activity reference from its definition.
-    private CompoundActivity resolveCompoundActivity(CriteriaContext context,
-            Map<String, CompoundActivity> compoundActivityCache, Map<String, SchemaReference> schemaCache,
-            Map<String, SurveyReference> surveyCache, CompoundActivity compoundActivity) {
+    private CompoundActivity resolveCompoundActivity(CriteriaContext context, CompoundActivity compoundActivity) {
         String taskId = compoundActivity.getTaskIdentifier();
-        CompoundActivity resolvedCompoundActivity = compoundActivityCache.get(taskId);
-        if (resolvedCompoundActivity == null) {
+        return scheduleResolutionCache.getCompoundActivity(context.getStudyIdentifier(), context.getClientInfo(),
+                taskId, () -> {
+            CompoundActivity resolvedCompoundActivity;
             if (compoundActivity.isReference()) {
                 // Compound activity has no schemas or surveys defined. Resolve it with its definition.
                 CompoundActivityDefinition compoundActivityDef = compoundActivityDefinitionService
@@ -287,24 +292,19 @@ public class ScheduledActivityService {
             }
 
             // Before we cache it, resolve the surveys and schemas in the list.
-            resolvedCompoundActivity = resolveListsInCompoundActivity(context, schemaCache, surveyCache,
-                    resolvedCompoundActivity);
-
-            compoundActivityCache.put(taskId, resolvedCompoundActivity);
-        }
-        return resolvedCompoundActivity;
+            return resolveListsInCompoundActivity(context, resolvedCompoundActivity);
+        });
     }
 
     // Helper method to resolve schema refs and survey refs inside of a compound activity.
     private CompoundActivity resolveListsInCompoundActivity(CriteriaContext context,
-            Map<String, SchemaReference> schemaCache, Map<String, SurveyReference> surveyCache,
             CompoundActivity compoundActivity) {
         // Resolve schemas.
         // Lists in CompoundActivity are always non-null, so we don't need to null-check.
         boolean isModified = false;
         List<SchemaReference> schemaList = new ArrayList<>();
         for (SchemaReference oneSchemaRef : compoundActivity.getSchemaList()) {
-            SchemaReference resolvedSchemaRef = resolveSchema(context, schemaCache, oneSchemaRef);
+            SchemaReference resolvedSchemaRef = resolveSchema(context, oneSchemaRef);
             schemaList.add(resolvedSchemaRef);
 
             if (!resolvedSchemaRef.equals(oneSchemaRef)) {
@@ -316,7 +316,7 @@ public class ScheduledActivityService {
         // Similarly, resolve surveys.
         List<SurveyReference> surveyList = new ArrayList<>();
         for (SurveyReference oneSurveyRef : compoundActivity.getSurveyList()) {
-            SurveyReference resolvedSurveyRef = resolveSurvey(context, surveyCache, oneSurveyRef);
+            SurveyReference resolvedSurveyRef = resolveSurvey(context, oneSurveyRef);
             surveyList.add(resolvedSurveyRef);
 
             if (!resolvedSurveyRef.equals(oneSurveyRef)) {
@@ -335,40 +335,32 @@ public class ScheduledActivityService {
     }
 
     // Helper method to resolve a schema ref to the latest revision for the client.
-    private SchemaReference resolveSchema(CriteriaContext context, Map<String, SchemaReference> schemaCache,
-            SchemaReference schemaRef) {
+    private SchemaReference resolveSchema(CriteriaContext context, SchemaReference schemaRef) {
         if (schemaRef.getRevision() != null) {
             // Already has a revision. No need to resolve. Return as is.
             return schemaRef;
         }
 
         String schemaId = schemaRef.getId();
-        SchemaReference resolvedSchemaRef = schemaCache.get(schemaId);
-        if (resolvedSchemaRef == null) {
+        return scheduleResolutionCache.getSchemaReference(context.getStudyIdentifier(), context.getClientInfo(),
+                schemaId, () -> {
             UploadSchema schema = schemaService.getLatestUploadSchemaRevisionForAppVersion(
                     context.getStudyIdentifier(), schemaId, context.getClientInfo());
-            resolvedSchemaRef = new SchemaReference(schemaId, schema.getRevision());
-            schemaCache.put(schemaId, resolvedSchemaRef);
-        }
-        return resolvedSchemaRef;
+            return new SchemaReference(schemaId, schema.getRevision());
+        });
     }
 
     // Helper method to resolve a published survey to a specific survey version.
-    private SurveyReference resolveSurvey(CriteriaContext context, Map<String, SurveyReference> surveyCache,
-            SurveyReference surveyRef) {
+    private SurveyReference resolveSurvey(CriteriaContext context, SurveyReference surveyRef) {
         if (surveyRef.getCreatedOn() != null) {
             return surveyRef;
         }
 
         String surveyGuid = surveyRef.getGuid();
-        SurveyReference resolvedSurveyRef = surveyCache.get(surveyGuid);
-        if (resolvedSurveyRef == null) {
+        return scheduleResolutionCache.getSurveyReference(context.getStudyIdentifier(), surveyGuid, () -> {
             Survey survey = surveyService.getSurveyMostRecentlyPublishedVersion(context.getStudyIdentifier(),
                     surveyGuid);
-            resolvedSurveyRef = new SurveyReference(survey.getIdentifier(), surveyGuid,
-                    new DateTime(survey.getCreatedOn()));
-            surveyCache.put(surveyGuid, resolvedSurveyRef);
-        }
-        return resolvedSurveyRef;
+            return new SurveyReference(survey.getIdentifier(), surveyGuid, new DateTime(survey.getCreatedOn()));
+        });
     }
 }
@@ -72,7 +72,11 @@ public class SendMailViaAmazonService implements SendMailService {
         }
     }
 
-    private void sendEmail(String recipient, MimeTypeEmail email) throws AmazonClientException, MessagingException, IOException {
+    /**
+     * Sends an email that has already been built to one of its recipients. Unlike {@link #sendEmail(MimeTypeEmailProvider)},
+     * errors are thrown as is, so the {@link EmailOutbox} can tell which ones are worth retrying.
+     */
+    void sendEmail(String recipient, MimeTypeEmail email) throws AmazonClientException, MessagingException, IOException {
         String sendFrom = (email.getSenderAddress() == null) ? supportEmail :  email.getSenderAddress();
         
         Session mailSession = Session.getInstance(new Properties(), null);
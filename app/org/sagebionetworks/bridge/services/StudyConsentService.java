@@ -10,6 +10,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
@@ -41,6 +42,7 @@ import org.sagebionetworks.bridge.models.subpopulations.StudyConsentView;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.sagebionetworks.bridge.validators.StudyConsentValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 import org.slf4j.Logger;
@@ -49,11 +51,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.Validator;
-import org.xhtmlrenderer.pdf.ITextRenderer;
 import org.xhtmlrenderer.util.XRRuntimeException;
 
-import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.lowagie.text.DocumentException;
 
 @Component
@@ -61,6 +65,9 @@ public class StudyConsentService {
 
     private static Logger logger = LoggerFactory.getLogger(StudyConsentService.class);
     
+    // Each consent document is about 10-50KB of XHTML
+    private static final int MAX_CACHED_DOCUMENTS = 500;
+    
     // Documented to be threat-safe
     private static final CharSequenceTranslator XML_ESCAPER = StringEscapeUtils.ESCAPE_XML11;
     
@@ -69,13 +76,21 @@ public class StudyConsentService {
     private SubpopulationService subpopService;
     private AmazonS3Client s3Client;
     private S3Helper s3Helper;
+    private ConsentPdfRenderer consentPdfRenderer;
     private static final String CONSENTS_BUCKET = BridgeConfigFactory.getConfig().getConsentsBucket();
     private static final String PUBLICATIONS_BUCKET = BridgeConfigFactory.getConfig().getHostnameWithPostfix("docs");
-    private String fullPageTemplate;
+    private CompiledTemplate fullPageTemplate;
+    /**
+     * Consent documents are never changed once they are written, so their content is cached by storage path (the
+     * subpopulation GUID and the document's createdOn timestamp) rather than read from S3 on every consent.
+     */
+    private final Cache<String, String> documentContentCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_DOCUMENTS).build();
     
     @Value("classpath:study-defaults/consent-unsigned-page.xhtml")
     final void setConsentTemplate(org.springframework.core.io.Resource resource) throws IOException {
-        this.fullPageTemplate = IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
+        this.fullPageTemplate = CompiledTemplate.compile(
+                IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8));
     }
     @Autowired
     final void setValidator(StudyConsentValidator validator) {
@@ -102,6 +117,10 @@ public class StudyConsentService {
     final void setS3Helper(S3Helper helper) {
         this.s3Helper = helper;
     }
+    @Autowired
+    final void setConsentPdfRenderer(ConsentPdfRenderer consentPdfRenderer) {
+        this.consentPdfRenderer = consentPdfRenderer;
+    }
     
     /**
      * Adds a new consent document to the study, and sets that consent document as active.
@@ -125,6 +144,7 @@ public class StudyConsentService {
         try {
             s3Helper.writeBytesToS3(CONSENTS_BUCKET, storagePath, sanitizedContent.getBytes());
             StudyConsent consent = studyConsentDao.addConsent(subpopGuid, storagePath, createdOn);
+            documentContentCache.put(storagePath, sanitizedContent);
             return new StudyConsentView(consent, sanitizedContent);
         } catch(Throwable t) {
             throw new BridgeServiceException(t);
@@ -234,10 +254,12 @@ public class StudyConsentService {
     
     private String loadDocumentContent(StudyConsent consent) {
         try {
-            return s3Helper.readS3FileAsString(CONSENTS_BUCKET, consent.getStoragePath());
-        } catch(IOException ioe) {
+            return documentContentCache.get(consent.getStoragePath(),
+                    () -> s3Helper.readS3FileAsString(CONSENTS_BUCKET, consent.getStoragePath()));
+        } catch(ExecutionException | UncheckedExecutionException e) {
             logger.error("Failure loading storagePath: " + consent.getStoragePath());
-            throw new BridgeServiceException(ioe);
+            Throwables.propagateIfPossible(e.getCause());
+            throw new BridgeServiceException(e.getCause());
         }
     }
     
@@ -262,23 +284,15 @@ public class StudyConsentService {
         map = Maps.newHashMap();
         map.put("studyName", escapedStudyName);
         map.put("consent.body", resolvedHTML);
-        resolvedHTML = BridgeUtils.resolveTemplate(fullPageTemplate, map);
+        resolvedHTML = fullPageTemplate.resolve(map);
         
         String key = subpopGuid.getGuid()+"/consent.html";
         byte[] bytes = resolvedHTML.getBytes(Charset.forName(("UTF-8")));
         writeBytesToPublicS3(PUBLICATIONS_BUCKET, key, bytes, MimeType.HTML);
         
         // Now create and post a PDF version !
-        try (ByteArrayBuilder buffer = new ByteArrayBuilder();) {
-            ITextRenderer renderer = new ITextRenderer();
-            renderer.setDocumentFromString(resolvedHTML);
-            renderer.layout();
-            renderer.createPDF(buffer);
-            buffer.flush();
-            
-            key = subpopGuid.getGuid()+"/consent.pdf";
-            writeBytesToPublicS3(PUBLICATIONS_BUCKET, key, buffer.toByteArray(), MimeType.PDF);
-        }
+        key = subpopGuid.getGuid()+"/consent.pdf";
+        writeBytesToPublicS3(PUBLICATIONS_BUCKET, key, consentPdfRenderer.render(resolvedHTML), MimeType.PDF);
     }
 
     /**
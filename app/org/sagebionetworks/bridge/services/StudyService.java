@@ -38,6 +38,7 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.DirectoryDao;
 import org.sagebionetworks.bridge.dao.StudyDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -45,8 +46,11 @@ import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.schedules.Activity;
@@ -85,6 +89,8 @@ public class StudyService {
     private SynapseClient synapseClient;
     private ParticipantService participantService;
     private SchedulePlanService schedulePlanService;
+    private AccountDao accountDao;
+    private ParticipantPurgeService participantPurgeService;
 
     private String defaultEmailVerificationTemplate;
     private String defaultEmailVerificationTemplateSubject;
@@ -155,6 +161,16 @@ public class StudyService {
     final void setSchedulePlanService(SchedulePlanService schedulePlanService) {
         this.schedulePlanService = schedulePlanService;
     }
+    /** Account DAO, used to find the participants of deleted studies. This is set by Spring. */
+    @Autowired
+    final void setAccountDao(AccountDao accountDao) {
+        this.accountDao = accountDao;
+    }
+    /** Participant purge service, used to delete the participants' data of deleted studies. This is set by Spring. */
+    @Autowired
+    final void setParticipantPurgeService(ParticipantPurgeService participantPurgeService) {
+        this.participantPurgeService = participantPurgeService;
+    }
     
     @Autowired
     @Qualifier("bridgePFSynapseClient")
@@ -162,6 +178,10 @@ public class StudyService {
         this.synapseClient = synapseClient;
     }
 
+    /**
+     * Get a study. The study may be shared with other callers through the cache, so it should not be modified. 
+     * To change a study, copy it first (see {@link #createSynapseProjectTeam}) or update it from a new object.
+     */
     public Study getStudy(String identifier, boolean includeDeleted) {
         checkArgument(isNotBlank(identifier), Validate.CANNOT_BE_BLANK, "identifier");
 
@@ -365,12 +385,13 @@ public class StudyService {
         String newTeamId = newTeam.getId();
         String newProjectId = newProject.getId();
 
-        // finally, update study
-        study.setSynapseProjectId(newProjectId);
-        study.setSynapseDataAccessTeamId(Long.parseLong(newTeamId));
-        updateStudy(study, false);
+        // finally, update study. The study may be the cached instance shared with other requests, so update a copy.
+        Study updatedStudy = BridgeObjectMapper.get().convertValue(study, Study.class);
+        updatedStudy.setSynapseProjectId(newProjectId);
+        updatedStudy.setSynapseDataAccessTeamId(Long.parseLong(newTeamId));
+        updateStudy(updatedStudy, false);
 
-        return study;
+        return updatedStudy;
     }
 
     public Study updateStudy(Study study, boolean isAdminUpdate) {
@@ -445,7 +466,11 @@ public class StudyService {
             }
             studyDao.deactivateStudy(existing.getIdentifier());
         } else {
-            // actual delete
+            // actual delete. Participants' health codes are only available from their accounts, so their data is
+            // deleted first. If that fails, the study is left in place and the delete can be retried. The accounts
+            // are fetched by the purge as it goes, so they aren't fetched one at a time or held all at once.
+            participantPurgeService.purgeParticipantData(accountDao.getStudyAccounts(existing),
+                    summary -> getParticipantHealthCode(existing, summary));
             studyDao.deleteStudy(existing);
             directoryDao.deleteDirectoryForStudy(existing);
 
@@ -459,6 +484,11 @@ public class StudyService {
         cacheProvider.removeStudy(identifier);
     }
     
+    private String getParticipantHealthCode(Study study, AccountSummary summary) {
+        Account account = accountDao.getAccount(study, summary.getId());
+        return (account != null) ? account.getHealthCode() : null;
+    }
+
     /**
      * The user cannot remove data groups already used by criteria, or task identifiers already used in schedules. If
      * these entities contain data groups or identifiers that are not in the updated version of the study, this is a
@@ -10,6 +10,8 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
+import org.sagebionetworks.bridge.cache.UploadSchemaCatalog;
 import org.sagebionetworks.bridge.dao.SurveyDao;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -37,6 +39,8 @@ public class SurveyService {
     private Validator validator;
     private SurveyDao surveyDao;
     private SchedulePlanService schedulePlanService;
+    private ScheduleResolutionCache scheduleResolutionCache;
+    private UploadSchemaCatalog uploadSchemaCatalog;
 
     @Autowired
     final void setSurveyDao(SurveyDao surveyDao) {
@@ -53,6 +57,16 @@ public class SurveyService {
         this.schedulePlanService = schedulePlanService;
     }
 
+    @Autowired
+    final void setScheduleResolutionCache(ScheduleResolutionCache scheduleResolutionCache) {
+        this.scheduleResolutionCache = scheduleResolutionCache;
+    }
+
+    @Autowired
+    final void setUploadSchemaCatalog(UploadSchemaCatalog uploadSchemaCatalog) {
+        this.uploadSchemaCatalog = uploadSchemaCatalog;
+    }
+
     /**
      * Get a list of all published surveys in this study, using the most recently published version of each survey.
      * These surveys will include questions (not other element types, such as info screens). Most properties beyond
@@ -116,7 +130,14 @@ public class SurveyService {
         checkArgument(StringUtils.isNotBlank(keys.getGuid()), "Survey GUID cannot be null/blank");
         checkArgument(keys.getCreatedOn() != 0L, "Survey createdOn timestamp cannot be 0");
 
-        return surveyDao.publishSurvey(study, keys, newSchemaRev);
+        Survey publishedSurvey = surveyDao.publishSurvey(study, keys, newSchemaRev);
+        // Publishing creates or updates the survey's upload schema, outside of the UploadSchemaService
+        if (publishedSurvey.getSchemaRevision() != null) {
+            uploadSchemaCatalog.invalidateSchema(study, publishedSurvey.getIdentifier());
+        }
+        // Schedules resolve survey references to the most recently published version
+        scheduleResolutionCache.invalidateStudy(study);
+        return publishedSurvey;
     }
 
     /**
@@ -172,6 +193,7 @@ public class SurveyService {
         checkConstraintsBeforePhysicalDelete(studyId, keys);
 
         surveyDao.deleteSurveyPermanently(keys);
+        scheduleResolutionCache.invalidateStudy(studyId);
     }
 
     /**
@@ -1,15 +1,18 @@
 package org.sagebionetworks.bridge.services;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.cert.CertificateEncodingException;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nonnull;
 
 import org.bouncycastle.cms.CMSException;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
+import org.sagebionetworks.bridge.crypto.StreamingCmsDecryptor;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.util.DuplicateZipEntryException;
@@ -35,6 +38,7 @@ public class UploadArchiveService {
             BridgeConfigFactory.getConfig().getPropertyAsInt("max.num.zip.entries"));
 
     private LoadingCache<String, CmsEncryptor> cmsEncryptorCache;
+    private LoadingCache<String, StreamingCmsDecryptor> streamingCmsDecryptorCache;
 
     /** Loading cache for CMS encryptor, keyed by study ID. This is configured by Spring. */
     @Autowired
@@ -42,6 +46,13 @@ public class UploadArchiveService {
         this.cmsEncryptorCache = cmsEncryptorCache;
     }
 
+    /** Loading cache for streaming CMS decryptor, keyed by study ID. This is configured by Spring. */
+    @Autowired
+    public void setStreamingCmsDecryptorCache(
+            LoadingCache<String, StreamingCmsDecryptor> streamingCmsDecryptorCache) {
+        this.streamingCmsDecryptorCache = streamingCmsDecryptorCache;
+    }
+
     /**
      * Encrypts the specified data, using the encryption materials for the specified study.
      *
@@ -106,6 +117,44 @@ public class UploadArchiveService {
         }
     }
 
+    /**
+     * Decrypts the specified data stream, using the encryption materials for the specified study. The encrypted
+     * stream is read as the returned stream is read. The caller is responsible for closing the encrypted stream.
+     *
+     * @param studyId
+     *         study ID, must be non-null, non-empty, and refer to a valid study
+     * @param encryptedStream
+     *         stream of data to decrypt, must be non-null
+     * @return stream of decrypted data
+     * @throws BridgeServiceException
+     *         if we fail to load the decryptor, or if decryption fails
+     */
+    public InputStream decrypt(@Nonnull String studyId, @Nonnull InputStream encryptedStream)
+            throws BridgeServiceException {
+        // validate
+        if (Strings.isNullOrEmpty(studyId)) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_BLANK, "studyId"));
+        }
+        if (encryptedStream == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "encryptedStream"));
+        }
+
+        // get decryptor from cache
+        StreamingCmsDecryptor decryptor;
+        try {
+            decryptor = streamingCmsDecryptorCache.get(studyId);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw new BridgeServiceException(ex);
+        }
+
+        // decrypt
+        try {
+            return decryptor.decrypt(encryptedStream);
+        } catch (CMSException | IOException ex) {
+            throw new BridgeServiceException(ex);
+        }
+    }
+
     /**
      * Helper function to get the encryptor for the given study.
      *
@@ -177,4 +226,40 @@ public class UploadArchiveService {
             throw new BadRequestException(e);
         }
     }
+
+    /**
+     * <p>
+     * Unzips the given stream, one entry at a time. Each entry's filename and unzipped data is passed to the entry
+     * consumer as soon as that entry is read, so only one entry is held in memory at a time.
+     * </p>
+     * <p>
+     * This method will throw a BadRequestException if the zip file somehow contains duplicate filenames, or if it's
+     * over the size limits.
+     * </p>
+     *
+     * @param inputStream
+     *         stream containing the raw data to unzip, must be non-null
+     * @param entryConsumer
+     *         called with the filename and raw bytes of each unzipped entry, must be non-null
+     * @throws BridgeServiceException
+     *         if unzipping fails
+     */
+    public void unzip(@Nonnull InputStream inputStream, @Nonnull BiConsumer<String, byte[]> entryConsumer)
+            throws BridgeServiceException {
+        if (inputStream == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "inputStream"));
+        }
+        if (entryConsumer == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "entryConsumer"));
+        }
+        try {
+            ZIPPER.unzip(inputStream, entryConsumer);
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        } catch (ZipOverflowException e) {
+            throw new BadRequestException(e);
+        } catch (DuplicateZipEntryException e) {
+            throw new BadRequestException(e);
+        }
+    }
 }
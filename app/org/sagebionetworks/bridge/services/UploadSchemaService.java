@@ -8,8 +8,12 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
+import org.sagebionetworks.bridge.cache.UploadSchemaCatalog;
+import org.sagebionetworks.bridge.cache.UploadSchemaCatalog.SchemaRevisions;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
@@ -23,6 +27,8 @@ import org.sagebionetworks.bridge.validators.Validate;
 @Component
 public class UploadSchemaService {
     private UploadSchemaDao uploadSchemaDao;
+    private ScheduleResolutionCache scheduleResolutionCache;
+    private UploadSchemaCatalog uploadSchemaCatalog;
 
     /** DAO for upload schemas. This is configured by Spring. */
     @Autowired
@@ -30,6 +36,24 @@ public class UploadSchemaService {
         this.uploadSchemaDao = uploadSchemaDao;
     }
 
+    /**
+     * Cache of schema revisions resolved for scheduled activities, invalidated when schemas change. This is 
+     * configured by Spring.
+     */
+    @Autowired
+    public void setScheduleResolutionCache(ScheduleResolutionCache scheduleResolutionCache) {
+        this.scheduleResolutionCache = scheduleResolutionCache;
+    }
+
+    /**
+     * In-memory catalog of schema revisions, used to resolve schemas for uploads and scheduling without reading 
+     * DynamoDB. This is configured by Spring.
+     */
+    @Autowired
+    public void setUploadSchemaCatalog(UploadSchemaCatalog uploadSchemaCatalog) {
+        this.uploadSchemaCatalog = uploadSchemaCatalog;
+    }
+
     /**
      * Service handler for creating a new schema revision, using V4 API semantics. See
      * {@link UploadSchemaDao#createSchemaRevisionV4}
@@ -49,7 +73,10 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, uploadSchema);
 
         // call through to DAO
-        return uploadSchemaDao.createSchemaRevisionV4(studyId, uploadSchema);
+        UploadSchema createdSchema = uploadSchemaDao.createSchemaRevisionV4(studyId, uploadSchema);
+        uploadSchemaCatalog.updateRevision(studyId, createdSchema);
+        scheduleResolutionCache.invalidateStudy(studyId);
+        return createdSchema;
     }
 
     /**
@@ -75,7 +102,11 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, uploadSchema);
 
         // call through to DAO
-        return uploadSchemaDao.createOrUpdateUploadSchema(studyIdentifier.getIdentifier(), uploadSchema);
+        UploadSchema savedSchema = uploadSchemaDao.createOrUpdateUploadSchema(studyIdentifier.getIdentifier(),
+                uploadSchema);
+        uploadSchemaCatalog.updateRevision(studyIdentifier, savedSchema);
+        scheduleResolutionCache.invalidateStudy(studyIdentifier);
+        return savedSchema;
     }
 
     /**
@@ -102,6 +133,8 @@ public class UploadSchemaService {
             throw new BadRequestException("Schema revision must be positive");
         }
         uploadSchemaDao.deleteUploadSchemaByIdAndRev(studyIdentifier, schemaId, rev);
+        uploadSchemaCatalog.invalidateSchema(studyIdentifier, schemaId);
+        scheduleResolutionCache.invalidateStudy(studyIdentifier);
     }
 
     /**
@@ -123,12 +156,14 @@ public class UploadSchemaService {
             throw new BadRequestException(String.format("Invalid schema ID %s", schemaId));
         }
         uploadSchemaDao.deleteUploadSchemaById(studyIdentifier, schemaId);
+        uploadSchemaCatalog.invalidateSchema(studyIdentifier, schemaId);
+        scheduleResolutionCache.invalidateStudy(studyIdentifier);
     }
 
     /**
-     * Gets the latest available revision of the specified schema for the specified client. This API fetches every
-     * schema revision for the specified schema ID, then checks the schema's min/maxAppVersion against the clientInfo.
-     * If multiple schema revisions match, it returns the latest one.
+     * Gets the latest available revision of the specified schema for the specified client. Revisions are read from 
+     * the schema catalog, which checks each schema's min/maxAppVersion against the clientInfo. If multiple schema 
+     * revisions match, it returns the latest one.
      */
     public UploadSchema getLatestUploadSchemaRevisionForAppVersion(StudyIdentifier studyId, String schemaId,
             ClientInfo clientInfo) {
@@ -139,9 +174,13 @@ public class UploadSchemaService {
         checkArgument(StringUtils.isNotBlank(schemaId), "Schema ID must be specified");
         checkNotNull(clientInfo, "Client Info must be specified");
 
-        List<UploadSchema> schemaList = getUploadSchemaAllRevisions(studyId, schemaId);
-        return schemaList.stream().filter(schema -> isSchemaAvailableForClientInfo(schema, clientInfo))
-                .max((schema1, schema2) -> Integer.compare(schema1.getRevision(), schema2.getRevision())).orElse(null);
+        return getSchemaRevisions(studyId, schemaId).getLatestRevision(clientInfo);
+    }
+
+    // All revisions of the schema, from the catalog. Throws EntityNotFoundException if the schema doesn't exist.
+    private SchemaRevisions getSchemaRevisions(StudyIdentifier studyId, String schemaId) {
+        return uploadSchemaCatalog.getSchemaRevisions(studyId, schemaId,
+                () -> uploadSchemaDao.getUploadSchemaAllRevisions(studyId, schemaId));
     }
 
     // Helper method which checks if a schema is available for a client, by checking the schema's min/maxAppVersion
@@ -155,15 +194,7 @@ public class UploadSchemaService {
         String osName = clientInfo.getOsName();
         Integer appVersion = clientInfo.getAppVersion();
         if (osName != null && appVersion != null) {
-            Integer minAppVersion = schema.getMinAppVersion(osName);
-            if (minAppVersion != null && appVersion < minAppVersion) {
-                return false;
-            }
-
-            Integer maxAppVersion = schema.getMaxAppVersion(osName);
-            if (maxAppVersion != null && appVersion > maxAppVersion) {
-                return false;
-            }
+            return UploadSchemaCatalog.isAvailable(schema, osName, appVersion);
         }
 
         // Permissive filter defaults to true.
@@ -221,6 +252,10 @@ public class UploadSchemaService {
      * throws an EntityNotFoundException
      * </p>
      * <p>
+     * The schema comes from the schema catalog and is shared, so it must not be modified. A revision that isn't in 
+     * the catalog is read from DynamoDB.
+     * </p>
+     * <p>
      * This method validates the schema ID and rev. However, it does not validate the study, as that is not user input.
      * </p>
      *
@@ -239,7 +274,14 @@ public class UploadSchemaService {
         if (schemaRev <= 0) {
             throw new BadRequestException(String.format("Invalid schema revision %d", schemaRev));
         }
-        return uploadSchemaDao.getUploadSchemaByIdAndRev(studyIdentifier, schemaId, schemaRev);
+        UploadSchema schema = null;
+        try {
+            schema = getSchemaRevisions(studyIdentifier, schemaId).getRevision(schemaRev);
+        } catch (EntityNotFoundException e) {
+            // Fall through, so the DAO reports which revision wasn't found.
+        }
+        return (schema != null) ? schema :
+                uploadSchemaDao.getUploadSchemaByIdAndRev(studyIdentifier, schemaId, schemaRev);
     }
 
     /**
@@ -291,6 +333,10 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, uploadSchema);
 
         // Call through to the DAO
-        return uploadSchemaDao.updateSchemaRevisionV4(studyId, schemaId, schemaRevision, uploadSchema);
+        UploadSchema updatedSchema = uploadSchemaDao.updateSchemaRevisionV4(studyId, schemaId, schemaRevision,
+                uploadSchema);
+        uploadSchemaCatalog.updateRevision(studyId, updatedSchema);
+        scheduleResolutionCache.invalidateStudy(studyId);
+        return updatedSchema;
     }
 }
@@ -51,6 +51,8 @@ import org.sagebionetworks.bridge.models.upload.UploadSession;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
 import org.sagebionetworks.bridge.models.upload.UploadView;
+import org.sagebionetworks.bridge.upload.UploadValidationExecutor;
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
 import org.sagebionetworks.bridge.validators.UploadValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
@@ -354,21 +356,39 @@ public class UploadService {
             logger.error("Missing S3 server-side encryption (SSE) for presigned upload " + uploadId + ".");
         }
 
-        try {
-            uploadDao.uploadComplete(completedBy, upload);
-        } catch (ConcurrentModificationException ex) {
-            // The old workflow is the app calls uploadComplete. The new workflow has an S3 trigger to call
-            // uploadComplete. During the transition, it's very likely that this will be called twice, sometimes
-            // concurrently. As such, we should log and squelch the ConcurrentModificationException.
-            logger.info("Concurrent modification of upload " + uploadId + " while marking upload complete");
-
-            // Also short-circuit the call early, so we don't end up validating the upload twice, as this causes errors
-            // and duplicate records.
-            return;
-        }
+        // Reserve room in the validation queue before marking the upload complete. If validation is backed up, this
+        // throws, and the upload is left in REQUESTED, so uploadComplete can be called again later.
+        try (UploadValidationExecutor.Reservation reservation = uploadValidationService.reserveValidation()) {
+            // Similarly, record the upload in the durable validation queue before marking it complete, so that if this
+            // node dies once the upload is in VALIDATION_IN_PROGRESS, another node validates it.
+            UploadValidationLease lease = uploadValidationService.enqueueValidation(studyId, upload);
+            if (lease == null) {
+                // Another call is already completing this upload. See below.
+                logger.info("Upload " + uploadId + " is already in the validation queue while marking upload complete");
+                return;
+            }
 
-        // kick off upload validation
-        uploadValidationService.validateUpload(studyId, upload);
+            try {
+                uploadDao.uploadComplete(completedBy, upload);
+            } catch (ConcurrentModificationException ex) {
+                uploadValidationService.cancelValidation(lease);
+
+                // The old workflow is the app calls uploadComplete. The new workflow has an S3 trigger to call
+                // uploadComplete. During the transition, it's very likely that this will be called twice, sometimes
+                // concurrently. As such, we should log and squelch the ConcurrentModificationException.
+                logger.info("Concurrent modification of upload " + uploadId + " while marking upload complete");
+
+                // Also short-circuit the call early, so we don't end up validating the upload twice, as this causes
+                // errors and duplicate records.
+                return;
+            } catch (RuntimeException ex) {
+                uploadValidationService.cancelValidation(lease);
+                throw ex;
+            }
+
+            // kick off upload validation
+            uploadValidationService.validateUpload(reservation, lease, studyId, upload);
+        }
     }
     
     public void deleteUploadsForHealthCode(String healthCode) {
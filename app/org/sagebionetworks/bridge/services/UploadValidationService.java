@@ -1,33 +1,52 @@
 package org.sagebionetworks.bridge.services;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Resource;
-
-import java.util.concurrent.ExecutorService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.upload.Upload;
-import org.sagebionetworks.bridge.upload.UploadValidationTask;
-import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
+import org.sagebionetworks.bridge.upload.UploadValidationDispatcher;
+import org.sagebionetworks.bridge.upload.UploadValidationExecutor;
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
 
 /** Service handler for upload validation. */
 @Component
 public class UploadValidationService {
-    private ExecutorService asyncExecutorService;
-    private UploadValidationTaskFactory taskFactory;
+    private UploadValidationExecutor uploadValidationExecutor;
+    private UploadValidationDispatcher dispatcher;
 
-    /** Async thread pool. This is configured by Spring. */
-    @Resource(name = "asyncExecutorService")
-    public void setAsyncExecutorService(ExecutorService asyncExecutorService) {
-        this.asyncExecutorService = asyncExecutorService;
+    /** Bounded upload validation thread pool. This is configured by Spring. */
+    @Autowired
+    public void setUploadValidationExecutor(UploadValidationExecutor uploadValidationExecutor) {
+        this.uploadValidationExecutor = uploadValidationExecutor;
     }
 
-    /** Task factory. This is configured by Spring. */
+    /** Dispatcher, which records uploads in the durable validation queue. This is configured by Spring. */
     @Autowired
-    public void setTaskFactory(UploadValidationTaskFactory taskFactory) {
-        this.taskFactory = taskFactory;
+    public void setDispatcher(UploadValidationDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Reserves room in the validation queue for one upload. Call this before marking an upload complete, so that if
+     * validation is backed up, the upload is left in a state where uploadComplete can be retried. The reservation must
+     * be passed to
+     * {@link #validateUpload(UploadValidationExecutor.Reservation, UploadValidationLease, StudyIdentifier, Upload)}, or
+     * closed.
+     *
+     * @return reservation for one upload
+     * @throws ServiceUnavailableException
+     *         if the validation queue is full
+     */
+    public UploadValidationExecutor.Reservation reserveValidation() {
+        UploadValidationExecutor.Reservation reservation = uploadValidationExecutor.tryReserve();
+        if (reservation == null) {
+            throw new ServiceUnavailableException(
+                    "Too many uploads are waiting for validation. Please try again later.");
+        }
+        return reservation;
     }
 
     /**
@@ -44,9 +63,53 @@ public class UploadValidationService {
      *         study this upload lives in
      * @param upload
      *         upload metadata object for the upload
+     * @throws ServiceUnavailableException
+     *         if the validation queue is full
      */
     public void validateUpload(@Nonnull StudyIdentifier study, @Nonnull Upload upload) {
-        UploadValidationTask task = taskFactory.newTask(study, upload);
-        asyncExecutorService.execute(task);
+        try (UploadValidationExecutor.Reservation reservation = reserveValidation()) {
+            UploadValidationLease lease = enqueueValidation(study, upload);
+            if (lease != null) {
+                validateUpload(reservation, lease, study, upload);
+            }
+        }
+    }
+
+    /**
+     * Records the upload in the durable validation queue. Call this before marking an upload complete, so that once
+     * the upload is in VALIDATION_IN_PROGRESS, it's validated even if this node dies. If the upload can't be marked
+     * complete, pass the lease to {@link #cancelValidation}.
+     *
+     * @param study
+     *         study this upload lives in
+     * @param upload
+     *         upload metadata object for the upload
+     * @return lease on the upload, or null if the upload is already in the validation queue
+     */
+    public UploadValidationLease enqueueValidation(@Nonnull StudyIdentifier study, @Nonnull Upload upload) {
+        return dispatcher.enqueue(study, upload);
+    }
+
+    /** Takes an upload that couldn't be marked complete back out of the validation queue. */
+    public void cancelValidation(@Nonnull UploadValidationLease lease) {
+        dispatcher.cancel(lease);
+    }
+
+    /**
+     * Kick off upload validation, using room in the validation queue previously reserved with
+     * {@link #reserveValidation}, for an upload recorded with {@link #enqueueValidation}.
+     *
+     * @param reservation
+     *         reservation from reserveValidation()
+     * @param lease
+     *         lease from enqueueValidation()
+     * @param study
+     *         study this upload lives in
+     * @param upload
+     *         upload metadata object for the upload
+     */
+    public void validateUpload(@Nonnull UploadValidationExecutor.Reservation reservation,
+            @Nonnull UploadValidationLease lease, @Nonnull StudyIdentifier study, @Nonnull Upload upload) {
+        dispatcher.dispatch(reservation, lease, study, upload);
     }
 }
@@ -39,13 +39,10 @@ public class UserAdminService {
     private ParticipantService participantService;
     private AccountDao accountDao;
     private ConsentService consentService;
-    private HealthDataService healthDataService;
-    private ScheduledActivityService scheduledActivityService;
-    private ActivityEventService activityEventService;
+    private ParticipantPurgeService participantPurgeService;
     private CacheProvider cacheProvider;
     private ParticipantOptionsService optionsService;
     private ExternalIdService externalIdService;
-    private UploadService uploadService;
 
     @Autowired
     final void setAuthenticationService(AuthenticationService authenticationService) {
@@ -64,16 +61,8 @@ public class UserAdminService {
         this.consentService = consentService;
     }
     @Autowired
-    final void setHealthDataService(HealthDataService healthDataService) {
-        this.healthDataService = healthDataService;
-    }
-    @Autowired
-    final void setScheduledActivityService(ScheduledActivityService scheduledActivityService) {
-        this.scheduledActivityService = scheduledActivityService;
-    }
-    @Autowired
-    final void setActivityEventService(ActivityEventService activityEventService) {
-        this.activityEventService = activityEventService;
+    final void setParticipantPurgeService(ParticipantPurgeService participantPurgeService) {
+        this.participantPurgeService = participantPurgeService;
     }
     @Autowired
     final void setCacheProvider(CacheProvider cache) {
@@ -87,10 +76,6 @@ public class UserAdminService {
     final void setExternalIdService(ExternalIdService externalIdService) {
         this.externalIdService = externalIdService;
     }
-    @Autowired
-    final void setUploadService(UploadService uploadService) {
-        this.uploadService = uploadService;
-    }
     
     
     /**
@@ -182,10 +167,7 @@ public class UserAdminService {
             cacheProvider.removeRequestInfo(account.getId());
             
             String healthCode = account.getHealthCode();
-            healthDataService.deleteRecordsForHealthCode(healthCode);
-            uploadService.deleteUploadsForHealthCode(healthCode);
-            scheduledActivityService.deleteActivitiesForUser(healthCode);
-            activityEventService.deleteActivityEvents(healthCode);
+            participantPurgeService.purgeParticipantData(healthCode);
 
             // Remove the externalId from the table even if validation is not enabled. If the study
             // turns it off/back on again, we want to track what has changed
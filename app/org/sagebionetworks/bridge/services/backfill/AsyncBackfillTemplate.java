@@ -38,6 +38,11 @@ abstract class AsyncBackfillTemplate implements BackfillService {
         this.backfillDao = backfillDao;
     }
 
+    /** @see #setBackfillDao */
+    BackfillDao getBackfillDao() {
+        return backfillDao;
+    }
+
     public BackfillRecordFactory getBackfillRecordFactory() {
         return backfillRecordFactory;
     }
@@ -66,53 +71,83 @@ abstract class AsyncBackfillTemplate implements BackfillService {
 
     private void lock(final String user, final String name, final BackfillCallback callback) {
         final Class<? extends AsyncBackfillTemplate> clazz = getClass();
-        final String obj = clazz.getSimpleName();
-        String lock = null;
-        try {
-            lock = lockDao.acquireLock(clazz, obj, getLockExpireInSeconds());
-            backfillTask(user, name, callback);
-        } catch (ConcurrentModificationException e) {
-            long since = DateTime.now(DateTimeZone.UTC).getMillis() - getLockExpireInSeconds() * 1000L;
-            List<? extends BackfillTask> tasks = backfillDao.getTasks(name, since);
-            if (tasks.isEmpty()) {
-                throw new RuntimeException("Failed to acquire lock but there is not recent backfill of " + name);
+        final int shardCount = getShardCount();
+        // Each shard has its own lock, so each call to this backfill takes the first shard nobody else holds. A shard
+        // that completes keeps its lock until it expires, so that later calls in the same run (including calls queued
+        // behind this one on this node) move on to the next shard instead of running the same shard again. A shard
+        // that fails releases its lock, so it can be resumed right away.
+        for (int shard = 0; shard < shardCount; shard++) {
+            final String obj = getShardName(clazz.getSimpleName(), shard, shardCount);
+            String lock = null;
+            try {
+                lock = lockDao.acquireLock(clazz, obj, getLockExpireInSeconds());
+            } catch (ConcurrentModificationException e) {
+                continue;
             }
-            // A backfill task may complete well within the lock expiration. If we look back over the
-            // duration of lock expiration, we could get more than one backfill tasks. Only the most
-            // recent one is blocking us; the rest should have finished. Check the most recent one and
-            // report back the progress.
-            final BackfillTask recentTask = tasks.get(tasks.size() - 1);
-            final int count = backfillDao.getRecordCount(recentTask.getId());
-            final String msg = "Found a recent task of " + name
-                    + " started at " + (new DateTime(recentTask.getTimestamp())).toString()
-                    + " with status " + recentTask.getStatus()
-                    + " and " + count + " records processed.";
-            callback.newRecords(backfillRecordFactory.createOnly(recentTask, msg));
-        } finally {
-            if (lock != null) {
-                lockDao.releaseLock(clazz, obj, lock);
+            boolean completed = false;
+            try {
+                completed = backfillTask(user, getShardName(name, shard, shardCount), shard, callback);
+            } finally {
+                if (!completed || shardCount == 1) {
+                    lockDao.releaseLock(clazz, obj, lock);
+                }
             }
+            return;
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            reportRecentTask(getShardName(name, shard, shardCount), callback);
         }
     }
 
-    private void backfillTask(final String user, final String name, final BackfillCallback callback) {
+    private void reportRecentTask(final String name, final BackfillCallback callback) {
+        long since = DateTime.now(DateTimeZone.UTC).getMillis() - getLockExpireInSeconds() * 1000L;
+        List<? extends BackfillTask> tasks = backfillDao.getTasks(name, since);
+        if (tasks.isEmpty()) {
+            throw new RuntimeException("Failed to acquire lock but there is not recent backfill of " + name);
+        }
+        // A backfill task may complete well within the lock expiration. If we look back over the
+        // duration of lock expiration, we could get more than one backfill tasks. Only the most
+        // recent one is blocking us; the rest should have finished. Check the most recent one and
+        // report back the progress.
+        final BackfillTask recentTask = tasks.get(tasks.size() - 1);
+        final int count = backfillDao.getRecordCount(recentTask.getId());
+        final String msg = "Found a recent task of " + name
+                + " started at " + (new DateTime(recentTask.getTimestamp())).toString()
+                + " with status " + recentTask.getStatus()
+                + " and " + count + " records processed.";
+        callback.newRecords(backfillRecordFactory.createOnly(recentTask, msg));
+    }
+
+    // Returns true if the task completed, false if it failed.
+    private boolean backfillTask(final String user, final String name, final int shard,
+            final BackfillCallback callback) {
         BackfillTask task = null;
         try {
             task = backfillDao.createTask(name, user);
             callback.start(task);
             backfillDao.updateTaskStatus(task.getId(), BackfillStatus.IN_PROCESS);
-            doBackfill(task, callback);
+            doBackfill(task, shard, callback);
             backfillDao.updateTaskStatus(task.getId(), BackfillStatus.COMPLETED);
+            return true;
         } catch (Throwable t) {
             logger.error("Backfill task " + name + " has failed.", t);
             if (task != null) {
                 backfillDao.updateTaskStatus(task.getId(), BackfillStatus.FAILED);
             }
+            return false;
         } finally {
             callback.done();
         }
     }
 
+    /**
+     * Shards are named after the backfill, so tasks and locks of different shards are tracked separately. A backfill
+     * with one shard keeps its plain name. Task IDs use a colon as a separator, so the shard is appended with a dash.
+     */
+    static String getShardName(String name, int shard, int shardCount) {
+        return (shardCount == 1) ? name : name + "-shard" + shard;
+    }
+
     /**
      * Records the specified message. This is a convenience method that wraps calling the BackfillRecordFactory to
      * create a message on a task and calls the callback with the BackfillRecord.
@@ -134,6 +169,22 @@ abstract class AsyncBackfillTemplate implements BackfillService {
      */
     abstract int getLockExpireInSeconds();
 
+    /**
+     * Number of shards the backfill is split into. Each call to start the backfill runs one shard, under its own
+     * lock, as its own task. Defaults to one shard, which runs the whole backfill on one node.
+     */
+    int getShardCount() {
+        return 1;
+    }
+
+    /**
+     * Does the backfill for one shard of the task. Backfills that aren't sharded don't need to override this; by
+     * default it calls {@link #doBackfill(BackfillTask, BackfillCallback)}.
+     */
+    void doBackfill(BackfillTask task, int shard, BackfillCallback callback) {
+        doBackfill(task, callback);
+    }
+
     /**
      * Does the actual backfill for the task. Reports back progress as the backfill goes.
      */
@@ -0,0 +1,251 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Resource;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.DateUtils;
+import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * <p>
+ * Backfills a list of items on a pool of worker threads. Items are started at a rate limited by the DynamoDB capacity
+ * the backfill may use, rather than by a fixed sleep between items.
+ * </p>
+ * <p>
+ * Progress is checkpointed in the backfill task as the number of items finished in list order. If a task doesn't
+ * complete (for example, the node crashes), the next task of the same name starts from that task's checkpoint. This
+ * requires the item list to be the same from one run to the next.
+ * </p>
+ * <p>
+ * An item that fails doesn't stop the backfill, but the checkpoint doesn't advance past it, and the task fails once
+ * the remaining items are done, so that the next run retries it. The task also stops starting items shortly before
+ * its lock expires, so two tasks never run the same items at once. Such a task fails too, and the next run resumes
+ * from its checkpoint.
+ * </p>
+ * <p>
+ * The backfill can be split across nodes. Items are assigned to shards by hash, and each node that starts the
+ * backfill runs the first shard whose lock is free.
+ * </p>
+ */
+public abstract class ParallelBackfillTemplate extends AsyncBackfillTemplate {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelBackfillTemplate.class);
+
+    // How many finished items between checkpoints
+    static final int CHECKPOINT_INTERVAL = 100;
+    // Only tasks started this recently are resumed
+    static final long RESUME_WINDOW_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    // Fraction of the lock expiration after which no more items are started, leaving the rest for in-flight items
+    static final double LOCK_EXPIRE_USABLE_FRACTION = 0.9;
+
+    private int threadCount;
+    private double capacityUnitsPerSecond;
+    private int shardCount;
+
+    /** Bridge config, used to get the thread count, DynamoDB capacity and shard count of backfills. */
+    @Resource(name = "bridgeConfig")
+    public final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        this.threadCount = bridgeConfig.getPropertyAsInt("backfill.thread.count");
+        this.capacityUnitsPerSecond = bridgeConfig.getPropertyAsInt("backfill.ddb.capacity.units.per.second");
+        this.shardCount = bridgeConfig.getPropertyAsInt("backfill.shard.count");
+    }
+
+    @Override
+    int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    void doBackfill(BackfillTask task, BackfillCallback callback) {
+        doBackfill(task, 0, callback);
+    }
+
+    @Override
+    void doBackfill(BackfillTask task, int shard, BackfillCallback callback) {
+        List<String> itemIdList;
+        try {
+            itemIdList = getShardItemIdList(getItemIdList(task, callback), shard);
+        } catch (IOException ex) {
+            // doBackfill() super class doesn't declare exceptions. Wrap this in a RuntimeException.
+            throw new RuntimeException(ex);
+        }
+
+        int checkpoint = getResumeCheckpoint(task);
+        if (checkpoint > 0) {
+            recordMessage(task, callback, "Resuming " + task.getName() + " after " + checkpoint + " of "
+                    + itemIdList.size() + " items");
+        }
+
+        // Stop starting items before the lock expires, so another task can't take the lock and run the same items.
+        long deadlineMillis = DateUtils.getCurrentMillisFromEpoch()
+                + (long) (getLockExpireInSeconds() * 1000L * LOCK_EXPIRE_USABLE_FRACTION);
+        boolean stoppedEarly = false;
+
+        RateLimiter rateLimiter = RateLimiter.create(capacityUnitsPerSecond / getCapacityUnitsPerItem());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                .setNameFormat(task.getName() + "-%d").setDaemon(true).build());
+        // Items in flight, in list order. Results are recorded from this thread, in order, so the callback doesn't
+        // need to be thread-safe and the checkpoint only covers items that have finished.
+        Deque<Future<ItemResult>> inFlight = new ArrayDeque<>();
+        Progress progress = new Progress(checkpoint);
+        try {
+            for (int i = checkpoint; i < itemIdList.size(); i++) {
+                if (DateUtils.getCurrentMillisFromEpoch() >= deadlineMillis) {
+                    stoppedEarly = true;
+                    break;
+                }
+                String oneItemId = itemIdList.get(i);
+                rateLimiter.acquire();
+                inFlight.add(executor.submit(() -> runItem(oneItemId)));
+                // Bound the queue, and record items as they finish.
+                while (!inFlight.isEmpty() && (inFlight.size() > threadCount * 2 || inFlight.peek().isDone())) {
+                    finishItem(task, callback, inFlight.remove(), progress);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                finishItem(task, callback, inFlight.remove(), progress);
+            }
+        } finally {
+            executor.shutdownNow();
+            getBackfillDao().updateTaskCheckpoint(task.getId(), progress.checkpoint);
+        }
+
+        if (progress.failedCount > 0) {
+            throw new RuntimeException(task.getName() + " failed to backfill " + progress.failedCount
+                    + " items. Run it again to retry them, starting after " + progress.checkpoint + " of "
+                    + itemIdList.size() + " items.");
+        }
+        if (stoppedEarly) {
+            throw new RuntimeException(task.getName() + " stopped before its lock expired. Run it again to resume "
+                    + "after " + progress.checkpoint + " of " + itemIdList.size() + " items.");
+        }
+        logger.info(task.getName() + " complete");
+    }
+
+    // Called from worker threads. Catches errors from backfillItem() so the remaining items still run.
+    private ItemResult runItem(String itemId) {
+        try {
+            return new ItemResult(backfillItem(itemId), true);
+        } catch (RuntimeException ex) {
+            String errMsg = "Error backfilling " + itemId + ": " + ex.getMessage();
+            logger.error(errMsg, ex);
+            return new ItemResult(errMsg, false);
+        }
+    }
+
+    private void finishItem(BackfillTask task, BackfillCallback callback, Future<ItemResult> item,
+            Progress progress) {
+        ItemResult result;
+        try {
+            result = item.get();
+        } catch (ExecutionException ex) {
+            // runItem() catches RuntimeExceptions. Anything else (such as an Error) fails the task.
+            throw new RuntimeException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        recordMessage(task, callback, result.message);
+
+        // Once an item fails, the checkpoint stays before it, so the next run retries it.
+        if (!result.succeeded) {
+            progress.failedCount++;
+        } else if (progress.failedCount == 0) {
+            progress.checkpoint++;
+            if (progress.checkpoint % CHECKPOINT_INTERVAL == 0) {
+                getBackfillDao().updateTaskCheckpoint(task.getId(), progress.checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Where this task starts in its item list. If the previous task of the same name (and shard) didn't complete,
+     * this is that task's checkpoint. Otherwise, the task starts at the beginning.
+     */
+    private int getResumeCheckpoint(BackfillTask task) {
+        long since = DateTime.now(DateTimeZone.UTC).getMillis() - RESUME_WINDOW_MILLIS;
+        List<? extends BackfillTask> tasks = getBackfillDao().getTasks(task.getName(), since);
+        BackfillTask previousTask = null;
+        for (BackfillTask oneTask : tasks) {
+            if (oneTask.getTimestamp() < task.getTimestamp()) {
+                previousTask = oneTask;
+            }
+        }
+        if (previousTask == null || BackfillStatus.COMPLETED.name().equals(previousTask.getStatus())) {
+            return 0;
+        }
+        return getBackfillDao().getTaskCheckpoint(previousTask.getId());
+    }
+
+    /** Message recorded for one item, and whether the item succeeded. */
+    private static final class ItemResult {
+        private final String message;
+        private final boolean succeeded;
+
+        ItemResult(String message, boolean succeeded) {
+            this.message = message;
+            this.succeeded = succeeded;
+        }
+    }
+
+    /** Checkpoint and failure count of a running task. Only used from the thread running the task. */
+    private static final class Progress {
+        private int checkpoint;
+        private int failedCount;
+
+        Progress(int checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+    }
+
+    /** The items in the given shard, in list order. */
+    private List<String> getShardItemIdList(List<String> itemIdList, int shard) {
+        if (shardCount == 1) {
+            return itemIdList;
+        }
+        List<String> shardItemIdList = new ArrayList<>();
+        for (String oneItemId : itemIdList) {
+            if (Math.floorMod(oneItemId.hashCode(), shardCount) == shard) {
+                shardItemIdList.add(oneItemId);
+            }
+        }
+        return shardItemIdList;
+    }
+
+    /**
+     * Roughly how many DynamoDB capacity units backfilling one item uses. Together with the configured capacity per
+     * second, this sets how many items are started per second.
+     */
+    abstract double getCapacityUnitsPerItem();
+
+    /**
+     * Subclasses should override this to return the IDs of the items to backfill. The list must be in the same order
+     * each time it's read, so that a resumed task skips the right items.
+     */
+    protected abstract List<String> getItemIdList(BackfillTask task, BackfillCallback callback) throws IOException;
+
+    /**
+     * Backfills one item and returns a message to record for it. This is called from worker threads, so it must be
+     * thread-safe. Items that can never be backfilled (for example, because they no longer exist) should return a
+     * message saying so. Other errors should be thrown: they are recorded as the item's message, the rest of the
+     * items still run, and the task then fails so that the next run retries the item.
+     */
+    protected abstract String backfillItem(String itemId);
+}
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -24,6 +25,7 @@ public class SchemaSurveyGuidBackfill extends AsyncBackfillTemplate {
 
     private StudyService studyService;
     private SurveyService surveyService;
+    private UploadSchemaDao uploadSchemaDao;
     private UploadSchemaService uploadSchemaService;
 
     /** Used to get all studies. */
@@ -38,7 +40,16 @@ public class SchemaSurveyGuidBackfill extends AsyncBackfillTemplate {
         this.surveyService = surveyService;
     }
 
-    /** Used to get and update survey schemas. */
+    /**
+     * Used to get survey schemas. Schemas from the schema service are shared with other requests, so they must not be
+     * modified. The DAO returns a copy of our own.
+     */
+    @Autowired
+    final void setUploadSchemaDao(UploadSchemaDao uploadSchemaDao) {
+        this.uploadSchemaDao = uploadSchemaDao;
+    }
+
+    /** Used to update survey schemas. */
     @Autowired
     final void setUploadSchemaService(UploadSchemaService uploadSchemaService) {
         this.uploadSchemaService = uploadSchemaService;
@@ -79,7 +90,7 @@ public class SchemaSurveyGuidBackfill extends AsyncBackfillTemplate {
 
                     try {
                         // Get schema and check if it already has survey guid and createdOn
-                        UploadSchema schema = uploadSchemaService.getUploadSchemaByIdAndRev(studyId, schemaId,
+                        UploadSchema schema = uploadSchemaDao.getUploadSchemaByIdAndRev(studyId, schemaId,
                                 schemaRev);
                         if (schema.getSurveyGuid() != null && schema.getSurveyCreatedOn() != null) {
                             recordMessage(task, callback, "Skipping schema " + schemaId + " rev " + schemaRev +
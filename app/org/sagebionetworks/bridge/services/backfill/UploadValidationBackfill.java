@@ -4,30 +4,27 @@ import java.io.IOException;
 import java.util.List;
 import javax.annotation.Resource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
 import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.exceptions.NotFoundException;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.s3.S3Helper;
-import org.sagebionetworks.bridge.services.UploadValidationService;
+import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
 
 /**
  * Re-drives upload validation. Depending on the sub-class, this can get upload IDs from a variety of sources. See
  * {@link UploadValidationByUploadIdBackfill} and TODO
  */
-public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
-    private static final Logger logger = LoggerFactory.getLogger(UploadValidationBackfill.class);
-
+public abstract class UploadValidationBackfill extends ParallelBackfillTemplate {
     private HealthCodeDao healthCodeDao;
     private S3Helper s3Helper;
     private UploadDao uploadDao;
-    private UploadValidationService uploadValidationService;
+    private UploadValidationTaskFactory uploadValidationTaskFactory;
 
     /** DAO for getting the study ID from a health code. This is configured by Spring. */
     @Autowired
@@ -52,59 +49,58 @@ public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
         this.uploadDao = uploadDao;
     }
 
-    /** Service handler for upload validation. This is configured by Spring. */
+    /**
+     * Factory for upload validation tasks. The backfill runs validation on its own worker threads, rather than
+     * through the upload validation queue, so that it can't fill the queue, and so its rate limit applies to
+     * validations done rather than validations queued. This is configured by Spring.
+     */
     @Autowired
-    public final void setUploadValidationService(UploadValidationService uploadValidationService) {
-        this.uploadValidationService = uploadValidationService;
+    public final void setUploadValidationTaskFactory(UploadValidationTaskFactory uploadValidationTaskFactory) {
+        this.uploadValidationTaskFactory = uploadValidationTaskFactory;
     }
 
     @Override
     int getLockExpireInSeconds() {
-        // We do roughly one upload per second. One hour should be enough for most cases.
+        // The task stops starting uploads shortly before the lock expires, and the next run resumes from its
+        // checkpoint. This must be longer than the slowest single validation.
         return 3600;
     }
 
     @Override
-    void doBackfill(BackfillTask task, BackfillCallback callback) {
-        // get list of upload IDs
-        List<String> uploadIdList;
+    double getCapacityUnitsPerItem() {
+        // Reads of the upload and the health code, plus the writes made by upload validation.
+        return 6;
+    }
+
+    /** @{inheritDoc} */
+    @Override
+    protected List<String> getItemIdList(BackfillTask task, BackfillCallback callback) throws IOException {
+        return getUploadIdList(task, callback);
+    }
+
+    /** @{inheritDoc} */
+    @Override
+    protected String backfillItem(String uploadId) {
+        // Get upload. Uploads that no longer exist can't be backfilled, so skip them rather than retry them. Other
+        // errors are thrown, so the upload is retried on the next run.
+        Upload upload;
         try {
-            uploadIdList = getUploadIdList(task, callback);
-        } catch (IOException ex) {
-            // doBackfill() super class doesn't declare exceptions. Wrap this in a RuntimeException.
-            throw new RuntimeException(ex);
+            upload = uploadDao.getUpload(uploadId);
+        } catch (NotFoundException ex) {
+            return "Skipped upload ID " + uploadId + ": " + ex.getMessage();
         }
 
-        for (String oneUploadId : uploadIdList) {
-            // rate limit so we down starve threads or brown out DDB
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ex) {
-                logger.error("Interrupted while sleeping: " + ex.getMessage(), ex);
-            }
-
-            try {
-                // Get upload.
-                Upload oneUpload = uploadDao.getUpload(oneUploadId);
-
-                // Get study ID from health code. Upload validation needs this.
-                String studyId = healthCodeDao.getStudyIdentifier(oneUpload.getHealthCode());
-                StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
-
-                // Kick off upload validation.
-                uploadValidationService.validateUpload(studyIdentifier, oneUpload);
-
-                recordMessage(task, callback, "Backfilled upload ID " + oneUploadId);
-                logger.info("Backfilled upload ID " + oneUploadId);
-            } catch (RuntimeException ex) {
-                // Ensure that errors won't fail the entire backfill. Log an error and move on.
-                String errMsg = "Error backfilling upload ID " + oneUploadId + ": " + ex.getMessage();
-                logger.error(errMsg, ex);
-                recordMessage(task, callback, errMsg);
-            }
+        // Get study ID from health code. Upload validation needs this.
+        String studyId = healthCodeDao.getStudyIdentifier(upload.getHealthCode());
+        if (studyId == null) {
+            return "Skipped upload ID " + uploadId + ": no study for health code";
         }
+        StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
+
+        // Validate the upload on this thread. The task records its own result in the upload's validation status.
+        uploadValidationTaskFactory.newTask(studyIdentifier, upload).run();
 
-        logger.info("UploadValidationBackfill complete");
+        return "Backfilled upload ID " + uploadId;
     }
 
     /** Subclasses should override this to return a list of upload IDs to redrive upload validation for. */
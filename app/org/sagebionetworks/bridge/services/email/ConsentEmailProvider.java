@@ -22,12 +22,12 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.DateUtils;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
+import org.sagebionetworks.bridge.services.ConsentPdfRenderer;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
-import org.xhtmlrenderer.pdf.ITextRenderer;
 
-import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.google.common.collect.Maps;
 import com.lowagie.text.DocumentException;
 
@@ -47,16 +47,29 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
     private ConsentSignature consentSignature;
     private SharingScope sharingScope;
     private String consentAgreementHTML;
-    private String consentTemplate;
+    private CompiledTemplate consentTemplate;
+    private ConsentPdfRenderer pdfRenderer;
 
     public ConsentEmailProvider(Study study, String userEmail, ConsentSignature consentSignature,
             SharingScope sharingScope, String consentAgreementHTML, String consentTemplate) {
+        this(study, userEmail, consentSignature, sharingScope, consentAgreementHTML,
+                CompiledTemplate.compile(consentTemplate), new ConsentPdfRenderer());
+    }
+
+    /**
+     * The consent page template is parsed once and shared between emails, and the PDF renderer is the server's
+     * (already warmed up) renderer.
+     */
+    public ConsentEmailProvider(Study study, String userEmail, ConsentSignature consentSignature,
+            SharingScope sharingScope, String consentAgreementHTML, CompiledTemplate consentTemplate,
+            ConsentPdfRenderer pdfRenderer) {
         this.study = study;
         this.userEmail = userEmail;
         this.consentSignature = consentSignature;
         this.sharingScope = sharingScope;
         this.consentAgreementHTML = consentAgreementHTML;
         this.consentTemplate = consentTemplate;
+        this.pdfRenderer = pdfRenderer;
     }
 
     @Override
@@ -156,18 +169,13 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
             map.put("participant.email", userEmail);
             map.put("participant.sharing", sharingLabel);
             
-            return BridgeUtils.resolveTemplate(consentTemplate, map);
+            return consentTemplate.resolve(map);
         }
     }
 
     private byte[] createPdf(final String consentDoc) {
-        try (ByteArrayBuilder byteArrayBuilder = new ByteArrayBuilder()) {
-            ITextRenderer renderer = new ITextRenderer();
-            renderer.setDocumentFromString(consentDoc);
-            renderer.layout();
-            renderer.createPDF(byteArrayBuilder);
-            byteArrayBuilder.flush();
-            return byteArrayBuilder.toByteArray();
+        try {
+            return pdfRenderer.render(consentDoc);
         } catch (DocumentException e) {
             throw new BridgeServiceException(e);
         }
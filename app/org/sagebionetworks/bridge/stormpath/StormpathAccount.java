@@ -43,6 +43,10 @@ import com.google.common.collect.Maps;
  * There are historical exceptions including the "<studyId>version" key for the health ID and 
  * no version for the phone value; these are handled in the current implementation. Again, on 
  * updating these values, the version keys will be updated.
+ * 
+ * Decrypted values are kept for the life of the object, so each value is decrypted at most once. Consent signatures 
+ * are only re-encrypted when {@link #getAccount()} is called if they have changed since they were read or last 
+ * encrypted.
  */
 @BridgeTypeName("Account")
 public class StormpathAccount implements Account {
@@ -62,6 +66,11 @@ public class StormpathAccount implements Account {
     private final String oldHealthIdVersionKey;
     private final String oldConsentSignatureKey;
     private final Map<SubpopulationGuid, List<ConsentSignature>> allSignatures;
+    // Decrypted values by key, including null for keys with no value. Values are only added by decryptFrom() and 
+    // encryptTo(), so they always match what's in customData.
+    private final Map<String, String> decryptedValues;
+    // The JSON of each signature list as it was read from or last written to customData
+    private final Map<SubpopulationGuid, String> storedSignaturesJson;
 
     private com.stormpath.sdk.account.Account acct;
     private ImmutableSet<Roles> roles;
@@ -76,6 +85,7 @@ public class StormpathAccount implements Account {
 
         String studyId = studyIdentifier.getIdentifier();
         
+        this.decryptedValues = Maps.newHashMap();
         setAccount(acct);
         this.studyIdentifier = studyIdentifier;
         this.encryptors = encryptors;
@@ -83,6 +93,7 @@ public class StormpathAccount implements Account {
         this.oldHealthIdVersionKey = studyId + OLD_VERSION_SUFFIX;
         this.oldConsentSignatureKey = studyId + CONSENT_SIGNATURE_SUFFIX;
         this.allSignatures = Maps.newHashMap();
+        this.storedSignaturesJson = Maps.newHashMap();
         
         for (SubpopulationGuid subpopGuid : subpopGuids) {
             List<ConsentSignature> signatures = decryptJSONFrom(subpopGuid.getGuid()+CONSENT_SIGNATURES_SUFFIX, CONSENT_SIGNATURES_TYPE);
@@ -93,18 +104,27 @@ public class StormpathAccount implements Account {
                 }
             } else {
                 getConsentSignatureHistory(subpopGuid).addAll(signatures);
+                String key = subpopGuid.getGuid()+CONSENT_SIGNATURES_SUFFIX;
+                storedSignaturesJson.put(subpopGuid, toJSON(key, signatures));
             }
         }
     }
     
     public com.stormpath.sdk.account.Account getAccount() {
         for (Map.Entry<SubpopulationGuid, List<ConsentSignature>> entry : allSignatures.entrySet()) {
-            encryptJSONTo(entry.getKey().getGuid()+CONSENT_SIGNATURES_SUFFIX, entry.getValue());
+            String key = entry.getKey().getGuid()+CONSENT_SIGNATURES_SUFFIX;
+            String json = toJSON(key, entry.getValue());
+            // Only encrypt signatures that have changed. Callers modify the lists directly, so compare the JSON.
+            if (!json.equals(storedSignaturesJson.get(entry.getKey()))) {
+                encryptTo(key, json);
+                storedSignaturesJson.put(entry.getKey(), json);
+            }
         }
         return acct;
     }
     public void setAccount(com.stormpath.sdk.account.Account acct) {
         this.acct = acct;
+        this.decryptedValues.clear();
         this.roles = ImmutableSet.copyOf(BridgeUtils.convertRolesQuietly(acct.getGroups()));
     }
     
@@ -203,15 +223,9 @@ public class StormpathAccount implements Account {
         java.util.Date javaDate = acct.getCreatedAt();
         return (javaDate == null) ? null : new DateTime(javaDate).withZone(DateTimeZone.UTC); 
     }
-    private void encryptJSONTo(String key, Object value) {
-        if (value == null) {
-            acct.getCustomData().remove(key);
-            acct.getCustomData().remove(key+VERSION_SUFFIX);
-            return;
-        }
+    private String toJSON(String key, Object value) {
         try {
-            String jsonString = MAPPER.writeValueAsString(value);
-            encryptTo(key, jsonString);
+            return MAPPER.writeValueAsString(value);
         } catch(JsonProcessingException e) {
             String message = String.format("Could not store %s due to malformed JSON: %s", key, e.getMessage());
             throw new BridgeServiceException(message);
@@ -245,6 +259,7 @@ public class StormpathAccount implements Account {
     }
     
     private void encryptTo(String key, String value) {
+        decryptedValues.put(key, value);
         if (value == null) {
             acct.getCustomData().remove(key);
             acct.getCustomData().remove(key+VERSION_SUFFIX);
@@ -260,8 +275,12 @@ public class StormpathAccount implements Account {
     }
     
     private String decryptFrom(String key) {
+        if (decryptedValues.containsKey(key)) {
+            return decryptedValues.get(key);
+        }
         String encryptedString = (String)acct.getCustomData().get(key);
         if (encryptedString == null) {
+            decryptedValues.put(key, null);
             return null;
         }
         // Decryption is always done with the version that was used for encryption.
@@ -270,7 +289,9 @@ public class StormpathAccount implements Account {
         if (encryptor == null) {
             throw new BridgeServiceException("No encryptor can be found for version " + version);
         }
-        return encryptor.decrypt(encryptedString);
+        String value = encryptor.decrypt(encryptedString);
+        decryptedValues.put(key, value);
+        return value;
     }
     
     /**
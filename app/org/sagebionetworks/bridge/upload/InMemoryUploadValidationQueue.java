@@ -0,0 +1,106 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.json.DateUtils;
+
+/**
+ * Upload validation queue held in memory, for a single server node (unit tests, or running without Redis). It has
+ * the same lease semantics as the shared queue, but does not survive a restart.
+ */
+public class InMemoryUploadValidationQueue implements UploadValidationQueue {
+
+    private static final class Lease {
+        private final UploadValidationLease lease;
+        private long expiresOn;
+
+        Lease(UploadValidationLease lease, long expiresOn) {
+            this.lease = lease;
+            this.expiresOn = expiresOn;
+        }
+    }
+
+    // Study IDs keyed by upload ID, for everything in the queue.
+    private final Map<String, String> studyIds = new HashMap<>();
+    private final Queue<String> pending = new ArrayDeque<>();
+    private final Map<String, Lease> leases = new HashMap<>();
+
+    @Override
+    public synchronized UploadValidationLease addLeased(String studyId, String uploadId, int leaseSeconds) {
+        checkNotNull(studyId);
+        checkNotNull(uploadId);
+        checkArgument(leaseSeconds > 0);
+        if (studyIds.putIfAbsent(uploadId, studyId) != null) {
+            return null;
+        }
+        return newLease(studyId, uploadId, leaseSeconds);
+    }
+
+    @Override
+    public synchronized UploadValidationLease lease(int leaseSeconds) {
+        checkArgument(leaseSeconds > 0);
+        String uploadId = pending.poll();
+        if (uploadId == null) {
+            return null;
+        }
+        return newLease(studyIds.get(uploadId), uploadId, leaseSeconds);
+    }
+
+    @Override
+    public synchronized boolean renew(UploadValidationLease lease, int leaseSeconds) {
+        checkNotNull(lease);
+        checkArgument(leaseSeconds > 0);
+        Lease current = leases.get(lease.getUploadId());
+        if (current == null || !current.lease.equals(lease)) {
+            return false;
+        }
+        current.expiresOn = expiresOn(leaseSeconds);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean complete(UploadValidationLease lease) {
+        checkNotNull(lease);
+        Lease current = leases.get(lease.getUploadId());
+        if (current == null || !current.lease.equals(lease)) {
+            return false;
+        }
+        leases.remove(lease.getUploadId());
+        studyIds.remove(lease.getUploadId());
+        return true;
+    }
+
+    @Override
+    public synchronized int requeueExpired() {
+        long now = DateUtils.getCurrentMillisFromEpoch();
+        int count = 0;
+        Iterator<Lease> leaseIter = leases.values().iterator();
+        while (leaseIter.hasNext()) {
+            Lease oneLease = leaseIter.next();
+            if (oneLease.expiresOn <= now) {
+                leaseIter.remove();
+                pending.add(oneLease.lease.getUploadId());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private UploadValidationLease newLease(String studyId, String uploadId, int leaseSeconds) {
+        UploadValidationLease lease = new UploadValidationLease(studyId, uploadId, BridgeUtils.generateGuid());
+        leases.put(uploadId, new Lease(lease, expiresOn(leaseSeconds)));
+        return lease;
+    }
+
+    private static long expiresOn(int leaseSeconds) {
+        return DateUtils.getCurrentMillisFromEpoch() + leaseSeconds * 1000L;
+    }
+}
@@ -15,6 +15,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
@@ -24,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.dao.HealthDataDao;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.json.DateUtils;
@@ -66,6 +68,8 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
 
     private static final String FILENAME_INFO_JSON = "info.json";
     private static final Pattern FILENAME_TIMESTAMP_PATTERN = Pattern.compile("-\\d{8,}");
+    private static final int SPILL_THRESHOLD_BYTES = BridgeConfigFactory.getConfig().getPropertyAsInt(
+            "upload.validation.spill.threshold");
     private static final String KEY_FILENAME = "filename";
     private static final String KEY_FILES = "files";
     private static final String KEY_IDENTIFIER = "identifier";
@@ -137,10 +141,11 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         StudyIdentifier study = context.getStudy();
         String studyId = study.getIdentifier();
 
-        // Add empty record builder and attachment map to the context. We'll fill these in as we need them.
+        // Add empty record builder and attachment map to the context. We'll fill these in as we need them. Large
+        // attachments are held in temp files, which UploadValidationTask deletes when validation finishes.
         HealthDataRecordBuilder recordBuilder = healthDataDao.getRecordBuilder();
         context.setHealthDataRecordBuilder(recordBuilder);
-        Map<String, byte[]> attachmentMap = new HashMap<>();
+        Map<String, byte[]> attachmentMap = new SpillingDataMap(SPILL_THRESHOLD_BYTES);
         context.setAttachmentsByFieldName(attachmentMap);
 
         // health data records fields
@@ -449,14 +454,18 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         Map<String, JsonNode> flattenedJsonDataMap = flattenJsonDataMap(jsonDataMap);
 
         Map<String, JsonNode> sanitizedFlattenedJsonDataMap = sanitizeFieldNames(flattenedJsonDataMap);
-        Map<String, byte[]> sanitizedUnzippedDataMap = sanitizeFieldNames(unzippedDataMap);
+        // Only the filenames are sanitized, so unzipped files are read one at a time, as they're added to the
+        // attachment map, rather than all copied at once.
+        Map<String, String> unzippedFilenamesBySanitizedName = sanitizeFieldNames(Maps.asMap(
+                unzippedDataMap.keySet(), filename -> filename));
 
         // Using schema, copy fields over to data map. Or if it's an attachment, add it to the attachment map.
         for (UploadFieldDefinition oneFieldDef : schema.getFieldDefinitions()) {
             String fieldName = oneFieldDef.getName();
 
-            if (sanitizedUnzippedDataMap.containsKey(fieldName)) {
-                addAttachment(attachmentMap, fieldName, sanitizedUnzippedDataMap.get(fieldName));
+            if (unzippedFilenamesBySanitizedName.containsKey(fieldName)) {
+                addAttachment(attachmentMap, fieldName, unzippedDataMap.get(
+                        unzippedFilenamesBySanitizedName.get(fieldName)));
             } else if (sanitizedFlattenedJsonDataMap.containsKey(fieldName)) {
                 copyJsonField(context, uploadId, sanitizedFlattenedJsonDataMap.get(fieldName), oneFieldDef, dataMap,
                         attachmentMap);
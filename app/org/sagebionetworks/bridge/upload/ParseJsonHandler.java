@@ -31,18 +31,28 @@ public class ParseJsonHandler implements UploadValidationHandler {
             Map.Entry<String, byte[]> oneUnzippedData = unzippedDataIter.next();
             String entryName = oneUnzippedData.getKey();
 
-            try {
-                // Try to parse it as JSON. If you can, remove the entry from unzippedDataMap and add it to
-                // jsonDataMap.
-                JsonNode jsonNode = BridgeObjectMapper.get().readTree(oneUnzippedData.getValue());
+            // Try to parse it as JSON. If you can, remove the entry from unzippedDataMap and add it to jsonDataMap.
+            JsonNode jsonNode = tryParseJson(oneUnzippedData.getValue());
+            if (jsonNode != null) {
                 jsonDataMap.put(entryName, jsonNode);
                 unzippedDataIter.remove();
-            } catch (Exception ex) {
-                // Can't parse this as a JSON node. This could be normal (for example, for audio files). Ignore the
-                // error and move on.
             }
         }
 
         context.setJsonDataMap(jsonDataMap);
     }
+
+    /**
+     * Parses the given bytes as JSON, or returns null if they aren't JSON. Package-scoped so that
+     * {@link StreamingUnpackHandler} parses entries the same way.
+     */
+    static JsonNode tryParseJson(byte[] bytes) {
+        try {
+            return BridgeObjectMapper.get().readTree(bytes);
+        } catch (Exception ex) {
+            // Can't parse this as a JSON node. This could be normal (for example, for audio files). Ignore the
+            // error and move on.
+            return null;
+        }
+    }
 }
@@ -0,0 +1,239 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+/**
+ * <p>
+ * Map of upload file data as bytes, keyed by filename or field name, that keeps large entries out of memory. Entries
+ * up to the spill threshold are held in memory. Larger entries are written to a temp file when they're put, and read
+ * back from it each time they're gotten, so an upload with many large files only holds the one being worked on.
+ * </p>
+ * <p>
+ * Values are read lazily, including through {@link #entrySet}, so iterating over the map holds one large entry at a
+ * time. Copying the map (for example, into a HashMap) reads every entry, and defeats the purpose. To avoid reading
+ * the old value back from its temp file, {@link #put} always returns null.
+ * </p>
+ * <p>
+ * The temp files are deleted when their entries are removed or replaced, and when the map is closed. This map is not
+ * thread-safe.
+ * </p>
+ */
+public class SpillingDataMap extends AbstractMap<String, byte[]> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SpillingDataMap.class);
+
+    private static final String TEMP_FILE_PREFIX = "upload-entry-";
+
+    /** One entry's data, either in memory or in a temp file. */
+    private static final class Data {
+        private final byte[] bytes;
+        private final Path file;
+
+        Data(byte[] bytes, Path file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        byte[] read() {
+            if (bytes != null) {
+                return bytes;
+            }
+            try {
+                return Files.readAllBytes(file);
+            } catch (IOException ex) {
+                throw new BridgeServiceException(ex);
+            }
+        }
+
+        void delete() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                    logger.warn("Error deleting upload entry temp file " + file + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /** Map entry that reads its value when it's asked for. */
+    private static final class LazyEntry implements Map.Entry<String, byte[]> {
+        private final String key;
+        private final Data data;
+
+        LazyEntry(String key, Data data) {
+            this.key = key;
+            this.data = data;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return data.read();
+        }
+
+        @Override
+        public byte[] setValue(byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return Objects.equals(key, other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+    }
+
+    private final int spillThresholdBytes;
+    private final Map<String, Data> dataMap = new HashMap<>();
+
+    /**
+     * @param spillThresholdBytes
+     *         entries larger than this many bytes are written to temp files
+     */
+    public SpillingDataMap(int spillThresholdBytes) {
+        checkArgument(spillThresholdBytes >= 0);
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+
+    /** True if the entry is held in a temp file. This is package-scoped to facilitate unit tests. */
+    boolean isSpilled(String key) {
+        Data data = dataMap.get(key);
+        return data != null && data.file != null;
+    }
+
+    @Override
+    public int size() {
+        return dataMap.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return dataMap.containsKey(key);
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        Data data = dataMap.get(key);
+        return (data != null) ? data.read() : null;
+    }
+
+    /** Adds or replaces the entry, spilling it to a temp file if it's large. Always returns null. */
+    @Override
+    public byte[] put(String key, byte[] value) {
+        checkNotNull(key);
+        checkNotNull(value);
+
+        Data data;
+        if (value.length > spillThresholdBytes) {
+            Path file = null;
+            try {
+                file = Files.createTempFile(TEMP_FILE_PREFIX, null);
+                Files.write(file, value);
+            } catch (IOException ex) {
+                new Data(null, file).delete();
+                throw new BridgeServiceException(ex);
+            }
+            data = new Data(null, file);
+        } else {
+            data = new Data(value, null);
+        }
+
+        Data previous = dataMap.put(key, data);
+        if (previous != null) {
+            previous.delete();
+        }
+        return null;
+    }
+
+    @Override
+    public byte[] remove(Object key) {
+        Data data = dataMap.remove(key);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return data.read();
+        } finally {
+            data.delete();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Data data : dataMap.values()) {
+            data.delete();
+        }
+        dataMap.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, byte[]>> entrySet() {
+        return new AbstractSet<Map.Entry<String, byte[]>>() {
+            @Override
+            public int size() {
+                return dataMap.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, byte[]>> iterator() {
+                Iterator<Map.Entry<String, Data>> dataIter = dataMap.entrySet().iterator();
+                return new Iterator<Map.Entry<String, byte[]>>() {
+                    private Map.Entry<String, Data> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return dataIter.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, byte[]> next() {
+                        current = dataIter.next();
+                        return new LazyEntry(current.getKey(), current.getValue());
+                    }
+
+                    @Override
+                    public void remove() {
+                        dataIter.remove();
+                        current.getValue().delete();
+                    }
+                };
+            }
+        };
+    }
+
+    /** Deletes the temp files and empties the map. */
+    @Override
+    public void close() {
+        clear();
+    }
+}
@@ -0,0 +1,102 @@
+package org.sagebionetworks.bridge.upload;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+
+/**
+ * <p>
+ * Validation handler that downloads, decrypts, unzips, and parses the upload in a single pass. This replaces
+ * {@link S3DownloadHandler}, {@link DecryptHandler}, {@link UnzipHandler}, and {@link ParseJsonHandler}. The S3 object
+ * stream is piped through CMS decryption and unzipping, and each zip entry is parsed as soon as it's read. JSON entries
+ * are written to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getJsonDataMap} and all other
+ * entries to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getUnzippedDataMap}, exactly as the
+ * non-streaming handlers would.
+ * </p>
+ * <p>
+ * Neither the encrypted nor the decrypted archive is ever held in memory as a whole, so this handler does not set
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getData} or
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getDecryptedData}.
+ * </p>
+ * <p>
+ * Entries are unzipped one at a time, and non-JSON entries larger than upload.validation.spill.threshold are written
+ * to temp files (see {@link SpillingDataMap}), so only one large entry is in memory at a time. JSON entries are held
+ * as parsed trees. The temp files are deleted by {@link UploadValidationTask} when validation finishes.
+ * </p>
+ */
+@Component
+public class StreamingUnpackHandler implements UploadValidationHandler {
+    private static final String UPLOAD_BUCKET = BridgeConfigFactory.getConfig().getProperty("upload.bucket");
+    private static final int SPILL_THRESHOLD_BYTES = BridgeConfigFactory.getConfig().getPropertyAsInt(
+            "upload.validation.spill.threshold");
+
+    private AmazonS3Client s3Client;
+    private UploadArchiveService uploadArchiveService;
+
+    /** S3 client, for streaming the upload from S3. This is configured by Spring. */
+    @Resource(name = "s3Client")
+    public void setS3Client(AmazonS3Client s3Client) {
+        this.s3Client = s3Client;
+    }
+
+    /** Upload archive service, which handles decrypting and unzipping of files. This is configured by Spring. */
+    @Autowired
+    public void setUploadArchiveService(UploadArchiveService uploadArchiveService) {
+        this.uploadArchiveService = uploadArchiveService;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(@Nonnull UploadValidationContext context) throws UploadValidationException {
+        SpillingDataMap unzippedDataMap = new SpillingDataMap(SPILL_THRESHOLD_BYTES);
+        Map<String, JsonNode> jsonDataMap = new HashMap<>();
+
+        S3ObjectInputStream s3Stream = s3Client.getObject(UPLOAD_BUCKET, context.getUpload().getObjectId())
+                .getObjectContent();
+        boolean unpacked = false;
+        try {
+            InputStream decryptedStream = uploadArchiveService.decrypt(context.getStudy().getIdentifier(), s3Stream);
+            uploadArchiveService.unzip(decryptedStream, (entryName, entryBytes) -> {
+                JsonNode jsonNode = ParseJsonHandler.tryParseJson(entryBytes);
+                if (jsonNode != null) {
+                    jsonDataMap.put(entryName, jsonNode);
+                } else {
+                    unzippedDataMap.put(entryName, entryBytes);
+                }
+            });
+
+            // Unzipping stops at the last entry, before the zip directory and the end of the encrypted data. Read the
+            // rest of the object, so closing the stream doesn't abort the connection to S3.
+            IOUtils.skip(decryptedStream, Long.MAX_VALUE);
+            IOUtils.skip(s3Stream, Long.MAX_VALUE);
+            unpacked = true;
+        } catch (IOException ex) {
+            throw new UploadValidationException(ex);
+        } finally {
+            if (unpacked) {
+                IOUtils.closeQuietly(s3Stream);
+            } else {
+                // Don't read the rest of an object we've given up on. Abort the connection, which also closes the
+                // stream.
+                s3Stream.abort();
+                unzippedDataMap.close();
+            }
+        }
+
+        context.setUnzippedDataMap(unzippedDataMap);
+        context.setJsonDataMap(jsonDataMap);
+    }
+}
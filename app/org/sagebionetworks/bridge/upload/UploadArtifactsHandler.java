@@ -3,19 +3,34 @@ package org.sagebionetworks.bridge.upload;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.dao.RecordDedupeDao;
+import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.exceptions.NotFoundException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
+import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.s3.S3Helper;
 import org.sagebionetworks.bridge.services.HealthDataService;
 
@@ -25,30 +40,113 @@ public class UploadArtifactsHandler implements UploadValidationHandler {
 
     private static final String ATTACHMENT_BUCKET = BridgeConfigFactory.getConfig().getProperty("attachment.bucket");
 
+    // Writes JSON with object fields in sorted order, so equal data always hashes the same.
+    private static final ObjectWriter CANONICAL_WRITER = BridgeObjectMapper.get().writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
     private HealthDataService healthDataService;
+    private RecordDedupeDao recordDedupeDao;
     private S3Helper s3Helper;
+    private UploadDao uploadDao;
+    private boolean suppressDuplicates = Boolean.parseBoolean(BridgeConfigFactory.getConfig().getProperty(
+            "upload.dedupe.suppress.duplicates"));
 
     @Autowired
     public void setHealthDataService(HealthDataService healthDataService) {
         this.healthDataService = healthDataService;
     }
 
+    /** DAO for registering record content, to detect duplicate records before they're written. */
+    @Autowired
+    public void setRecordDedupeDao(RecordDedupeDao recordDedupeDao) {
+        this.recordDedupeDao = recordDedupeDao;
+    }
+
+    /**
+     * If true, duplicate records are not written. If false (the default), duplicates are only logged. This setter is
+     * called by tests.
+     */
+    void setSuppressDuplicates(boolean suppressDuplicates) {
+        this.suppressDuplicates = suppressDuplicates;
+    }
+
     @Resource(name = "s3Helper")
     public void setS3Helper(S3Helper s3Helper) {
         this.s3Helper = s3Helper;
     }
 
+    /** DAO for reading the original upload of a duplicate record, to check that its record was written. */
+    @Autowired
+    public void setUploadDao(UploadDao uploadDao) {
+        this.uploadDao = uploadDao;
+    }
+
     @Override
     public void handle(@Nonnull UploadValidationContext context) {
         String uploadId = context.getUpload().getUploadId();
 
-        // step 1: upload health data record
+        // step 0: check for duplicates, before anything is written. Dedupe is best effort: if it fails, the record is
+        // written as though it weren't a duplicate.
         HealthDataRecordBuilder recordBuilder = context.getHealthDataRecordBuilder();
         HealthDataRecord record = recordBuilder.build();
+        Map<String, byte[]> attachmentMap = context.getAttachmentsByFieldName();
+        String healthCode = record.getHealthCode();
+        String contentHash = null;
+        try {
+            contentHash = getContentHash(record, attachmentMap);
+            String originalUploadId = recordDedupeDao.registerRecord(healthCode, contentHash, uploadId);
+            if (originalUploadId != null) {
+                if (isRecordWritten(originalUploadId)) {
+                    logDuplicateRecord(record, uploadId, originalUploadId);
+                    if (suppressDuplicates) {
+                        context.addMessage(String.format(
+                                "Upload ID %s is a duplicate of upload ID %s. Record not written.", uploadId,
+                                originalUploadId));
+                        return;
+                    }
+                } else {
+                    // The original upload never wrote its record (for example, it failed or is still in progress),
+                    // so this isn't a duplicate. Take over the registration, so later uploads are compared against
+                    // this one.
+                    recordDedupeDao.replaceRegistration(healthCode, contentHash, originalUploadId, uploadId);
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Error checking for duplicate record for upload ID " + uploadId + ": " + ex.getMessage(), ex);
+        }
+
+        // Until the record and its attachments are written, the registration must not make a re-upload of the same
+        // content look like a duplicate. If anything fails, release it.
+        boolean written = false;
+        try {
+            written = writeRecordAndAttachments(context, record, attachmentMap);
+        } finally {
+            if (!written && contentHash != null) {
+                unregisterRecord(healthCode, contentHash, uploadId);
+            }
+        }
+    }
+
+    // Releases this upload's registration, if it holds one. Errors are logged, so they don't hide the write failure.
+    private void unregisterRecord(String healthCode, String contentHash, String uploadId) {
+        try {
+            recordDedupeDao.unregisterRecord(healthCode, contentHash, uploadId);
+        } catch (RuntimeException ex) {
+            logger.error("Error releasing duplicate record registration for upload ID " + uploadId + ": "
+                    + ex.getMessage(), ex);
+        }
+    }
+
+    // Returns true if the record and all its attachments were written.
+    private boolean writeRecordAndAttachments(UploadValidationContext context, HealthDataRecord record,
+            Map<String, byte[]> attachmentMap) {
+        String uploadId = context.getUpload().getUploadId();
+        boolean attachmentsWritten = true;
+
+        // step 1: upload health data record
         String recordId = healthDataService.createOrUpdateRecord(record);
         context.setRecordId(recordId);
 
-        Map<String, byte[]> attachmentMap = context.getAttachmentsByFieldName();
         if (!attachmentMap.isEmpty()) {
             // step 2: upload health data attachments
             Map<String, String> attachmentIdsByFieldName = new HashMap<>();
@@ -68,6 +166,7 @@ public class UploadArtifactsHandler implements UploadValidationHandler {
                 } catch (IOException ex) {
                     addMessageAndWarn(context, String.format("Upload ID %s error uploading attachment for field %s: %s",
                             uploadId, fieldName, ex.getMessage()), ex);
+                    attachmentsWritten = false;
                 }
             }
 
@@ -97,6 +196,72 @@ public class UploadArtifactsHandler implements UploadValidationHandler {
             HealthDataRecord updatedRecord = updatedRecordBuilder.build();
             healthDataService.createOrUpdateRecord(updatedRecord);
         }
+        return attachmentsWritten;
+    }
+
+    /**
+     * True if the given upload finished validation and its record still exists. A registration whose record was
+     * never written (or has since been deleted) doesn't make later uploads duplicates.
+     */
+    private boolean isRecordWritten(String originalUploadId) {
+        Upload originalUpload;
+        try {
+            originalUpload = uploadDao.getUpload(originalUploadId);
+        } catch (NotFoundException ex) {
+            return false;
+        }
+        String originalRecordId = originalUpload.getRecordId();
+        return originalUpload.getStatus() == UploadStatus.SUCCEEDED && originalRecordId != null
+                && healthDataService.getRecordById(originalRecordId) != null;
+    }
+
+    /**
+     * Hash of the record's content: its schema, created on time, data and attachments. The health code is stored
+     * alongside the hash. Data is canonicalized so that field order doesn't matter.
+     */
+    static String getContentHash(HealthDataRecord record, Map<String, byte[]> attachmentMap) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, record.getSchemaId());
+        hasher.putInt(record.getSchemaRevision());
+        hasher.putLong(record.getCreatedOn() != null ? record.getCreatedOn() : 0L);
+        putString(hasher, toCanonicalJson(record.getData()));
+
+        // Attachments may be held in temp files, so read them one at a time rather than copying the map.
+        SortedSet<String> sortedFieldNames = new TreeSet<>(attachmentMap.keySet());
+        for (String fieldName : sortedFieldNames) {
+            byte[] data = attachmentMap.get(fieldName);
+            putString(hasher, fieldName);
+            hasher.putInt(data.length);
+            hasher.putBytes(data);
+        }
+        return hasher.hash().toString();
+    }
+
+    // Length-prefixed, so adjacent strings can't run together.
+    private static void putString(Hasher hasher, String value) {
+        String nonNullValue = (value != null) ? value : "";
+        hasher.putInt(nonNullValue.length());
+        hasher.putString(nonNullValue, Charsets.UTF_8);
+    }
+
+    private static String toCanonicalJson(JsonNode data) {
+        if (data == null) {
+            return "";
+        }
+        try {
+            // Sorting only applies to maps, so convert the tree to maps first.
+            Object dataValue = BridgeObjectMapper.get().treeToValue(data, Object.class);
+            return CANONICAL_WRITER.writeValueAsString(dataValue);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Package-scoped so we can spy this and verify this is being called.
+    void logDuplicateRecord(HealthDataRecord record, String uploadId, String originalUploadId) {
+        logger.info("Duplicate health data record for upload ID: " + uploadId + ", original upload ID: "
+                + originalUploadId + ", created on: " + record.getCreatedOn() + ", schema id: " + record.getSchemaId()
+                + ", study: " + record.getStudyId());
     }
 
     private static void addMessageAndWarn(UploadValidationContext context, String message, Throwable ex) {
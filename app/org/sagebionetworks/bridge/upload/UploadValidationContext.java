@@ -104,7 +104,9 @@ public class UploadValidationContext {
     /**
      * Unzipped data as bytes, keyed by filename. This is initially created by the UnzipHandler. The ParseJsonHandler
      * will read this and remove entries that can be parsed into JSON. Non-JSON entries will still remain in this map.
-     * This is also read by the IosSchemaValidationHandler.
+     * This is also read by the IosSchemaValidationHandler. When uploads are streamed, the StreamingUnpackHandler
+     * creates this with only the non-JSON entries, as a {@link SpillingDataMap}, so read entries one at a time rather
+     * than copying the map.
      */
     public Map<String, byte[]> getUnzippedDataMap() {
         return unzippedDataMap;
@@ -116,8 +118,8 @@ public class UploadValidationContext {
     }
 
     /**
-     * Parsed JSON data, keyed by filename. This is created by the ParseJsonHandler and read by the
-     * IosSchemaValidationHandler.
+     * Parsed JSON data, keyed by filename. This is created by the ParseJsonHandler (or by the StreamingUnpackHandler,
+     * when uploads are streamed) and read by the IosSchemaValidationHandler.
      */
     public Map<String, JsonNode> getJsonDataMap() {
         return jsonDataMap;
@@ -145,8 +147,8 @@ public class UploadValidationContext {
     /**
      * Map of health data attachments, keyed off the field name in the health data record. These files will be uploaded
      * to external storage (most likely S3) with metadata stored in Health Data Attachments table and field references
-     * in the health data record. This is created by IosSchemaValidationHandler and is uploaded by
-     * UploadArtifactsHandler.
+     * in the health data record. This is created by IosSchemaValidationHandler (as a {@link SpillingDataMap}) and is
+     * uploaded by UploadArtifactsHandler.
      */
     public Map<String, byte[]> getAttachmentsByFieldName() {
         return attachmentsByFieldName;
@@ -0,0 +1,215 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.exceptions.NotFoundException;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.models.upload.UploadStatus;
+
+/**
+ * <p>
+ * Dispatches upload validation tasks to the {@link UploadValidationExecutor}, backed by the durable
+ * {@link UploadValidationQueue}. Every upload handed to this node is recorded in the queue with a lease held by this
+ * node, before the upload is marked complete, so an upload is never in VALIDATION_IN_PROGRESS without being in the
+ * queue. The lease is renewed for as long as the upload is waiting for or running on a worker, and is completed once
+ * validation finishes.
+ * </p>
+ * <p>
+ * If a node dies, its leases expire. Every node periodically puts expired uploads back in the queue and, whenever its
+ * own workers are idle, leases uploads from the queue and validates them. This also lets idle nodes pick up work that
+ * busy nodes can't get to.
+ * </p>
+ */
+public class UploadValidationDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadValidationDispatcher.class);
+
+    private static final long RECOVERY_INTERVAL_SECONDS = 30;
+
+    private final UploadValidationQueue queue;
+    private final UploadValidationExecutor executor;
+    private final UploadValidationTaskFactory taskFactory;
+    private final UploadDao uploadDao;
+    private final int leaseSeconds;
+    private final ConcurrentMap<String, UploadValidationLease> activeLeases = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param leaseSeconds
+     *         how long a lease lasts without renewal, which is how long an upload goes unattended if a node dies
+     */
+    public UploadValidationDispatcher(UploadValidationQueue queue, UploadValidationExecutor executor,
+            UploadValidationTaskFactory taskFactory, UploadDao uploadDao, int leaseSeconds) {
+        checkArgument(leaseSeconds > 0);
+        this.queue = checkNotNull(queue);
+        this.executor = checkNotNull(executor);
+        this.taskFactory = checkNotNull(taskFactory);
+        this.uploadDao = checkNotNull(uploadDao);
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /** Start renewing leases and recovering uploads from the queue. */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("upload-validation-dispatcher").setDaemon(true).build());
+        long heartbeatSeconds = Math.max(1, leaseSeconds / 3);
+        scheduler.scheduleWithFixedDelay(this::renewLeases, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::recover, RECOVERY_INTERVAL_SECONDS, RECOVERY_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop renewing leases. Uploads this node hasn't finished validating will be recovered by other nodes once their
+     * leases expire.
+     */
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Records the upload in the queue, leased to this node. Call this before marking the upload complete, so that if
+     * this node dies at any point after, the upload is recovered by another node. If the upload can't be marked
+     * complete, call {@link #cancel} to take it back out of the queue.
+     *
+     * @param study
+     *         study this upload lives in
+     * @param upload
+     *         upload metadata object for the upload
+     * @return lease on the upload, or null if the upload is already in the queue, because it's already being completed
+     */
+    public UploadValidationLease enqueue(@Nonnull StudyIdentifier study, @Nonnull Upload upload) {
+        return queue.addLeased(study.getIdentifier(), upload.getUploadId(), leaseSeconds);
+    }
+
+    /** Removes an upload that was enqueued, but couldn't be marked complete, from the queue. */
+    public void cancel(@Nonnull UploadValidationLease lease) {
+        try {
+            queue.complete(lease);
+        } catch (RuntimeException ex) {
+            // Once the lease expires, recovery finds the upload was never marked complete and drops it.
+            LOG.error("Error cancelling upload validation lease " + lease + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Validates an enqueued upload using the given reservation.
+     *
+     * @param reservation
+     *         room in the executor's queue, reserved before the upload was marked complete
+     * @param lease
+     *         lease from {@link #enqueue}
+     * @param study
+     *         study this upload lives in
+     * @param upload
+     *         upload metadata object for the upload
+     */
+    public void dispatch(@Nonnull UploadValidationExecutor.Reservation reservation,
+            @Nonnull UploadValidationLease lease, @Nonnull StudyIdentifier study, @Nonnull Upload upload) {
+        execute(reservation, lease, study, upload);
+    }
+
+    /** Renews the leases of every upload on this node. Package-scoped to facilitate unit tests. */
+    void renewLeases() {
+        for (UploadValidationLease oneLease : activeLeases.values()) {
+            try {
+                if (!queue.renew(oneLease, leaseSeconds)) {
+                    LOG.warn("Lease expired before upload validation finished: " + oneLease);
+                }
+            } catch (RuntimeException ex) {
+                LOG.error("Error renewing upload validation lease " + oneLease + ": " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Puts expired uploads back in the queue, then leases and validates uploads from the queue for as long as this
+     * node's workers are idle. Package-scoped to facilitate unit tests.
+     */
+    void recover() {
+        try {
+            int requeuedCount = queue.requeueExpired();
+            if (requeuedCount > 0) {
+                LOG.info("Requeued " + requeuedCount + " uploads with expired validation leases");
+            }
+
+            while (executor.getQueueDepth() == 0) {
+                try (UploadValidationExecutor.Reservation reservation = executor.tryReserve()) {
+                    if (reservation == null) {
+                        return;
+                    }
+                    UploadValidationLease lease = queue.lease(leaseSeconds);
+                    if (lease == null) {
+                        return;
+                    }
+                    recoverUpload(reservation, lease);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel future recovery runs.
+            LOG.error("Error recovering uploads from the validation queue: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void recoverUpload(UploadValidationExecutor.Reservation reservation, UploadValidationLease lease) {
+        Upload upload;
+        try {
+            upload = uploadDao.getUpload(lease.getUploadId());
+        } catch (NotFoundException ex) {
+            LOG.warn("Dropping upload from validation queue, upload not found: " + lease.getUploadId());
+            queue.complete(lease);
+            return;
+        }
+
+        // The previous lease holder may have finished validation without completing its lease, or died before it
+        // marked the upload complete, in which case the upload is left for uploadComplete to be called again.
+        if (upload.getStatus() != UploadStatus.VALIDATION_IN_PROGRESS) {
+            queue.complete(lease);
+            return;
+        }
+
+        LOG.info("Recovered upload " + lease.getUploadId() + " from the validation queue");
+        execute(reservation, lease, new StudyIdentifierImpl(lease.getStudyId()), upload);
+    }
+
+    private void execute(UploadValidationExecutor.Reservation reservation, UploadValidationLease lease,
+            StudyIdentifier study, Upload upload) {
+        UploadValidationTask task = taskFactory.newTask(study, upload);
+        activeLeases.put(lease.getUploadId(), lease);
+        reservation.execute(study.getIdentifier(), () -> {
+            try {
+                task.run();
+            } finally {
+                activeLeases.remove(lease.getUploadId(), lease);
+                completeLease(lease);
+            }
+        });
+    }
+
+    private void completeLease(UploadValidationLease lease) {
+        try {
+            if (!queue.complete(lease)) {
+                LOG.warn("Lease expired before upload validation finished: " + lease);
+            }
+        } catch (RuntimeException ex) {
+            // The upload has been validated. If it's recovered after its lease expires, it will be skipped.
+            LOG.error("Error completing upload validation lease " + lease + ": " + ex.getMessage(), ex);
+        }
+    }
+}
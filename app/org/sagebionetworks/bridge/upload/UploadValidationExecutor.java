@@ -0,0 +1,216 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.json.DateUtils;
+
+/**
+ * <p>
+ * Runs upload validation tasks on a dedicated pool of worker threads, from a bounded queue. Uploads are queued per
+ * study, and workers take one upload from each study with queued uploads in turn, so a burst of uploads from one study
+ * can't starve the others.
+ * </p>
+ * <p>
+ * Callers must reserve room in the queue with {@link #tryReserve} before doing anything that commits them to
+ * validating an upload (such as marking it complete). If the queue is full, nothing has been committed, and the caller
+ * can tell its client to retry later.
+ * </p>
+ * <p>
+ * Queue depth, queue wait times and rejections are recorded in {@link UploadValidationMetrics}, which this executor
+ * logs once a minute.
+ * </p>
+ */
+public class UploadValidationExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadValidationExecutor.class);
+
+    private static final long METRICS_REPORT_INTERVAL_SECONDS = 60;
+
+    private static final class QueuedTask {
+        private final Runnable task;
+        private final long enqueuedOn;
+
+        QueuedTask(Runnable task, long enqueuedOn) {
+            this.task = task;
+            this.enqueuedOn = enqueuedOn;
+        }
+    }
+
+    private final int queueCapacity;
+    private final UploadValidationMetrics metrics;
+    private final ScheduledExecutorService metricsReporter;
+
+    // The following are guarded by lock.
+    private final Object lock = new Object();
+    private final Map<String, Queue<QueuedTask>> studyQueues = new HashMap<>();
+    private final Queue<String> studyRotation = new ArrayDeque<>();
+    private int queuedCount;
+    private int reservedCount;
+    private boolean shutdown;
+
+    /**
+     * @param threadCount
+     *         number of worker threads, which is the number of uploads validated at once
+     * @param queueCapacity
+     *         max number of uploads waiting for a worker, including reservations that haven't been used yet
+     * @param metrics
+     *         metrics to record queue wait times and rejections in
+     */
+    public UploadValidationExecutor(int threadCount, int queueCapacity, UploadValidationMetrics metrics) {
+        checkArgument(threadCount > 0);
+        checkArgument(queueCapacity > 0);
+        checkNotNull(metrics);
+        this.queueCapacity = queueCapacity;
+        this.metrics = metrics;
+
+        for (int i = 0; i < threadCount; i++) {
+            Thread worker = new Thread(this::workLoop, "upload-validation-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("upload-validation-metrics").setDaemon(true).build());
+        metricsReporter.scheduleAtFixedRate(this::reportMetrics, METRICS_REPORT_INTERVAL_SECONDS,
+                METRICS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reserves room for one upload in the queue. Returns null if the queue is full (or the executor is shut down).
+     * The reservation must either be used to execute a task or be closed.
+     */
+    public Reservation tryReserve() {
+        synchronized (lock) {
+            if (shutdown || queuedCount + reservedCount >= queueCapacity) {
+                metrics.recordRejected();
+                return null;
+            }
+            reservedCount++;
+            return new Reservation();
+        }
+    }
+
+    /** Number of uploads waiting for a worker. */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queuedCount;
+        }
+    }
+
+    /**
+     * Stops the workers and the metrics reporter. Uploads still in the queue are not validated here. They are
+     * recovered from the {@link UploadValidationQueue} once their leases expire.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            if (queuedCount > 0) {
+                LOG.warn("Shutting down upload validation with " + queuedCount + " uploads still queued");
+            }
+            lock.notifyAll();
+        }
+        metricsReporter.shutdown();
+    }
+
+    /** Room for one upload in the queue, from {@link #tryReserve}. */
+    public class Reservation implements AutoCloseable {
+        private boolean open = true;
+
+        /** Queues the task for the given study, using up this reservation. */
+        public void execute(String studyId, Runnable task) {
+            checkNotNull(studyId);
+            checkNotNull(task);
+            synchronized (lock) {
+                checkState(open, "Reservation has already been used or closed");
+                open = false;
+                reservedCount--;
+
+                Queue<QueuedTask> studyQueue = studyQueues.get(studyId);
+                if (studyQueue == null) {
+                    studyQueue = new ArrayDeque<>();
+                    studyQueues.put(studyId, studyQueue);
+                    studyRotation.add(studyId);
+                }
+                studyQueue.add(new QueuedTask(task, DateUtils.getCurrentMillisFromEpoch()));
+                queuedCount++;
+                lock.notify();
+            }
+        }
+
+        /** Releases the reservation, if it hasn't been used. */
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (open) {
+                    open = false;
+                    reservedCount--;
+                }
+            }
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            QueuedTask next;
+            synchronized (lock) {
+                while (queuedCount == 0 && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (shutdown) {
+                    return;
+                }
+                next = takeNext();
+            }
+
+            metrics.recordQueueWait(DateUtils.getCurrentMillisFromEpoch() - next.enqueuedOn);
+            try {
+                next.task.run();
+            } catch (Throwable ex) {
+                // UploadValidationTask handles its own errors. Anything that gets here is a bug, but it mustn't kill
+                // the worker.
+                LOG.error("Unexpected error in upload validation worker: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    // Takes the next task from the next study in the rotation. Must be called while holding lock.
+    private QueuedTask takeNext() {
+        String studyId = studyRotation.remove();
+        Queue<QueuedTask> studyQueue = studyQueues.get(studyId);
+        QueuedTask next = studyQueue.remove();
+        if (studyQueue.isEmpty()) {
+            studyQueues.remove(studyId);
+        } else {
+            studyRotation.add(studyId);
+        }
+        queuedCount--;
+        return next;
+    }
+
+    private void reportMetrics() {
+        try {
+            LOG.info("Upload validation metrics: " + metrics.reportAndReset(getQueueDepth()));
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel future reports.
+            LOG.error("Error reporting upload validation metrics: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+/**
+ * A lease on an upload in the {@link UploadValidationQueue}. The holder of the lease is responsible for validating the
+ * upload, and must renew the lease until validation is done, then complete it. The lease ID distinguishes this lease
+ * from later leases on the same upload, if this one expires.
+ */
+public final class UploadValidationLease {
+    private final String studyId;
+    private final String uploadId;
+    private final String leaseId;
+
+    public UploadValidationLease(String studyId, String uploadId, String leaseId) {
+        this.studyId = checkNotNull(studyId);
+        this.uploadId = checkNotNull(uploadId);
+        this.leaseId = checkNotNull(leaseId);
+    }
+
+    /** Study the upload lives in. */
+    public String getStudyId() {
+        return studyId;
+    }
+
+    /** Upload to validate. */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    /** Unique ID of this lease. */
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(studyId, uploadId, leaseId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        UploadValidationLease other = (UploadValidationLease) obj;
+        return Objects.equals(studyId, other.studyId) && Objects.equals(uploadId, other.uploadId)
+                && Objects.equals(leaseId, other.leaseId);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadValidationLease [studyId=" + studyId + ", uploadId=" + uploadId + ", leaseId=" + leaseId + "]";
+    }
+}
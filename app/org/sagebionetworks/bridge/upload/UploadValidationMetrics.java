@@ -0,0 +1,82 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Metrics for upload validation: how long uploads wait in the validation queue, how long each validation handler
+ * takes, and how many uploads were turned away because the queue was full. Values accumulate between reports and are
+ * reset each time a report is taken, so each report covers the interval since the previous one.
+ */
+@Component
+public class UploadValidationMetrics {
+
+    /** Count, total and max of a latency, in milliseconds. */
+    private static final class Latency {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        synchronized ObjectNode reportAndReset() {
+            ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+            node.put("count", count);
+            node.put("avgMillis", count > 0 ? totalMillis / count : 0L);
+            node.put("maxMillis", maxMillis);
+            count = 0;
+            totalMillis = 0;
+            maxMillis = 0;
+            return node;
+        }
+    }
+
+    private final Latency queueWait = new Latency();
+    private final ConcurrentMap<String, Latency> handlerLatencies = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /** Records the time an upload spent in the validation queue before a worker picked it up. */
+    public void recordQueueWait(long millis) {
+        queueWait.record(millis);
+    }
+
+    /** Records the time a single validation handler took for a single upload. */
+    public void recordHandlerLatency(String handlerName, long millis) {
+        checkNotNull(handlerName);
+        handlerLatencies.computeIfAbsent(handlerName, name -> new Latency()).record(millis);
+    }
+
+    /** Records an upload that couldn't be queued for validation because the queue was full. */
+    public void recordRejected() {
+        rejectedCount.increment();
+    }
+
+    /**
+     * Returns a JSON report of the metrics recorded since the last report, along with the current queue depth, and
+     * resets the metrics.
+     */
+    public ObjectNode reportAndReset(int queueDepth) {
+        ObjectNode report = BridgeObjectMapper.get().createObjectNode();
+        report.put("queueDepth", queueDepth);
+        report.put("rejected", rejectedCount.sumThenReset());
+        report.set("queueWait", queueWait.reportAndReset());
+        ObjectNode handlers = report.putObject("handlers");
+        for (Map.Entry<String, Latency> oneHandler : handlerLatencies.entrySet()) {
+            handlers.set(oneHandler.getKey(), oneHandler.getValue().reportAndReset());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,41 @@
+package org.sagebionetworks.bridge.upload;
+
+/**
+ * <p>
+ * Durable queue of uploads waiting for validation, shared by all server nodes. An upload stays in the queue until
+ * the node validating it completes its lease. If that node dies, its lease expires and the upload is put back in the
+ * queue for another node to lease, so uploads are never left in VALIDATION_IN_PROGRESS.
+ * </p>
+ * <p>
+ * Leases only bound how long an upload can go unattended. An upload whose lease has expired may already have been
+ * validated (for example, if the node died after writing the validation status), so whoever leases it next should
+ * check the upload's status before validating it again.
+ * </p>
+ */
+public interface UploadValidationQueue {
+
+    /**
+     * Adds an upload to the queue, already leased to the caller. This is for the node that is marking the upload
+     * complete, which validates it itself unless it dies. Returns null if the upload is already in the queue, in which
+     * case someone else is responsible for it.
+     */
+    UploadValidationLease addLeased(String studyId, String uploadId, int leaseSeconds);
+
+    /** Leases the next upload waiting in the queue, or returns null if there are none. */
+    UploadValidationLease lease(int leaseSeconds);
+
+    /**
+     * Extends the lease. Returns false if the lease has already expired (and the upload may have been leased by
+     * someone else).
+     */
+    boolean renew(UploadValidationLease lease, int leaseSeconds);
+
+    /**
+     * Removes the upload from the queue, because it's been validated. Returns false if the lease had already expired,
+     * in which case the upload stays in the queue.
+     */
+    boolean complete(UploadValidationLease lease);
+
+    /** Puts uploads whose leases have expired back in the queue. Returns the number of uploads put back. */
+    int requeueExpired();
+}
@@ -0,0 +1,77 @@
+package org.sagebionetworks.bridge.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A template with ${name} variables, parsed once so it can be resolved many times without searching the template
+ * for each variable. Resolves the same way as {@link org.sagebionetworks.bridge.BridgeUtils#resolveTemplate}:
+ * variables with no value (or a null value) are left in the output as written. Unlike resolveTemplate, the template
+ * is resolved in a single pass, so variables that appear in substituted values are not themselves resolved.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class CompiledTemplate {
+
+    private static final String VARIABLE_START = "${";
+    private static final String VARIABLE_END = "}";
+
+    // Literal text alternates with variable names, starting and ending with literal text (which may be empty)
+    private final List<String> literals;
+    private final List<String> variables;
+    private final int literalLength;
+
+    private CompiledTemplate(List<String> literals, List<String> variables) {
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static CompiledTemplate compile(String template) {
+        checkNotNull(template);
+
+        ImmutableList.Builder<String> literals = ImmutableList.builder();
+        ImmutableList.Builder<String> variables = ImmutableList.builder();
+        int literalStart = 0;
+        int variableStart = template.indexOf(VARIABLE_START);
+        while (variableStart >= 0) {
+            int variableEnd = template.indexOf(VARIABLE_END, variableStart + VARIABLE_START.length());
+            if (variableEnd < 0) {
+                break;
+            }
+            // In "${a${b}", only ${b} is a variable
+            variableStart = template.lastIndexOf(VARIABLE_START, variableEnd);
+            literals.add(template.substring(literalStart, variableStart));
+            variables.add(template.substring(variableStart + VARIABLE_START.length(), variableEnd));
+            literalStart = variableEnd + VARIABLE_END.length();
+            variableStart = template.indexOf(VARIABLE_START, literalStart);
+        }
+        literals.add(template.substring(literalStart));
+        return new CompiledTemplate(literals.build(), variables.build());
+    }
+
+    public String resolve(Map<String,String> values) {
+        checkNotNull(values);
+
+        StringBuilder builder = new StringBuilder(literalLength + variables.size() * 16);
+        for (int i = 0; i < variables.size(); i++) {
+            builder.append(literals.get(i));
+            String value = values.get(variables.get(i));
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append(VARIABLE_START).append(variables.get(i)).append(VARIABLE_END);
+            }
+        }
+        builder.append(literals.get(literals.size() - 1));
+        return builder.toString();
+    }
+}
@@ -6,7 +6,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -62,30 +65,50 @@ public class Zipper {
     public Map<String, byte[]> unzip(@Nonnull byte[] bytes)
             throws IOException, ZipOverflowException, DuplicateZipEntryException {
         final Map<String, byte[]> dataMap = new HashMap<>();
-        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                final ZipInputStream zis = new ZipInputStream(bais)) {
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                if (dataMap.size() >= maxNumZipEntries) {
-                    throw new ZipOverflowException("The number of zip entries is over the max allowed");
-                }
-                final String entryName = zipEntry.getName();
-                if (dataMap.containsKey(entryName)) {
-                    throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
-                }
-                final long entrySize = zipEntry.getSize();
-                if (entrySize > maxZipEntrySize) {
-                    throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
-                            " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
-                }
-                byte[] content = toByteArray(entryName, zis);
-                dataMap.put(entryName, content);
-                zipEntry = zis.getNextEntry();
-            }
+        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
+            unzip(bais, dataMap::put);
             return dataMap;
         }
     }
 
+    /**
+     * Unzips the given stream one entry at a time, passing each entry's filename and unzipped data to the entry
+     * consumer as soon as that entry has been read. Only one entry is held in memory at a time, so memory use is
+     * bounded by the max zip entry size rather than by the size of the archive. The stream is not closed.
+     *
+     * @param inputStream
+     *         stream of zipped data
+     * @param entryConsumer
+     *         called with the filename and unzipped data of each entry, in archive order
+     * @throws ZipOverflowException
+     *         if the archive has too many entries, or if an entry is too large
+     * @throws DuplicateZipEntryException
+     *         if the archive contains the same filename more than once
+     */
+    public void unzip(@Nonnull InputStream inputStream, @Nonnull BiConsumer<String, byte[]> entryConsumer)
+            throws IOException, ZipOverflowException, DuplicateZipEntryException {
+        final Set<String> entryNameSet = new HashSet<>();
+        final ZipInputStream zis = new ZipInputStream(inputStream);
+        ZipEntry zipEntry = zis.getNextEntry();
+        while (zipEntry != null) {
+            if (entryNameSet.size() >= maxNumZipEntries) {
+                throw new ZipOverflowException("The number of zip entries is over the max allowed");
+            }
+            final String entryName = zipEntry.getName();
+            if (!entryNameSet.add(entryName)) {
+                throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
+            }
+            final long entrySize = zipEntry.getSize();
+            if (entrySize > maxZipEntrySize) {
+                throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
+                        " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
+            }
+            byte[] content = toByteArray(entryName, zis);
+            entryConsumer.accept(entryName, content);
+            zipEntry = zis.getNextEntry();
+        }
+    }
+
     private byte[] toByteArray(final String entryName, final InputStream inputStream)
             throws IOException, ZipOverflowException {
         // We want copy data from the stream to a byte array manually, so we can count the bytes and protect against
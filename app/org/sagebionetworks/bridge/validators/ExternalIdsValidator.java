@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.validators;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.validation.Errors;
@@ -18,7 +19,7 @@ import com.google.common.collect.Sets;
  */
 public class ExternalIdsValidator implements Validator {
 
-    private static final String IDENTIFIER_PATTERN = "^[a-zA-Z0-9_-]+$";
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("^[a-zA-Z0-9_-]+$");
     
     /**
      * Really the only purpose of this class is to provide a comprehensible name for the 
@@ -64,7 +65,7 @@ public class ExternalIdsValidator implements Validator {
                 contents.add(id);
                 if (StringUtils.isBlank(id)) {
                     errors.rejectValue(path, "cannot be null or blank");
-                } else if (!id.matches(IDENTIFIER_PATTERN)) {
+                } else if (!IDENTIFIER_PATTERN.matcher(id).matches()) {
                     String msg = String.format("'%s' must contain only digits, letters, underscores and dashes", id);
                     errors.rejectValue(path, msg);
                 }
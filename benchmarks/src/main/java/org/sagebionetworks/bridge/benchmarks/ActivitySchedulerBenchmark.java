@@ -0,0 +1,69 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sagebionetworks.bridge.models.schedules.Schedule;
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+
+/**
+ * Throughput of each ActivityScheduler, scheduling all of a study's plans for one participant as a request for
+ * scheduled activities does. Run with the gc profiler (<code>-prof gc</code>) to report the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivitySchedulerBenchmark {
+
+    /** Selects the ActivityScheduler: interval and once (Interval), cron (Cron) or persistent (Persistent). */
+    @Param({"interval", "once", "cron", "persistent"})
+    public String scheduleType;
+
+    @Param({"20"})
+    public int planCount;
+
+    /** Days from now to the end of the requested window. The API allows up to four. */
+    @Param({"1", "4"})
+    public int windowDays;
+
+    @Param({"0", "5"})
+    public int minimumPerSchedule;
+
+    @Param({"50"})
+    public int otherEventCount;
+
+    private List<SchedulePlan> plans;
+    private ScheduleContext context;
+
+    @Setup
+    public void setup() {
+        plans = ScheduleFixtures.simplePlans(scheduleType, planCount);
+        context = ScheduleFixtures.context(ScheduleFixtures.events(plans, otherEventCount), windowDays,
+                minimumPerSchedule);
+    }
+
+    @Benchmark
+    public void getScheduledActivities(Blackhole blackhole) {
+        for (SchedulePlan plan : plans) {
+            Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
+            blackhole.consume(schedule.getScheduler().getScheduledActivities(plan, context));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.schedules.ABTestScheduleStrategy;
+import org.sagebionetworks.bridge.models.schedules.Activity;
+import org.sagebionetworks.bridge.models.schedules.CriteriaScheduleStrategy;
+import org.sagebionetworks.bridge.models.schedules.Schedule;
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.ScheduleCriteria;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.ScheduleStrategy;
+import org.sagebionetworks.bridge.models.schedules.ScheduleType;
+import org.sagebionetworks.bridge.models.schedules.SimpleScheduleStrategy;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Schedule plans and contexts shaped like those of our larger studies: many plans, each with several activities,
+ * scheduled against a participant who has been enrolled for months and has finished many activities. Everything
+ * is built from fixed seeds so that runs can be compared.
+ */
+final class ScheduleFixtures {
+
+    static final DateTimeZone TIME_ZONE = DateTimeZone.forOffsetHours(-7);
+    static final DateTime NOW = DateTime.parse("2017-03-01T09:30:00.000-07:00");
+    static final DateTime ENROLLMENT = NOW.minusDays(90);
+    static final String HEALTH_CODE = "6c1f5d9c-8a2e-4e55-9d0b-2b6d0f6f4a11";
+    static final Set<String> DATA_GROUPS = ImmutableSet.of("sdk-int-1", "group3");
+    static final String[] CRITERIA_GROUPS = new String[] { "group1", "group2", "group3", "group4" };
+
+    private static final int ACTIVITIES_PER_SCHEDULE = 3;
+
+    private ScheduleFixtures() {
+    }
+
+    /**
+     * Plans that each schedule with a simple strategy. The schedule type is one of "interval", "once", "cron" or
+     * "persistent", which between them exercise every ActivityScheduler.
+     */
+    static List<SchedulePlan> simplePlans(String scheduleType, int count) {
+        List<SchedulePlan> plans = Lists.newArrayListWithCapacity(count);
+        for (int i=0; i < count; i++) {
+            SimpleScheduleStrategy strategy = new SimpleScheduleStrategy();
+            strategy.setSchedule(schedule(scheduleType, i));
+            plans.add(plan(i, strategy));
+        }
+        return plans;
+    }
+
+    /**
+     * Plans that assign one of four schedules by A/B test group.
+     */
+    static List<SchedulePlan> abTestPlans(int count) {
+        List<SchedulePlan> plans = Lists.newArrayListWithCapacity(count);
+        for (int i=0; i < count; i++) {
+            ABTestScheduleStrategy strategy = new ABTestScheduleStrategy();
+            strategy.addGroup(40, schedule("interval", i));
+            strategy.addGroup(30, schedule("cron", i));
+            strategy.addGroup(20, schedule("once", i));
+            strategy.addGroup(10, schedule("persistent", i));
+            plans.add(plan(i, strategy));
+        }
+        return plans;
+    }
+
+    /**
+     * Plans that assign a schedule by data group. The participant matches the third of four criteria, so most
+     * criteria are evaluated before one matches.
+     */
+    static List<SchedulePlan> criteriaPlans(int count) {
+        List<SchedulePlan> plans = Lists.newArrayListWithCapacity(count);
+        for (int i=0; i < count; i++) {
+            CriteriaScheduleStrategy strategy = new CriteriaScheduleStrategy();
+            String[] types = new String[] { "interval", "cron", "once", "persistent" };
+            for (int j=0; j < CRITERIA_GROUPS.length; j++) {
+                Criteria criteria = Criteria.create();
+                criteria.setAllOfGroups(ImmutableSet.of(CRITERIA_GROUPS[j]));
+                criteria.setNoneOfGroups(ImmutableSet.of("test_user"));
+                criteria.setMinAppVersion("iPhone OS", 10);
+                strategy.addCriteria(new ScheduleCriteria(schedule(types[j], i), criteria));
+            }
+            plans.add(plan(i, strategy));
+        }
+        return plans;
+    }
+
+    /**
+     * Events for a participant who enrolled 90 days ago and has since finished every activity in these plans, and
+     * answered a number of other surveys.
+     */
+    static Map<String, DateTime> events(List<SchedulePlan> plans, int otherEventCount) {
+        Map<String, DateTime> events = Maps.newHashMap();
+        events.put("enrollment", ENROLLMENT);
+        int i = 0;
+        for (SchedulePlan plan : plans) {
+            for (Schedule schedule : plan.getStrategy().getAllPossibleSchedules()) {
+                for (Activity activity : schedule.getActivities()) {
+                    DateTime finishedOn = ENROLLMENT.plusHours(++i % (24 * 60));
+                    events.put("activity:" + activity.getGuid() + ":finished", finishedOn);
+                    events.put("task:" + activity.getTask().getIdentifier() + ":finished", finishedOn);
+                }
+            }
+        }
+        for (int j=0; j < otherEventCount; j++) {
+            events.put("survey:" + new UUID(j, 1L) + ":finished", ENROLLMENT.plusHours(j));
+        }
+        return events;
+    }
+
+    static ScheduleContext context(Map<String, DateTime> events, int windowDays, int minimumPerSchedule) {
+        return new ScheduleContext.Builder()
+                .withStudyIdentifier("benchmark-study")
+                .withHealthCode(HEALTH_CODE)
+                .withUserId("benchmark-user")
+                .withClientInfo(ClientInfo.fromUserAgentCache(
+                        "Asthma/26 (iPhone 6; iPhone OS/9.3) BridgeSDK/12"))
+                .withUserDataGroups(DATA_GROUPS)
+                .withInitialTimeZone(TIME_ZONE)
+                .withNow(NOW)
+                .withEndsOn(NOW.plusDays(windowDays))
+                .withMinimumPerSchedule(minimumPerSchedule)
+                .withAccountCreatedOn(ENROLLMENT)
+                .withEvents(events).build();
+    }
+
+    private static SchedulePlan plan(int seed, ScheduleStrategy strategy) {
+        SchedulePlan plan = SchedulePlan.create();
+        plan.setGuid(new UUID(seed, 0L).toString());
+        plan.setLabel("Plan " + seed);
+        plan.setStudyKey("benchmark-study");
+        plan.setStrategy(strategy);
+        return plan;
+    }
+
+    private static Schedule schedule(String scheduleType, int seed) {
+        Schedule schedule = new Schedule();
+        schedule.setLabel(scheduleType + " schedule " + seed);
+        switch(scheduleType) {
+        case "interval":
+            // Looks for a survey finished event first, as studies often do
+            schedule.setScheduleType(ScheduleType.RECURRING);
+            schedule.setEventId("survey:" + new UUID(seed, 2L) + ":finished,enrollment");
+            schedule.setDelay("P1D");
+            schedule.setInterval("P1D");
+            schedule.addTimes("08:00", "12:00", "18:00");
+            schedule.setExpires("PT6H");
+            break;
+        case "once":
+            schedule.setScheduleType(ScheduleType.ONCE);
+            schedule.setEventId("survey:" + new UUID(seed, 2L) + ":finished,enrollment");
+            schedule.setDelay("P" + (1 + seed % 120) + "D");
+            schedule.addTimes("10:00");
+            break;
+        case "cron":
+            schedule.setScheduleType(ScheduleType.RECURRING);
+            schedule.setCronTrigger("0 0 8,12,18 ? * MON-FRI *");
+            schedule.setExpires("PT4H");
+            break;
+        case "persistent":
+            schedule.setScheduleType(ScheduleType.PERSISTENT);
+            schedule.setEventId("enrollment");
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown schedule type: " + scheduleType);
+        }
+        for (int i=0; i < ACTIVITIES_PER_SCHEDULE; i++) {
+            schedule.addActivity(new Activity.Builder()
+                    .withGuid(new UUID(seed, 10L + i).toString())
+                    .withLabel("Activity " + seed + "-" + i)
+                    .withTask("task-" + seed + "-" + i).build());
+        }
+        return schedule;
+    }
+}
@@ -0,0 +1,71 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sagebionetworks.bridge.models.schedules.Schedule;
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+
+/**
+ * Throughput of the A/B test and criteria schedule strategies, both selecting a schedule alone and selecting it and
+ * then scheduling it. Run with the gc profiler (<code>-prof gc</code>) to report the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleStrategyBenchmark {
+
+    @Param({"abTest", "criteria"})
+    public String strategy;
+
+    @Param({"20"})
+    public int planCount;
+
+    @Param({"4"})
+    public int windowDays;
+
+    private List<SchedulePlan> plans;
+    private ScheduleContext context;
+
+    @Setup
+    public void setup() {
+        plans = ("abTest".equals(strategy)) ?
+                ScheduleFixtures.abTestPlans(planCount) :
+                ScheduleFixtures.criteriaPlans(planCount);
+        context = ScheduleFixtures.context(ScheduleFixtures.events(plans, 50), windowDays, 0);
+    }
+
+    @Benchmark
+    public void getScheduleForUser(Blackhole blackhole) {
+        for (SchedulePlan plan : plans) {
+            blackhole.consume(plan.getStrategy().getScheduleForUser(plan, context));
+        }
+    }
+
+    @Benchmark
+    public void getScheduledActivities(Blackhole blackhole) {
+        for (SchedulePlan plan : plans) {
+            Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
+            if (schedule != null) {
+                blackhole.consume(schedule.getScheduler().getScheduledActivities(plan, context));
+            }
+        }
+    }
+}
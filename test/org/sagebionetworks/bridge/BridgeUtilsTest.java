@@ -4,17 +4,27 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -263,6 +273,45 @@ public class BridgeUtilsTest {
         assertEquals("not 333", map.get("CCC"));
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void batchDeleteInPages() {
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
+        ArgumentCaptor<List> pageCaptor = ArgumentCaptor.forClass(List.class);
+        when(mapper.batchDelete(pageCaptor.capture())).thenReturn(ImmutableList.of());
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            keys.add("key-" + i);
+        }
+        int count = BridgeUtils.batchDeleteInPages(mapper, keys.iterator());
+        assertEquals(250, count);
+
+        List<List> pages = pageCaptor.getAllValues();
+        assertEquals(3, pages.size());
+        assertEquals(keys.subList(0, 100), pages.get(0));
+        assertEquals(keys.subList(100, 200), pages.get(1));
+        assertEquals(keys.subList(200, 250), pages.get(2));
+    }
+
+    @Test
+    public void batchDeleteInPagesEmpty() {
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
+        assertEquals(0, BridgeUtils.batchDeleteInPages(mapper, ImmutableList.of().iterator()));
+        verifyZeroInteractions(mapper);
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void batchDeleteInPagesThrowsOnFailure() {
+        FailedBatch failure = new FailedBatch();
+        failure.setException(new Exception("dummy exception message"));
+        failure.setUnprocessedItems(ImmutableMap.of());
+
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
+        when(mapper.batchDelete(anyListOf(Object.class))).thenReturn(ImmutableList.of(failure));
+        BridgeUtils.batchDeleteInPages(mapper, ImmutableList.of("key").iterator());
+    }
+
     // assertEquals with two sets doesn't verify the order is the same... hence this test method.
     private <T> void orderedSetsEqual(Set<T> first, Set<T> second) {
         assertEquals(first.size(), second.size());
@@ -2,7 +2,9 @@ package org.sagebionetworks.bridge.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -11,17 +13,19 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Arrays;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.Roles;
@@ -38,8 +42,10 @@ import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.redis.JedisOps;
-import org.sagebionetworks.bridge.redis.JedisTransaction;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps.ValueWithTtl;
 import org.sagebionetworks.bridge.redis.RedisKey;
+import org.sagebionetworks.bridge.redis.UnpipelinedJedisOps;
 
 import redis.clients.jedis.JedisPool;
 
@@ -53,26 +59,29 @@ public class CacheProviderMockTest {
     private static final String SESSION_TOKEN = "sessionToken";
     private static final String ENCRYPTED_SESSION_TOKEN = "TFMkaVFKPD48WissX0bgcD3esBMEshxb3MVgKxHnkXLSEPN4FQMKc01tDbBAVcXx94kMX6ckXVYUZ8wx4iICl08uE+oQr9gorE1hlgAyLAM=";
     private static final String DECRYPTED_SESSION_TOKEN = "ccea2978-f5b9-4377-8194-f887a3e2a19b";
-    private JedisTransaction transaction;
+    private PipelinedJedisOps pipelinedJedisOps;
+    private CacheInvalidationBus cacheInvalidationBus;
     private CacheProvider cacheProvider;
 
     @Before
     public void before() {
-        transaction = mock(JedisTransaction.class);
-        when(transaction.setex(any(String.class), anyInt(), any(String.class))).thenReturn(transaction);
-        when(transaction.expire(any(String.class), anyInt())).thenReturn(transaction);
-        when(transaction.del(any(String.class))).thenReturn(transaction);
-        when(transaction.exec()).thenReturn(Arrays.asList((Object)"OK", "OK"));
-        
-        JedisOps jedisOps = mock(JedisOps.class);
-        when(jedisOps.getTransaction()).thenReturn(transaction);
+        pipelinedJedisOps = mock(PipelinedJedisOps.class);
+        when(pipelinedJedisOps.setexWithRemainingTtl(anyString(), anyInt(), any())).thenReturn(
+                BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+        when(pipelinedJedisOps.getWithTtl(anyString())).thenReturn(new ValueWithTtl(null, -2L));
+        when(pipelinedJedisOps.setex(anyString(), anyInt(), anyString())).thenReturn(true);
         
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        when(jedisOps.get(userKey)).thenReturn(SESSION_TOKEN);
+        when(pipelinedJedisOps.get(userKey)).thenReturn(SESSION_TOKEN);
+        
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
         
         cacheProvider = new CacheProvider();
-        cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setJedisOps(mock(JedisOps.class));
+        cacheProvider.setPipelinedJedisOps(pipelinedJedisOps);
         cacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        cacheProvider.setCacheInvalidationBus(cacheInvalidationBus);
+        cacheProvider.setSessionExpireInSeconds(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
     }
 
     @Test
@@ -88,11 +97,173 @@ public class CacheProviderMockTest {
 
         String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(1)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(1)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(1)).exec();
+        
+        // Both keys are written in one call, keeping the remaining TTL of the user key
+        ArgumentCaptor<Map> valuesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(pipelinedJedisOps, times(1)).setexWithRemainingTtl(eq(userKey),
+                eq(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS), valuesCaptor.capture());
+        Map<?,?> values = valuesCaptor.getValue();
+        assertEquals(SESSION_TOKEN, values.get(userKey));
+        assertEquals(USER_ID, BridgeObjectMapper.get().readValue((String) values.get(sessionKey),
+                UserSession.class).getId());
     }
 
+    @Test
+    public void setUserSessionIsServedFromNearCache() throws Exception {
+        StudyParticipant participant = new StudyParticipant.Builder()
+                .withEmail("userEmail")
+                .withId(USER_ID)
+                .withHealthCode("healthCode").build();
+        
+        UserSession session = new UserSession(participant);
+        session.setSessionToken(SESSION_TOKEN);
+        session.setAuthenticated(true);
+        cacheProvider.setUserSession(session);
+        
+        verify(cacheInvalidationBus).subscribe(eq(CacheProvider.SESSION_CACHE_NAME), any());
+        verify(cacheInvalidationBus).publish(CacheProvider.SESSION_CACHE_NAME, SESSION_TOKEN);
+        
+        UserSession retrieved = cacheProvider.getUserSession(SESSION_TOKEN);
+        assertEquals(USER_ID, retrieved.getId());
+        assertEquals("healthCode", retrieved.getHealthCode());
+        assertTrue(retrieved.isAuthenticated());
+        
+        // Callers get a copy, changing it does not change the cached session
+        retrieved.setAuthenticated(false);
+        assertTrue(cacheProvider.getUserSession(SESSION_TOKEN).isAuthenticated());
+        
+        verify(pipelinedJedisOps, never()).getWithTtl(RedisKey.SESSION.getRedisKey(SESSION_TOKEN));
+    }
+    
+    @Test
+    public void getUserSessionPopulatesNearCache() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
+        StudyParticipant participant = new StudyParticipant.Builder().withId(USER_ID)
+                .withHealthCode("healthCode").build();
+        UserSession session = new UserSession(participant);
+        session.setSessionToken(SESSION_TOKEN);
+        when(pipelinedJedisOps.getWithTtl(sessionKey)).thenReturn(
+                new ValueWithTtl(StudyParticipant.CACHE_WRITER.writeValueAsString(session), 100L));
+        
+        assertEquals(USER_ID, cacheProvider.getUserSession(SESSION_TOKEN).getId());
+        assertEquals(USER_ID, cacheProvider.getUserSession(SESSION_TOKEN).getId());
+        
+        verify(pipelinedJedisOps, times(1)).getWithTtl(sessionKey);
+    }
+    
+    @Test
+    public void nearCacheHoldsSessionForAtMostAMinute() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
+        StudyParticipant participant = new StudyParticipant.Builder().withId(USER_ID)
+                .withHealthCode("healthCode").build();
+        UserSession session = new UserSession(participant);
+        session.setSessionToken(SESSION_TOKEN);
+        when(pipelinedJedisOps.getWithTtl(sessionKey)).thenReturn(new ValueWithTtl(
+                StudyParticipant.CACHE_WRITER.writeValueAsString(session),
+                (long) BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS));
+        
+        long now = DateTime.now().getMillis();
+        DateTimeUtils.setCurrentMillisFixed(now);
+        try {
+            cacheProvider.getUserSession(SESSION_TOKEN);
+            DateTimeUtils.setCurrentMillisFixed(now + (CacheProvider.SESSION_NEAR_CACHE_EXPIRE_IN_SECONDS - 1) * 1000L);
+            cacheProvider.getUserSession(SESSION_TOKEN);
+            verify(pipelinedJedisOps, times(1)).getWithTtl(sessionKey);
+            
+            // Even though Redis holds the session for hours, a missed invalidation only lasts a minute
+            DateTimeUtils.setCurrentMillisFixed(now + CacheProvider.SESSION_NEAR_CACHE_EXPIRE_IN_SECONDS * 1000L);
+            cacheProvider.getUserSession(SESSION_TOKEN);
+            verify(pipelinedJedisOps, times(2)).getWithTtl(sessionKey);
+        } finally {
+            DateTimeUtils.setCurrentMillisSystem();
+        }
+    }
+    
+    @Test
+    public void sessionInvalidatedDuringReadIsNotCached() throws Exception {
+        ArgumentCaptor<CacheInvalidationBus.Listener> listenerCaptor = ArgumentCaptor.forClass(
+                CacheInvalidationBus.Listener.class);
+        verify(cacheInvalidationBus).subscribe(eq(CacheProvider.SESSION_CACHE_NAME), listenerCaptor.capture());
+        
+        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
+        StudyParticipant participant = new StudyParticipant.Builder().withId(USER_ID)
+                .withHealthCode("healthCode").build();
+        UserSession session = new UserSession(participant);
+        session.setSessionToken(SESSION_TOKEN);
+        String ser = StudyParticipant.CACHE_WRITER.writeValueAsString(session);
+        // Another node signs the user out while this node is reading the session from Redis
+        when(pipelinedJedisOps.getWithTtl(sessionKey)).thenAnswer(invocation -> {
+            listenerCaptor.getValue().invalidate(SESSION_TOKEN);
+            return new ValueWithTtl(ser, 100L);
+        });
+        
+        assertEquals(USER_ID, cacheProvider.getUserSession(SESSION_TOKEN).getId());
+        cacheProvider.getUserSession(SESSION_TOKEN);
+        
+        // The session read during the invalidation wasn't cached, so it's read again
+        verify(pipelinedJedisOps, times(2)).getWithTtl(sessionKey);
+    }
+    
+    @Test
+    public void removeSessionInvalidatesNearCache() throws Exception {
+        StudyParticipant participant = new StudyParticipant.Builder().withId(USER_ID)
+                .withHealthCode("healthCode").build();
+        UserSession session = new UserSession(participant);
+        session.setSessionToken(SESSION_TOKEN);
+        cacheProvider.setUserSession(session);
+        
+        cacheProvider.removeSession(session);
+        
+        assertNull(cacheProvider.getUserSession(SESSION_TOKEN));
+        verify(pipelinedJedisOps).getWithTtl(RedisKey.SESSION.getRedisKey(SESSION_TOKEN));
+        verify(cacheInvalidationBus, times(2)).publish(CacheProvider.SESSION_CACHE_NAME, SESSION_TOKEN);
+    }
+    
+    @Test
+    public void getStudyIsServedFromNearCache() throws Exception {
+        Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
+        study.setVersion(2L);
+        String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
+        when(pipelinedJedisOps.get(redisKey)).thenReturn(BridgeObjectMapper.get().writeValueAsString(study));
+        
+        Study first = cacheProvider.getStudy(study.getIdentifier());
+        Study second = cacheProvider.getStudy(study.getIdentifier());
+        assertEquals(study.getName(), first.getName());
+        assertSame(first, second);
+        
+        // One read from Redis, and the expiration is not refreshed on read
+        verify(pipelinedJedisOps, times(1)).get(redisKey);
+    }
+    
+    @Test
+    public void setStudyCachesCopyAndPublishesInvalidation() throws Exception {
+        Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
+        study.setVersion(2L);
+        
+        cacheProvider.setStudy(study);
+        study.setName("Changed after caching");
+        
+        Study cached = cacheProvider.getStudy(study.getIdentifier());
+        assertNotSame(study, cached);
+        assertEquals(new Long(2L), cached.getVersion());
+        assertFalse("Changed after caching".equals(cached.getName()));
+        verify(pipelinedJedisOps, never()).get(RedisKey.STUDY.getRedisKey(study.getIdentifier()));
+        verify(cacheInvalidationBus).subscribe(eq(CacheProvider.STUDY_CACHE_NAME), any());
+        verify(cacheInvalidationBus).publish(CacheProvider.STUDY_CACHE_NAME, study.getIdentifier());
+    }
+    
+    @Test
+    public void removeStudyInvalidatesNearCache() throws Exception {
+        Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
+        cacheProvider.setStudy(study);
+        
+        cacheProvider.removeStudy(study.getIdentifier());
+        
+        assertNull(cacheProvider.getStudy(study.getIdentifier()));
+        verify(pipelinedJedisOps).get(RedisKey.STUDY.getRedisKey(study.getIdentifier()));
+        verify(cacheInvalidationBus, times(2)).publish(CacheProvider.STUDY_CACHE_NAME, study.getIdentifier());
+    }
+    
     @Test
     public void testSetUserSessionNullSessionToken() throws Exception {
         StudyParticipant participant = new StudyParticipant.Builder()
@@ -108,11 +279,7 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(pipelinedJedisOps, never()).setexWithRemainingTtl(anyString(), anyInt(), any());
     }
 
     @Test
@@ -126,11 +293,7 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(pipelinedJedisOps, never()).setexWithRemainingTtl(anyString(), anyInt(), any());
     }
 
     @Test
@@ -148,11 +311,7 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(pipelinedJedisOps, never()).setexWithRemainingTtl(anyString(), anyInt(), any());
     }
 
     @Test
@@ -173,9 +332,7 @@ public class CacheProviderMockTest {
         cacheProvider.getUserSession(SESSION_TOKEN);
         String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(1)).del(sessionKey);
-        verify(transaction, times(1)).del(userKey);
-        verify(transaction, times(1)).exec();
+        verify(pipelinedJedisOps, times(1)).del(sessionKey, userKey);
     }
 
     @Test
@@ -183,15 +340,15 @@ public class CacheProviderMockTest {
         cacheProvider.removeSessionByUserId(USER_ID);
         String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(1)).del(sessionKey);
-        verify(transaction, times(1)).del(userKey);
-        verify(transaction, times(1)).exec();
+        verify(pipelinedJedisOps, times(1)).del(sessionKey, userKey);
     }
 
     @Test
     public void addAndRemoveViewFromCacheProvider() throws Exception {
         final CacheProvider simpleCacheProvider = new CacheProvider();
-        simpleCacheProvider.setJedisOps(getJedisOps());
+        final JedisOps simpleJedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(simpleJedisOps);
+        simpleCacheProvider.setPipelinedJedisOps(new UnpipelinedJedisOps(simpleJedisOps));
         simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
 
         final Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
@@ -252,14 +409,9 @@ public class CacheProviderMockTest {
     }
 
     private void assertSession(String json) {
-        JedisOps jedisOps = mock(JedisOps.class);
-        
         String sessionKey = RedisKey.SESSION.getRedisKey("sessionToken");
-        doReturn(sessionKey).when(jedisOps).get("sessionToken");
-        doReturn(transaction).when(jedisOps).getTransaction(sessionKey);
-        doReturn(json).when(jedisOps).get(sessionKey);
+        doReturn(new ValueWithTtl(json, 100L)).when(pipelinedJedisOps).getWithTtl(sessionKey);
         
-        cacheProvider.setJedisOps(jedisOps);
         cacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
         
         UserSession session = cacheProvider.getUserSession("sessionToken");
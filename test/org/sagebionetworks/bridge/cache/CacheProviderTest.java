@@ -35,6 +35,9 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.RedisMetrics;
+import org.sagebionetworks.bridge.redis.RedisPipelinedJedisOps;
 
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -63,6 +66,9 @@ public class CacheProviderTest {
     @Autowired
     private JedisOps testJedisOps;
     
+    @Autowired
+    private PipelinedJedisOps testPipelinedJedisOps;
+    
     @Resource(name = "redisProviders")
     private List<String> redisProviders;
     
@@ -70,6 +76,7 @@ public class CacheProviderTest {
     public void after() {
         // restore in the in memory redis implementation
         cacheProvider.setJedisOps(testJedisOps);
+        cacheProvider.setPipelinedJedisOps(testPipelinedJedisOps);
     }
     
     @Before
@@ -77,6 +84,7 @@ public class CacheProviderTest {
         JedisPool jedisPool = constructJedisPool();
         JedisOps jedisOps = new JedisOps(jedisPool);
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setPipelinedJedisOps(new RedisPipelinedJedisOps(jedisPool, new RedisMetrics()));
         cacheProvider.setSessionExpireInSeconds(4);
     }
     
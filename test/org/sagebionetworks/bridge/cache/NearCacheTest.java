@@ -0,0 +1,110 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NearCacheTest {
+
+    private static final long NOW = 1477000000000L;
+
+    private NearCache<String> cache;
+
+    @Before
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        cache = new NearCache<>("test", 2);
+    }
+
+    @After
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void entriesExpire() {
+        cache.put("key", "value", 10);
+        assertEquals("value", cache.get("key"));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 10000L);
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void zeroExpirationRemovesEntry() {
+        cache.put("key", "value", 10);
+        cache.put("key", "value2", 0);
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void putIfNewerKeepsLaterVersion() {
+        cache.putIfNewer("key", "version 3", 3L, 10);
+        cache.putIfNewer("key", "version 2", 2L, 10);
+        assertEquals("version 3", cache.get("key"));
+
+        cache.putIfNewer("key", "version 4", 4L, 10);
+        assertEquals("version 4", cache.get("key"));
+    }
+
+    @Test
+    public void invalidate() {
+        cache.put("key1", "value1", 10);
+        cache.put("key2", "value2", 10);
+
+        cache.invalidate("key1");
+        assertNull(cache.get("key1"));
+        assertEquals("value2", cache.get("key2"));
+
+        cache.invalidateAll();
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    public void putIfNotInvalidatedSinceCachesValue() {
+        long generation = cache.getGeneration();
+        assertTrue(cache.putIfNotInvalidatedSince("key", "value", 10, generation));
+        assertEquals("value", cache.get("key"));
+    }
+
+    @Test
+    public void putIfNotInvalidatedSinceDiscardsValueInvalidatedDuringFill() {
+        long generation = cache.getGeneration();
+        cache.invalidate("key");
+
+        assertFalse(cache.putIfNotInvalidatedSince("key", "stale value", 10, generation));
+        assertNull(cache.get("key"));
+
+        // Other keys, and fills that start after the invalidation, are cached
+        assertTrue(cache.putIfNotInvalidatedSince("key2", "value2", 10, generation));
+        assertTrue(cache.putIfNotInvalidatedSince("key", "value", 10, cache.getGeneration()));
+        assertEquals("value", cache.get("key"));
+    }
+
+    @Test
+    public void putIfNotInvalidatedSinceDiscardsValueAfterInvalidateAll() {
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+
+        assertFalse(cache.putIfNotInvalidatedSince("key", "stale value", 10, generation));
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void putIfNotInvalidatedSinceDiscardsValueWhenInvalidationIsEvicted() {
+        long generation = cache.getGeneration();
+        // The cache tracks invalidations for 2 keys, so the first one is evicted
+        cache.invalidate("key");
+        cache.invalidate("key2");
+        cache.invalidate("key3");
+
+        assertFalse(cache.putIfNotInvalidatedSince("key", "stale value", 10, generation));
+        assertNull(cache.get("key"));
+    }
+}
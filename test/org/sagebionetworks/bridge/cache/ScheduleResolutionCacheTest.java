@@ -0,0 +1,163 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
+import org.sagebionetworks.bridge.models.schedules.SurveyReference;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+
+import com.google.common.collect.Lists;
+
+public class ScheduleResolutionCacheTest {
+
+    private static final StudyIdentifier STUDY_A = new StudyIdentifierImpl("study-a");
+    private static final StudyIdentifier STUDY_B = new StudyIdentifierImpl("study-b");
+    private static final ClientInfo IOS_10 = new ClientInfo.Builder().withOsName("iPhone OS").withAppVersion(10)
+            .withDeviceName("iPhone 6").build();
+    private static final ClientInfo IOS_10_OTHER_DEVICE = new ClientInfo.Builder().withOsName("iPhone OS")
+            .withAppVersion(10).withDeviceName("iPhone 7").build();
+    private static final ClientInfo IOS_11 = new ClientInfo.Builder().withOsName("iPhone OS").withAppVersion(11)
+            .build();
+
+    private CacheInvalidationBus bus;
+    private ScheduleResolutionCache cache;
+    private AtomicInteger loads;
+
+    @Before
+    public void before() {
+        bus = mock(CacheInvalidationBus.class);
+        cache = new ScheduleResolutionCache();
+        cache.setCacheInvalidationBus(bus);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void subscribesToInvalidations() {
+        verify(bus).subscribe(ScheduleResolutionCache.CACHE_NAME, cache);
+    }
+
+    @Test
+    public void loadsOnce() {
+        SurveyReference first = cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        SurveyReference second = cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void studiesAreCachedSeparately() {
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        cache.getSurveyReference(STUDY_B, "guid", surveyLoader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void clientsAreMatchedOnOsAndAppVersion() {
+        cache.getSchemaReference(STUDY_A, IOS_10, "schema", schemaLoader());
+        cache.getSchemaReference(STUDY_A, IOS_10_OTHER_DEVICE, "schema", schemaLoader());
+        assertEquals(1, loads.get());
+
+        cache.getSchemaReference(STUDY_A, IOS_11, "schema", schemaLoader());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void schedulePlansAreCopied() {
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        List<SchedulePlan> cachedPlans = cache.getSchedulePlans(STUDY_A, () -> plans);
+
+        // Changes to the loaded list don't reach the cached list
+        plans.clear();
+        assertEquals(1, cachedPlans.size());
+        assertSame(cachedPlans, cache.getSchedulePlans(STUDY_A, () -> plans));
+    }
+
+    @Test
+    public void schedulePlansAreLoadedOncePerStudy() {
+        Supplier<List<SchedulePlan>> loader = () -> {
+            loads.incrementAndGet();
+            return Lists.newArrayList(SchedulePlan.create());
+        };
+        cache.getSchedulePlans(STUDY_A, loader);
+        cache.getSchedulePlans(STUDY_A, loader);
+        assertEquals(1, loads.get());
+
+        cache.getSchedulePlans(STUDY_B, loader);
+        assertEquals(2, loads.get());
+
+        cache.invalidateStudy(STUDY_A);
+        cache.getSchedulePlans(STUDY_A, loader);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void invalidateStudyDiscardsStudyAndNotifiesOtherNodes() {
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        cache.getSurveyReference(STUDY_B, "guid", surveyLoader());
+
+        cache.invalidateStudy(STUDY_A);
+        verify(bus).publish(ScheduleResolutionCache.CACHE_NAME, STUDY_A.getIdentifier());
+
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        cache.getSurveyReference(STUDY_B, "guid", surveyLoader());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void invalidationFromOtherNodeDiscardsStudy() {
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+
+        cache.invalidate(STUDY_A.getIdentifier());
+
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidationDuringLoadIsNotOverwritten() {
+        // The study changes while a reference is being resolved from the old data
+        cache.getSurveyReference(STUDY_A, "guid", () -> {
+            cache.invalidate(STUDY_A.getIdentifier());
+            return surveyLoader().get();
+        });
+
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateAllDiscardsEveryStudy() {
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        cache.getSurveyReference(STUDY_B, "guid", surveyLoader());
+
+        cache.invalidateAll();
+
+        cache.getSurveyReference(STUDY_A, "guid", surveyLoader());
+        cache.getSurveyReference(STUDY_B, "guid", surveyLoader());
+        assertEquals(4, loads.get());
+    }
+
+    private Supplier<SurveyReference> surveyLoader() {
+        return () -> new SurveyReference("survey", "guid", new DateTime(loads.incrementAndGet()));
+    }
+
+    private Supplier<SchemaReference> schemaLoader() {
+        return () -> new SchemaReference("schema", loads.incrementAndGet());
+    }
+}
@@ -0,0 +1,234 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.CriteriaContext;
+import org.sagebionetworks.bridge.models.CriteriaUtils;
+import org.sagebionetworks.bridge.models.OperatingSystem;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class SubpopulationCriteriaIndexTest {
+
+    private static final StudyIdentifier STUDY_A = new StudyIdentifierImpl("study-a");
+    private static final StudyIdentifier STUDY_B = new StudyIdentifierImpl("study-b");
+
+    private CacheInvalidationBus bus;
+    private SubpopulationCriteriaIndex index;
+    private AtomicInteger loads;
+
+    @Before
+    public void before() {
+        bus = mock(CacheInvalidationBus.class);
+        index = new SubpopulationCriteriaIndex();
+        index.setCacheInvalidationBus(bus);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void subscribesToInvalidations() {
+        verify(bus).subscribe(SubpopulationCriteriaIndex.CACHE_NAME, index);
+    }
+
+    @Test
+    public void loadsOnce() {
+        SubpopulationCriteriaIndex.CompiledSubpopulations first = index.getSubpopulations(STUDY_A, loader());
+        SubpopulationCriteriaIndex.CompiledSubpopulations second = index.getSubpopulations(STUDY_A, loader());
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void studiesAreIndexedSeparately() {
+        index.getSubpopulations(STUDY_A, loader());
+        index.getSubpopulations(STUDY_B, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateStudyReloadsAndPublishes() {
+        index.getSubpopulations(STUDY_A, loader());
+        index.getSubpopulations(STUDY_B, loader());
+
+        index.invalidateStudy(STUDY_A);
+        verify(bus).publish(SubpopulationCriteriaIndex.CACHE_NAME, "study-a");
+
+        index.getSubpopulations(STUDY_A, loader());
+        index.getSubpopulations(STUDY_B, loader());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void remoteInvalidateAllReloads() {
+        index.getSubpopulations(STUDY_A, loader());
+        index.invalidateAll();
+        index.getSubpopulations(STUDY_A, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadInFlightDuringInvalidationIsNotKept() {
+        // The subpopulations change, and the study is invalidated, while the index is being compiled.
+        SubpopulationCriteriaIndex.CompiledSubpopulations racing = index.getSubpopulations(STUDY_A, () -> {
+            loads.incrementAndGet();
+            index.invalidate("study-a");
+            return makeSubpopulations();
+        });
+        SubpopulationCriteriaIndex.CompiledSubpopulations reloaded = index.getSubpopulations(STUDY_A, loader());
+
+        // The waiting request still gets the index it loaded, but the next request reloads.
+        assertEquals(5, racing.getSubpopulations().size());
+        assertNotSame(racing, reloaded);
+        assertEquals(2, loads.get());
+
+        // Loads after the invalidation are kept.
+        index.getSubpopulations(STUDY_A, loader());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadInFlightDuringInvalidateAllIsNotKept() {
+        index.getSubpopulations(STUDY_A, () -> {
+            loads.incrementAndGet();
+            index.invalidateAll();
+            return makeSubpopulations();
+        });
+        index.getSubpopulations(STUDY_A, loader());
+        index.getSubpopulations(STUDY_A, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loaderExceptionsAreNotWrappedOrCached() {
+        try {
+            index.getSubpopulations(STUDY_A, () -> {
+                throw new EntityNotFoundException(Subpopulation.class);
+            });
+            fail("expected exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+        index.getSubpopulations(STUDY_A, loader());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void matchesInLoadedOrder() {
+        List<Subpopulation> subpops = makeSubpopulations();
+        SubpopulationCriteriaIndex.CompiledSubpopulations compiled = index.getSubpopulations(STUDY_A, () -> subpops);
+
+        CriteriaContext context = context("iPhone OS", 5, ImmutableSet.of("a"), "en");
+        List<Subpopulation> matches = compiled.match(context);
+
+        assertEquals(ImmutableList.of(subpops.get(0), subpops.get(1), subpops.get(4)), matches);
+    }
+
+    @Test
+    public void matchesSameAsCriteriaUtils() {
+        List<Subpopulation> subpops = makeSubpopulations();
+        SubpopulationCriteriaIndex.CompiledSubpopulations compiled = index.getSubpopulations(STUDY_A, () -> subpops);
+
+        List<Set<String>> groupSets = ImmutableList.of(ImmutableSet.of(), ImmutableSet.of("a"),
+                ImmutableSet.of("a", "b"), ImmutableSet.of("c"), ImmutableSet.of("a", "b", "c", "unknown"));
+        List<String> osNames = Lists.newArrayList(null, OperatingSystem.IOS, OperatingSystem.ANDROID, "Other OS");
+        List<Integer> appVersions = Lists.newArrayList(null, 0, 1, 2, 3, 5, 10, 11, 100);
+        List<String> languages = Lists.newArrayList(null, "en", "EN", "fr");
+
+        for (Set<String> groups : groupSets) {
+            for (String osName : osNames) {
+                for (Integer appVersion : appVersions) {
+                    for (String language : languages) {
+                        CriteriaContext context = context(osName, appVersion, groups, language);
+                        List<Subpopulation> expected = subpops.stream()
+                                .filter(subpop -> CriteriaUtils.matchCriteria(context, subpop.getCriteria()))
+                                .collect(Collectors.toList());
+                        assertEquals(expected, compiled.match(context));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void noSubpopulationsMatchesNothing() {
+        SubpopulationCriteriaIndex.CompiledSubpopulations compiled = index.getSubpopulations(STUDY_A,
+                ImmutableList::of);
+
+        assertEquals(ImmutableList.of(), compiled.match(context(OperatingSystem.IOS, 1, ImmutableSet.of(), "en")));
+    }
+
+    private Supplier<List<Subpopulation>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return makeSubpopulations();
+        };
+    }
+
+    private static List<Subpopulation> makeSubpopulations() {
+        return ImmutableList.of(
+                // No criteria
+                subpop("default", TestUtils.createCriteria(null, null, Sets.newHashSet(), Sets.newHashSet()), null),
+                // iOS 2 to 10, requires a, prohibits c
+                subpop("ios", TestUtils.createCriteria(2, 10, Sets.newHashSet("a"), Sets.newHashSet("c")), null),
+                // Requires a and b
+                subpop("ab", TestUtils.createCriteria(null, null, Sets.newHashSet("a", "b"), Sets.newHashSet()),
+                        null),
+                // French only
+                subpop("fr", TestUtils.createCriteria(null, null, Sets.newHashSet(), Sets.newHashSet()), "fr"),
+                // Android 3 and up and iOS up to 5, prohibits b, in English
+                subpop("mixed", androidAndIosCriteria(), "en"));
+    }
+
+    private static Criteria androidAndIosCriteria() {
+        Criteria criteria = TestUtils.createCriteria(null, 5, Sets.newHashSet(), Sets.newHashSet("b"));
+        criteria.setMinAppVersion(OperatingSystem.ANDROID, 3);
+        return criteria;
+    }
+
+    private static Subpopulation subpop(String guid, Criteria criteria, String language) {
+        criteria.setLanguage(language);
+        Subpopulation subpop = Subpopulation.create();
+        subpop.setGuidString(guid);
+        subpop.setCriteria(criteria);
+        return subpop;
+    }
+
+    private static CriteriaContext context(String osName, Integer appVersion, Set<String> groups, String language) {
+        ClientInfo clientInfo = new ClientInfo.Builder().withOsName(osName).withAppVersion(appVersion).build();
+        return new CriteriaContext.Builder()
+                .withStudyIdentifier(STUDY_A)
+                .withClientInfo(clientInfo)
+                .withUserDataGroups(groups)
+                .withLanguages(language == null ? new LinkedHashSet<>() : TestUtils.newLinkedHashSet(language))
+                .build();
+    }
+}
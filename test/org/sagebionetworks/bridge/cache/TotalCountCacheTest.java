@@ -0,0 +1,78 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+public class TotalCountCacheTest {
+
+    private static final String REDIS_KEY = RedisKey.TOTAL_COUNT.getRedisKey("activities:AAA");
+    private static final String VERSION_KEY = RedisKey.TOTAL_COUNT_VERSION.getRedisKey("activities:AAA");
+
+    private CacheProvider cacheProvider;
+    private TotalCountCache cache;
+
+    @Before
+    public void before() {
+        cacheProvider = mock(CacheProvider.class);
+        cache = new TotalCountCache();
+        cache.setCacheProvider(cacheProvider);
+    }
+
+    @Test
+    public void countsAndCachesTotal() {
+        when(cacheProvider.getString(VERSION_KEY)).thenReturn("3");
+        AtomicInteger counted = new AtomicInteger();
+
+        assertEquals(42, cache.getTotal("activities:AAA", () -> {
+            counted.incrementAndGet();
+            return 42;
+        }));
+        assertEquals(1, counted.get());
+
+        // The version is read before counting, and the total is only cached if it hasn't changed.
+        InOrder inOrder = inOrder(cacheProvider);
+        inOrder.verify(cacheProvider).getString(VERSION_KEY);
+        inOrder.verify(cacheProvider).setStringIfVersionUnchanged(REDIS_KEY, "42", TotalCountCache.EXPIRE_IN_SECONDS,
+                VERSION_KEY, "3");
+        verify(cacheProvider, never()).setString(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void returnsCachedTotalWithoutCounting() {
+        when(cacheProvider.getString(REDIS_KEY)).thenReturn("42");
+        AtomicInteger counted = new AtomicInteger();
+
+        assertEquals(42, cache.getTotal("activities:AAA", () -> {
+            counted.incrementAndGet();
+            return 0;
+        }));
+        assertEquals(0, counted.get());
+        verify(cacheProvider, never()).setStringIfVersionUnchanged(anyString(), anyString(), anyInt(), anyString(),
+                anyString());
+    }
+
+    @Test
+    public void invalidateChangesVersionsThenRemovesAllKeysAtOnce() {
+        cache.invalidate("activities:AAA", "activities:BBB");
+
+        InOrder inOrder = inOrder(cacheProvider);
+        inOrder.verify(cacheProvider).incrementVersion(VERSION_KEY, TotalCountCache.EXPIRE_IN_SECONDS);
+        inOrder.verify(cacheProvider).incrementVersion(RedisKey.TOTAL_COUNT_VERSION.getRedisKey("activities:BBB"),
+                TotalCountCache.EXPIRE_IN_SECONDS);
+        inOrder.verify(cacheProvider).removeString(REDIS_KEY, RedisKey.TOTAL_COUNT.getRedisKey("activities:BBB"));
+    }
+}
@@ -0,0 +1,190 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+import com.google.common.collect.ImmutableList;
+
+public class UploadSchemaCatalogTest {
+
+    private static final StudyIdentifier STUDY = new StudyIdentifierImpl("test-study");
+    private static final String SCHEMA_ID = "test-schema";
+    private static final String IOS = "iPhone OS";
+    private static final String ANDROID = "Android";
+
+    private CacheInvalidationBus bus;
+    private UploadSchemaCatalog catalog;
+    private AtomicInteger loads;
+
+    @Before
+    public void before() {
+        bus = mock(CacheInvalidationBus.class);
+        catalog = new UploadSchemaCatalog();
+        catalog.setCacheInvalidationBus(bus);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void subscribesToInvalidations() {
+        verify(bus).subscribe(UploadSchemaCatalog.CACHE_NAME, catalog);
+    }
+
+    @Test
+    public void findsLatestRevisionForAppVersion() {
+        // rev 1 is for iOS up to 9, rev 2 for iOS 5 to 19, rev 3 for iOS 20 and later. Android isn't constrained.
+        UploadSchemaCatalog.SchemaRevisions revisions = catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(
+                schema(1, null, 9), schema(2, 5, 19), schema(3, 20, null)));
+
+        assertEquals(1, latest(revisions, IOS, 1).getRevision());
+        assertEquals(2, latest(revisions, IOS, 5).getRevision());
+        assertEquals(2, latest(revisions, IOS, 19).getRevision());
+        assertEquals(3, latest(revisions, IOS, 20).getRevision());
+        assertEquals(3, latest(revisions, IOS, Integer.MAX_VALUE).getRevision());
+        assertEquals(3, latest(revisions, ANDROID, 1).getRevision());
+        assertEquals(3, revisions.getLatestRevision(new ClientInfo.Builder().withOsName(IOS).build()).getRevision());
+        assertEquals(2, revisions.getRevision(2).getRevision());
+        assertNull(revisions.getRevision(4));
+    }
+
+    @Test
+    public void noRevisionAvailable() {
+        UploadSchemaCatalog.SchemaRevisions revisions = catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(
+                schema(1, 10, 19), schema(2, 30, null)));
+
+        assertNull(latest(revisions, IOS, 5));
+        assertEquals(1, latest(revisions, IOS, 15).getRevision());
+        assertNull(latest(revisions, IOS, 25));
+        assertEquals(2, latest(revisions, IOS, 35).getRevision());
+    }
+
+    @Test
+    public void loadsOnce() {
+        UploadSchemaCatalog.SchemaRevisions first = catalog.getSchemaRevisions(STUDY, SCHEMA_ID,
+                loader(schema(1, null, null)));
+        UploadSchemaCatalog.SchemaRevisions second = catalog.getSchemaRevisions(STUDY, SCHEMA_ID,
+                loader(schema(1, null, null)));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void loaderExceptionsAreNotWrappedOrCached() {
+        try {
+            catalog.getSchemaRevisions(STUDY, SCHEMA_ID, () -> {
+                throw new EntityNotFoundException(UploadSchema.class);
+            });
+            fail("expected exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void updateRevisionReloadsAndPublishes() {
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+
+        UploadSchema rev2 = schema(2, null, null);
+        catalog.updateRevision(STUDY, rev2);
+
+        UploadSchemaCatalog.SchemaRevisions revisions = catalog.getSchemaRevisions(STUDY, SCHEMA_ID,
+                loader(schema(1, null, null), rev2));
+        assertSame(rev2, latest(revisions, IOS, 1));
+        assertEquals(1, revisions.getRevision(1).getRevision());
+        assertEquals(2, loads.get());
+        verify(bus).publish(UploadSchemaCatalog.CACHE_NAME, "test-study:test-schema");
+    }
+
+    @Test
+    public void loadInFlightDuringInvalidationIsNotKept() {
+        // The schema is written and invalidated while it's being loaded, after the loader has read it.
+        UploadSchemaCatalog.SchemaRevisions stale = catalog.getSchemaRevisions(STUDY, SCHEMA_ID, () -> {
+            List<UploadSchema> schemas = loader(schema(1, null, null)).get();
+            catalog.invalidate("test-study:test-schema");
+            return schemas;
+        });
+        assertEquals(1, stale.getRevision(1).getRevision());
+
+        UploadSchemaCatalog.SchemaRevisions revisions = catalog.getSchemaRevisions(STUDY, SCHEMA_ID,
+                loader(schema(1, null, null), schema(2, null, null)));
+        assertEquals(2, revisions.getRevision(2).getRevision());
+        assertEquals(2, loads.get());
+
+        // The reload started after the invalidation, so it's kept.
+        assertSame(revisions, catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadInFlightDuringInvalidateAllIsNotKept() {
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, () -> {
+            List<UploadSchema> schemas = loader(schema(1, null, null)).get();
+            catalog.invalidateAll();
+            return schemas;
+        });
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateSchemaReloads() {
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+        catalog.invalidateSchema(STUDY, SCHEMA_ID);
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+
+        assertEquals(2, loads.get());
+        verify(bus).publish(UploadSchemaCatalog.CACHE_NAME, "test-study:test-schema");
+    }
+
+    @Test
+    public void invalidationFromOtherNodeReloads() {
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+        catalog.invalidate("test-study:test-schema");
+        catalog.getSchemaRevisions(STUDY, SCHEMA_ID, loader(schema(1, null, null)));
+
+        assertEquals(2, loads.get());
+    }
+
+    private Supplier<List<UploadSchema>> loader(UploadSchema... schemas) {
+        return () -> {
+            loads.incrementAndGet();
+            return ImmutableList.copyOf(schemas);
+        };
+    }
+
+    private static UploadSchema latest(UploadSchemaCatalog.SchemaRevisions revisions, String osName,
+            int appVersion) {
+        return revisions.getLatestRevision(new ClientInfo.Builder().withOsName(osName).withAppVersion(appVersion)
+                .build());
+    }
+
+    private static UploadSchema schema(int revision, Integer minIosVersion, Integer maxIosVersion) {
+        DynamoUploadSchema schema = new DynamoUploadSchema();
+        schema.setSchemaId(SCHEMA_ID);
+        schema.setRevision(revision);
+        schema.setMinAppVersion(IOS, minIosVersion);
+        schema.setMaxAppVersion(IOS, maxIosVersion);
+        return schema;
+    }
+}
@@ -3,8 +3,14 @@ package org.sagebionetworks.bridge.config;
 import static org.mockito.Mockito.mock;
 
 import org.sagebionetworks.bridge.TestUserAdminHelper;
+import org.sagebionetworks.bridge.cache.CacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.LocalCacheInvalidationBus;
 import org.sagebionetworks.bridge.redis.InMemoryJedisOps;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps;
+import org.sagebionetworks.bridge.redis.UnpipelinedJedisOps;
+import org.sagebionetworks.bridge.upload.InMemoryUploadValidationQueue;
+import org.sagebionetworks.bridge.upload.UploadValidationQueue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportResource;
@@ -22,6 +28,22 @@ public class BridgeTestSpringConfig {
         return new InMemoryJedisOps();
     }
 
+    @Bean(name = "pipelinedJedisOps")
+    public PipelinedJedisOps pipelinedJedisOps() {
+        // Shares the in-memory store with the jedisOps bean
+        return new UnpipelinedJedisOps(jedisOps());
+    }
+
+    @Bean(name = "cacheInvalidationBus")
+    public CacheInvalidationBus cacheInvalidationBus() {
+        return new LocalCacheInvalidationBus();
+    }
+
+    @Bean(name = "uploadValidationQueue")
+    public UploadValidationQueue uploadValidationQueue() {
+        return new InMemoryUploadValidationQueue();
+    }
+
     @Bean(name = "jedisPool")
     public JedisPool jedisPool() {
         // Since we don't connect to a real host, pass in "localhost" as a dummy hostname
@@ -1,9 +1,11 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Resource;
@@ -103,16 +105,31 @@ public class DynamoActivityEventDaoTest {
         final DateTime firstEvent = DateTime.now();
         
         ActivityEvent event = getEnrollmentEvent(firstEvent);
-        activityEventDao.publishEvent(event);
+        assertTrue(activityEventDao.publishEvent(event));
         
         // This does not work. You can't do this.
         event = getEnrollmentEvent(firstEvent.plusHours(2));
-        activityEventDao.publishEvent(event);
+        assertFalse(activityEventDao.publishEvent(event));
         
         Map<String,DateTime> eventMap = activityEventDao.getActivityEventMap(healthCode);
         assertEquals(firstEvent.withZone(DateTimeZone.UTC), eventMap.get("enrollment"));
     }
     
+    @Test
+    public void neverReplaceEventWithEarlierEvent() {
+        final DateTime firstEvent = DateTime.now();
+        
+        assertTrue(activityEventDao.publishEvent(getSurveyFinishedEvent(firstEvent)));
+        assertFalse(activityEventDao.publishEvent(getSurveyFinishedEvent(firstEvent.minusHours(2))));
+        assertFalse(activityEventDao.publishEvent(getSurveyFinishedEvent(firstEvent)));
+        
+        List<ActivityEvent> events = activityEventDao.getActivityEvents(healthCode);
+        assertEquals(1, events.size());
+        assertEquals(new Long(firstEvent.getMillis()), events.get(0).getTimestamp());
+        
+        activityEventDao.deleteActivityEvents(healthCode);
+    }
+    
     private DynamoActivityEvent getEnrollmentEvent(DateTime timestamp) {
         return new DynamoActivityEvent.Builder().withHealthCode(healthCode)
             .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(timestamp).build();
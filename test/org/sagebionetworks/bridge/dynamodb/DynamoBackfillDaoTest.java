@@ -105,6 +105,21 @@ public class DynamoBackfillDaoTest {
         assertEquals(BackfillStatus.COMPLETED.name(), task.getStatus());
     }
 
+    @Test
+    public void testTaskCheckpoint() {
+        BackfillTask task = backfillDao.createTask("name", "user");
+        tasksToDelete.add(task);
+        assertEquals(0, backfillDao.getTaskCheckpoint(task.getId()));
+
+        backfillDao.updateTaskCheckpoint(task.getId(), 500);
+        assertEquals(500, backfillDao.getTaskCheckpoint(task.getId()));
+
+        // Checkpoints don't clobber the status, and vice versa
+        backfillDao.updateTaskStatus(task.getId(), BackfillStatus.FAILED);
+        assertEquals(500, backfillDao.getTaskCheckpoint(task.getId()));
+        assertEquals(BackfillStatus.FAILED.name(), backfillDao.getTask(task.getId()).getStatus());
+    }
+
     @Test
     public void testRecord() throws Exception {
         // Create
@@ -0,0 +1,132 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.sagebionetworks.bridge.cache.TotalCountCache;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.ExternalIdDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class DynamoExternalIdDaoMockTest {
+
+    private static final StudyIdentifier STUDY_ID = new StudyIdentifierImpl("test-study");
+
+    private DynamoDBMapper mapper;
+    private TotalCountCache totalCountCache;
+    private DynamoExternalIdDao dao;
+
+    @Before
+    public void before() {
+        Config config = mock(Config.class);
+        when(config.getInt(ExternalIdDao.CONFIG_KEY_ADD_LIMIT)).thenReturn(1000);
+        when(config.getInt(ExternalIdDao.CONFIG_KEY_LOCK_DURATION)).thenReturn(30000);
+
+        mapper = mock(DynamoDBMapper.class);
+        when(mapper.batchLoad(any(List.class))).thenReturn(ImmutableMap.of());
+        when(mapper.batchSave(any(List.class))).thenReturn(ImmutableList.of());
+
+        dao = new DynamoExternalIdDao();
+        dao.setConfig(config);
+        dao.setMapper(mapper);
+        dao.setExecutorService(MoreExecutors.newDirectExecutorService());
+        totalCountCache = mock(TotalCountCache.class);
+        dao.setTotalCountCache(totalCountCache);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void addExternalIdsLoadsAndSavesInChunks() {
+        List<String> ids = Lists.newArrayList();
+        for (int i=0; i < 250; i++) {
+            ids.add("id" + i);
+        }
+        // The first identifier already exists
+        DynamoExternalIdentifier existing = new DynamoExternalIdentifier(STUDY_ID, "id0");
+        when(mapper.batchLoad(any(List.class))).thenReturn(
+                ImmutableMap.<String,List<Object>>of("ExternalIdentifier", ImmutableList.<Object>of(existing)),
+                ImmutableMap.of());
+
+        dao.addExternalIds(STUDY_ID, ids);
+
+        ArgumentCaptor<List> loadCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(3)).batchLoad(loadCaptor.capture());
+        assertEquals(ImmutableList.of(100, 100, 50), sizes(loadCaptor.getAllValues()));
+
+        ArgumentCaptor<List> saveCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(3)).batchSave(saveCaptor.capture());
+        assertEquals(ImmutableList.of(99, 100, 50), sizes(saveCaptor.getAllValues()));
+        
+        verify(totalCountCache).invalidate("external-ids:test-study:all", "external-ids:test-study:assigned",
+                "external-ids:test-study:unassigned");
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void throttledSavesAreRetried() {
+        FailedBatch failure = new FailedBatch();
+        failure.setException(new ProvisionedThroughputExceededException("throttled"));
+        failure.setUnprocessedItems(ImmutableMap.<String,List<WriteRequest>>of("ExternalIdentifier",
+                ImmutableList.of(new WriteRequest().withPutRequest(new PutRequest().withItem(
+                        ImmutableMap.of("identifier", new AttributeValue().withS("BBB")))))));
+        when(mapper.batchSave(any(List.class))).thenReturn(ImmutableList.of(failure), ImmutableList.of());
+
+        dao.addExternalIds(STUDY_ID, ImmutableList.of("AAA", "BBB", "CCC"));
+
+        ArgumentCaptor<List> saveCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).batchSave(saveCaptor.capture());
+        List<DynamoExternalIdentifier> retried = saveCaptor.getAllValues().get(1);
+        assertEquals(1, retried.size());
+        assertEquals("BBB", retried.get(0).getIdentifier());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void otherSaveFailuresAreNotRetried() {
+        FailedBatch failure = new FailedBatch();
+        failure.setException(new IllegalStateException("failed"));
+        failure.setUnprocessedItems(ImmutableMap.of());
+        when(mapper.batchSave(any(List.class))).thenReturn(ImmutableList.of(failure));
+
+        try {
+            dao.addExternalIds(STUDY_ID, ImmutableList.of("AAA"));
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            // expected
+        }
+        verify(mapper, times(1)).batchSave(any(List.class));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static List<Integer> sizes(List<List> lists) {
+        List<Integer> sizes = Lists.newArrayList();
+        for (List list : lists) {
+            sizes.add(list.size());
+        }
+        return sizes;
+    }
+}
@@ -11,6 +11,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -59,7 +60,8 @@ public class DynamoHealthDataDaoTest {
         List<HealthDataRecord> mockResult = Collections.<HealthDataRecord>singletonList(record);
 
         DynamoIndexHelper mockIndex = mock(DynamoIndexHelper.class);
-        when(mockIndex.queryKeys(HealthDataRecord.class, "healthCode", "test health code", null)).thenReturn(mockResult);
+        when(mockIndex.queryKeysIterator(HealthDataRecord.class, "healthCode", "test health code", null)).thenReturn(
+                mockResult.iterator());
 
         // set up and execute
         DynamoHealthDataDao dao = new DynamoHealthDataDao();
@@ -95,7 +97,8 @@ public class DynamoHealthDataDaoTest {
         List<HealthDataRecord> mockResult = Collections.<HealthDataRecord>singletonList(record);
 
         DynamoIndexHelper mockIndex = mock(DynamoIndexHelper.class);
-        when(mockIndex.queryKeys(HealthDataRecord.class, "healthCode", "test health code", null)).thenReturn(mockResult);
+        when(mockIndex.queryKeysIterator(HealthDataRecord.class, "healthCode", "test health code", null)).thenReturn(
+                mockResult.iterator());
 
         // set up
         DynamoHealthDataDao dao = new DynamoHealthDataDao();
@@ -122,15 +125,16 @@ public class DynamoHealthDataDaoTest {
     @Test
     public void getRecordsForUploadDate() {
         // mock index helper
-        List<HealthDataRecord> mockResult = Collections.emptyList();
+        Iterator<HealthDataRecord> mockResult = Collections.emptyIterator();
         DynamoIndexHelper mockIndex = mock(DynamoIndexHelper.class);
-        when(mockIndex.query(HealthDataRecord.class, "uploadDate", "2015-02-11", null)).thenReturn(mockResult);
+        when(mockIndex.queryIterator(HealthDataRecord.class, "uploadDate", "2015-02-11", null)).thenReturn(
+                mockResult);
 
         DynamoHealthDataDao dao = new DynamoHealthDataDao();
         dao.setUploadDateIndex(mockIndex);
 
         // execute and validate
-        List<HealthDataRecord> retVal = dao.getRecordsForUploadDate("2015-02-11");
+        Iterator<HealthDataRecord> retVal = dao.getRecordsForUploadDate("2015-02-11");
         assertSame(mockResult, retVal);
     }
 
@@ -1,16 +1,25 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
@@ -41,6 +50,21 @@ public class DynamoIndexHelperTest {
             this.key = key;
             this.value = value;
         }
+
+        @DynamoDBHashKey
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // key annotation on a field, which the index helper can't use to order rows
+    public static class FieldKeyedThing {
+        @DynamoDBHashKey
+        private String key;
+
+        public String getKey() {
+            return key;
+        }
     }
 
     // index.query() can't be mocked, so override queryHelper to sidestep this problem
@@ -85,6 +109,7 @@ public class DynamoIndexHelperTest {
         arg = ArgumentCaptor.forClass(List.class);
         when(mockMapper.batchLoad(arg.capture())).thenReturn(mockMapperResultMap);
         helper.setMapper(mockMapper);
+        helper.setTableClass(Thing.class);
     }
 
     @Test
@@ -103,21 +128,90 @@ public class DynamoIndexHelperTest {
         // at least in the test context.
         validateKeyObjects(arg.getValue());
 
-        // Validate final results. Because of wonkiness with maps and ordering, we'll convert the Things into a map and
-        // validate the map.
+        // Validate final results. These are in index order, regardless of the order batchLoad() returns them in.
         assertEquals(4, resultList.size());
-        Map<String, String> thingMap = new HashMap<>();
-        for (Thing oneThing : resultList) {
-            thingMap.put(oneThing.key, oneThing.value);
+        assertEquals("foo key", resultList.get(0).key);
+        assertEquals("foo value", resultList.get(0).value);
+        assertEquals("bar key", resultList.get(1).key);
+        assertEquals("bar value", resultList.get(1).value);
+        assertEquals("asdf key", resultList.get(2).key);
+        assertEquals("asdf value", resultList.get(2).value);
+        assertEquals("jkl; key", resultList.get(3).key);
+        assertEquals("jkl; value", resultList.get(3).value);
+    }
+
+    @Test
+    public void queryIteratorLoadsInChunksAndKeepsIndexOrder() {
+        // 250 keys in the index. Row 42 was deleted after the index was read.
+        List<Item> mockItemList = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            mockItemList.add(new Item().with("key", "key" + i));
+        }
+        helper = new TestDynamoIndexHelper("test key", "test value", null, mockItemList);
+        helper.setTableClass(Thing.class);
+
+        // Mock mapper returns the loaded rows in reverse order.
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchLoad(anyList())).thenAnswer(invocation -> {
+            List<Thing> keyList = (List<Thing>) invocation.getArguments()[0];
+            List<Object> loadedList = new ArrayList<>();
+            for (Thing oneKey : keyList) {
+                if (!oneKey.key.equals("key42")) {
+                    loadedList.add(0, new Thing(oneKey.key, oneKey.key + " value"));
+                }
+            }
+            Map<String, List<Object>> resultMap = new HashMap<>();
+            resultMap.put("dummy table", loadedList);
+            return resultMap;
+        });
+        helper.setMapper(mockMapper);
+
+        Iterator<Thing> resultIter = helper.queryIterator(Thing.class, "test key", "test value", null);
+        for (int i = 0; i < 250; i++) {
+            if (i != 42) {
+                Thing oneThing = resultIter.next();
+                assertEquals("key" + i, oneThing.key);
+                assertEquals("key" + i + " value", oneThing.value);
+            }
         }
+        assertFalse(resultIter.hasNext());
 
-        assertEquals(4, thingMap.size());
-        assertEquals("foo value", thingMap.get("foo key"));
-        assertEquals("bar value", thingMap.get("bar key"));
-        assertEquals("asdf value", thingMap.get("asdf key"));
-        assertEquals("jkl; value", thingMap.get("jkl; key"));
+        // Batch loads of 100, 100 and 50 keys
+        arg = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper, times(3)).batchLoad(arg.capture());
+        assertEquals(100, arg.getAllValues().get(0).size());
+        assertEquals(100, arg.getAllValues().get(1).size());
+        assertEquals(50, arg.getAllValues().get(2).size());
     }
-    
+
+    @Test
+    public void queryIteratorUsesBatchLoadExecutor() {
+        mockResultsOfQuery(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            helper.setBatchLoadExecutor(executor);
+            Iterator<Thing> resultIter = helper.queryIterator(Thing.class, "test key", "test value", null);
+            assertEquals("foo key", resultIter.next().key);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyAnnotationsOnFieldsAreRejected() {
+        new DynamoIndexHelper().setTableClass(FieldKeyedThing.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tableClassWithoutHashKeyIsRejected() {
+        new DynamoIndexHelper().setTableClass(Object.class);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void queryIteratorWithoutTableClassFails() {
+        new DynamoIndexHelper().queryIterator(Thing.class, "test key", "test value", null);
+    }
+
     @Test
     public void testCount() {
         mockResultsOfQuery(null);
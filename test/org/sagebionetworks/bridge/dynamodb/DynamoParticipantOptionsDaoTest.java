@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_IDENTIFIER;
 import static org.sagebionetworks.bridge.dao.ParticipantOption.*;
 
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -28,6 +29,7 @@ import org.sagebionetworks.bridge.services.StudyService;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.springframework.test.context.ContextConfiguration;
@@ -37,6 +39,10 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 @RunWith(SpringJUnit4ClassRunner.class)
 public class DynamoParticipantOptionsDaoTest {
 
+    // The study-wide reads query the studyKey index, a GSI, which is eventually consistent.
+    private static final long GSI_WAIT_TIMEOUT_MILLIS = 10000;
+    private static final long GSI_POLL_INTERVAL_MILLIS = 250;
+
     private static final String TEST_EXT_ID = "AAA";
     private static final String TEST_EXT_ID_2 = "BBB";
     private static final String TEST_EXT_ID_3 = "CCC";
@@ -77,7 +83,7 @@ public class DynamoParticipantOptionsDaoTest {
     }
     
     @Test
-    public void crudOptions() {
+    public void crudOptions() throws Exception {
         Set<String> dataGroups = Sets.newHashSet("group1", "group2", "group3");
         String sharingName = SharingScope.ALL_QUALIFIED_RESEARCHERS.name();
         
@@ -92,12 +98,13 @@ public class DynamoParticipantOptionsDaoTest {
         assertEquals(TEST_EXT_ID, lookup.getString(EXTERNAL_IDENTIFIER));
         assertEquals(dataGroups,  lookup.getStringSet(DATA_GROUPS));
         
-        AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
-        
         // Verify all are set in the OptionLookup object (same option for all users)
-        assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
-        assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
-        assertEquals(dataGroups, allLookup.get(healthCode).getStringSet(DATA_GROUPS));
+        assertEventually(() -> {
+            AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
+            assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
+            assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
+            assertEquals(dataGroups, allLookup.get(healthCode).getStringSet(DATA_GROUPS));
+        });
         
         // Verify deleting one option
         optionsDao.deleteOption(healthCode, EXTERNAL_IDENTIFIER);
@@ -106,25 +113,27 @@ public class DynamoParticipantOptionsDaoTest {
         // Delete all options and verify they return to defaults
         optionsDao.deleteAllOptions(healthCode);
 
-        allLookup = optionsDao.getOptionsForAllParticipants(study);
-        
-        assertEquals(SharingScope.NO_SHARING, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
-        assertNull(allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
-        assertEquals(Sets.newHashSet(), allLookup.get(healthCode).getStringSet(DATA_GROUPS));
+        assertEventually(() -> {
+            AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
+            assertEquals(SharingScope.NO_SHARING, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
+            assertNull(allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
+            assertEquals(Sets.newHashSet(), allLookup.get(healthCode).getStringSet(DATA_GROUPS));
+        });
     }
     
     @Test
-    public void getOptionLookupContainsCodesForAllUsers() {
+    public void getOptionLookupContainsCodesForAllUsers() throws Exception {
         // Verify the lookup object contains records for multiple users
         optionsDao.setOption(study, healthCode, EXTERNAL_IDENTIFIER, TEST_EXT_ID);
         optionsDao.setOption(study, healthCode+"2", EXTERNAL_IDENTIFIER, TEST_EXT_ID_2);
         optionsDao.setOption(study, healthCode+"3", EXTERNAL_IDENTIFIER, TEST_EXT_ID_3);
 
-        AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
-        
-        assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
-        assertEquals(TEST_EXT_ID_2, allLookup.get(healthCode+"2").getString(EXTERNAL_IDENTIFIER));
-        assertEquals(TEST_EXT_ID_3, allLookup.get(healthCode+"3").getString(EXTERNAL_IDENTIFIER));
+        assertEventually(() -> {
+            AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
+            assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
+            assertEquals(TEST_EXT_ID_2, allLookup.get(healthCode+"2").getString(EXTERNAL_IDENTIFIER));
+            assertEquals(TEST_EXT_ID_3, allLookup.get(healthCode+"3").getString(EXTERNAL_IDENTIFIER));
+        });
         
         // healthCode's options are deleted in the @After method
         optionsDao.deleteAllOptions(healthCode+"2");
@@ -132,7 +141,7 @@ public class DynamoParticipantOptionsDaoTest {
     }
     
     @Test
-    public void getAllOptionsForAllStudyParticipants() {
+    public void getAllOptionsForAllStudyParticipants() throws Exception {
         optionsDao.setOption(study, healthCode, EXTERNAL_IDENTIFIER, TEST_EXT_ID);
         optionsDao.setOption(study, healthCode+"2", EXTERNAL_IDENTIFIER, TEST_EXT_ID_2);
         optionsDao.setOption(study, healthCode+"3", EXTERNAL_IDENTIFIER, TEST_EXT_ID_3);
@@ -148,23 +157,48 @@ public class DynamoParticipantOptionsDaoTest {
         optionsDao.setOption(study, healthCode+"2", SHARING_SCOPE, SharingScope.NO_SHARING.name());
         optionsDao.setOption(study, healthCode+"3", SHARING_SCOPE, SharingScope.SPONSORS_AND_PARTNERS.name());
         
-        AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
+        assertEventually(() -> {
+            AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(study);
+            
+            assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
+            assertEquals(TEST_EXT_ID_2, allLookup.get(healthCode+"2").getString(EXTERNAL_IDENTIFIER));
+            assertEquals(TEST_EXT_ID_3, allLookup.get(healthCode+"3").getString(EXTERNAL_IDENTIFIER));
+            
+            assertEquals(dataGroups1, allLookup.get(healthCode).getStringSet(DATA_GROUPS));
+            assertEquals(dataGroups2, allLookup.get(healthCode+"2").getStringSet(DATA_GROUPS));
+            assertEquals(dataGroups3, allLookup.get(healthCode+"3").getStringSet(DATA_GROUPS));
+            
+            assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
+            assertEquals(SharingScope.NO_SHARING, allLookup.get(healthCode+"2").getEnum(SHARING_SCOPE, SharingScope.class));
+            assertEquals(SharingScope.SPONSORS_AND_PARTNERS, allLookup.get(healthCode+"3").getEnum(SHARING_SCOPE, SharingScope.class));
+        });
         
-        assertEquals(TEST_EXT_ID, allLookup.get(healthCode).getString(EXTERNAL_IDENTIFIER));
-        assertEquals(TEST_EXT_ID_2, allLookup.get(healthCode+"2").getString(EXTERNAL_IDENTIFIER));
-        assertEquals(TEST_EXT_ID_3, allLookup.get(healthCode+"3").getString(EXTERNAL_IDENTIFIER));
-        
-        assertEquals(dataGroups1, allLookup.get(healthCode).getStringSet(DATA_GROUPS));
-        assertEquals(dataGroups2, allLookup.get(healthCode+"2").getStringSet(DATA_GROUPS));
-        assertEquals(dataGroups3, allLookup.get(healthCode+"3").getStringSet(DATA_GROUPS));
+        // healthCode options are deleted in the @After method
+        optionsDao.deleteAllOptions(healthCode+"2");
+        optionsDao.deleteAllOptions(healthCode+"3");
+    }
+
+    @Test
+    public void streamOptionsForAllStudyParticipants() throws Exception {
+        optionsDao.setOption(study, healthCode, EXTERNAL_IDENTIFIER, TEST_EXT_ID);
+        optionsDao.setOption(study, healthCode+"2", EXTERNAL_IDENTIFIER, TEST_EXT_ID_2);
         
-        assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, allLookup.get(healthCode).getEnum(SHARING_SCOPE, SharingScope.class));
-        assertEquals(SharingScope.NO_SHARING, allLookup.get(healthCode+"2").getEnum(SHARING_SCOPE, SharingScope.class));
-        assertEquals(SharingScope.SPONSORS_AND_PARTNERS, allLookup.get(healthCode+"3").getEnum(SHARING_SCOPE, SharingScope.class));
+        assertEventually(() -> {
+            Map<String,ParticipantOptionsLookup> streamed = Maps.newHashMap();
+            Iterator<Map.Entry<String,ParticipantOptionsLookup>> iterator = optionsDao.streamOptionsForAllParticipants(study);
+            while (iterator.hasNext()) {
+                Map.Entry<String,ParticipantOptionsLookup> entry = iterator.next();
+                streamed.put(entry.getKey(), entry.getValue());
+            }
+            
+            assertTrue(streamed.containsKey(healthCode));
+            assertTrue(streamed.containsKey(healthCode+"2"));
+            assertEquals(TEST_EXT_ID, streamed.get(healthCode).getString(EXTERNAL_IDENTIFIER));
+            assertEquals(TEST_EXT_ID_2, streamed.get(healthCode+"2").getString(EXTERNAL_IDENTIFIER));
+        });
         
         // healthCode options are deleted in the @After method
         optionsDao.deleteAllOptions(healthCode+"2");
-        optionsDao.deleteAllOptions(healthCode+"3");
     }
 
     @Test
@@ -192,4 +226,24 @@ public class DynamoParticipantOptionsDaoTest {
         assertEquals(DATA_GROUPS_SET, lookup.getStringSet(DATA_GROUPS));
         assertEquals(LANGUAGES_ORDERED_SET, lookup.getOrderedStringSet(LANGUAGES));
     }
+
+    /**
+     * Runs the read and its assertions until they pass, so a read of the studyKey index that hasn't caught up with
+     * the writes is retried rather than failing the test. If they still fail once the wait times out, the last
+     * assertion failure is thrown.
+     */
+    private static void assertEventually(Runnable readAndAssert) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + GSI_WAIT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                readAndAssert.run();
+                return;
+            } catch (AssertionError ex) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw ex;
+                }
+            }
+            Thread.sleep(GSI_POLL_INTERVAL_MILLIS);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.annotation.Resource;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@ContextConfiguration("classpath:test-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class DynamoRecordDedupeDaoTest {
+    private static final String TEST_CONTENT_HASH = "test-content-hash";
+    private static final String TEST_HEALTHCODE = "test-healthcode";
+    private static final String TEST_ORIGINAL_UPLOAD_ID = "original-upload";
+
+    @Autowired
+    @SuppressWarnings("unused")
+    private DynamoRecordDedupeDao dao;
+
+    @Resource(name = "recordDedupeDdbMapper")
+    @SuppressWarnings("unused")
+    private DynamoDBMapper mapper;
+
+    @Before
+    public void setup() {
+        assertNull(dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, TEST_ORIGINAL_UPLOAD_ID));
+    }
+
+    @After
+    public void cleanup() {
+        DynamoRecordDedupe keyObj = new DynamoRecordDedupe();
+        keyObj.setHealthCode(TEST_HEALTHCODE);
+        keyObj.setContentHash(TEST_CONTENT_HASH);
+        mapper.delete(keyObj);
+    }
+
+    @Test
+    public void isDupe() {
+        String originalUploadId = dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, "new-upload");
+        assertEquals(TEST_ORIGINAL_UPLOAD_ID, originalUploadId);
+    }
+
+    @Test
+    public void sameUploadIsNotDupe() {
+        // Re-validating the same upload shouldn't count as a duplicate.
+        assertNull(dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, TEST_ORIGINAL_UPLOAD_ID));
+    }
+
+    @Test
+    public void replaceRegistration() {
+        assertTrue(dao.replaceRegistration(TEST_HEALTHCODE, TEST_CONTENT_HASH, TEST_ORIGINAL_UPLOAD_ID, "new-upload"));
+        assertEquals("new-upload", dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, "third-upload"));
+
+        // No longer registered to the original upload, so it can't be replaced from there.
+        assertFalse(dao.replaceRegistration(TEST_HEALTHCODE, TEST_CONTENT_HASH, TEST_ORIGINAL_UPLOAD_ID,
+                "third-upload"));
+    }
+
+    @Test
+    public void unregisterRecord() {
+        // A different upload can't remove the registration.
+        dao.unregisterRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, "new-upload");
+        assertEquals(TEST_ORIGINAL_UPLOAD_ID, dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, "new-upload"));
+
+        // The upload that registered it can, after which the content is no longer a duplicate.
+        dao.unregisterRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, TEST_ORIGINAL_UPLOAD_ID);
+        assertNull(dao.registerRecord(TEST_HEALTHCODE, TEST_CONTENT_HASH, "new-upload"));
+    }
+
+    @Test
+    public void differentHealthCode() {
+        DynamoRecordDedupe keyObj = new DynamoRecordDedupe();
+        keyObj.setHealthCode("different-healthcode");
+        keyObj.setContentHash(TEST_CONTENT_HASH);
+        try {
+            assertNull(dao.registerRecord("different-healthcode", TEST_CONTENT_HASH, "new-upload"));
+        } finally {
+            mapper.delete(keyObj);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -26,6 +27,7 @@ import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.TotalCountCache;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.ClientInfo;
@@ -34,6 +36,7 @@ import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.google.common.collect.ImmutableList;
@@ -69,6 +72,7 @@ public class DynamoScheduledActivityDaoMockTest {
         when(mapper.load(any(DynamoScheduledActivity.class))).thenReturn(testSchActivity);
         activityDao = new DynamoScheduledActivityDao();
         activityDao.setDdbMapper(mapper);
+        activityDao.setTotalCountCache(mock(TotalCountCache.class));
     }
 
     @After
@@ -95,6 +99,9 @@ public class DynamoScheduledActivityDaoMockTest {
         when(mapper.query((Class<DynamoScheduledActivity>) any(Class.class),
             (DynamoDBQueryExpression<DynamoScheduledActivity>) any(DynamoDBQueryExpression.class)))
             .thenReturn(queryResults);
+        when(mapper.query((Class<DynamoScheduledActivity>) any(Class.class),
+            (DynamoDBQueryExpression<DynamoScheduledActivity>) any(DynamoDBQueryExpression.class),
+            any(DynamoDBMapperConfig.class))).thenReturn(queryResults);
         
         // Mock a batch load of the activities
         Map<String,List<Object>> results = Maps.newHashMap();
@@ -188,9 +195,10 @@ public class DynamoScheduledActivityDaoMockTest {
         ArgumentCaptor<DynamoDBQueryExpression> queryArg = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
         activityDao.deleteActivitiesForUser("AAA");
 
-        // This doesn't verify that the query was done with the "AAA" key
+        // This doesn't verify that the query was done with the "AAA" key. Results are iterated, not kept.
         verify(mapper).query((Class<DynamoScheduledActivity>) any(Class.class),
-                        (DynamoDBQueryExpression<DynamoScheduledActivity>) queryArg.capture());
+                        (DynamoDBQueryExpression<DynamoScheduledActivity>) queryArg.capture(),
+                        eq(DynamoScheduledActivityDao.ITERATION_ONLY_CONFIG));
         
         verify(mapper).batchDelete(argument.capture());
         verifyNoMoreInteractions(mapper);
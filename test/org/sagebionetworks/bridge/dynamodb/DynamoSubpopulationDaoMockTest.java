@@ -8,6 +8,7 @@ import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -26,6 +27,8 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.LocalCacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.SubpopulationCriteriaIndex;
 import org.sagebionetworks.bridge.dao.CriteriaDao;
 import org.sagebionetworks.bridge.dao.StudyConsentDao;
 import org.sagebionetworks.bridge.models.ClientInfo;
@@ -60,17 +63,19 @@ public class DynamoSubpopulationDaoMockTest {
     @Mock
     private CriteriaDao criteriaDao;
 
-    @SuppressWarnings("unchecked")
     @Before
     public void before() {
         dao.setMapper(mapper);
         dao.setStudyConsentDao(studyConsentDao);
         dao.setCriteriaDao(criteriaDao);
         
+        SubpopulationCriteriaIndex index = new SubpopulationCriteriaIndex();
+        index.setCacheInvalidationBus(new LocalCacheInvalidationBus());
+        dao.setSubpopulationCriteriaIndex(index);
+        
         List<DynamoSubpopulation> list = Lists.newArrayList((DynamoSubpopulation)createSubpopulation());
 
-        PaginatedQueryList<DynamoSubpopulation> page = mock(PaginatedQueryList.class);
-        when(page.stream()).thenReturn(list.stream());
+        PaginatedQueryList<DynamoSubpopulation> page = mockPage(list);
 
         doReturn(createSubpopulation()).when(mapper).load(any());
         doReturn(page).when(mapper).query(eq(DynamoSubpopulation.class), any());
@@ -150,6 +155,35 @@ public class DynamoSubpopulationDaoMockTest {
         verify(criteriaDao).getCriteria(criteria.getKey());
     }
 
+    @Test
+    public void getSubpopulationsForUserLoadsStudyOnce() {
+        CriteriaContext context = createContext();
+        
+        dao.getSubpopulationsForUser(context);
+        dao.getSubpopulationsForUser(context);
+        
+        verify(mapper).query(eq(DynamoSubpopulation.class), any());
+        verify(criteriaDao).getCriteria(any());
+    }
+    
+    @Test
+    public void updateSubpopulationInvalidatesStudyIndex() {
+        CriteriaContext context = createContext();
+        dao.getSubpopulationsForUser(context);
+        
+        Subpopulation subpop = createSubpopulation();
+        subpop.setVersion(1L);
+        dao.updateSubpopulation(subpop);
+        
+        // The mock mapper's result stream can only be consumed once
+        List<DynamoSubpopulation> list = Lists.newArrayList((DynamoSubpopulation)createSubpopulation());
+        PaginatedQueryList<DynamoSubpopulation> page = mockPage(list);
+        doReturn(page).when(mapper).query(eq(DynamoSubpopulation.class), any());
+        
+        dao.getSubpopulationsForUser(context);
+        verify(mapper, times(2)).query(eq(DynamoSubpopulation.class), any());
+    }
+
     @Test
     public void physicalDeleteSubpopulationDeletesCriteria() {
         dao.deleteSubpopulation(TEST_STUDY, SUBPOP_GUID, true);
@@ -254,6 +288,13 @@ public class DynamoSubpopulationDaoMockTest {
         assertEquals(CRITERIA, retrievedCriteria);
     }
     
+    @SuppressWarnings("unchecked")
+    private PaginatedQueryList<DynamoSubpopulation> mockPage(List<DynamoSubpopulation> list) {
+        PaginatedQueryList<DynamoSubpopulation> page = mock(PaginatedQueryList.class);
+        when(page.stream()).thenReturn(list.stream());
+        return page;
+    }
+    
     private CriteriaContext createContext() {
         return new CriteriaContext.Builder()
                 .withStudyIdentifier(TEST_STUDY)
@@ -1,19 +1,26 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.google.common.collect.ImmutableList;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
@@ -28,6 +35,7 @@ import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.surveys.IntegerConstraints;
 import org.sagebionetworks.bridge.models.surveys.Survey;
+import org.sagebionetworks.bridge.models.surveys.SurveyElement;
 import org.sagebionetworks.bridge.models.surveys.SurveyInfoScreen;
 import org.sagebionetworks.bridge.models.surveys.SurveyQuestion;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
@@ -121,4 +129,59 @@ public class DynamoSurveyDaoMockTest {
         verify(mockSurveyMapper).save(same(retval));
         verify(mockSchemaDao, never()).createUploadSchemaFromSurvey(any(), any(), anyBoolean());
     }
+
+    @Test
+    public void publishedSurveyElementsAreLoadedOnce() {
+        DynamoDBMapper mockElementMapper = mockSurveyQueries(true);
+
+        GuidCreatedOnVersionHolder keys = new GuidCreatedOnVersionHolderImpl("other-guid", SURVEY_CREATED_ON);
+        List<SurveyElement> first = surveyDao.getSurvey(keys).getElements();
+        List<SurveyElement> second = surveyDao.getSurvey(keys).getElements();
+        assertEquals(1, second.size());
+        assertEquals("test-info-screen", second.get(0).getIdentifier());
+        assertSame(first, second);
+
+        // Survey records are read each time, elements only once
+        verify(mockSurveyMapper, times(2)).queryPage(eq(DynamoSurvey.class), any());
+        verify(mockElementMapper, times(1)).queryPage(eq(DynamoSurveyElement.class), any());
+
+        // Deleting the survey permanently drops the cached elements
+        surveyDao.deleteSurveyPermanently(keys);
+        surveyDao.getSurvey(keys);
+        verify(mockElementMapper, times(2)).queryPage(eq(DynamoSurveyElement.class), any());
+    }
+
+    @Test
+    public void unpublishedSurveyElementsAreNotCached() {
+        DynamoDBMapper mockElementMapper = mockSurveyQueries(false);
+
+        GuidCreatedOnVersionHolder keys = new GuidCreatedOnVersionHolderImpl("other-guid", SURVEY_CREATED_ON);
+        List<SurveyElement> first = surveyDao.getSurvey(keys).getElements();
+        List<SurveyElement> second = surveyDao.getSurvey(keys).getElements();
+        assertNotSame(first, second);
+
+        verify(mockElementMapper, times(2)).queryPage(eq(DynamoSurveyElement.class), any());
+    }
+
+    private DynamoDBMapper mockSurveyQueries(boolean published) {
+        DynamoSurvey storedSurvey = new DynamoSurvey("other-guid", SURVEY_CREATED_ON);
+        storedSurvey.setStudyIdentifier(TestConstants.TEST_STUDY_IDENTIFIER);
+        storedSurvey.setIdentifier("other-survey");
+        storedSurvey.setPublished(published);
+        QueryResultPage<DynamoSurvey> surveyPage = new QueryResultPage<>();
+        surveyPage.setResults(ImmutableList.of(storedSurvey));
+        when(mockSurveyMapper.queryPage(eq(DynamoSurvey.class), any())).thenReturn(surveyPage);
+
+        DynamoSurveyInfoScreen infoScreen = new DynamoSurveyInfoScreen();
+        infoScreen.setIdentifier("test-info-screen");
+        infoScreen.setTitle("Test Info Screen");
+        infoScreen.setPrompt("Prompt");
+        QueryResultPage<DynamoSurveyElement> elementPage = new QueryResultPage<>();
+        elementPage.setResults(ImmutableList.of(infoScreen));
+
+        DynamoDBMapper mockElementMapper = mock(DynamoDBMapper.class);
+        when(mockElementMapper.queryPage(eq(DynamoSurveyElement.class), any())).thenReturn(elementPage);
+        surveyDao.setSurveyElementMapper(mockElementMapper);
+        return mockElementMapper;
+    }
 }
@@ -3,6 +3,8 @@ package org.sagebionetworks.bridge.models;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -15,8 +17,6 @@ public class MetricsTest {
         String requestId = "12345";
         Metrics metrics = new Metrics(requestId);
         assertNotNull(metrics);
-        assertEquals("12345:Metrics", metrics.getCacheKey());
-        assertEquals("12345:Metrics", Metrics.getCacheKey(requestId));
         final String json = metrics.toJsonString();
         assertNotNull(json);
         assertTrue(json.contains("\"version\":1"));
@@ -24,6 +24,37 @@ public class MetricsTest {
         assertTrue(json.contains("\"request_id\":\"12345\""));
     }
 
+    @Test
+    public void testRecordCall() {
+        Metrics metrics = new Metrics("12345");
+        assertEquals(0, metrics.getCallCount(Metrics.DYNAMODB));
+        metrics.recordCall(Metrics.DYNAMODB);
+        metrics.recordCall(Metrics.DYNAMODB);
+        metrics.recordCall(Metrics.REDIS);
+        assertEquals(2, metrics.getCallCount(Metrics.DYNAMODB));
+        assertEquals(1, metrics.getCallCount(Metrics.REDIS));
+        assertEquals(0, metrics.getCallCount(Metrics.S3));
+        assertTrue(metrics.toJsonString().contains("\"calls\":{\"ddb\":2,\"redis\":1}"));
+    }
+
+    @Test
+    public void testRecordCurrentCall() {
+        // No current metrics. This does nothing.
+        Metrics.recordCurrentCall(Metrics.S3);
+
+        Metrics metrics = new Metrics("12345");
+        Metrics.setCurrent(metrics);
+        try {
+            assertSame(metrics, Metrics.getCurrent());
+            Metrics.recordCurrentCall(Metrics.S3);
+        } finally {
+            Metrics.setCurrent(null);
+        }
+        assertNull(Metrics.getCurrent());
+        Metrics.recordCurrentCall(Metrics.S3);
+        assertEquals(1, metrics.getCallCount(Metrics.S3));
+    }
+
     @Test
     public void testSetStatus() {
         String requestId = "12345";
@@ -69,14 +100,4 @@ public class MetricsTest {
     public void testConstructorRequestIdMustNotBeEmpty() {
         new Metrics(" ");
     }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetCacheKeyRequestIdMustNotBeNull() {
-        Metrics.getCacheKey(null);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetCacheKeyRequestIdMustNotBeEmpty() {
-        Metrics.getCacheKey(" ");
-    }
 }
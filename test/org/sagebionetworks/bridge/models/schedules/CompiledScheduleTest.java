@@ -0,0 +1,69 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.LocalTime;
+import org.joda.time.Period;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.models.schedules.CompiledSchedule.CompiledActivity;
+
+import com.google.common.collect.ImmutableList;
+
+public class CompiledScheduleTest {
+
+    private static final Activity ACTIVITY = new Activity.Builder().withGuid("AAA").withLabel("label")
+            .withTask("task").build();
+
+    @Test
+    public void eventIdsDefaultToEnrollment() {
+        CompiledSchedule compiled = new CompiledSchedule(new Schedule());
+
+        assertEquals(ImmutableList.of("enrollment"), compiled.getEventIds());
+    }
+
+    @Test
+    public void eventIdsAreParsedOnce() {
+        Schedule schedule = new Schedule();
+        schedule.setEventId(" survey:BBB:finished ,  enrollment ");
+
+        CompiledSchedule compiled = new CompiledSchedule(schedule);
+        assertEquals(ImmutableList.of("survey:BBB:finished", "enrollment"), compiled.getEventIds());
+    }
+
+    @Test
+    public void copiesTimesExpirationAndWindow() {
+        Schedule schedule = new Schedule();
+        schedule.addTimes("08:00", "14:00");
+        schedule.setExpires("PT6H");
+
+        CompiledSchedule compiled = new CompiledSchedule(schedule);
+        assertEquals(ImmutableList.of(LocalTime.parse("08:00"), LocalTime.parse("14:00")), compiled.getTimes());
+        assertEquals(Period.parse("PT6H"), compiled.getExpires());
+        assertFalse(compiled.hasWindow());
+
+        // Changes after compilation are not reflected
+        schedule.addTimes("20:00");
+        assertEquals(2, compiled.getTimes().size());
+
+        schedule.setEndsOn("2015-04-23T13:40:00Z");
+        assertTrue(new CompiledSchedule(schedule).hasWindow());
+    }
+
+    @Test
+    public void compilesActivities() {
+        Schedule schedule = new Schedule();
+        schedule.setScheduleType(ScheduleType.ONCE);
+        schedule.setEventId("activity:AAA:finished,enrollment");
+        schedule.addActivity(ACTIVITY);
+
+        CompiledActivity activity = new CompiledSchedule(schedule).getActivities().get(0);
+        assertEquals(ACTIVITY, activity.getActivity());
+        assertEquals("AAA:", activity.getGuidPrefix());
+        assertTrue(activity.isPersistent());
+        assertEquals(ImmutableList.of("activity:AAA:finished", "activity:AAA:finished", "enrollment"),
+                activity.getPersistentEventIds());
+    }
+}
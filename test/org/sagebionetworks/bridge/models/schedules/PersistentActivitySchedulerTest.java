@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.models.schedules;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.sagebionetworks.bridge.models.schedules.ScheduleTestUtils.asDT;
 import static org.sagebionetworks.bridge.models.schedules.ScheduleTestUtils.assertDates;
@@ -108,6 +109,15 @@ public class PersistentActivitySchedulerTest {
         assertDates(scheduledActivities, "2015-04-12 00:00");
     }
     @Test
+    public void missingEventIdDefaultsToEnrollmentWithoutChangingSchedule() {
+        schedule.setEventId(null);
+        
+        scheduledActivities = schedule.getScheduler().getScheduledActivities(plan, getContext(ENROLLMENT.plusDays(1)));
+        assertDates(scheduledActivities, "2015-03-23 00:00");
+        // Schedules are shared between requests, so scheduling must not modify them
+        assertNull(schedule.getEventId());
+    }
+    @Test
     public void originalPersistentScheduleStructureStillWorks() {
         schedule.setEventId("activity:AAA:finished,enrollment");
         schedule.setScheduleType(ScheduleType.ONCE);
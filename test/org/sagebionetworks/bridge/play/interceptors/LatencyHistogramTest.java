@@ -0,0 +1,74 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value)));
+        }
+    }
+
+    @Test
+    public void largeValuesAreWithinPrecision() {
+        for (long value = 32; value < (1L << 31); value = value * 3 / 2 + 1) {
+            long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+            assertTrue(upperBound >= value);
+            assertTrue((upperBound - value) <= value / 32);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertWithinPrecision(500000, histogram.getValueAtPercentile(50.0));
+        assertWithinPrecision(900000, histogram.getValueAtPercentile(90.0));
+        assertWithinPrecision(990000, histogram.getValueAtPercentile(99.0));
+        // Never more than the max
+        assertEquals(1000000, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void hugeAndNegativeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+        assertEquals((1L << 31) - 1, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void reportAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(300);
+
+        ObjectNode report = histogram.reportAndReset();
+        assertEquals(2, report.get("count").asLong());
+        assertEquals(200, report.get("avgMicros").asLong());
+        assertEquals(300, report.get("maxMicros").asLong());
+        assertWithinPrecision(100, report.get("p50Micros").asLong());
+        assertWithinPrecision(300, report.get("p99_9Micros").asLong());
+
+        ObjectNode emptyReport = histogram.reportAndReset();
+        assertEquals(0, emptyReport.get("count").asLong());
+        assertEquals(0, emptyReport.get("p50Micros").asLong());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                actual >= expected && actual - expected <= expected / 32);
+    }
+}
@@ -2,14 +2,21 @@ package org.sagebionetworks.bridge.play.interceptors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import org.aopalliance.intercept.MethodInvocation;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.play.interceptors.MetricsInterceptor;
 
@@ -44,7 +51,6 @@ public class MetricsInterceptorTest {
         MetricsInterceptor interceptor = new MetricsInterceptor();
         Metrics metrics = interceptor.initMetrics();
         assertNotNull(metrics);
-        assertEquals("12345:Metrics", metrics.getCacheKey());
         String json = metrics.toJsonString();
         assertNotNull(json);
         assertTrue(json.contains("\"version\":1"));
@@ -56,4 +62,46 @@ public class MetricsInterceptorTest {
         assertTrue(json.contains("\"remote_address\":\"1.2.3.4\""));
         assertTrue(json.contains("\"user_agent\":\"ifeng 6\""));
     }
+
+    @Test
+    public void invokeBindsMetricsAndRecordsFailedRequest() throws Throwable {
+        mockContext();
+        RequestMetricsRegistry registry = mock(RequestMetricsRegistry.class);
+        MetricsInterceptor interceptor = new MetricsInterceptor();
+        interceptor.setRequestMetricsRegistry(registry);
+
+        // The request makes a DynamoDB call and then fails.
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(MetricsInterceptorTest.class.getMethod("testInitMetrics"));
+        when(invocation.proceed()).thenAnswer(i -> {
+            Metrics.recordCurrentCall(Metrics.DYNAMODB);
+            throw new IllegalStateException("test failure");
+        });
+
+        try {
+            interceptor.invoke(invocation);
+            fail("expected exception");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        ArgumentCaptor<Metrics> metricsCaptor = ArgumentCaptor.forClass(Metrics.class);
+        verify(registry).recordRequest(eq("MetricsInterceptorTest.testInitMetrics"), eq(500), anyLong(),
+                metricsCaptor.capture());
+        assertEquals(1, metricsCaptor.getValue().getCallCount(Metrics.DYNAMODB));
+        assertNull(Metrics.getCurrent());
+    }
+
+    private static void mockContext() {
+        final Request mockRequest = mock(Request.class);
+        when(mockRequest.headers()).thenReturn(new HashMap<>());
+        final Context mockContext = mock(Context.class);
+        when(mockContext.request()).thenReturn(mockRequest);
+        Http.Context.current = new ThreadLocal<Context>(){
+            @Override
+            protected Context initialValue() {
+                return mockContext;
+            }
+        };
+    }
 }
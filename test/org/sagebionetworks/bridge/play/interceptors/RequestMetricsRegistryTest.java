@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class RequestMetricsRegistryTest {
+
+    @Test
+    public void aggregatesByRouteAndStatus() {
+        RequestMetricsRegistry registry = new RequestMetricsRegistry();
+        registry.recordRequest("UploadController.upload", 201, 1000, metricsWithCalls(3, 1, 0));
+        registry.recordRequest("UploadController.upload", 201, 3000, metricsWithCalls(1, 1, 2));
+        registry.recordRequest("UploadController.upload", 400, 500, metricsWithCalls(0, 0, 0));
+
+        ObjectNode report = registry.reportAndReset();
+        assertEquals(2, report.size());
+
+        JsonNode created = report.get("UploadController.upload 201");
+        assertEquals(2, created.get("count").asLong());
+        assertEquals(2000, created.get("avgMicros").asLong());
+        assertEquals(3000, created.get("maxMicros").asLong());
+        assertEquals(4, created.get("calls").get(Metrics.DYNAMODB).get("total").asLong());
+        assertEquals(2.0, created.get("calls").get(Metrics.DYNAMODB).get("perRequest").asDouble(), 0.0);
+        assertEquals(2, created.get("calls").get(Metrics.REDIS).get("total").asLong());
+        assertEquals(2, created.get("calls").get(Metrics.S3).get("total").asLong());
+
+        JsonNode badRequest = report.get("UploadController.upload 400");
+        assertEquals(1, badRequest.get("count").asLong());
+    }
+
+    @Test
+    public void reportResets() {
+        RequestMetricsRegistry registry = new RequestMetricsRegistry();
+        registry.recordRequest("UploadController.upload", 201, 1000, metricsWithCalls(1, 0, 0));
+        registry.reportAndReset();
+
+        // Routes without requests since the last report are left out.
+        ObjectNode report = registry.reportAndReset();
+        assertFalse(report.has("UploadController.upload 201"));
+    }
+
+    private static Metrics metricsWithCalls(int ddbCalls, int redisCalls, int s3Calls) {
+        Metrics metrics = new Metrics("12345");
+        for (int i = 0; i < ddbCalls; i++) {
+            metrics.recordCall(Metrics.DYNAMODB);
+        }
+        for (int i = 0; i < redisCalls; i++) {
+            metrics.recordCall(Metrics.REDIS);
+        }
+        for (int i = 0; i < s3Calls; i++) {
+            metrics.recordCall(Metrics.S3);
+        }
+        return metrics;
+    }
+}
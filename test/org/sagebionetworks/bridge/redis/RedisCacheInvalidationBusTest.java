@@ -0,0 +1,90 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.cache.CacheInvalidationBus;
+
+public class RedisCacheInvalidationBusTest {
+
+    private Jedis jedis;
+    private RedisCacheInvalidationBus bus;
+    private CacheInvalidationBus.Listener listener;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+
+        listener = mock(CacheInvalidationBus.Listener.class);
+        bus = new RedisCacheInvalidationBus(jedisPool);
+        bus.subscribe("session", listener);
+    }
+
+    @Test
+    public void publishesToChannel() {
+        bus.publish("session", "token:with:colons");
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(jedis).publish(eq(RedisCacheInvalidationBus.CHANNEL), messageCaptor.capture());
+
+        // The same message delivered to another node invalidates the key there
+        RedisCacheInvalidationBus otherNode = new RedisCacheInvalidationBus(mock(JedisPool.class));
+        CacheInvalidationBus.Listener otherListener = mock(CacheInvalidationBus.Listener.class);
+        otherNode.subscribe("session", otherListener);
+        otherNode.dispatch(messageCaptor.getValue());
+
+        verify(otherListener).invalidate("token:with:colons");
+    }
+
+    @Test
+    public void ignoresOwnMessages() {
+        bus.publish("session", "token");
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(jedis).publish(eq(RedisCacheInvalidationBus.CHANNEL), messageCaptor.capture());
+        bus.dispatch(messageCaptor.getValue());
+
+        verify(listener, never()).invalidate(anyString());
+    }
+
+    @Test
+    public void ignoresOtherCaches() {
+        bus.dispatch("otherNode:study:api");
+
+        verify(listener, never()).invalidate(anyString());
+    }
+
+    @Test
+    public void ignoresMalformedMessages() {
+        bus.dispatch("garbage");
+
+        verify(listener, never()).invalidate(anyString());
+    }
+
+    @Test
+    public void invalidateAllNotifiesEveryListener() {
+        bus.invalidateAll();
+
+        verify(listener).invalidateAll();
+    }
+
+    @Test
+    public void publishFailureDoesNotThrow() {
+        when(jedis.publish(anyString(), anyString())).thenThrow(new RuntimeException("connection refused"));
+
+        bus.publish("session", "token");
+    }
+}
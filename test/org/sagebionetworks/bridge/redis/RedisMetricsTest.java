@@ -0,0 +1,38 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+public class RedisMetricsTest {
+    @Test
+    public void reportAndReset() {
+        RedisMetrics metrics = new RedisMetrics();
+        metrics.recordBorrowWait(10);
+        metrics.recordBorrowWait(30);
+        metrics.recordCommandLatency("get", 400);
+        metrics.recordCommandLatency("get", 250);
+        metrics.recordCommandLatency("getWithTtl", 200000);
+
+        JsonNode report = metrics.reportAndReset(3, 5, 1);
+        assertEquals(3, report.get("pool").get("active").intValue());
+        assertEquals(5, report.get("pool").get("idle").intValue());
+        assertEquals(1, report.get("pool").get("waiters").intValue());
+        assertEquals(2, report.get("borrowWait").get("count").longValue());
+        assertEquals(20, report.get("borrowWait").get("avgMicros").longValue());
+        assertEquals(30, report.get("borrowWait").get("maxMicros").longValue());
+
+        JsonNode get = report.get("commands").get("get");
+        assertEquals(400, get.get("maxMicros").longValue());
+        assertEquals(1, get.get("histogramMicros").get("le250").longValue());
+        assertEquals(1, get.get("histogramMicros").get("le500").longValue());
+        assertEquals(1, report.get("commands").get("getWithTtl").get("histogramMicros").get("inf").longValue());
+
+        // The next report only covers what happened after this one.
+        report = metrics.reportAndReset(0, 8, 0);
+        assertEquals(0, report.get("borrowWait").get("count").longValue());
+        assertEquals(0, report.get("commands").get("get").get("count").longValue());
+        assertEquals(0, report.get("commands").get("get").get("histogramMicros").get("le250").longValue());
+    }
+}
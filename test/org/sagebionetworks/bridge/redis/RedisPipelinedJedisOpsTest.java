@@ -0,0 +1,138 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import org.sagebionetworks.bridge.redis.PipelinedJedisOps.ValueWithTtl;
+
+public class RedisPipelinedJedisOpsTest {
+
+    private Jedis jedis;
+    private RedisMetrics metrics;
+    private RedisPipelinedJedisOps ops;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+        metrics = new RedisMetrics();
+        ops = new RedisPipelinedJedisOps(jedisPool, metrics);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getWithTtlIsPipelined() {
+        Pipeline pipeline = mock(Pipeline.class);
+        Response<String> value = mock(Response.class);
+        Response<Long> ttl = mock(Response.class);
+        when(value.get()).thenReturn("value");
+        when(ttl.get()).thenReturn(100L);
+        when(pipeline.get("key")).thenReturn(value);
+        when(pipeline.ttl("key")).thenReturn(ttl);
+        when(jedis.pipelined()).thenReturn(pipeline);
+
+        ValueWithTtl result = ops.getWithTtl("key");
+        assertEquals("value", result.getValue());
+        assertEquals(100L, result.getTtl());
+        verify(pipeline).sync();
+    }
+
+    @Test
+    public void setexWithRemainingTtl() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(42L);
+
+        int expiration = ops.setexWithRemainingTtl("ttlKey", 100, ImmutableMap.of("ttlKey", "a", "otherKey", "b"));
+        assertEquals(42, expiration);
+        verify(jedis).eval(anyString(), eq(ImmutableList.of("ttlKey", "ttlKey", "otherKey")),
+                eq(ImmutableList.of("100", "a", "b")));
+    }
+
+    @Test
+    public void hashOperations() {
+        when(jedis.hgetAll("key")).thenReturn(ImmutableMap.of("a", "1"));
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key")), eq(ImmutableList.of("a", "2")))).thenReturn(1L);
+        when(jedis.eval(anyString(), eq(ImmutableList.of("missingKey")), eq(ImmutableList.of("a", "2"))))
+                .thenReturn(0L);
+
+        assertEquals(ImmutableMap.of("a", "1"), ops.hgetAll("key"));
+        assertTrue(ops.hsetIfExists("key", "a", "2"));
+        assertFalse(ops.hsetIfExists("missingKey", "a", "2"));
+
+        ops.hmsetex("key", 100, ImmutableMap.of("a", "1", "b", "2"));
+        verify(jedis).eval(anyString(), eq(ImmutableList.of("key")), eq(ImmutableList.of("100", "a", "1", "b", "2")));
+    }
+
+    @Test
+    public void hmsetexIfEquals() {
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key", "versionKey")), eq(ImmutableList.of("100", "3", "a",
+                "1")))).thenReturn(1L);
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key", "versionKey")), eq(ImmutableList.of("100", "", "a",
+                "1")))).thenReturn(0L);
+
+        assertTrue(ops.hmsetexIfEquals("key", 100, ImmutableMap.of("a", "1"), "versionKey", "3"));
+        // A null expected value is sent as an empty string, which means the key to check must not exist.
+        assertFalse(ops.hmsetexIfEquals("key", 100, ImmutableMap.of("a", "1"), "versionKey", null));
+    }
+
+    @Test
+    public void setexIfEquals() {
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key", "versionKey")), eq(ImmutableList.of("100", "value",
+                "3")))).thenReturn(1L);
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key", "versionKey")), eq(ImmutableList.of("100", "value",
+                "")))).thenReturn(0L);
+
+        assertTrue(ops.setexIfEquals("key", 100, "value", "versionKey", "3"));
+        // A null expected value is sent as an empty string, which means the key to check must not exist.
+        assertFalse(ops.setexIfEquals("key", 100, "value", "versionKey", null));
+    }
+
+    @Test
+    public void incrWithExpire() {
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key")), eq(ImmutableList.of("100")))).thenReturn(4L);
+
+        assertEquals(4L, ops.incrWithExpire("key", 100));
+    }
+
+    @Test
+    public void getSetexAndDel() {
+        when(jedis.get("key")).thenReturn(null);
+        when(jedis.setex("key", 60, "value")).thenReturn("OK");
+        when(jedis.setex("badKey", 60, "value")).thenReturn("ERR");
+        when(jedis.del("key", "otherKey")).thenReturn(1L);
+
+        assertNull(ops.get("key"));
+        assertTrue(ops.setex("key", 60, "value"));
+        assertFalse(ops.setex("badKey", 60, "value"));
+        assertEquals(1L, ops.del("key", "otherKey"));
+    }
+
+    @Test
+    public void recordsBorrowWaitAndLatency() {
+        ops.get("key");
+        ops.get("key");
+        ops.del("key");
+
+        assertEquals(3, metrics.reportAndReset(0, 0, 0).get("borrowWait").get("count").longValue());
+        ops.get("key");
+        assertEquals(1, metrics.reportAndReset(0, 0, 0).get("commands").get("get").get("count").longValue());
+    }
+}
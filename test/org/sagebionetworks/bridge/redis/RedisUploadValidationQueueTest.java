@@ -0,0 +1,87 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
+
+public class RedisUploadValidationQueueTest {
+
+    private Jedis jedis;
+    private RedisUploadValidationQueue queue;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+        queue = new RedisUploadValidationQueue(jedisPool);
+    }
+
+    @Test
+    public void addLeased() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(1L);
+
+        UploadValidationLease lease = queue.addLeased("study", "upload", 60);
+        assertEquals("upload", lease.getUploadId());
+        assertEquals("study", lease.getStudyId());
+    }
+
+    @Test
+    public void addLeasedUploadAlreadyInQueue() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(0L);
+
+        assertNull(queue.addLeased("study", "upload", 60));
+    }
+
+    @Test
+    public void lease() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(
+                ImmutableList.of("upload", "study"));
+
+        UploadValidationLease lease = queue.lease(60);
+        assertEquals("upload", lease.getUploadId());
+        assertEquals("study", lease.getStudyId());
+    }
+
+    @Test
+    public void leaseEmptyQueue() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(null);
+
+        assertNull(queue.lease(60));
+    }
+
+    @Test
+    public void renewAndComplete() {
+        UploadValidationLease lease = new UploadValidationLease("study", "upload", "lease");
+
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(1L);
+        assertTrue(queue.renew(lease, 60));
+        assertTrue(queue.complete(lease));
+
+        // Lease has expired and been taken by someone else
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(0L);
+        assertFalse(queue.renew(lease, 60));
+        assertFalse(queue.complete(lease));
+    }
+
+    @Test
+    public void requeueExpired() {
+        when(jedis.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(3L);
+
+        assertEquals(3, queue.requeueExpired());
+    }
+}
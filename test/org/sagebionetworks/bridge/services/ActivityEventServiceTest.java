@@ -1,9 +1,16 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -11,11 +18,14 @@ import static org.mockito.Mockito.when;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent.Builder;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
@@ -23,48 +33,125 @@ import org.sagebionetworks.bridge.models.activities.ActivityEventObjectType;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
 import org.sagebionetworks.bridge.models.surveys.SurveyAnswer;
+import org.sagebionetworks.bridge.redis.RedisKey;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 public class ActivityEventServiceTest {
 
     private ActivityEventService service;
     
+    private static final String CACHE_KEY = RedisKey.ACTIVITY_EVENTS.getRedisKey("BBB");
+    
+    private static final String VERSION_KEY = RedisKey.ACTIVITY_EVENTS_VERSION.getRedisKey("BBB");
+    
     private ActivityEventDao activityEventDao;
     
+    private CacheProvider cacheProvider;
+    
     @Before
     public void before() {
         service = new ActivityEventService();
         
         activityEventDao = mock(ActivityEventDao.class);
         service.setActivityEventDao(activityEventDao);
+        
+        cacheProvider = mock(CacheProvider.class);
+        when(cacheProvider.getHash(anyString())).thenReturn(ImmutableMap.of());
+        service.setCacheProvider(cacheProvider);
     }
     
     @Test
     public void canPublishEvent() {
         ActivityEvent event = new Builder().withHealthCode("BBB")
             .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(DateTime.now()).build();
+        when(activityEventDao.publishEvent(event)).thenReturn(true);
         
         service.publishActivityEvent(event);
         
         verify(activityEventDao).publishEvent(eq(event));
         verifyNoMoreInteractions(activityEventDao);
+        InOrder inOrder = inOrder(cacheProvider);
+        inOrder.verify(cacheProvider).incrementVersion(VERSION_KEY, ActivityEventService.EVENT_CACHE_EXPIRE_IN_SECONDS);
+        inOrder.verify(cacheProvider).setHashFieldIfPresent(CACHE_KEY, "enrollment", event.getTimestamp().toString());
+    }
+    
+    @Test
+    public void ignoredEventIsNotCached() {
+        ActivityEvent event = new Builder().withHealthCode("BBB")
+            .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(DateTime.now()).build();
+        when(activityEventDao.publishEvent(event)).thenReturn(false);
+        
+        service.publishActivityEvent(event);
+        
+        verify(activityEventDao).publishEvent(eq(event));
+        verifyNoMoreInteractions(cacheProvider);
     }
     
     @Test
     public void canGetActivityEventMap() {
-        DateTime now = DateTime.now();
+        DateTime now = DateTime.now(DateTimeZone.UTC);
         
-        Map<String,DateTime> map = Maps.newHashMap();
-        map.put("enrollment", now);
-        when(activityEventDao.getActivityEventMap("BBB")).thenReturn(map);
+        ActivityEvent event = new Builder().withHealthCode("BBB")
+                .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(now).build();
+        when(activityEventDao.getActivityEvents("BBB")).thenReturn(Lists.newArrayList(event));
         
         Map<String,DateTime> results = service.getActivityEventMap("BBB");
         assertEquals(now, results.get("enrollment"));
-        assertEquals(1, results.size());
+        assertEquals(now.minusWeeks(2), results.get("two_weeks_before_enrollment"));
+        assertEquals(now.minusMonths(2), results.get("two_months_before_enrollment"));
+        assertEquals(3, results.size());
+        
+        verify(activityEventDao).getActivityEvents("BBB");
+        verifyNoMoreInteractions(activityEventDao);
+        
+        // The stored event (not the calculated ones) is cached, if no event was published during the load
+        verify(cacheProvider).setHashIfVersionUnchanged(CACHE_KEY, ImmutableMap.of(ActivityEventService.CACHED_FIELD,
+                "true", "enrollment", Long.toString(now.getMillis())),
+                ActivityEventService.EVENT_CACHE_EXPIRE_IN_SECONDS, VERSION_KEY, null);
+    }
+    
+    @Test
+    public void loadIsCachedUnderVersionReadBeforeLoad() {
+        when(cacheProvider.getString(VERSION_KEY)).thenReturn("3");
+        when(activityEventDao.getActivityEvents("BBB")).thenReturn(Lists.newArrayList());
+        
+        service.getActivityEventMap("BBB");
+        
+        InOrder inOrder = inOrder(cacheProvider, activityEventDao);
+        inOrder.verify(cacheProvider).getString(VERSION_KEY);
+        inOrder.verify(activityEventDao).getActivityEvents("BBB");
+        inOrder.verify(cacheProvider).setHashIfVersionUnchanged(CACHE_KEY,
+                ImmutableMap.of(ActivityEventService.CACHED_FIELD, "true"),
+                ActivityEventService.EVENT_CACHE_EXPIRE_IN_SECONDS, VERSION_KEY, "3");
+    }
+    
+    @Test
+    public void canGetActivityEventMapFromCache() {
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        
+        when(cacheProvider.getHash(CACHE_KEY)).thenReturn(ImmutableMap.of(ActivityEventService.CACHED_FIELD, "true",
+                "activity:AAA:finished", Long.toString(now.getMillis()),
+                "question:CCC:answered", now.minusDays(1).getMillis() + ":a:b,c"));
+        
+        Map<String,DateTime> results = service.getActivityEventMap("BBB");
+        assertEquals(now, results.get("activity:AAA:finished"));
+        assertEquals(now.minusDays(1), results.get("question:CCC:answered=a:b,c"));
+        assertEquals(2, results.size());
+        
+        verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider, never()).setHashIfVersionUnchanged(anyString(), anyMapOf(String.class, String.class),
+                anyInt(), anyString(), anyString());
+    }
+    
+    @Test
+    public void emptyEventMapIsCached() {
+        when(cacheProvider.getHash(CACHE_KEY)).thenReturn(ImmutableMap.of(ActivityEventService.CACHED_FIELD, "true"));
+        
+        Map<String,DateTime> results = service.getActivityEventMap("BBB");
+        assertTrue(results.isEmpty());
         
-        verify(activityEventDao).getActivityEventMap("BBB");
         verifyNoMoreInteractions(activityEventDao);
     }
     
@@ -74,6 +161,8 @@ public class ActivityEventServiceTest {
         
         verify(activityEventDao).deleteActivityEvents("BBB");
         verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider).incrementVersion(VERSION_KEY, ActivityEventService.EVENT_CACHE_EXPIRE_IN_SECONDS);
+        verify(cacheProvider).removeString(CACHE_KEY);
     }
 
     @Test
@@ -133,6 +222,8 @@ public class ActivityEventServiceTest {
         answer.setQuestionGuid("BBB-CCC-DDD");
         answer.setAnswers(Lists.newArrayList("belgium"));
         
+        when(activityEventDao.publishEvent(any())).thenReturn(true);
+        
         service.publishQuestionAnsweredEvent("healthCode", answer);
         
         ArgumentCaptor<ActivityEvent> argument = ArgumentCaptor.forClass(ActivityEvent.class);
@@ -141,6 +232,10 @@ public class ActivityEventServiceTest {
         assertEquals("question:BBB-CCC-DDD:answered", argument.getValue().getEventId());
         assertEquals(new Long(now.getMillis()), argument.getValue().getTimestamp());
         assertEquals("healthCode", argument.getValue().getHealthCode());
+        
+        // The answer is cached with the timestamp
+        verify(cacheProvider).setHashFieldIfPresent(RedisKey.ACTIVITY_EVENTS.getRedisKey("healthCode"),
+                "question:BBB-CCC-DDD:answered", now.getMillis() + ":belgium");
     }
     
     @Test
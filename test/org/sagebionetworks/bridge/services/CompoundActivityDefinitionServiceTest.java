@@ -20,6 +20,7 @@ import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.CompoundActivityDefinitionDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
@@ -40,15 +41,18 @@ public class CompoundActivityDefinitionServiceTest {
 
     private SchedulePlanService schedulePlanService;
     private CompoundActivityDefinitionDao dao;
+    private ScheduleResolutionCache scheduleResolutionCache;
     private CompoundActivityDefinitionService service;
 
     @Before
     public void setup() {
         dao = mock(CompoundActivityDefinitionDao.class);
         schedulePlanService = mock(SchedulePlanService.class);
+        scheduleResolutionCache = mock(ScheduleResolutionCache.class);
         service = new CompoundActivityDefinitionService();
         service.setSchedulePlanService(schedulePlanService);
         service.setCompoundActivityDefDao(dao);
+        service.setScheduleResolutionCache(scheduleResolutionCache);
     }
 
     // CREATE
@@ -73,6 +77,9 @@ public class CompoundActivityDefinitionServiceTest {
 
         // Validate that the service result is the same as the dao result.
         assertSame(daoResult, serviceResult);
+
+        // Schedules resolved against the old definitions are discarded
+        verify(scheduleResolutionCache).invalidateStudy(TestConstants.TEST_STUDY);
     }
 
     @Test
@@ -164,6 +171,7 @@ public class CompoundActivityDefinitionServiceTest {
 
         // verify dao
         verify(dao).deleteAllCompoundActivityDefinitionsInStudy(TestConstants.TEST_STUDY);
+        verify(scheduleResolutionCache).invalidateStudy(TestConstants.TEST_STUDY);
     }
 
     // LIST
@@ -249,6 +257,7 @@ public class CompoundActivityDefinitionServiceTest {
 
         // Validate that the service result is the same as the dao result.
         assertSame(daoResult, serviceResult);
+        verify(scheduleResolutionCache).invalidateStudy(TestConstants.TEST_STUDY);
     }
 
     @Test
@@ -0,0 +1,30 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+public class ConsentPdfRendererTest {
+
+    private final ConsentPdfRenderer renderer = new ConsentPdfRenderer();
+
+    @Test
+    public void rendersPdf() throws Exception {
+        byte[] pdf = renderer.render(ConsentPdfRenderer.WARM_UP_DOCUMENT);
+
+        assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = XRRuntimeException.class)
+    public void rejectsInvalidXhtml() throws Exception {
+        renderer.render("<html><body><p>Not closed</body></html>");
+    }
+
+    @Test
+    public void warmUpDoesNotThrow() {
+        renderer.warmUp();
+    }
+}
@@ -0,0 +1,161 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.simpleemail.model.MessageRejectedException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.services.email.MimeTypeEmail;
+import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
+import org.sagebionetworks.bridge.services.email.NotifyOperationsEmailProvider;
+
+public class EmailOutboxTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private SendMailViaAmazonService sesSender;
+    private EmailOutboxMetrics metrics;
+    private EmailOutbox outbox;
+    private MimeTypeEmailProvider provider;
+    private String recipient;
+
+    @Before
+    public void before() throws Exception {
+        sesSender = mock(SendMailViaAmazonService.class);
+        metrics = new EmailOutboxMetrics();
+        outbox = new EmailOutbox(sesSender, metrics, 1, 1, 1000, 3, 1);
+        provider = new NotifyOperationsEmailProvider("subject", "message");
+        recipient = provider.getMimeTypeEmail().getRecipientAddresses().get(0);
+    }
+
+    @After
+    public void after() {
+        outbox.shutdown();
+    }
+
+    @Test
+    public void sendsOnWorker() throws Exception {
+        outbox.sendEmail(provider);
+
+        verify(sesSender, timeout(TIMEOUT_MILLIS)).sendEmail(eq(recipient), any(MimeTypeEmail.class));
+        verify(sesSender, never()).sendEmail(any(MimeTypeEmailProvider.class));
+    }
+
+    @Test
+    public void retriesThrottling() throws Exception {
+        AmazonServiceException throttled = new AmazonServiceException("Maximum sending rate exceeded.");
+        throttled.setErrorType(AmazonServiceException.ErrorType.Client);
+        throttled.setErrorCode(EmailOutbox.THROTTLING_ERROR_CODE);
+        doThrow(throttled).doNothing().when(sesSender).sendEmail(anyString(), any(MimeTypeEmail.class));
+
+        outbox.sendEmail(provider);
+
+        verify(sesSender, timeout(TIMEOUT_MILLIS).times(2)).sendEmail(eq(recipient), any(MimeTypeEmail.class));
+        outbox.shutdown();
+        ObjectNode report = metrics.reportAndReset(0);
+        assertEquals(1, report.get("sent").asInt());
+        assertEquals(1, report.get("retried").asInt());
+        assertEquals(0, report.get("failed").asInt());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        doThrow(new AmazonClientException("Unable to reach SES")).when(sesSender).sendEmail(anyString(),
+                any(MimeTypeEmail.class));
+
+        outbox.sendEmail(provider);
+
+        verify(sesSender, timeout(TIMEOUT_MILLIS).times(3)).sendEmail(eq(recipient), any(MimeTypeEmail.class));
+        outbox.shutdown();
+        ObjectNode report = metrics.reportAndReset(0);
+        assertEquals(0, report.get("sent").asInt());
+        assertEquals(2, report.get("retried").asInt());
+        assertEquals(1, report.get("failed").asInt());
+    }
+
+    @Test
+    public void doesNotRetryRejectedEmail() throws Exception {
+        doThrow(new MessageRejectedException("Email address is not verified.")).when(sesSender)
+                .sendEmail(anyString(), any(MimeTypeEmail.class));
+
+        outbox.sendEmail(provider);
+        outbox.shutdown();
+
+        verify(sesSender).sendEmail(eq(recipient), any(MimeTypeEmail.class));
+        assertEquals(1, metrics.reportAndReset(0).get("failed").asInt());
+    }
+
+    @Test
+    public void dropsEmailThatCannotBeBuilt() throws Exception {
+        MimeTypeEmailProvider badProvider = mock(MimeTypeEmailProvider.class);
+        when(badProvider.getMimeTypeEmail()).thenThrow(new MessagingException("bad email"));
+
+        outbox.sendEmail(badProvider);
+        outbox.shutdown();
+
+        verify(sesSender, never()).sendEmail(anyString(), any(MimeTypeEmail.class));
+        assertEquals(1, metrics.reportAndReset(0).get("failed").asInt());
+    }
+
+    @Test
+    public void sendsOnCallerThreadWhenFull() throws Exception {
+        // Block the only worker, then fill the one-email queue.
+        CountDownLatch workerStarted = new CountDownLatch(1);
+        CountDownLatch releaseWorker = new CountDownLatch(1);
+        MimeTypeEmailProvider blockingProvider = () -> {
+            workerStarted.countDown();
+            try {
+                releaseWorker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return provider.getMimeTypeEmail();
+        };
+        outbox.sendEmail(blockingProvider);
+        assertTrue(workerStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        outbox.sendEmail(provider);
+        assertEquals(1, outbox.getQueueDepth());
+
+        MimeTypeEmailProvider inlineProvider = new NotifyOperationsEmailProvider("inline", "message");
+        outbox.sendEmail(inlineProvider);
+
+        verify(sesSender).sendEmail(inlineProvider);
+        releaseWorker.countDown();
+        verify(sesSender, timeout(TIMEOUT_MILLIS).times(2)).sendEmail(eq(recipient), any(MimeTypeEmail.class));
+        assertEquals(1, metrics.reportAndReset(0).get("sentInline").asInt());
+    }
+
+    @Test
+    public void retryableErrors() {
+        AmazonServiceException serviceError = new AmazonServiceException("Internal error");
+        serviceError.setErrorType(AmazonServiceException.ErrorType.Service);
+        assertTrue(EmailOutbox.isRetryable(serviceError));
+
+        AmazonServiceException clientError = new AmazonServiceException("Invalid parameter");
+        clientError.setErrorType(AmazonServiceException.ErrorType.Client);
+        clientError.setErrorCode("InvalidParameterValue");
+        assertFalse(EmailOutbox.isRetryable(clientError));
+
+        assertTrue(EmailOutbox.isRetryable(new AmazonClientException("Connection reset")));
+    }
+}
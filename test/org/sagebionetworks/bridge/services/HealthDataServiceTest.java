@@ -123,13 +123,13 @@ public class HealthDataServiceTest {
                         .withSchemaRevision(3).withStudyId("dummy study").build());
 
         HealthDataDao mockDao = mock(HealthDataDao.class);
-        when(mockDao.getRecordsForUploadDate("2014-02-12")).thenReturn(mockRecordList);
+        when(mockDao.getRecordsForUploadDate("2014-02-12")).thenReturn(mockRecordList.iterator());
 
         HealthDataService svc = new HealthDataService();
         svc.setHealthDataDao(mockDao);
 
         // execute and validate
-        List<HealthDataRecord> recordList = svc.getRecordsForUploadDate("2014-02-12");
+        List<HealthDataRecord> recordList = ImmutableList.copyOf(svc.getRecordsForUploadDate("2014-02-12"));
         assertEquals(3, recordList.size());
         assertEquals("foo healthcode", recordList.get(0).getHealthCode());
         assertEquals("bar healthcode", recordList.get(1).getHealthCode());
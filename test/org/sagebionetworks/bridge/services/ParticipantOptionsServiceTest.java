@@ -35,6 +35,7 @@ import org.sagebionetworks.bridge.models.accounts.ExternalIdentifier;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.studies.Study;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -224,6 +225,20 @@ public class ParticipantOptionsServiceTest {
         verifyNoMoreInteractions(mockDao);
     }
     
+    @Test
+    public void streamOptionsForAllStudyParticipants() {
+        ParticipantOptionsLookup lookup = new ParticipantOptionsLookup(map(EXTERNAL_IDENTIFIER, "extId"));
+        Iterator<Map.Entry<String,ParticipantOptionsLookup>> iterator = ImmutableList
+                .of(Maps.immutableEntry(HEALTH_CODE, lookup)).iterator();
+        when(mockDao.streamOptionsForAllParticipants(TEST_STUDY)).thenReturn(iterator);
+        
+        Iterator<Map.Entry<String,ParticipantOptionsLookup>> result = service.streamOptionsForAllParticipants(TEST_STUDY);
+        assertEquals(iterator, result);
+        
+        verify(mockDao).streamOptionsForAllParticipants(TEST_STUDY);
+        verifyNoMoreInteractions(mockDao);
+    }
+    
     @Test
     public void canSetLinkedHashSet() {
         when(mockDao.getOptions(HEALTH_CODE)).thenReturn(new ParticipantOptionsLookup(map(LANGUAGES, "en,fr")));
@@ -0,0 +1,147 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+public class ParticipantPurgeServiceTest {
+
+    private HealthDataService healthDataService;
+    private UploadService uploadService;
+    private ScheduledActivityService scheduledActivityService;
+    private ActivityEventService activityEventService;
+    private ExecutorService executorService;
+    private ParticipantPurgeService service;
+
+    @Before
+    public void before() {
+        healthDataService = mock(HealthDataService.class);
+        uploadService = mock(UploadService.class);
+        scheduledActivityService = mock(ScheduledActivityService.class);
+        activityEventService = mock(ActivityEventService.class);
+        executorService = Executors.newFixedThreadPool(4);
+
+        service = new ParticipantPurgeService();
+        service.setHealthDataService(healthDataService);
+        service.setUploadService(uploadService);
+        service.setScheduledActivityService(scheduledActivityService);
+        service.setActivityEventService(activityEventService);
+        service.setPurgeExecutorService(executorService);
+    }
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void purgeParticipantDeletesEachTable() {
+        service.purgeParticipantData("healthCode");
+        verifyPurged("healthCode");
+    }
+
+    @Test
+    public void purgeParticipantDeletesAllTablesAndThrowsFirstFailure() {
+        doThrow(new BadRequestException("test failure")).when(uploadService).deleteUploadsForHealthCode("healthCode");
+
+        try {
+            service.purgeParticipantData("healthCode");
+            fail("expected exception");
+        } catch (BadRequestException ex) {
+            assertEquals("test failure", ex.getMessage());
+        }
+        // The other tables are still deleted.
+        verifyPurged("healthCode");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void purgeParticipantRejectsBlankHealthCode() {
+        service.purgeParticipantData(" ");
+    }
+
+    @Test
+    public void purgeManyParticipants() {
+        List<String> healthCodes = makeHealthCodes(25);
+
+        int purged = service.purgeParticipantData(healthCodes);
+        assertEquals(25, purged);
+        for (String healthCode : healthCodes) {
+            verifyPurged(healthCode);
+        }
+    }
+
+    @Test
+    public void purgeManyParticipantsContinuesPastFailures() {
+        List<String> healthCodes = makeHealthCodes(25);
+        doThrow(new RuntimeException("test failure")).when(activityEventService)
+                .deleteActivityEvents("healthCode-3");
+
+        try {
+            service.purgeParticipantData(healthCodes);
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            assertEquals("Failed to purge 1 of 25 participants", ex.getMessage());
+        }
+        for (String healthCode : healthCodes) {
+            verifyPurged(healthCode);
+        }
+    }
+
+    @Test
+    public void purgeManyParticipantsLooksUpHealthCodes() {
+        List<String> userIds = ImmutableList.of("user-0", "user-1", "user-2", "user-3");
+        Map<String, String> healthCodesByUserId = new HashMap<>();
+        healthCodesByUserId.put("user-0", "healthCode-0");
+        healthCodesByUserId.put("user-2", "healthCode-2");
+        healthCodesByUserId.put("user-3", "healthCode-3");
+
+        try {
+            service.purgeParticipantData(userIds.iterator(), userId -> {
+                if (userId.equals("user-3")) {
+                    throw new RuntimeException("test failure");
+                }
+                return healthCodesByUserId.get(userId);
+            });
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            assertEquals("Failed to purge 1 of 3 participants", ex.getMessage());
+        }
+        // user-1 has no health code, and user-3's lookup failed, so neither is purged.
+        verifyPurged("healthCode-0");
+        verifyPurged("healthCode-2");
+        verifyNoMoreInteractions(healthDataService, uploadService, scheduledActivityService, activityEventService);
+    }
+
+    private void verifyPurged(String healthCode) {
+        verify(healthDataService).deleteRecordsForHealthCode(healthCode);
+        verify(uploadService).deleteUploadsForHealthCode(healthCode);
+        verify(scheduledActivityService).deleteActivitiesForUser(healthCode);
+        verify(activityEventService).deleteActivityEvents(healthCode);
+    }
+
+    private static List<String> makeHealthCodes(int count) {
+        List<String> healthCodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            healthCodes.add("healthCode-" + i);
+        }
+        return healthCodes;
+    }
+}
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
@@ -20,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
@@ -47,6 +49,7 @@ public class SchedulePlanServiceMockTest {
     
     private SchedulePlanDao mockSchedulePlanDao;
     private SurveyService mockSurveyService;
+    private ScheduleResolutionCache mockScheduleResolutionCache;
     
     @Before
     public void before() {
@@ -57,10 +60,12 @@ public class SchedulePlanServiceMockTest {
         
         mockSchedulePlanDao = mock(SchedulePlanDao.class);
         mockSurveyService = mock(SurveyService.class);
+        mockScheduleResolutionCache = mock(ScheduleResolutionCache.class);
         
         service = new SchedulePlanService();
         service.setSchedulePlanDao(mockSchedulePlanDao);
         service.setSurveyService(mockSurveyService);
+        service.setScheduleResolutionCache(mockScheduleResolutionCache);
         
         Survey survey1 = new TestSurvey(SchedulePlanServiceMockTest.class, false);
         survey1.setIdentifier("identifier1");
@@ -174,6 +179,7 @@ public class SchedulePlanServiceMockTest {
         
         plan = service.createSchedulePlan(anotherStudy, plan);
         assertEquals("another-study", plan.getStudyKey());
+        verify(mockScheduleResolutionCache).invalidateStudy(anotherStudy.getStudyIdentifier());
     }
     
     @Test
@@ -185,6 +191,15 @@ public class SchedulePlanServiceMockTest {
         
         plan = service.updateSchedulePlan(anotherStudy, plan);
         assertEquals("another-study", plan.getStudyKey());
+        verify(mockScheduleResolutionCache).invalidateStudy(anotherStudy.getStudyIdentifier());
+    }
+    
+    @Test
+    public void deleteSchedulePlanInvalidatesResolutionCache() {
+        service.deleteSchedulePlan(TEST_STUDY, "plan-guid");
+        
+        verify(mockSchedulePlanDao).deleteSchedulePlan(TEST_STUDY, "plan-guid");
+        verify(mockScheduleResolutionCache).invalidateStudy(TEST_STUDY);
     }
     
     @Test
@@ -211,6 +226,7 @@ public class SchedulePlanServiceMockTest {
             assertEquals("strategy.scheduleCriteria[0].schedule.activities[0].task.identifier 'DDD' is not in enumeration: taskGuid, CCC, tapTest.", e.getErrors().get("strategy.scheduleCriteria[0].schedule.activities[0].task.identifier").get(0));
             assertEquals("strategy.scheduleCriteria[0].criteria.allOfGroups 'FFF' is not in enumeration: AAA", e.getErrors().get("strategy.scheduleCriteria[0].criteria.allOfGroups").get(0));
         }
+        verify(mockScheduleResolutionCache, never()).invalidateStudy(any());
     }
     
     private SchedulePlan createInvalidSchedulePlan() {
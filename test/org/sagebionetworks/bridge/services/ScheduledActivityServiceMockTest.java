@@ -35,6 +35,8 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.LocalCacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
@@ -79,6 +81,8 @@ public class ScheduledActivityServiceMockTest {
     
     private ScheduledActivityService service;
     
+    private ScheduleResolutionCache scheduleResolutionCache;
+    
     @Mock
     private SchedulePlanService schedulePlanService;
     
@@ -132,6 +136,10 @@ public class ScheduledActivityServiceMockTest {
         service.setScheduledActivityDao(activityDao);
         service.setActivityEventService(activityEventService);
         service.setSurveyService(surveyService);
+        
+        scheduleResolutionCache = new ScheduleResolutionCache();
+        scheduleResolutionCache.setCacheInvalidationBus(new LocalCacheInvalidationBus());
+        service.setScheduleResolutionCache(scheduleResolutionCache);
     }
     
     @After
@@ -208,6 +216,33 @@ public class ScheduledActivityServiceMockTest {
         }
     }
     
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void savesOnlyActivitiesThatDifferFromPersistedCopy() {
+        ScheduleContext context = createScheduleContext(endsOn);
+        
+        // With nothing persisted, every activity is saved
+        service.getScheduledActivities(context);
+        
+        ArgumentCaptor<List> savesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(activityDao).saveActivities(savesCaptor.capture());
+        List<ScheduledActivity> saves = (List<ScheduledActivity>)savesCaptor.getValue();
+        assertTrue(saves.size() > 1);
+        
+        // All but the first activity were persisted
+        reset(activityDao);
+        when(activityDao.getActivities(any(), any())).thenReturn(Lists.newArrayList(saves.subList(1, saves.size())));
+        
+        service.getScheduledActivities(context);
+        
+        // The activities in the schedule window are still batch loaded, but only the one that isn't persisted is saved
+        verify(activityDao).getActivities(any(), any());
+        verify(activityDao).saveActivities(savesCaptor.capture());
+        List<ScheduledActivity> newSaves = (List<ScheduledActivity>)savesCaptor.getValue();
+        assertEquals(1, newSaves.size());
+        assertEquals(saves.get(0).getGuid(), newSaves.get(0).getGuid());
+    }
+    
     @SuppressWarnings({"unchecked","rawtypes"})
     @Test
     public void updateActivitiesWorks() {
@@ -385,6 +420,19 @@ public class ScheduledActivityServiceMockTest {
         assertEquals(5678, scheduled.get(0).getActivity().getSurvey().getCreatedOn().getMillis());
     }
 
+    @Test
+    public void unchangedTaskNotStartedIsNotSaved() {
+        List<ScheduledActivity> scheduled = createNewActivities("AAA", "BBB");
+        List<ScheduledActivity> db = createNewActivities("AAA");
+
+        List<ScheduledActivity> saves = service.updateActivitiesAndCollectSaves(scheduled, db);
+        scheduled = service.orderActivities(scheduled);
+
+        // The persisted copy of AAA is identical, so only BBB is saved
+        assertEquals(Sets.newHashSet("AAA","BBB"), toGuids(scheduled));
+        assertEquals(Sets.newHashSet("BBB"), toGuids(saves));
+    }
+
     @Test
     public void orderActivitieFiltersAndSorts() {
         DateTime time1 = DateTime.parse("2014-10-01T00:00:00.000Z");
@@ -527,7 +575,8 @@ public class ScheduledActivityServiceMockTest {
         
         SchedulePlan voiceActivityPlan = BridgeObjectMapper.get().readValue(json, SchedulePlan.class);
         List<SchedulePlan> schedulePlans = Lists.newArrayList(voiceActivityPlan);
-        when(schedulePlanService.getSchedulePlans(info, new StudyIdentifierImpl("test-study"))).thenReturn(schedulePlans);
+        when(schedulePlanService.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, new StudyIdentifierImpl("test-study")))
+                .thenReturn(schedulePlans);
         
         ScheduleContext context = new ScheduleContext.Builder()
             .withClientInfo(info)
@@ -657,6 +706,7 @@ public class ScheduledActivityServiceMockTest {
         // Tests calling this method set up different mocked environment from other tests.
         reset(schedulePlanService);
         reset(activityEventService);
+        scheduleResolutionCache.invalidateStudy(TEST_STUDY);
         
         DateTime enrollment = DateTime.parse("2017-02-20T01:00:00.000Z");
         DateTimeZone initialTimeZone = DateTimeZone.forOffsetHours(initialTZOffset);
@@ -17,6 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.LocalCacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityScheduler;
@@ -53,6 +55,7 @@ public class ScheduledActivityServiceResolveLinksTest {
     private SchedulePlanService mockSchedulePlanService;
     private UploadSchemaService mockSchemaService;
     private SurveyService mockSurveyService;
+    private ScheduleResolutionCache scheduleResolutionCache;
     private ScheduledActivityService scheduledActivityService;
 
     @Before
@@ -93,8 +96,12 @@ public class ScheduledActivityServiceResolveLinksTest {
         when(mockSurveyService.getSurveyMostRecentlyPublishedVersion(TestConstants.TEST_STUDY, SURVEY_GUID))
                 .thenReturn(survey);
 
+        scheduleResolutionCache = new ScheduleResolutionCache();
+        scheduleResolutionCache.setCacheInvalidationBus(new LocalCacheInvalidationBus());
+
         // Set up scheduled activity service with the mocks.
         scheduledActivityService = new ScheduledActivityService();
+        scheduledActivityService.setScheduleResolutionCache(scheduleResolutionCache);
         scheduledActivityService.setCompoundActivityDefinitionService(mockCompoundActivityDefinitionService);
         scheduledActivityService.setSchedulePlanService(mockSchedulePlanService);
         scheduledActivityService.setSchemaService(mockSchemaService);
@@ -158,6 +165,31 @@ public class ScheduledActivityServiceResolveLinksTest {
         verify(mockSurveyService, times(1)).getSurveyMostRecentlyPublishedVersion(any(), any());
     }
 
+    @Test
+    public void resolutionsAreCachedAcrossRequests() {
+        CompoundActivity inputCompoundActivity = new CompoundActivity.Builder()
+                .withTaskIdentifier(COMPOUND_ACTIVITY_REF_TASK_ID).build();
+        Activity activity = new Activity.Builder().withCompoundActivity(inputCompoundActivity).build();
+        setupSchedulePlanServiceWithActivity(activity);
+
+        // Two requests only read the plans and resolve the references once.
+        scheduledActivityService.scheduleActivitiesForPlans(SCHEDULE_CONTEXT);
+        List<ScheduledActivity> scheduledActivityList = scheduledActivityService.scheduleActivitiesForPlans(
+                SCHEDULE_CONTEXT);
+        verifyCompoundActivities(scheduledActivityList);
+
+        verify(mockSchedulePlanService, times(1)).getSchedulePlans(any(), any());
+        verify(mockCompoundActivityDefinitionService, times(1)).getCompoundActivityDefinition(any(), any());
+        verify(mockSchemaService, times(1)).getLatestUploadSchemaRevisionForAppVersion(any(), any(), any());
+        verify(mockSurveyService, times(1)).getSurveyMostRecentlyPublishedVersion(any(), any());
+
+        // Once the study changes, the plans are read again.
+        scheduleResolutionCache.invalidateStudy(TestConstants.TEST_STUDY);
+        scheduledActivityService.scheduleActivitiesForPlans(SCHEDULE_CONTEXT);
+
+        verify(mockSchedulePlanService, times(2)).getSchedulePlans(any(), any());
+    }
+
     @Test
     public void resolveCompoundActivityWithListOfReferences() {
         // Create a compound activity that has a list of unresolved schema and survey references.
@@ -43,7 +43,7 @@ public class SendEmailIntegTest {
     @Resource
     private StudyConsentService studyConsentService;
     
-    @Resource
+    @Resource(name="sendEmailViaAmazonService")
     private SendMailService sendEmailService;
     
     @Resource
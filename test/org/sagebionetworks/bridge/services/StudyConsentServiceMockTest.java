@@ -0,0 +1,110 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.dao.StudyConsentDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoStudyConsent1;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.subpopulations.StudyConsent;
+import org.sagebionetworks.bridge.models.subpopulations.StudyConsentForm;
+import org.sagebionetworks.bridge.models.subpopulations.StudyConsentView;
+import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
+import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.validators.StudyConsentValidator;
+
+public class StudyConsentServiceMockTest {
+
+    private static final String BUCKET = BridgeConfigFactory.getConfig().getConsentsBucket();
+    private static final SubpopulationGuid SUBPOP_GUID = SubpopulationGuid.create("subpop");
+    private static final long CREATED_ON = 1000L;
+    private static final String STORAGE_PATH = "subpop." + CREATED_ON;
+    private static final String DOCUMENT = "<p>This is a consent document.</p>";
+
+    private StudyConsentDao studyConsentDao;
+    private S3Helper s3Helper;
+    private StudyConsentService service;
+
+    @Before
+    public void before() throws Exception {
+        studyConsentDao = mock(StudyConsentDao.class);
+        s3Helper = mock(S3Helper.class);
+
+        service = new StudyConsentService();
+        service.setStudyConsentDao(studyConsentDao);
+        service.setS3Helper(s3Helper);
+        StudyConsentValidator validator = mock(StudyConsentValidator.class);
+        when(validator.supports(any())).thenReturn(true);
+        service.setValidator(validator);
+
+        when(studyConsentDao.getConsent(SUBPOP_GUID, CREATED_ON)).thenReturn(makeConsent());
+        when(s3Helper.readS3FileAsString(BUCKET, STORAGE_PATH)).thenReturn(DOCUMENT);
+    }
+
+    @Test
+    public void getConsentReadsDocumentOnce() throws Exception {
+        StudyConsentView first = service.getConsent(SUBPOP_GUID, CREATED_ON);
+        StudyConsentView second = service.getConsent(SUBPOP_GUID, CREATED_ON);
+
+        assertEquals(DOCUMENT, first.getDocumentContent());
+        assertEquals(DOCUMENT, second.getDocumentContent());
+        verify(studyConsentDao, times(2)).getConsent(SUBPOP_GUID, CREATED_ON);
+        verify(s3Helper).readS3FileAsString(BUCKET, STORAGE_PATH);
+    }
+
+    @Test
+    public void addedConsentIsNotReadBack() throws Exception {
+        when(studyConsentDao.addConsent(eq(SUBPOP_GUID), anyString(), anyLong())).thenAnswer(invocation -> {
+            DynamoStudyConsent1 consent = new DynamoStudyConsent1();
+            consent.setSubpopulationGuid(SUBPOP_GUID.getGuid());
+            consent.setStoragePath((String) invocation.getArguments()[1]);
+            consent.setCreatedOn((Long) invocation.getArguments()[2]);
+            return consent;
+        });
+        StudyConsentView added = service.addConsent(SUBPOP_GUID, new StudyConsentForm(DOCUMENT));
+        when(studyConsentDao.getConsent(SUBPOP_GUID, added.getCreatedOn())).thenReturn(added.getStudyConsent());
+
+        StudyConsentView view = service.getConsent(SUBPOP_GUID, added.getCreatedOn());
+
+        assertEquals(added.getDocumentContent(), view.getDocumentContent());
+        verify(s3Helper, never()).readS3FileAsString(anyString(), anyString());
+    }
+
+    @Test
+    public void failedReadIsNotCached() throws Exception {
+        when(s3Helper.readS3FileAsString(BUCKET, STORAGE_PATH)).thenThrow(new IOException("test failure"))
+                .thenReturn(DOCUMENT);
+        try {
+            service.getConsent(SUBPOP_GUID, CREATED_ON);
+            fail("expected exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+
+        assertEquals(DOCUMENT, service.getConsent(SUBPOP_GUID, CREATED_ON).getDocumentContent());
+        verify(s3Helper, times(2)).readS3FileAsString(BUCKET, STORAGE_PATH);
+    }
+
+    private static StudyConsent makeConsent() {
+        DynamoStudyConsent1 consent = new DynamoStudyConsent1();
+        consent.setSubpopulationGuid(SUBPOP_GUID.getGuid());
+        consent.setCreatedOn(CREATED_ON);
+        consent.setStoragePath(STORAGE_PATH);
+        return consent;
+    }
+}
@@ -10,6 +10,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -20,9 +21,11 @@ import static org.sagebionetworks.bridge.services.StudyService.SYNAPSE_REGISTER_
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
@@ -33,6 +36,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.sagebionetworks.client.SynapseClient;
@@ -49,6 +53,7 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.DirectoryDao;
 import org.sagebionetworks.bridge.dao.StudyDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -56,6 +61,8 @@ import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.schedules.Activity;
@@ -117,10 +124,17 @@ public class StudyServiceMockTest {
     private ParticipantService participantService;
     @Mock
     private SchedulePlanService schedulePlanService;
+    @Mock
+    private AccountDao accountDao;
+    @Mock
+    private ParticipantPurgeService participantPurgeService;
 
     @Mock
     private SynapseClient mockSynapseClient;
 
+    @Captor
+    private ArgumentCaptor<Function<AccountSummary, String>> healthCodeLookupCaptor;
+
     private StudyService service;
     private Study study;
     private Team mockTeam;
@@ -142,6 +156,8 @@ public class StudyServiceMockTest {
         service.setSynapseClient(mockSynapseClient);
         service.setParticipantService(participantService);
         service.setSchedulePlanService(schedulePlanService);
+        service.setAccountDao(accountDao);
+        service.setParticipantPurgeService(participantPurgeService);
 
         study = getTestStudy();
         when(studyDao.getStudy(TEST_STUDY_ID)).thenReturn(study);
@@ -176,10 +192,21 @@ public class StudyServiceMockTest {
 
     @Test
     public void physicallyDeleteStudy() {
+        // mock one participant
+        AccountSummary summary = new AccountSummary("firstName", "lastName", TEST_USER_EMAIL, "userId", null, null,
+                study.getStudyIdentifier());
+        Iterator<AccountSummary> summaryIter = ImmutableList.of(summary).iterator();
+        when(accountDao.getStudyAccounts(study)).thenReturn(summaryIter);
+        Account account = mock(Account.class);
+        when(account.getHealthCode()).thenReturn("healthCode");
+        when(accountDao.getAccount(study, "userId")).thenReturn(account);
+
         // execute
         service.deleteStudy(TEST_STUDY_ID, true);
 
         // verify we called the correct dependent services
+        verify(participantPurgeService).purgeParticipantData(eq(summaryIter), healthCodeLookupCaptor.capture());
+        assertEquals("healthCode", healthCodeLookupCaptor.getValue().apply(summary));
         verify(studyDao).deleteStudy(study);
         verify(directoryDao).deleteDirectoryForStudy(study);
         verify(compoundActivityDefinitionService).deleteAllCompoundActivityDefinitionsInStudy(
@@ -23,6 +23,8 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
+import org.sagebionetworks.bridge.cache.UploadSchemaCatalog;
 import org.sagebionetworks.bridge.dao.SurveyDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
@@ -55,6 +57,12 @@ public class SurveyServiceMockTest {
     @Mock
     SchedulePlanService mockSchedulePlanService;
     
+    @Mock
+    ScheduleResolutionCache mockScheduleResolutionCache;
+    
+    @Mock
+    UploadSchemaCatalog mockUploadSchemaCatalog;
+    
     @Captor
     ArgumentCaptor<GuidCreatedOnVersionHolder> keysCaptor;
     
@@ -68,6 +76,8 @@ public class SurveyServiceMockTest {
         service = new SurveyService();
         service.setSurveyDao(mockSurveyDao);
         service.setSchedulePlanService(mockSchedulePlanService);
+        service.setScheduleResolutionCache(mockScheduleResolutionCache);
+        service.setUploadSchemaCatalog(mockUploadSchemaCatalog);
     }
     
     @Test
@@ -82,6 +92,21 @@ public class SurveyServiceMockTest {
         // execute and validate
         Survey retval = service.publishSurvey(TEST_STUDY, keys, true);
         assertSame(survey, retval);
+        verify(mockScheduleResolutionCache).invalidateStudy(TEST_STUDY);
+        verify(mockUploadSchemaCatalog, never()).invalidateSchema(any(), any());
+    }
+    
+    @Test
+    public void publishSurveyWithSchemaInvalidatesSchemaCatalog() {
+        GuidCreatedOnVersionHolder keys = new GuidCreatedOnVersionHolderImpl("test-guid", 1337);
+        Survey survey = new DynamoSurvey();
+        survey.setIdentifier("test-survey");
+        survey.setSchemaRevision(3);
+        when(mockSurveyDao.publishSurvey(TEST_STUDY, keys, true)).thenReturn(survey);
+
+        service.publishSurvey(TEST_STUDY, keys, true);
+        verify(mockUploadSchemaCatalog).invalidateSchema(TEST_STUDY, "test-survey");
+        verify(mockScheduleResolutionCache).invalidateStudy(TEST_STUDY);
     }
     
     @Test
@@ -119,6 +144,7 @@ public class SurveyServiceMockTest {
         
         verify(mockSurveyDao).deleteSurveyPermanently(keysCaptor.capture());
         assertEquals(survey, keysCaptor.getValue());
+        verify(mockScheduleResolutionCache).invalidateStudy(TEST_STUDY);
     }
     
     @Test
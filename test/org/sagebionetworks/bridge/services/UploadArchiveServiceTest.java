@@ -8,10 +8,13 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.notNull;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
 import java.util.Map;
 
 import com.google.common.base.Charsets;
@@ -23,6 +26,7 @@ import org.junit.Test;
 import org.sagebionetworks.bridge.crypto.BcCmsEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
 import org.sagebionetworks.bridge.crypto.PemUtils;
+import org.sagebionetworks.bridge.crypto.StreamingCmsDecryptor;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.springframework.core.io.ClassPathResource;
 
@@ -45,9 +49,14 @@ public class UploadArchiveServiceTest {
         LoadingCache<String, CmsEncryptor> mockEncryptorCache = mock(LoadingCache.class);
         when(mockEncryptorCache.get(notNull(String.class))).thenReturn(encryptor);
 
+        // mock streaming decryptor cache
+        LoadingCache<String, StreamingCmsDecryptor> mockDecryptorCache = mock(LoadingCache.class);
+        when(mockDecryptorCache.get(notNull(String.class))).thenReturn(new StreamingCmsDecryptor(cert, privateKey));
+
         // archive service
         archiveService = new UploadArchiveService();
         archiveService.setCmsEncryptorCache(mockEncryptorCache);
+        archiveService.setStreamingCmsDecryptorCache(mockDecryptorCache);
     }
 
     @Test
@@ -116,4 +125,31 @@ public class UploadArchiveServiceTest {
             assertTrue(oneData.length > 0);
         }
     }
+
+    @Test
+    public void streamingDecryptAndUnzipRealFile() throws Exception {
+        // get archive file, which is stored in git
+        File archiveFile = new ClassPathResource("/cms/data/archive").getFile();
+        byte[] encryptedBytes = Files.readAllBytes(archiveFile.toPath());
+
+        // decrypt and unzip as a stream
+        Map<String, byte[]> streamedData = new HashMap<>();
+        try (InputStream encryptedStream = new ByteArrayInputStream(encryptedBytes)) {
+            InputStream decryptedStream = archiveService.decrypt("test-study", encryptedStream);
+            archiveService.unzip(decryptedStream, streamedData::put);
+        }
+
+        // should match the non-streaming result
+        Map<String, byte[]> unzippedData = archiveService.unzip(archiveService.decrypt("test-study", encryptedBytes));
+        assertEquals(unzippedData.keySet(), streamedData.keySet());
+        for (Map.Entry<String, byte[]> oneData : unzippedData.entrySet()) {
+            assertArrayEquals(oneData.getValue(), streamedData.get(oneData.getKey()));
+        }
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void streamingDecryptGarbageData() {
+        byte[] garbageData = "This is not encrypted data.".getBytes(Charsets.UTF_8);
+        archiveService.decrypt("test-study", new ByteArrayInputStream(garbageData));
+    }
 }
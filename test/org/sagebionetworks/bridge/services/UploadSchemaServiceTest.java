@@ -3,7 +3,11 @@ package org.sagebionetworks.bridge.services;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -14,6 +18,9 @@ import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.LocalCacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.ScheduleResolutionCache;
+import org.sagebionetworks.bridge.cache.UploadSchemaCatalog;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadFieldDefinition;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
@@ -51,10 +58,16 @@ public class UploadSchemaServiceTest {
         when(dao.createSchemaRevisionV4(TestConstants.TEST_STUDY, inputSchema)).thenReturn(outputSchema);
 
         // execute and validate
+        ScheduleResolutionCache cache = mock(ScheduleResolutionCache.class);
+        UploadSchemaCatalog catalog = mock(UploadSchemaCatalog.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
+        svc.setScheduleResolutionCache(cache);
+        svc.setUploadSchemaCatalog(catalog);
         UploadSchema retVal = svc.createSchemaRevisionV4(TestConstants.TEST_STUDY, inputSchema);
         assertSame(outputSchema, retVal);
+        verify(catalog).updateRevision(TestConstants.TEST_STUDY, outputSchema);
+        verify(cache).invalidateStudy(TestConstants.TEST_STUDY);
     }
 
     @Test(expected = InvalidEntityException.class)
@@ -91,10 +104,14 @@ public class UploadSchemaServiceTest {
         when(mockDao.createOrUpdateUploadSchema("test-study", schema)).thenReturn(daoRetVal);
 
         // execute and validate
+        ScheduleResolutionCache mockCache = mock(ScheduleResolutionCache.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        svc.setScheduleResolutionCache(mockCache);
+        svc.setUploadSchemaCatalog(mock(UploadSchemaCatalog.class));
         UploadSchema svcRetVal = svc.createOrUpdateUploadSchema(makeTestStudy(), schema);
         assertSame(daoRetVal, svcRetVal);
+        verify(mockCache).invalidateStudy(makeTestStudy());
     }
 
     @Test(expected = BadRequestException.class)
@@ -126,13 +143,17 @@ public class UploadSchemaServiceTest {
     public void deleteByIdAndRevSuccess() {
         // mock dao
         UploadSchemaDao mockDao = mock(UploadSchemaDao.class);
+        ScheduleResolutionCache mockCache = mock(ScheduleResolutionCache.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        svc.setScheduleResolutionCache(mockCache);
+        svc.setUploadSchemaCatalog(mock(UploadSchemaCatalog.class));
 
         // execute and verify delete call
         StudyIdentifier studyIdentifier = makeTestStudy();
         svc.deleteUploadSchemaByIdAndRev(studyIdentifier, "delete-schema", 1);
         verify(mockDao).deleteUploadSchemaByIdAndRev(studyIdentifier, "delete-schema", 1);
+        verify(mockCache).invalidateStudy(studyIdentifier);
     }
 
     @Test(expected = BadRequestException.class)
@@ -154,13 +175,17 @@ public class UploadSchemaServiceTest {
     public void deleteByIdSuccess() {
         // mock dao
         UploadSchemaDao mockDao = mock(UploadSchemaDao.class);
+        ScheduleResolutionCache mockCache = mock(ScheduleResolutionCache.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        svc.setScheduleResolutionCache(mockCache);
+        svc.setUploadSchemaCatalog(mock(UploadSchemaCatalog.class));
 
         // execute and verify delete call
         StudyIdentifier studyIdentifier = makeTestStudy();
         svc.deleteUploadSchemaById(studyIdentifier, "delete-schema");
         verify(mockDao).deleteUploadSchemaById(studyIdentifier, "delete-schema");
+        verify(mockCache).invalidateStudy(studyIdentifier);
     }
 
     @Test
@@ -169,6 +194,7 @@ public class UploadSchemaServiceTest {
         UploadSchemaDao mockDao = setupDaoForGetLatest();
         UploadSchemaService service = new UploadSchemaService();
         service.setUploadSchemaDao(mockDao);
+        service.setUploadSchemaCatalog(makeCatalog());
 
         // make client info
         ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(25).build();
@@ -185,6 +211,7 @@ public class UploadSchemaServiceTest {
         UploadSchemaDao mockDao = setupDaoForGetLatest();
         UploadSchemaService service = new UploadSchemaService();
         service.setUploadSchemaDao(mockDao);
+        service.setUploadSchemaCatalog(makeCatalog());
 
         // make client info
         ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(15).build();
@@ -201,6 +228,7 @@ public class UploadSchemaServiceTest {
         UploadSchemaDao mockDao = setupDaoForGetLatest();
         UploadSchemaService service = new UploadSchemaService();
         service.setUploadSchemaDao(mockDao);
+        service.setUploadSchemaCatalog(makeCatalog());
 
         // make client info
         ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(5).build();
@@ -331,10 +359,28 @@ public class UploadSchemaServiceTest {
         // execute and validate
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        svc.setUploadSchemaCatalog(makeCatalog());
         UploadSchema svcRetVal = svc.getUploadSchemaByIdAndRev(makeTestStudy(), "test-schema-rev", 1);
         assertSame(daoRetVal, svcRetVal);
     }
 
+    @Test
+    public void getByIdAndRevFromCatalog() {
+        UploadSchemaDao mockDao = setupDaoForGetLatest();
+        UploadSchemaService svc = new UploadSchemaService();
+        svc.setUploadSchemaDao(mockDao);
+        svc.setUploadSchemaCatalog(makeCatalog());
+
+        // The schema's revisions are loaded once, and then both lookups are served from the catalog
+        assertEquals(2, svc.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, SCHEMA_ID, 2).getRevision());
+        ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(15).build();
+        assertEquals(1, svc.getLatestUploadSchemaRevisionForAppVersion(TestConstants.TEST_STUDY, SCHEMA_ID,
+                clientInfo).getRevision());
+
+        verify(mockDao, times(1)).getUploadSchemaAllRevisions(TestConstants.TEST_STUDY, SCHEMA_ID);
+        verify(mockDao, never()).getUploadSchemaByIdAndRev(any(), any(), anyInt());
+    }
+
     @Test
     public void getSchemasForStudy() {
         // mock dao
@@ -420,10 +466,22 @@ public class UploadSchemaServiceTest {
                 outputSchema);
 
         // execute and validate
+        ScheduleResolutionCache cache = mock(ScheduleResolutionCache.class);
+        UploadSchemaCatalog catalog = mock(UploadSchemaCatalog.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
+        svc.setScheduleResolutionCache(cache);
+        svc.setUploadSchemaCatalog(catalog);
         UploadSchema retVal = svc.updateSchemaRevisionV4(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV, inputSchema);
         assertSame(outputSchema, retVal);
+        verify(catalog).updateRevision(TestConstants.TEST_STUDY, outputSchema);
+        verify(cache).invalidateStudy(TestConstants.TEST_STUDY);
+    }
+
+    private static UploadSchemaCatalog makeCatalog() {
+        UploadSchemaCatalog catalog = new UploadSchemaCatalog();
+        catalog.setCacheInvalidationBus(new LocalCacheInvalidationBus());
+        return catalog;
     }
 
     private static StudyIdentifier makeTestStudy() {
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.services;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -17,16 +18,21 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.exceptions.NotFoundException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
+import org.sagebionetworks.bridge.upload.UploadValidationExecutor;
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
 
 @SuppressWarnings("unchecked")
 public class UploadServiceUploadCompleteMockTest {
@@ -37,6 +43,8 @@ public class UploadServiceUploadCompleteMockTest {
     private AmazonS3 mockS3Client;
     private UploadDao mockUploadDao;
     private UploadValidationService mockUploadValidationService;
+    private UploadValidationExecutor.Reservation mockReservation;
+    private UploadValidationLease lease;
     private UploadService svc;
 
     @Before
@@ -50,6 +58,11 @@ public class UploadServiceUploadCompleteMockTest {
         mockS3Client = mock(AmazonS3.class);
         mockUploadDao = mock(UploadDao.class);
         mockUploadValidationService = mock(UploadValidationService.class);
+        mockReservation = mock(UploadValidationExecutor.Reservation.class);
+        when(mockUploadValidationService.reserveValidation()).thenReturn(mockReservation);
+        lease = new UploadValidationLease(TEST_STUDY.getIdentifier(), TEST_UPLOAD_ID, "test-lease");
+        when(mockUploadValidationService.enqueueValidation(any(StudyIdentifier.class), any(Upload.class)))
+                .thenReturn(lease);
 
         // Set up service
         svc = new UploadService();
@@ -145,8 +158,122 @@ public class UploadServiceUploadCompleteMockTest {
         // execute
         svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
 
-        // Verify upload DAO and validation.
-        verify(mockUploadValidationService, never()).validateUpload(any(StudyIdentifier.class), any(Upload.class));
+        // Verify upload DAO and validation. The upload is taken back out of the queue and the reservation is released.
+        verify(mockUploadValidationService, never()).validateUpload(any(UploadValidationExecutor.Reservation.class),
+                any(UploadValidationLease.class), any(StudyIdentifier.class), any(Upload.class));
+        verify(mockUploadValidationService).cancelValidation(lease);
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void uploadCompleteError() {
+        // set up input
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+        upload.setStatus(UploadStatus.REQUESTED);
+
+        // mock S3
+        ObjectMetadata mockObjMetadata = mock(ObjectMetadata.class);
+        when(mockObjMetadata.getSSEAlgorithm()).thenReturn(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        when(mockS3Client.getObjectMetadata(TEST_BUCKET, TEST_UPLOAD_ID)).thenReturn(mockObjMetadata);
+
+        // mock uploadDao.uploadComplete()
+        doThrow(BridgeServiceException.class).when(mockUploadDao).uploadComplete(APP, upload);
+
+        // execute
+        try {
+            svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            // expected exception
+        }
+
+        // The upload is taken back out of the queue and isn't validated.
+        verify(mockUploadValidationService).cancelValidation(lease);
+        verify(mockUploadValidationService, never()).validateUpload(any(UploadValidationExecutor.Reservation.class),
+                any(UploadValidationLease.class), any(StudyIdentifier.class), any(Upload.class));
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void alreadyInValidationQueue() {
+        // set up input
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+        upload.setStatus(UploadStatus.REQUESTED);
+
+        // mock S3
+        ObjectMetadata mockObjMetadata = mock(ObjectMetadata.class);
+        when(mockObjMetadata.getSSEAlgorithm()).thenReturn(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        when(mockS3Client.getObjectMetadata(TEST_BUCKET, TEST_UPLOAD_ID)).thenReturn(mockObjMetadata);
+
+        // Another call is already completing this upload.
+        when(mockUploadValidationService.enqueueValidation(TestConstants.TEST_STUDY, upload)).thenReturn(null);
+
+        // execute
+        svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
+
+        // Verify upload isn't marked complete or validated again.
+        verifyZeroInteractions(mockUploadDao);
+        verify(mockUploadValidationService, never()).validateUpload(any(UploadValidationExecutor.Reservation.class),
+                any(UploadValidationLease.class), any(StudyIdentifier.class), any(Upload.class));
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void validationQueueUnavailable() {
+        // set up input
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+        upload.setStatus(UploadStatus.REQUESTED);
+
+        // mock S3
+        ObjectMetadata mockObjMetadata = mock(ObjectMetadata.class);
+        when(mockObjMetadata.getSSEAlgorithm()).thenReturn(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        when(mockS3Client.getObjectMetadata(TEST_BUCKET, TEST_UPLOAD_ID)).thenReturn(mockObjMetadata);
+
+        // mock validation service
+        when(mockUploadValidationService.enqueueValidation(TestConstants.TEST_STUDY, upload)).thenThrow(
+                BridgeServiceException.class);
+
+        // execute
+        try {
+            svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            // expected exception
+        }
+
+        // The upload isn't marked complete, so uploadComplete can be retried.
+        verifyZeroInteractions(mockUploadDao);
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void validationQueueFull() {
+        // set up input
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+        upload.setStatus(UploadStatus.REQUESTED);
+
+        // mock S3
+        ObjectMetadata mockObjMetadata = mock(ObjectMetadata.class);
+        when(mockObjMetadata.getSSEAlgorithm()).thenReturn(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        when(mockS3Client.getObjectMetadata(TEST_BUCKET, TEST_UPLOAD_ID)).thenReturn(mockObjMetadata);
+
+        // mock validation service
+        when(mockUploadValidationService.reserveValidation()).thenThrow(ServiceUnavailableException.class);
+
+        // execute
+        try {
+            svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            // expected exception
+        }
+
+        // The upload isn't marked complete, so uploadComplete can be retried.
+        verifyZeroInteractions(mockUploadDao);
     }
 
     @Test
@@ -164,8 +291,11 @@ public class UploadServiceUploadCompleteMockTest {
         // execute
         svc.uploadComplete(TestConstants.TEST_STUDY, APP, upload);
 
-        // Verify upload DAO and validation.
-        verify(mockUploadDao).uploadComplete(APP, upload);
-        verify(mockUploadValidationService).validateUpload(TestConstants.TEST_STUDY, upload);
+        // Verify the upload is in the validation queue before it's marked complete, then validated.
+        InOrder inOrder = inOrder(mockUploadValidationService, mockUploadDao);
+        inOrder.verify(mockUploadValidationService).enqueueValidation(TestConstants.TEST_STUDY, upload);
+        inOrder.verify(mockUploadDao).uploadComplete(APP, upload);
+        inOrder.verify(mockUploadValidationService).validateUpload(mockReservation, lease, TestConstants.TEST_STUDY,
+                upload);
     }
 }
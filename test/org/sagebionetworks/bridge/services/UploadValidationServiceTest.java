@@ -1,48 +1,99 @@
 package org.sagebionetworks.bridge.services;
 
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.concurrent.ExecutorService;
-
+import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.upload.Upload;
-import org.sagebionetworks.bridge.upload.UploadValidationTask;
-import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
+import org.sagebionetworks.bridge.upload.UploadValidationDispatcher;
+import org.sagebionetworks.bridge.upload.UploadValidationExecutor;
+import org.sagebionetworks.bridge.upload.UploadValidationLease;
 
 public class UploadValidationServiceTest {
-    @Test
-    public void test() {
-        // UploadValidationService is a simple call-through to the task factory and the async thread pool. As such, our
+    private Study study;
+    private Upload upload;
+    private UploadValidationDispatcher mockDispatcher;
+    private UploadValidationExecutor mockExecutor;
+    private UploadValidationService svc;
+
+    @Before
+    public void before() {
+        // UploadValidationService is a simple call-through to the validation executor and dispatcher. As such, our
         // test strategy is to verify that execution flows through to these dependencies.
 
         // inputs
-        Study study = TestUtils.getValidStudy(UploadValidationServiceTest.class);
-        Upload upload = new DynamoUpload2();
+        study = TestUtils.getValidStudy(UploadValidationServiceTest.class);
+        upload = new DynamoUpload2();
 
-        // mock task
-        UploadValidationTask mockTask = mock(UploadValidationTask.class);
+        // mock dispatcher
+        mockDispatcher = mock(UploadValidationDispatcher.class);
 
-        // mock task factory
-        UploadValidationTaskFactory mockTaskFactory = mock(UploadValidationTaskFactory.class);
-        when(mockTaskFactory.newTask(study, upload)).thenReturn(mockTask);
-
-        // mock async thread pool
-        ExecutorService mockExecutor = mock(ExecutorService.class);
+        // mock validation executor
+        mockExecutor = mock(UploadValidationExecutor.class);
 
         // set up service
-        UploadValidationService svc = new UploadValidationService();
-        svc.setAsyncExecutorService(mockExecutor);
-        svc.setTaskFactory(mockTaskFactory);
+        svc = new UploadValidationService();
+        svc.setUploadValidationExecutor(mockExecutor);
+        svc.setDispatcher(mockDispatcher);
+    }
+
+    @Test
+    public void test() {
+        UploadValidationExecutor.Reservation mockReservation = mock(UploadValidationExecutor.Reservation.class);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+        UploadValidationLease lease = new UploadValidationLease("study", "upload", "lease");
+        when(mockDispatcher.enqueue(study, upload)).thenReturn(lease);
+
+        // execute
+        svc.validateUpload(study, upload);
+
+        // validate
+        verify(mockDispatcher).dispatch(mockReservation, lease, study, upload);
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void alreadyQueued() {
+        UploadValidationExecutor.Reservation mockReservation = mock(UploadValidationExecutor.Reservation.class);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+        when(mockDispatcher.enqueue(study, upload)).thenReturn(null);
 
         // execute
         svc.validateUpload(study, upload);
 
         // validate
-        verify(mockExecutor).execute(mockTask);
+        verify(mockDispatcher, never()).dispatch(any(), any(), any(), any());
+        verify(mockReservation).close();
+    }
+
+    @Test
+    public void cancel() {
+        UploadValidationLease lease = new UploadValidationLease("study", "upload", "lease");
+        svc.cancelValidation(lease);
+        verify(mockDispatcher).cancel(lease);
+    }
+
+    @Test
+    public void reserve() {
+        UploadValidationExecutor.Reservation mockReservation = mock(UploadValidationExecutor.Reservation.class);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+
+        assertSame(mockReservation, svc.reserveValidation());
+    }
+
+    @Test(expected = ServiceUnavailableException.class)
+    public void queueFull() {
+        when(mockExecutor.tryReserve()).thenReturn(null);
+
+        svc.validateUpload(study, upload);
     }
 }
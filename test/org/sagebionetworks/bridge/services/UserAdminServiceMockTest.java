@@ -59,20 +59,11 @@ public class UserAdminServiceMockTest {
     @Mock
     private Account account;
     
-    @Mock
-    private UploadService uploadService;
-    
-    @Mock
-    private HealthDataService healthDataService;
-    
     @Mock
     private CacheProvider cacheProvider;
     
     @Mock
-    private ScheduledActivityService scheduledActivityService;
-    
-    @Mock
-    private ActivityEventService activityEventService;
+    private ParticipantPurgeService participantPurgeService;
     
     @Mock
     private ParticipantOptionsService participantOptionsService;
@@ -100,12 +91,9 @@ public class UserAdminServiceMockTest {
         service.setAuthenticationService(authenticationService);
         service.setConsentService(consentService);
         service.setParticipantService(participantService);
-        service.setUploadService(uploadService);
         service.setAccountDao(accountDao);
         service.setCacheProvider(cacheProvider);
-        service.setHealthDataService(healthDataService);
-        service.setScheduledActivityService(scheduledActivityService);
-        service.setActivityEventService(activityEventService);
+        service.setParticipantPurgeService(participantPurgeService);
         service.setParticipantOptionsService(participantOptionsService);
         service.setExternalIdService(externalIdService);
 
@@ -189,10 +177,7 @@ public class UserAdminServiceMockTest {
         // Verify a lot of stuff is deleted or removed
         verify(cacheProvider).removeSessionByUserId("userId");
         verify(cacheProvider).removeRequestInfo("userId");
-        verify(healthDataService).deleteRecordsForHealthCode("healthCode");
-        verify(uploadService).deleteUploadsForHealthCode("healthCode");
-        verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
-        verify(activityEventService).deleteActivityEvents("healthCode");
+        verify(participantPurgeService).purgeParticipantData("healthCode");
         verify(externalIdService).unassignExternalId(study, "externalId", "healthCode");
         verify(participantOptionsService).deleteAllParticipantOptions("healthCode");
         verify(accountDao).deleteAccount(study, "userId");
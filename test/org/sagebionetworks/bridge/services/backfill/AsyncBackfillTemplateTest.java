@@ -6,6 +6,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.longThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -169,6 +170,91 @@ public class AsyncBackfillTemplateTest {
         verify(callback, times(1)).newRecords(record);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testShardedBackfillTakesFirstFreeShard() throws Exception {
+
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override
+            int getShardCount() {
+                return 2;
+            }
+        };
+
+        // Mock lock. Shard 0 is already taken by another node.
+        final Class<? extends AsyncBackfillTemplate> lockClazz = backfillTemplate.getClass();
+        final String lockObject0 = lockClazz.getSimpleName() + "-shard0";
+        final String lockObject1 = lockClazz.getSimpleName() + "-shard1";
+        final String lock = "lock";
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(lockClazz, lockObject0, TestBackfillService.EXPIRE))
+                .thenThrow(ConcurrentModificationException.class);
+        when(lockDao.acquireLock(lockClazz, lockObject1, TestBackfillService.EXPIRE)).thenReturn(lock);
+        backfillTemplate.setDistributedLockDao(lockDao);
+
+        // Mock task and backfill dao
+        final String user = "user";
+        final long timestamp = DateTime.now(DateTimeZone.UTC).getMillis();
+        final BackfillTask backfillTask = createBackfillTask("taskName-shard1", user, timestamp, "taskId",
+                BackfillStatus.SUBMITTED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.createTask("taskName-shard1", user)).thenReturn(backfillTask);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill(user, "taskName", callback);
+        Thread.sleep(200L);
+
+        // Verify only shard 1 ran. It completed, so it keeps its lock until the lock expires.
+        verify(callback, times(1)).start(backfillTask);
+        verify(backfillDao, times(1)).createTask("taskName-shard1", user);
+        verify(backfillDao, times(1)).updateTaskStatus("taskId", BackfillStatus.COMPLETED);
+        verify(lockDao, never()).releaseLock(any(), any(), any());
+    }
+
+    @Test
+    public void testShardedBackfillQueuedOnSameNodeTakesNextShard() throws Exception {
+
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override
+            int getShardCount() {
+                return 2;
+            }
+        };
+
+        // Mock lock. Shard 0 is held until it expires once it's been acquired, as a completed shard's lock is.
+        final Class<? extends AsyncBackfillTemplate> lockClazz = backfillTemplate.getClass();
+        final String lockObject0 = lockClazz.getSimpleName() + "-shard0";
+        final String lockObject1 = lockClazz.getSimpleName() + "-shard1";
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(lockClazz, lockObject0, TestBackfillService.EXPIRE)).thenReturn("lock0")
+                .thenThrow(new ConcurrentModificationException("Lock already set."));
+        when(lockDao.acquireLock(lockClazz, lockObject1, TestBackfillService.EXPIRE)).thenReturn("lock1");
+        backfillTemplate.setDistributedLockDao(lockDao);
+
+        // Mock tasks and backfill dao
+        final String user = "user";
+        final long timestamp = DateTime.now(DateTimeZone.UTC).getMillis();
+        final BackfillTask task0 = createBackfillTask("taskName-shard0", user, timestamp, "taskId0",
+                BackfillStatus.SUBMITTED);
+        final BackfillTask task1 = createBackfillTask("taskName-shard1", user, timestamp, "taskId1",
+                BackfillStatus.SUBMITTED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.createTask("taskName-shard0", user)).thenReturn(task0);
+        when(backfillDao.createTask("taskName-shard1", user)).thenReturn(task1);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        // Two calls on the same node run one after the other
+        backfillTemplate.backfill(user, "taskName", mock(BackfillCallback.class));
+        backfillTemplate.backfill(user, "taskName", mock(BackfillCallback.class));
+        Thread.sleep(200L);
+
+        verify(backfillDao, times(1)).createTask("taskName-shard0", user);
+        verify(backfillDao, times(1)).createTask("taskName-shard1", user);
+        verify(backfillDao, times(1)).updateTaskStatus("taskId0", BackfillStatus.COMPLETED);
+        verify(backfillDao, times(1)).updateTaskStatus("taskId1", BackfillStatus.COMPLETED);
+    }
+
     @Test
     public void testFailure() throws Exception {
 
@@ -204,6 +290,7 @@ public class AsyncBackfillTemplateTest {
 
         // Verify
         verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.FAILED);
+        verify(lockDao, times(1)).releaseLock(lockClazz, lockObject, lock);
     }
 
     private BackfillTask createBackfillTask(final String taskName, final String user, final long timestamp,
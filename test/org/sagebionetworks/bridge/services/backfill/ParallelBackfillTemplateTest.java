@@ -0,0 +1,229 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.BackfillDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoBackfillTask;
+import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
+import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+
+import com.google.common.collect.ImmutableList;
+
+public class ParallelBackfillTemplateTest {
+
+    private static final String TASK_NAME = "testBackfill";
+
+    private BackfillDao backfillDao;
+    private List<String> messages;
+    private BackfillCallback callback;
+    private Set<String> backfilledItems;
+
+    @Before
+    public void before() {
+        backfillDao = mock(BackfillDao.class);
+        messages = Collections.synchronizedList(new ArrayList<>());
+        callback = mock(BackfillCallback.class);
+        backfilledItems = Collections.synchronizedSet(new HashSet<>());
+    }
+
+    @Test
+    public void backfillsAllItemsAndRecordsMessagesInOrder() {
+        List<String> itemIds = makeItemIds(250);
+        TestParallelBackfill backfill = makeBackfill(itemIds, 1);
+        BackfillTask task = makeTask(TASK_NAME, 2000L, BackfillStatus.IN_PROCESS);
+
+        backfill.doBackfill(task, callback);
+
+        assertEquals(250, backfilledItems.size());
+        List<String> expectedMessages = new ArrayList<>();
+        for (String oneItemId : itemIds) {
+            expectedMessages.add("Backfilled " + oneItemId);
+        }
+        assertEquals(expectedMessages, messages);
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 100);
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 200);
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 250);
+    }
+
+    @Test
+    public void resumesFromCheckpointOfIncompleteTask() {
+        BackfillTask previousTask = makeTask(TASK_NAME, 1000L, BackfillStatus.FAILED);
+        BackfillTask task = makeTask(TASK_NAME, 2000L, BackfillStatus.IN_PROCESS);
+        mockTasks(previousTask, task);
+        when(backfillDao.getTaskCheckpoint(previousTask.getId())).thenReturn(100);
+
+        List<String> itemIds = makeItemIds(150);
+        makeBackfill(itemIds, 1).doBackfill(task, callback);
+
+        assertEquals(new HashSet<>(itemIds.subList(100, 150)), backfilledItems);
+        assertEquals("Resuming testBackfill after 100 of 150 items", messages.get(0));
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 150);
+    }
+
+    @Test
+    public void doesNotResumeCompletedTask() {
+        BackfillTask previousTask = makeTask(TASK_NAME, 1000L, BackfillStatus.COMPLETED);
+        BackfillTask task = makeTask(TASK_NAME, 2000L, BackfillStatus.IN_PROCESS);
+        mockTasks(previousTask, task);
+
+        makeBackfill(makeItemIds(10), 1).doBackfill(task, callback);
+
+        assertEquals(10, backfilledItems.size());
+        verify(backfillDao, never()).getTaskCheckpoint(anyString());
+    }
+
+    @Test
+    public void shardsPartitionItems() {
+        List<String> itemIds = makeItemIds(100);
+        Set<String> allShardItems = new HashSet<>();
+        for (int shard = 0; shard < 3; shard++) {
+            backfilledItems.clear();
+            String shardName = AsyncBackfillTemplate.getShardName(TASK_NAME, shard, 3);
+            makeBackfill(itemIds, 3).doBackfill(makeTask(shardName, 2000L, BackfillStatus.IN_PROCESS), shard,
+                    callback);
+
+            for (String oneItemId : backfilledItems) {
+                assertEquals(shard, Math.floorMod(oneItemId.hashCode(), 3));
+                assertTrue(allShardItems.add(oneItemId));
+            }
+        }
+        assertEquals(new HashSet<>(itemIds), allShardItems);
+    }
+
+    @Test
+    public void failedItemHoldsCheckpointAndFailsTask() {
+        List<String> itemIds = makeItemIds(250);
+        TestParallelBackfill backfill = makeBackfill(itemIds, 1);
+        backfill.failingItemId = "item-150";
+        BackfillTask task = makeTask(TASK_NAME, 2000L, BackfillStatus.IN_PROCESS);
+
+        try {
+            backfill.doBackfill(task, callback);
+            fail("expected exception");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("failed to backfill 1 items"));
+        }
+
+        // The items after the failed one still ran, but the checkpoint stays before it.
+        assertEquals(249, backfilledItems.size());
+        assertEquals(250, messages.size());
+        assertTrue(messages.get(150).startsWith("Error backfilling item-150"));
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 100);
+        verify(backfillDao, never()).updateTaskCheckpoint(task.getId(), 200);
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 150);
+    }
+
+    @Test
+    public void stopsBeforeLockExpires() {
+        List<String> itemIds = makeItemIds(10);
+        TestParallelBackfill backfill = makeBackfill(itemIds, 1);
+        backfill.lockExpireInSeconds = 0;
+        BackfillTask task = makeTask(TASK_NAME, 2000L, BackfillStatus.IN_PROCESS);
+
+        try {
+            backfill.doBackfill(task, callback);
+            fail("expected exception");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("stopped before its lock expired"));
+        }
+
+        assertTrue(backfilledItems.isEmpty());
+        verify(backfillDao).updateTaskCheckpoint(task.getId(), 0);
+    }
+
+    private TestParallelBackfill makeBackfill(List<String> itemIds, int shardCount) {
+        BridgeConfig config = mock(BridgeConfig.class);
+        when(config.getPropertyAsInt("backfill.thread.count")).thenReturn(4);
+        when(config.getPropertyAsInt("backfill.ddb.capacity.units.per.second")).thenReturn(100000);
+        when(config.getPropertyAsInt("backfill.shard.count")).thenReturn(shardCount);
+
+        BackfillRecordFactory recordFactory = mock(BackfillRecordFactory.class);
+        when(recordFactory.createOnly(any(BackfillTask.class), anyString())).thenAnswer((InvocationOnMock invocation) -> {
+            messages.add((String) invocation.getArguments()[1]);
+            return mock(BackfillRecord.class);
+        });
+
+        TestParallelBackfill backfill = new TestParallelBackfill(itemIds);
+        backfill.setBridgeConfig(config);
+        backfill.setBackfillDao(backfillDao);
+        backfill.setBackfillRecordFactory(recordFactory);
+        return backfill;
+    }
+
+    private void mockTasks(BackfillTask... tasks) {
+        List<BackfillTask> taskList = ImmutableList.copyOf(tasks);
+        when(backfillDao.getTasks(eq(TASK_NAME), anyLong())).thenAnswer(invocation -> taskList);
+    }
+
+    private static List<String> makeItemIds(int count) {
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            itemIds.add("item-" + i);
+        }
+        return itemIds;
+    }
+
+    private static BackfillTask makeTask(String name, long timestamp, BackfillStatus status) {
+        DynamoBackfillTask task = new DynamoBackfillTask();
+        task.setName(name);
+        task.setTimestamp(timestamp);
+        task.setStatus(status.name());
+        return task;
+    }
+
+    private class TestParallelBackfill extends ParallelBackfillTemplate {
+        private final List<String> itemIds;
+        private int lockExpireInSeconds = 60;
+        private String failingItemId;
+
+        TestParallelBackfill(List<String> itemIds) {
+            this.itemIds = itemIds;
+        }
+
+        @Override
+        int getLockExpireInSeconds() {
+            return lockExpireInSeconds;
+        }
+
+        @Override
+        double getCapacityUnitsPerItem() {
+            return 1;
+        }
+
+        @Override
+        protected List<String> getItemIdList(BackfillTask task, BackfillCallback callback) {
+            return itemIds;
+        }
+
+        @Override
+        protected String backfillItem(String itemId) {
+            if (itemId.equals(failingItemId)) {
+                throw new RuntimeException("test exception");
+            }
+            backfilledItems.add(itemId);
+            return "Backfilled " + itemId;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
@@ -56,6 +57,7 @@ public class SchemaSurveyGuidBackfillTest {
     private SchemaSurveyGuidBackfill backfill;
     private StudyService studyService;
     private SurveyService surveyService;
+    private UploadSchemaDao uploadSchemaDao;
     private UploadSchemaService uploadSchemaService;
 
     @Before
@@ -63,6 +65,7 @@ public class SchemaSurveyGuidBackfillTest {
         // Mock dependencies. Behavior will be set up in individual tests.
         studyService = mock(StudyService.class);
         surveyService = mock(SurveyService.class);
+        uploadSchemaDao = mock(UploadSchemaDao.class);
         uploadSchemaService = mock(UploadSchemaService.class);
 
         // Set up backfill. Mock recordMessage() and recordError(), so the superclass doesn't try to do anything weird.
@@ -74,6 +77,7 @@ public class SchemaSurveyGuidBackfillTest {
 
         backfill.setStudyService(studyService);
         backfill.setSurveyService(surveyService);
+        backfill.setUploadSchemaDao(uploadSchemaDao);
         backfill.setUploadSchemaService(uploadSchemaService);
     }
 
@@ -115,9 +119,9 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(study2Id)).thenReturn(ImmutableList.of(survey2a,
                 survey2b));
 
-        // Mock schema service. Since everything is mocked, we don't need to worry about parameters other than survey
+        // Mock schema DAO. Since everything is mocked, we don't need to worry about parameters other than survey
         // guid and createdOn, which are all blank in this case.
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
                 invocation -> new DynamoUploadSchema());
 
         // execute
@@ -152,6 +156,9 @@ public class SchemaSurveyGuidBackfillTest {
         UploadSchema schema2b = schema2bCaptor.getValue();
         assertEquals("guid-2b", schema2b.getSurveyGuid());
         assertEquals(0x2b, schema2b.getSurveyCreatedOn().longValue());
+
+        // Schemas are read from the DAO, not the schema service, whose schemas are shared and must not be modified.
+        verify(uploadSchemaService, never()).getUploadSchemaByIdAndRev(any(), any(), anyInt());
     }
 
     @Test
@@ -169,8 +176,8 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(TestConstants.TEST_STUDY)).thenReturn(
                 ImmutableList.of(surveyNoSchema, TEST_SURVEY));
 
-        // mock schema service
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
+        // mock schema DAO
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
                 invocation -> new DynamoUploadSchema());
 
         // execute
@@ -197,15 +204,15 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(TestConstants.TEST_STUDY)).thenReturn(
                 ImmutableList.of(surveyWithFields, TEST_SURVEY));
 
-        // mock schema service - This is different this time. First schema has survey fields already set. Second schema
+        // mock schema DAO - This is different this time. First schema has survey fields already set. Second schema
         // does not.
         DynamoUploadSchema schemaWithFields = new DynamoUploadSchema();
         schemaWithFields.setSurveyGuid("guid-with-fields");
         schemaWithFields.setSurveyCreatedOn(3333L);
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, "survey-with-fields", 33))
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, "survey-with-fields", 33))
                 .thenReturn(schemaWithFields);
 
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, TEST_SURVEY_ID,
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, TEST_SURVEY_ID,
                 TEST_SURVEY_SCHEMA_REV)).thenReturn(new DynamoUploadSchema());
 
         // execute
@@ -233,8 +240,8 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(TestConstants.TEST_STUDY)).thenReturn(
                 ImmutableList.of(TEST_SURVEY));
 
-        // mock schema service
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
+        // mock schema DAO
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
                 invocation -> new DynamoUploadSchema());
 
         // execute
@@ -260,10 +267,10 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(TestConstants.TEST_STUDY)).thenReturn(
                 ImmutableList.of(badSurvey, TEST_SURVEY));
 
-        // mock schema service - Bad survey throws. Good survey returns schema without survey attributes.
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, "error-survey", 44)).thenThrow(
+        // mock schema DAO - Bad survey throws. Good survey returns schema without survey attributes.
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, "error-survey", 44)).thenThrow(
                 BridgeServiceException.class);
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, TEST_SURVEY_ID,
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, TEST_SURVEY_ID,
                 TEST_SURVEY_SCHEMA_REV)).thenReturn(new DynamoUploadSchema());
 
         // execute
@@ -290,8 +297,8 @@ public class SchemaSurveyGuidBackfillTest {
         when(surveyService.getAllSurveysMostRecentlyPublishedVersion(TestConstants.TEST_STUDY)).thenReturn(
                 ImmutableList.of(badSurvey, TEST_SURVEY));
 
-        // mock schema service
-        when(uploadSchemaService.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
+        // mock schema DAO
+        when(uploadSchemaDao.getUploadSchemaByIdAndRev(any(), any(), anyInt())).thenAnswer(
                 invocation -> new DynamoUploadSchema());
 
         // updating "error-survey" throws.
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
@@ -122,6 +124,38 @@ public class StormpathAccountTest {
         assertEquals(signatures, acct.getConsentSignatureHistory(SUBPOP_GUID));
     }
     
+    @Test
+    public void unchangedConsentSignaturesNotEncryptedAgain() throws Exception {
+        String json = MAPPER.writeValueAsString(Lists.newArrayList(sig));
+        data.put("foo_consent_signatures", "encrypted-2-"+json);
+        data.put("foo_consent_signatures_version", 2);
+        acct = new StormpathAccount(STUDY_ID, SUBPOP_GUIDS, account, encryptors);
+        
+        acct.getAccount();
+        verify(encryptors.get(2), never()).encrypt(json);
+        
+        ConsentSignature withdrawn = new ConsentSignature.Builder().withConsentSignature(sig)
+                .withWithdrewOn(UNIX_TIMESTAMP).build();
+        acct.getConsentSignatureHistory(SUBPOP_GUID).set(0, withdrawn);
+        acct.getAccount();
+        acct.getAccount();
+        
+        String updatedJson = MAPPER.writeValueAsString(Lists.newArrayList(withdrawn));
+        verify(encryptors.get(2), times(1)).encrypt(updatedJson);
+        assertEquals("encrypted-2-"+updatedJson, data.get("foo_consent_signatures"));
+    }
+    
+    @Test
+    public void sensitiveValueDecryptedOnce() {
+        data.put("phone", "encrypted-2-555-555-5555");
+        data.put("phone_version", 2);
+        
+        assertEquals("555-555-5555", acct.getAttribute("phone"));
+        assertEquals("555-555-5555", acct.getAttribute("phone"));
+        
+        verify(encryptors.get(2), times(1)).decrypt("encrypted-2-555-555-5555");
+    }
+    
     @Test
     public void basicFieldWorks() {
         when(account.getEmail()).thenReturn("test@test.com");
@@ -0,0 +1,86 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryUploadValidationQueueTest {
+    private static final long NOW = 1466000000000L;
+
+    private InMemoryUploadValidationQueue queue;
+
+    @Before
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        queue = new InMemoryUploadValidationQueue();
+    }
+
+    @After
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void completedUploadIsNotRecovered() {
+        UploadValidationLease lease = queue.addLeased("study", "upload", 60);
+        assertTrue(queue.complete(lease));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 61000);
+        assertEquals(0, queue.requeueExpired());
+        assertNull(queue.lease(60));
+    }
+
+    @Test
+    public void expiredLeaseIsRecovered() {
+        UploadValidationLease lease = queue.addLeased("study", "upload", 60);
+
+        // Not expired yet
+        assertEquals(0, queue.requeueExpired());
+        assertNull(queue.lease(60));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 60000);
+        assertEquals(1, queue.requeueExpired());
+
+        UploadValidationLease newLease = queue.lease(60);
+        assertEquals("study", newLease.getStudyId());
+        assertEquals("upload", newLease.getUploadId());
+        assertNotEquals(lease.getLeaseId(), newLease.getLeaseId());
+
+        // The old lease holder can no longer renew or complete it.
+        assertFalse(queue.renew(lease, 60));
+        assertFalse(queue.complete(lease));
+        assertTrue(queue.complete(newLease));
+    }
+
+    @Test
+    public void addLeasedSkipsUploadAlreadyInQueue() {
+        UploadValidationLease lease = queue.addLeased("study", "upload", 60);
+        assertNull(queue.addLeased("study", "upload", 60));
+
+        // The first lease is still held.
+        assertTrue(queue.renew(lease, 60));
+
+        // Also skipped while the upload is waiting to be leased again.
+        DateTimeUtils.setCurrentMillisFixed(NOW + 120000);
+        assertEquals(1, queue.requeueExpired());
+        assertNull(queue.addLeased("study", "upload", 60));
+    }
+
+    @Test
+    public void renewedLeaseIsNotRecovered() {
+        UploadValidationLease lease = queue.addLeased("study", "upload", 60);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 50000);
+        assertTrue(queue.renew(lease, 60));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 100000);
+        assertEquals(0, queue.requeueExpired());
+    }
+}
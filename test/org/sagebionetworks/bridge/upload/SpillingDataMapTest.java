@@ -0,0 +1,100 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillingDataMapTest {
+    private static final byte[] SMALL_BYTES = "small".getBytes(Charsets.UTF_8);
+    private static final byte[] LARGE_BYTES = "larger than the threshold".getBytes(Charsets.UTF_8);
+
+    private SpillingDataMap map;
+
+    @Before
+    public void before() {
+        map = new SpillingDataMap(10);
+    }
+
+    @After
+    public void after() {
+        map.close();
+    }
+
+    @Test
+    public void smallEntriesStayInMemory() {
+        map.put("small", SMALL_BYTES);
+        assertFalse(map.isSpilled("small"));
+        assertArrayEquals(SMALL_BYTES, map.get("small"));
+    }
+
+    @Test
+    public void largeEntriesAreSpilled() {
+        map.put("large", LARGE_BYTES);
+        assertTrue(map.isSpilled("large"));
+        assertArrayEquals(LARGE_BYTES, map.get("large"));
+        assertTrue(map.containsKey("large"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void putReplacesEntry() {
+        map.put("key", LARGE_BYTES);
+        assertNull(map.put("key", SMALL_BYTES));
+        assertFalse(map.isSpilled("key"));
+        assertArrayEquals(SMALL_BYTES, map.get("key"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void removeReturnsSpilledEntry() {
+        map.put("large", LARGE_BYTES);
+        assertArrayEquals(LARGE_BYTES, map.remove("large"));
+        assertFalse(map.containsKey("large"));
+        assertNull(map.get("large"));
+        assertNull(map.remove("large"));
+    }
+
+    @Test
+    public void entrySetReadsEntries() {
+        map.put("small", SMALL_BYTES);
+        map.put("large", LARGE_BYTES);
+        assertEquals(ImmutableSet.of("small", "large"), map.keySet());
+
+        int count = 0;
+        for (Map.Entry<String, byte[]> entry : map.entrySet()) {
+            byte[] expected = entry.getKey().equals("small") ? SMALL_BYTES : LARGE_BYTES;
+            assertArrayEquals(expected, entry.getValue());
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    @Test
+    public void entrySetIteratorRemovesEntries() {
+        map.put("large", LARGE_BYTES);
+        Iterator<Map.Entry<String, byte[]>> iter = map.entrySet().iterator();
+        iter.next();
+        iter.remove();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void closeEmptiesMap() {
+        map.put("small", SMALL_BYTES);
+        map.put("large", LARGE_BYTES);
+        map.close();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("large"));
+    }
+}
@@ -0,0 +1,150 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+
+public class StreamingUnpackHandlerTest {
+    private static final byte[] ENCRYPTED_BYTES = "encrypted test data".getBytes(Charsets.UTF_8);
+
+    private HttpRequestBase mockS3Request;
+    private ByteArrayInputStream s3Content;
+
+    @Before
+    public void before() {
+        mockS3Request = mock(HttpRequestBase.class);
+        s3Content = new ByteArrayInputStream(ENCRYPTED_BYTES);
+    }
+
+    @Test
+    public void test() throws Exception {
+        // zip up a JSON file and a non-JSON file
+        UploadArchiveService svc = spy(new UploadArchiveService());
+        byte[] zippedBytes = svc.zip(ImmutableMap.of(
+                "info.json", "{\"foo\":\"foo value\"}".getBytes(Charsets.UTF_8),
+                "audio.m4a", "not json".getBytes(Charsets.UTF_8)));
+
+        UploadValidationContext ctx = setupContext();
+        StreamingUnpackHandler handler = setupHandler(svc, zippedBytes);
+
+        // execute and validate
+        handler.handle(ctx);
+
+        Map<String, JsonNode> jsonDataMap = ctx.getJsonDataMap();
+        assertEquals(1, jsonDataMap.size());
+        assertEquals("foo value", jsonDataMap.get("info.json").get("foo").textValue());
+
+        Map<String, byte[]> unzippedDataMap = ctx.getUnzippedDataMap();
+        assertEquals(1, unzippedDataMap.size());
+        assertEquals("not json", new String(unzippedDataMap.get("audio.m4a"), Charsets.UTF_8));
+
+        // The whole archive is never held in memory
+        assertNull(ctx.getData());
+        assertNull(ctx.getDecryptedData());
+
+        // The S3 object is read to the end, so the connection isn't aborted
+        assertEquals(0, s3Content.available());
+        verify(mockS3Request, never()).abort();
+    }
+
+    @Test
+    public void largeEntriesAreSpilled() throws Exception {
+        int spillThreshold = BridgeConfigFactory.getConfig().getPropertyAsInt("upload.validation.spill.threshold");
+        byte[] largeBytes = new byte[spillThreshold + 1];
+        UploadArchiveService svc = spy(new UploadArchiveService());
+        byte[] zippedBytes = svc.zip(ImmutableMap.of("large.bin", largeBytes));
+
+        UploadValidationContext ctx = setupContext();
+        StreamingUnpackHandler handler = setupHandler(svc, zippedBytes);
+
+        // execute and validate
+        handler.handle(ctx);
+
+        SpillingDataMap unzippedDataMap = (SpillingDataMap) ctx.getUnzippedDataMap();
+        try {
+            assertTrue(unzippedDataMap.isSpilled("large.bin"));
+            assertArrayEquals(largeBytes, unzippedDataMap.get("large.bin"));
+        } finally {
+            unzippedDataMap.close();
+        }
+    }
+
+    @Test
+    public void entryTooBig() throws Exception {
+        UploadArchiveService svc = spy(new UploadArchiveService());
+        int maxZipEntrySize = BridgeConfigFactory.getConfig().getPropertyAsInt("max.zip.entry.size");
+        byte[] zippedBytes = svc.zip(ImmutableMap.of("big.bin", new byte[maxZipEntrySize + 1]));
+
+        UploadValidationContext ctx = setupContext();
+        StreamingUnpackHandler handler = setupHandler(svc, zippedBytes);
+
+        // execute
+        try {
+            handler.handle(ctx);
+            fail("expected exception");
+        } catch (BadRequestException ex) {
+            // expected exception
+        }
+
+        // The rest of the S3 object isn't read. The connection is aborted instead.
+        verify(mockS3Request).abort();
+        assertNull(ctx.getUnzippedDataMap());
+    }
+
+    private static UploadValidationContext setupContext() {
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId("test-upload-id");
+
+        UploadValidationContext ctx = new UploadValidationContext();
+        ctx.setStudy(TestConstants.TEST_STUDY);
+        ctx.setUpload(upload);
+        return ctx;
+    }
+
+    private StreamingUnpackHandler setupHandler(UploadArchiveService svc, byte[] zippedBytes) {
+        // mock S3 client
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new S3ObjectInputStream(s3Content, mockS3Request));
+        AmazonS3Client mockS3Client = mock(AmazonS3Client.class);
+        when(mockS3Client.getObject(TestConstants.UPLOAD_BUCKET, "test-upload-id")).thenReturn(s3Object);
+
+        // Decryption is tested in UploadArchiveServiceTest. Here, the "decrypted" stream is just the zipped data.
+        doReturn(new ByteArrayInputStream(zippedBytes)).when(svc).decrypt(eq(TestConstants.TEST_STUDY_IDENTIFIER),
+                any(InputStream.class));
+
+        StreamingUnpackHandler handler = new StreamingUnpackHandler();
+        handler.setS3Client(mockS3Client);
+        handler.setUploadArchiveService(svc);
+        return handler;
+    }
+}
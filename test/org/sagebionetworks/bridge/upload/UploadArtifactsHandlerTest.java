@@ -1,16 +1,27 @@
 package org.sagebionetworks.bridge.upload;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import com.google.common.collect.ImmutableMap;
+
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Charsets;
 
@@ -21,6 +32,8 @@ import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
+import org.sagebionetworks.bridge.dao.RecordDedupeDao;
+import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataAttachment;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
@@ -28,6 +41,7 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
+import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.s3.S3Helper;
 import org.sagebionetworks.bridge.services.HealthDataService;
 
@@ -73,9 +87,13 @@ public class UploadArtifactsHandlerTest {
         // mock S3 helper
         S3Helper mockS3Helper = mock(S3Helper.class);
 
+        // mock dedupe DAO, no duplicate
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+
         // set up handler
         UploadArtifactsHandler handler = new UploadArtifactsHandler();
         handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
         handler.setS3Helper(mockS3Helper);
 
         // set up context
@@ -171,6 +189,253 @@ public class UploadArtifactsHandlerTest {
 
         // validate no messages on the context
         assertTrue(context.getMessageList().isEmpty());
+
+        // validate dedupe registration, which is kept since everything was written
+        verify(mockRecordDedupeDao).registerRecord("dummy-healthcode",
+                UploadArtifactsHandler.getContentHash(recordBuilder.build(), attachmentMap), TEST_UPLOAD_ID);
+        verify(mockRecordDedupeDao, never()).unregisterRecord(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void duplicateIsLoggedAndWritten() throws Exception {
+        HealthDataService mockHealthDataService = mockHealthDataServiceWithOriginalRecord();
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+
+        UploadArtifactsHandler handler = spy(new UploadArtifactsHandler());
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockDuplicateDedupeDao());
+        handler.setUploadDao(mockOriginalUploadDao(UploadStatus.SUCCEEDED));
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        handler.handle(context);
+
+        verify(handler).logDuplicateRecord(any(HealthDataRecord.class), eq(TEST_UPLOAD_ID), eq("original-upload"));
+        verify(mockHealthDataService).createOrUpdateRecord(any(HealthDataRecord.class));
+        assertEquals(TEST_RECORD_ID, context.getRecordId());
+        assertTrue(context.getMessageList().isEmpty());
+    }
+
+    @Test
+    public void duplicateIsSuppressed() throws Exception {
+        HealthDataService mockHealthDataService = mockHealthDataServiceWithOriginalRecord();
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockDuplicateDedupeDao());
+        handler.setUploadDao(mockOriginalUploadDao(UploadStatus.SUCCEEDED));
+        handler.setSuppressDuplicates(true);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        handler.handle(context);
+
+        verify(mockHealthDataService, never()).createOrUpdateRecord(any(HealthDataRecord.class));
+        assertNull(context.getRecordId());
+        assertEquals(1, context.getMessageList().size());
+        assertTrue(context.getMessageList().get(0).contains("original-upload"));
+    }
+
+    @Test
+    public void registrationWithoutWrittenRecordIsNotDuplicate() throws Exception {
+        // The original upload failed validation, so its record was never written.
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+        RecordDedupeDao mockRecordDedupeDao = mockDuplicateDedupeDao();
+
+        UploadArtifactsHandler handler = spy(new UploadArtifactsHandler());
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
+        handler.setUploadDao(mockOriginalUploadDao(UploadStatus.VALIDATION_FAILED));
+        handler.setSuppressDuplicates(true);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        handler.handle(context);
+
+        verify(handler, never()).logDuplicateRecord(any(HealthDataRecord.class), anyString(), anyString());
+        verify(mockHealthDataService).createOrUpdateRecord(any(HealthDataRecord.class));
+        verify(mockRecordDedupeDao).replaceRegistration(eq("dummy-healthcode"), anyString(), eq("original-upload"),
+                eq(TEST_UPLOAD_ID));
+        assertEquals(TEST_RECORD_ID, context.getRecordId());
+    }
+
+    @Test
+    public void dedupeErrorStillWritesRecord() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+        when(mockRecordDedupeDao.registerRecord(anyString(), anyString(), anyString())).thenThrow(
+                new RuntimeException("test exception"));
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
+        handler.setSuppressDuplicates(true);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        handler.handle(context);
+
+        verify(mockHealthDataService).createOrUpdateRecord(any(HealthDataRecord.class));
+        assertEquals(TEST_RECORD_ID, context.getRecordId());
+        assertTrue(context.getMessageList().isEmpty());
+    }
+
+    @Test
+    public void originalUploadLookupErrorStillWritesRecord() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+        UploadDao mockUploadDao = mock(UploadDao.class);
+        when(mockUploadDao.getUpload("original-upload")).thenThrow(new RuntimeException("test exception"));
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockDuplicateDedupeDao());
+        handler.setUploadDao(mockUploadDao);
+        handler.setSuppressDuplicates(true);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        handler.handle(context);
+
+        verify(mockHealthDataService).createOrUpdateRecord(any(HealthDataRecord.class));
+        assertEquals(TEST_RECORD_ID, context.getRecordId());
+    }
+
+    @Test
+    public void unregisterErrorDoesNotHideWriteError() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenThrow(
+                new RuntimeException("test exception"));
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+        doThrow(new RuntimeException("unregister exception")).when(mockRecordDedupeDao).unregisterRecord(anyString(),
+                anyString(), anyString());
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
+
+        try {
+            handler.handle(createContextWithoutAttachments());
+            fail("expected exception");
+        } catch (RuntimeException ex) {
+            assertEquals("test exception", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void failedWriteReleasesRegistration() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenThrow(
+                new RuntimeException("test exception"));
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        try {
+            handler.handle(context);
+            fail("expected exception");
+        } catch (RuntimeException ex) {
+            assertEquals("test exception", ex.getMessage());
+        }
+
+        verify(mockRecordDedupeDao).unregisterRecord(eq("dummy-healthcode"), anyString(), eq(TEST_UPLOAD_ID));
+    }
+
+    @Test
+    public void failedAttachmentWriteReleasesRegistration() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+        when(mockHealthDataService.createOrUpdateAttachment(any(HealthDataAttachment.class))).thenReturn(
+                ATTACHMENT_ID_FOO);
+        when(mockHealthDataService.getRecordById(TEST_RECORD_ID)).thenReturn(createValidRecordBuilder(
+                BridgeObjectMapper.get().readTree("{\"foo\":\"bar\"}")).withId(TEST_RECORD_ID).build());
+        when(mockHealthDataService.getAttachmentBuilder()).thenAnswer(
+                invocation -> new DynamoHealthDataAttachment.Builder());
+        when(mockHealthDataService.getRecordBuilder()).thenAnswer(invocation -> new DynamoHealthDataRecord.Builder());
+
+        S3Helper mockS3Helper = mock(S3Helper.class);
+        doThrow(new IOException("test exception")).when(mockS3Helper).writeBytesToS3(TestConstants.ATTACHMENT_BUCKET,
+                ATTACHMENT_ID_FOO, BYTES_FOO);
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setRecordDedupeDao(mockRecordDedupeDao);
+        handler.setS3Helper(mockS3Helper);
+
+        UploadValidationContext context = createContextWithoutAttachments();
+        context.setAttachmentsByFieldName(ImmutableMap.of("foo.txt", BYTES_FOO));
+        handler.handle(context);
+
+        assertEquals(1, context.getMessageList().size());
+        verify(mockRecordDedupeDao).unregisterRecord(eq("dummy-healthcode"), anyString(), eq(TEST_UPLOAD_ID));
+    }
+
+    @Test
+    public void contentHash() throws Exception {
+        HealthDataRecord record = createValidRecordBuilder(BridgeObjectMapper.get().readTree(
+                "{\"a\":1, \"b\":{\"c\":\"d\", \"e\":[1, 2]}}")).build();
+        String hash = UploadArtifactsHandler.getContentHash(record, ImmutableMap.of());
+
+        // Field order doesn't matter.
+        HealthDataRecord reordered = createValidRecordBuilder(BridgeObjectMapper.get().readTree(
+                "{\"b\":{\"e\":[1, 2], \"c\":\"d\"}, \"a\":1}")).build();
+        assertEquals(hash, UploadArtifactsHandler.getContentHash(reordered, ImmutableMap.of()));
+
+        // Data, created on time, schema and attachments do.
+        HealthDataRecord differentData = createValidRecordBuilder(BridgeObjectMapper.get().readTree(
+                "{\"a\":1, \"b\":{\"c\":\"d\", \"e\":[2, 1]}}")).build();
+        assertNotEquals(hash, UploadArtifactsHandler.getContentHash(differentData, ImmutableMap.of()));
+
+        HealthDataRecord differentCreatedOn = new DynamoHealthDataRecord.Builder().copyOf(record)
+                .withCreatedOn(ARBITRARY_TIMESTAMP + 1).build();
+        assertNotEquals(hash, UploadArtifactsHandler.getContentHash(differentCreatedOn, ImmutableMap.of()));
+
+        HealthDataRecord differentSchemaRev = new DynamoHealthDataRecord.Builder().copyOf(record)
+                .withSchemaRevision(2).build();
+        assertNotEquals(hash, UploadArtifactsHandler.getContentHash(differentSchemaRev, ImmutableMap.of()));
+
+        assertNotEquals(hash, UploadArtifactsHandler.getContentHash(record, ImmutableMap.of("foo.txt", BYTES_FOO)));
+    }
+
+    private static RecordDedupeDao mockDuplicateDedupeDao() {
+        RecordDedupeDao mockRecordDedupeDao = mock(RecordDedupeDao.class);
+        when(mockRecordDedupeDao.registerRecord(eq("dummy-healthcode"), anyString(), eq(TEST_UPLOAD_ID)))
+                .thenReturn("original-upload");
+        return mockRecordDedupeDao;
+    }
+
+    // The original upload's record, which the mock upload DAO points to.
+    private static HealthDataService mockHealthDataServiceWithOriginalRecord() throws Exception {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.getRecordById("original-record")).thenReturn(createValidRecordBuilder(
+                BridgeObjectMapper.get().readTree("{\"foo\":\"bar\"}")).withId("original-record").build());
+        return mockHealthDataService;
+    }
+
+    private static UploadDao mockOriginalUploadDao(UploadStatus originalStatus) {
+        DynamoUpload2 originalUpload = new DynamoUpload2();
+        originalUpload.setUploadId("original-upload");
+        originalUpload.setStatus(originalStatus);
+        if (originalStatus == UploadStatus.SUCCEEDED) {
+            originalUpload.setRecordId("original-record");
+        }
+
+        UploadDao mockUploadDao = mock(UploadDao.class);
+        when(mockUploadDao.getUpload("original-upload")).thenReturn(originalUpload);
+        return mockUploadDao;
+    }
+
+    private static UploadValidationContext createContextWithoutAttachments() throws Exception {
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+
+        UploadValidationContext context = new UploadValidationContext();
+        context.setAttachmentsByFieldName(ImmutableMap.of());
+        context.setHealthDataRecordBuilder(createValidRecordBuilder(BridgeObjectMapper.get().readTree(
+                "{\"foo\":\"bar\"}")));
+        context.setUpload(upload);
+        return context;
     }
 
     // creates a record builder that has all the valid values filled in, with the data JsonNode specified
@@ -33,6 +33,7 @@ import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
+import org.sagebionetworks.bridge.dao.RecordDedupeDao;
 import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataAttachment;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataDao;
@@ -212,14 +213,10 @@ public class UploadHandlersEndToEndTest {
 
         when(mockHealthDataService.getRecordById(RECORD_ID)).thenAnswer(invocation -> savedRecord);
 
-        // mock HealthDataService should return empty list for getRecordsByHealthcodeCreatedOnSchemaId(), so dedupe
-        // logic doesn't crash
-        when(mockHealthDataService.getRecordsByHealthcodeCreatedOnSchemaId(HEALTH_CODE, CREATED_ON_MILLIS,
-                schema.getSchemaId())).thenReturn(ImmutableList.of());
-
         // set up UploadArtifactsHandler
         UploadArtifactsHandler uploadArtifactsHandler = new UploadArtifactsHandler();
         uploadArtifactsHandler.setHealthDataService(mockHealthDataService);
+        uploadArtifactsHandler.setRecordDedupeDao(mock(RecordDedupeDao.class));
         uploadArtifactsHandler.setS3Helper(mockS3UploadHelper);
 
         // set up task factory
@@ -230,7 +227,6 @@ public class UploadHandlersEndToEndTest {
         UploadValidationTaskFactory taskFactory = new UploadValidationTaskFactory();
         taskFactory.setHandlerList(handlerList);
         taskFactory.setUploadDao(mockUploadDao);
-        taskFactory.setHealthDataService(mockHealthDataService);
 
         // create task, execute
         UploadValidationTask task = taskFactory.newTask(TestConstants.TEST_STUDY, UPLOAD);
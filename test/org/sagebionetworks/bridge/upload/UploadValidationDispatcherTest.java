@@ -0,0 +1,165 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.models.upload.UploadStatus;
+
+public class UploadValidationDispatcherTest {
+    private static final long NOW = 1466000000000L;
+    private static final int LEASE_SECONDS = 60;
+    private static final StudyIdentifier STUDY = new StudyIdentifierImpl("test-study");
+
+    private InMemoryUploadValidationQueue queue;
+    private UploadValidationExecutor mockExecutor;
+    private UploadValidationExecutor.Reservation mockReservation;
+    private UploadValidationTaskFactory mockTaskFactory;
+    private UploadDao mockUploadDao;
+    private DynamoUpload2 upload;
+    private UploadValidationDispatcher dispatcher;
+
+    @Before
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        queue = new InMemoryUploadValidationQueue();
+        mockExecutor = mock(UploadValidationExecutor.class);
+        mockReservation = mock(UploadValidationExecutor.Reservation.class);
+        mockTaskFactory = mock(UploadValidationTaskFactory.class);
+        when(mockTaskFactory.newTask(any(StudyIdentifier.class), any(Upload.class))).thenReturn(
+                mock(UploadValidationTask.class));
+        mockUploadDao = mock(UploadDao.class);
+
+        upload = new DynamoUpload2();
+        upload.setUploadId("test-upload");
+        upload.setStatus(UploadStatus.VALIDATION_IN_PROGRESS);
+        when(mockUploadDao.getUpload("test-upload")).thenReturn(upload);
+
+        dispatcher = new UploadValidationDispatcher(queue, mockExecutor, mockTaskFactory, mockUploadDao,
+                LEASE_SECONDS);
+    }
+
+    @After
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void finishedUploadIsRemovedFromQueue() {
+        dispatcher.dispatch(mockReservation, dispatcher.enqueue(STUDY, upload), STUDY, upload);
+        runQueuedTask();
+
+        // Even after the lease would have expired, there is nothing to recover.
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+        assertEquals(0, queue.requeueExpired());
+    }
+
+    @Test
+    public void renewedWhileRunning() {
+        dispatcher.dispatch(mockReservation, dispatcher.enqueue(STUDY, upload), STUDY, upload);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 50000);
+        dispatcher.renewLeases();
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 100000);
+        assertEquals(0, queue.requeueExpired());
+    }
+
+    @Test
+    public void enqueuedUploadIsRecoveredIfNeverDispatched() {
+        // This node enqueued the upload, marked it complete, then died before dispatching it.
+        dispatcher.enqueue(STUDY, upload);
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+
+        when(mockExecutor.getQueueDepth()).thenReturn(0, 1);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+
+        dispatcher.recover();
+
+        verify(mockTaskFactory).newTask(STUDY, upload);
+    }
+
+    @Test
+    public void enqueueSkipsUploadAlreadyInQueue() {
+        dispatcher.enqueue(STUDY, upload);
+        assertNull(dispatcher.enqueue(STUDY, upload));
+    }
+
+    @Test
+    public void cancelledUploadIsNotRecovered() {
+        dispatcher.cancel(dispatcher.enqueue(STUDY, upload));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+        assertEquals(0, queue.requeueExpired());
+        assertNull(queue.lease(LEASE_SECONDS));
+    }
+
+    @Test
+    public void recoversExpiredUpload() {
+        // Another node added the upload and then died.
+        queue.addLeased(STUDY.getIdentifier(), "test-upload", LEASE_SECONDS);
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+
+        when(mockExecutor.getQueueDepth()).thenReturn(0, 1);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+
+        dispatcher.recover();
+
+        verify(mockTaskFactory).newTask(STUDY, upload);
+        runQueuedTask();
+        assertNull(queue.lease(LEASE_SECONDS));
+    }
+
+    @Test
+    public void skipsUploadThatWasAlreadyValidated() {
+        queue.addLeased(STUDY.getIdentifier(), "test-upload", LEASE_SECONDS);
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+        upload.setStatus(UploadStatus.SUCCEEDED);
+
+        when(mockExecutor.getQueueDepth()).thenReturn(0);
+        when(mockExecutor.tryReserve()).thenReturn(mockReservation);
+
+        dispatcher.recover();
+
+        verify(mockReservation, never()).execute(anyString(), any(Runnable.class));
+        verify(mockReservation, atLeastOnce()).close();
+        assertNull(queue.lease(LEASE_SECONDS));
+    }
+
+    @Test
+    public void doesNotRecoverWhenBusy() {
+        queue.addLeased(STUDY.getIdentifier(), "test-upload", LEASE_SECONDS);
+        DateTimeUtils.setCurrentMillisFixed(NOW + LEASE_SECONDS * 1000L);
+
+        when(mockExecutor.getQueueDepth()).thenReturn(5);
+
+        dispatcher.recover();
+
+        verify(mockExecutor, never()).tryReserve();
+        assertEquals("test-upload", queue.lease(LEASE_SECONDS).getUploadId());
+    }
+
+    private void runQueuedTask() {
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockReservation).execute(anyString(), taskCaptor.capture());
+        taskCaptor.getValue().run();
+    }
+}
@@ -0,0 +1,103 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UploadValidationExecutorTest {
+    private UploadValidationMetrics metrics;
+    private UploadValidationExecutor executor;
+
+    @Before
+    public void before() {
+        metrics = new UploadValidationMetrics();
+        executor = new UploadValidationExecutor(1, 4, metrics);
+    }
+
+    @After
+    public void after() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void studiesTakeTurns() throws Exception {
+        // Block the only worker, so that everything after the first task queues up.
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        execute("study-a", () -> {
+            started.countDown();
+            awaitUninterruptibly(blocker);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> ranList = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        execute("study-a", () -> { ranList.add("a1"); done.countDown(); });
+        execute("study-a", () -> { ranList.add("a2"); done.countDown(); });
+        execute("study-b", () -> { ranList.add("b1"); done.countDown(); });
+        assertEquals(3, executor.getQueueDepth());
+
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // Study B doesn't have to wait for all of study A's uploads.
+        assertEquals(ImmutableList.of("a1", "b1", "a2"), ranList);
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        UploadValidationExecutor.Reservation[] reservations = new UploadValidationExecutor.Reservation[4];
+        for (int i = 0; i < 4; i++) {
+            reservations[i] = executor.tryReserve();
+            assertNotNull(reservations[i]);
+        }
+        assertNull(executor.tryReserve());
+
+        // Closing an unused reservation frees up room.
+        reservations[0].close();
+        assertNotNull(executor.tryReserve());
+
+        ObjectNode report = metrics.reportAndReset(executor.getQueueDepth());
+        assertEquals(1, report.get("rejected").longValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reservationCanOnlyBeUsedOnce() {
+        UploadValidationExecutor.Reservation reservation = executor.tryReserve();
+        reservation.close();
+        reservation.execute("study-a", () -> {});
+    }
+
+    @Test
+    public void rejectsAfterShutdown() {
+        executor.shutdown();
+        assertNull(executor.tryReserve());
+    }
+
+    private void execute(String studyId, Runnable task) {
+        try (UploadValidationExecutor.Reservation reservation = executor.tryReserve()) {
+            reservation.execute(studyId, task);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
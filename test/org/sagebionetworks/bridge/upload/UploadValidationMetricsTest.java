@@ -0,0 +1,31 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+public class UploadValidationMetricsTest {
+    @Test
+    public void reportAndReset() {
+        UploadValidationMetrics metrics = new UploadValidationMetrics();
+        metrics.recordQueueWait(10);
+        metrics.recordQueueWait(30);
+        metrics.recordHandlerLatency("UnzipHandler", 5);
+        metrics.recordRejected();
+
+        JsonNode report = metrics.reportAndReset(7);
+        assertEquals(7, report.get("queueDepth").intValue());
+        assertEquals(1, report.get("rejected").longValue());
+        assertEquals(2, report.get("queueWait").get("count").longValue());
+        assertEquals(20, report.get("queueWait").get("avgMillis").longValue());
+        assertEquals(30, report.get("queueWait").get("maxMillis").longValue());
+        assertEquals(5, report.get("handlers").get("UnzipHandler").get("maxMillis").longValue());
+
+        // The next report only covers what happened after this one.
+        report = metrics.reportAndReset(0);
+        assertEquals(0, report.get("rejected").longValue());
+        assertEquals(0, report.get("queueWait").get("count").longValue());
+        assertEquals(0, report.get("handlers").get("UnzipHandler").get("count").longValue());
+    }
+}
@@ -3,134 +3,35 @@ package org.sagebionetworks.bridge.upload;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
-import static org.mockito.Mockito.when;
-import static org.mockito.Mockito.eq;
 
 import javax.annotation.Nonnull;
 
-import java.io.IOException;
 import java.util.List;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 
-import org.joda.time.LocalDate;
-import org.junit.Before;
 import org.junit.Test;
 
-import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
-import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.UploadDao;
-import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataDaoDdbTest;
-import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
-import org.sagebionetworks.bridge.json.BridgeObjectMapper;
-import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
-import org.sagebionetworks.bridge.services.HealthDataService;
 
 public class UploadValidationTaskTest {
-    private static final long CREATED_ON = 1424136378727L;
-    private static final String HEALTH_CODE = TestUtils.randomName(DynamoHealthDataDaoDdbTest.class);
-    private static final String RECORD_ID = TestUtils.randomName(DynamoHealthDataDaoDdbTest.class);
-    private static final String RECORD_ID_2 = TestUtils.randomName(DynamoHealthDataDaoDdbTest.class);
-    private static final String RECORD_ID_3 = TestUtils.randomName(DynamoHealthDataDaoDdbTest.class);
-    private static final String DATA_TEXT = "{\"data\":\"dummy value\"}";
-    private static final String METADATA_TEXT = "{\"metadata\":\"dummy meta value\"}";
-    private static final String SCHEMA_ID = TestUtils.randomName(DynamoHealthDataDaoDdbTest.class);
-    private static final int SCHEMA_REV = 2;
-    private static final LocalDate UPLOAD_DATE = LocalDate.parse("2016-05-06");
-    private static final String UPLOAD_ID = "upload-id";
-    private static final long UPLOADED_ON = 1462575525894L;
-    private static final String USER_EXTERNAL_ID = "external-id";
-
-    private HealthDataRecord testRecord;
-
-    private List<HealthDataRecord> testRecordDupeListMulti;
+    private static final String RECORD_ID = TestUtils.randomName(UploadValidationTaskTest.class);
 
     private final List<UploadValidationHandler> handlerList = ImmutableList.of(
             new MessageHandler("foo was here"), new MessageHandler("bar was here"),
             new MessageHandler("kilroy was here"), new RecordIdHandler(RECORD_ID));
 
-    private final List<UploadValidationHandler> nullRecordIdHandlerList = ImmutableList.of(
-            new MessageHandler("foo was here"), new MessageHandler("bar was here"),
-            new MessageHandler("kilroy was here"), new RecordIdHandler(null));
-
-
-    private HealthDataService healthDataService;
-
-    @Before
-    public void setup() throws IOException {
-        testRecord = new DynamoHealthDataRecord.Builder()
-                .withCreatedOn(CREATED_ON)
-                .withHealthCode(HEALTH_CODE)
-                .withId(RECORD_ID)
-                .withSchemaId(SCHEMA_ID)
-                .withSchemaRevision(SCHEMA_REV)
-                .withStudyId(TestConstants.TEST_STUDY_IDENTIFIER)
-                .withUploadDate(UPLOAD_DATE)
-                .withUploadedOn(UPLOADED_ON)
-                .withUploadId(UPLOAD_ID)
-                .withUserSharingScope(ParticipantOption.SharingScope.SPONSORS_AND_PARTNERS)
-                .withUserExternalId(USER_EXTERNAL_ID)
-                .withUserDataGroups(TestConstants.USER_DATA_GROUPS)
-                .withData(BridgeObjectMapper.get().readTree(DATA_TEXT))
-                .withMetadata(BridgeObjectMapper.get().readTree(METADATA_TEXT))
-                .build();
-
-        HealthDataRecord testRecordDupe = new DynamoHealthDataRecord.Builder()
-                .withCreatedOn(CREATED_ON)
-                .withHealthCode(HEALTH_CODE)
-                .withId(RECORD_ID_2)
-                .withSchemaId(SCHEMA_ID)
-                .withSchemaRevision(SCHEMA_REV)
-                .withStudyId(TestConstants.TEST_STUDY_IDENTIFIER)
-                .withUploadDate(UPLOAD_DATE)
-                .withUploadedOn(UPLOADED_ON)
-                .withUploadId(UPLOAD_ID)
-                .withUserSharingScope(ParticipantOption.SharingScope.SPONSORS_AND_PARTNERS)
-                .withUserExternalId(USER_EXTERNAL_ID)
-                .withUserDataGroups(TestConstants.USER_DATA_GROUPS)
-                .withData(BridgeObjectMapper.get().readTree(DATA_TEXT))
-                .withMetadata(BridgeObjectMapper.get().readTree(METADATA_TEXT))
-                .build();
-
-        HealthDataRecord testRecordDupe2 = new DynamoHealthDataRecord.Builder()
-                .withCreatedOn(CREATED_ON)
-                .withHealthCode(HEALTH_CODE)
-                .withId(RECORD_ID_3)
-                .withSchemaId(SCHEMA_ID)
-                .withSchemaRevision(SCHEMA_REV)
-                .withStudyId(TestConstants.TEST_STUDY_IDENTIFIER)
-                .withUploadDate(UPLOAD_DATE)
-                .withUploadedOn(UPLOADED_ON)
-                .withUploadId(UPLOAD_ID)
-                .withUserSharingScope(ParticipantOption.SharingScope.SPONSORS_AND_PARTNERS)
-                .withUserExternalId(USER_EXTERNAL_ID)
-                .withUserDataGroups(TestConstants.USER_DATA_GROUPS)
-                .withData(BridgeObjectMapper.get().readTree(DATA_TEXT))
-                .withMetadata(BridgeObjectMapper.get().readTree(METADATA_TEXT))
-                .build();
-
-        List<HealthDataRecord> testRecordDupeListNormal = ImmutableList.of(testRecord, testRecordDupe);
-        testRecordDupeListMulti = ImmutableList.of(testRecord, testRecordDupe, testRecordDupe2);
-
-        healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(eq(RECORD_ID))).thenReturn(testRecord);
-        when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
-                testRecordDupeListNormal);
-    }
-
     @Test
     public void happyCase() {
         // test handlers
@@ -147,6 +48,22 @@ public class UploadValidationTaskTest {
         assertEquals("kilroy was here", messageList.get(2));
     }
 
+    @Test
+    public void spilledDataIsDeleted() {
+        SpillingDataMap unzippedDataMap = new SpillingDataMap(0);
+        SpillingDataMap attachmentMap = new SpillingDataMap(0);
+        UploadValidationHandler spillingHandler = context -> {
+            unzippedDataMap.put("foo.bin", new byte[] { 1, 2, 3 });
+            attachmentMap.put("foo", new byte[] { 1, 2, 3 });
+            context.setUnzippedDataMap(unzippedDataMap);
+            context.setAttachmentsByFieldName(attachmentMap);
+        };
+
+        testHelper(ImmutableList.of(spillingHandler), UploadStatus.SUCCEEDED, null);
+        assertTrue(unzippedDataMap.isEmpty());
+        assertTrue(attachmentMap.isEmpty());
+    }
+
     @Test
     public void uploadValidationException() throws Exception {
         testExceptionHelper(UploadValidationException.class);
@@ -210,7 +127,6 @@ public class UploadValidationTaskTest {
         UploadValidationTask task = new UploadValidationTask(ctx);
         task.setHandlerList(handlerList);
         task.setUploadDao(mockDao);
-        task.setHealthDataService(healthDataService);
 
         // execute
         task.run();
@@ -246,7 +162,6 @@ public class UploadValidationTaskTest {
         UploadValidationTask task = spy(new UploadValidationTask(ctx));
         task.setHandlerList(handlerList);
         task.setUploadDao(mockDao);
-        task.setHealthDataService(healthDataService);
 
         // execute
         task.run();
@@ -255,166 +170,6 @@ public class UploadValidationTaskTest {
         verify(task).logWriteValidationStatusException(UploadStatus.SUCCEEDED, toThrow);
     }
 
-    @Test
-    public void dedupeNullRecordId() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(nullRecordIdHandlerList);
-        task.setHealthDataService(healthDataService);
-        task.setUploadDao(mock(UploadDao.class));
-
-        // execute
-        task.run();
-
-        // should have no interaction with dedupe logic
-        verify(task, times(0)).logDuplicateUploadRecords(any(), any());
-        verify(task, times(0)).logErrorMsg(any());
-    }
-
-    @Test
-    public void dedupeInformation() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(handlerList);
-        task.setHealthDataService(healthDataService);
-        task.setUploadDao(mock(UploadDao.class));
-
-        // execute
-        task.run();
-
-        // verify log helper was called
-        verify(task).logDuplicateUploadRecords(eq(testRecord), eq(ImmutableList.of(RECORD_ID_2)));
-    }
-
-    @Test
-    public void dedupeWithoutDuplicate() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(handlerList);
-        task.setUploadDao(mock(UploadDao.class));
-
-        // only return one test record
-        healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
-        when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
-                ImmutableList.of(testRecord));
-        task.setHealthDataService(healthDataService);
-
-        // execute
-        task.run();
-
-        // verify log helper was NOT called
-        verify(task, times(0)).logDuplicateUploadRecords(any(), any());
-    }
-
-    @Test
-    public void dedupeNullRecord() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(handlerList);
-        task.setUploadDao(mock(UploadDao.class));
-
-        // return a null record
-        healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(null);
-        task.setHealthDataService(healthDataService);
-        task.run();
-        verify(task, times(0)).logDuplicateUploadRecords(any(), any());
-    }
-
-    @Test
-    public void dedupeEmptyList() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(handlerList);
-        task.setUploadDao(mock(UploadDao.class));
-
-        // return an empty list
-        healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
-        when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
-                ImmutableList.of());
-        task.setHealthDataService(healthDataService);
-        task.run();
-        verify(task, times(0)).logDuplicateUploadRecords(any(), any());
-    }
-
-    @Test
-    public void dedupeMultipleDuplicates() {
-        // input
-        DynamoStudy study = TestUtils.getValidStudy(UploadValidationTaskTest.class);
-
-        DynamoUpload2 upload2 = new DynamoUpload2();
-        upload2.setUploadId("test-upload");
-
-        UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setStudy(study);
-        ctx.setUpload(upload2);
-
-        // set up validation task
-        UploadValidationTask task = spy(new UploadValidationTask(ctx));
-        task.setHandlerList(handlerList);
-        task.setUploadDao(mock(UploadDao.class));
-
-        healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
-        when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(eq(HEALTH_CODE), eq(CREATED_ON), eq(SCHEMA_ID))).thenReturn(testRecordDupeListMulti);
-        task.setHealthDataService(healthDataService);
-
-        task.run();
-        verify(task).logDuplicateUploadRecords(eq(testRecord), eq(ImmutableList.of(RECORD_ID_2, RECORD_ID_3)));
-    }
-
     // Test handler that makes its presence known only by writing a message to the validation context.
     private static class MessageHandler implements UploadValidationHandler {
         private final String message;
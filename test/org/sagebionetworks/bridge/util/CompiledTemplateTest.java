@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public class CompiledTemplateTest {
+
+    private static final Map<String,String> VALUES = ImmutableMap.of("studyName", "Study Name", "sponsorName",
+            "Sponsor", "consent.body", "<p>Body</p>");
+
+    @Test
+    public void resolvesVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("<h1>${studyName}</h1>${consent.body}<p>${sponsorName}</p>");
+
+        assertEquals("<h1>Study Name</h1><p>Body</p><p>Sponsor</p>", template.resolve(VALUES));
+    }
+
+    @Test
+    public void resolvesRepeatedVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("${studyName} and ${studyName}");
+
+        assertEquals("Study Name and Study Name", template.resolve(VALUES));
+    }
+
+    @Test
+    public void leavesVariablesWithoutValues() {
+        Map<String,String> values = Maps.newHashMap();
+        values.put("studyName", null);
+        CompiledTemplate template = CompiledTemplate.compile("${studyName} ${participant.name}");
+
+        assertEquals("${studyName} ${participant.name}", template.resolve(values));
+    }
+
+    @Test
+    public void templateWithoutVariables() {
+        assertEquals("", CompiledTemplate.compile("").resolve(VALUES));
+        assertEquals("no variables", CompiledTemplate.compile("no variables").resolve(VALUES));
+    }
+
+    @Test
+    public void unterminatedAndNestedVariables() {
+        assertEquals("a ${studyName", CompiledTemplate.compile("a ${studyName").resolve(VALUES));
+        assertEquals("${a Study Name", CompiledTemplate.compile("${a ${studyName}").resolve(VALUES));
+        assertEquals("$Study Name}", CompiledTemplate.compile("$${studyName}}").resolve(VALUES));
+    }
+
+    @Test
+    public void resolvesSameAsBridgeUtils() {
+        String template = "<html><title>${studyName}</title>${consent.body} $ { } ${} ${unknown} ${sponsorName}${";
+
+        assertEquals(BridgeUtils.resolveTemplate(template, VALUES), CompiledTemplate.compile(template).resolve(VALUES));
+    }
+}
@@ -3,7 +3,9 @@ package org.sagebionetworks.bridge.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Test;
@@ -31,6 +33,30 @@ public class ZipperTest {
         zipper.unzip(zipped);
     }
 
+    @Test
+    public void testStreamingUnzip() throws Exception {
+        Zipper zipper = new Zipper(10, 20);
+        Map<String, byte[]> dataMap = new LinkedHashMap<>();
+        dataMap.put("foo", "foo data".getBytes());
+        dataMap.put("bar", "bar data".getBytes());
+        byte[] zipped = zipper.zip(dataMap);
+
+        Map<String, byte[]> unzippedMap = new LinkedHashMap<>();
+        zipper.unzip(new ByteArrayInputStream(zipped), unzippedMap::put);
+        assertEquals(dataMap.keySet(), unzippedMap.keySet());
+        assertEquals("foo data", new String(unzippedMap.get("foo")));
+        assertEquals("bar data", new String(unzippedMap.get("bar")));
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testStreamingZipEntryTooBig() throws Exception {
+        Zipper zipper = new Zipper(2, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("testStreamingZipEntryTooBig", "aaa".getBytes());
+        byte[] zipped = zipper.zip(dataMap);
+        zipper.unzip(new ByteArrayInputStream(zipped), (name, bytes) -> {});
+    }
+
     private void zipUnzip(final Zipper zipper, final int numEntries) throws Exception {
         Map<String, byte[]> dataMap = new HashMap<>();
         for (int i = 0; i < numEntries; i++) {